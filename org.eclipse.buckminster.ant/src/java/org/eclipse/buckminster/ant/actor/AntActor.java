@@ -11,7 +11,9 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.buckminster.ant.AntBuilderConstants;
 import org.eclipse.buckminster.ant.AntRunner;
@@ -44,6 +46,29 @@ import org.osgi.framework.Bundle;
  * @author Thomas Hallgren
  */
 public class AntActor extends AbstractActor {
+	/**
+	 * A build script that has been resolved from the build scripts extension
+	 * point. The entry is valid as long as the contributing bundle is not
+	 * updated or uninstalled and the file still exists.
+	 */
+	private static class BuildScript {
+		final Bundle bundle;
+
+		final long lastModified;
+
+		final IPath location;
+
+		BuildScript(Bundle bundle, IPath location) {
+			this.bundle = bundle;
+			this.lastModified = bundle.getLastModified();
+			this.location = location;
+		}
+
+		boolean isValid() {
+			return bundle.getState() != Bundle.UNINSTALLED && bundle.getLastModified() == lastModified && location.toFile().isFile();
+		}
+	}
+
 	public static final String ACTOR_ID = "ant"; //$NON-NLS-1$
 
 	public static final String PROP_BUILD_FILE_ID = "buildFileId"; //$NON-NLS-1$
@@ -58,7 +83,28 @@ public class AntActor extends AbstractActor {
 
 	private final static String BUILD_SCRIPT_RESOURCE = "resource"; //$NON-NLS-1$
 
+	private static final Map<String, BuildScript> buildScripts = new HashMap<String, BuildScript>();
+
+	private static final AtomicLong buildScriptHitCount = new AtomicLong();
+
+	private static final AtomicLong buildScriptMissCount = new AtomicLong();
+
 	public static IPath getBuildFileExtension(String buildFileId) throws CoreException {
+		// Builds often run hundreds of actions that use the same build script
+		// so the resolved location is cached
+		//
+		synchronized (buildScripts) {
+			BuildScript buildScript = buildScripts.get(buildFileId);
+			if (buildScript != null) {
+				if (buildScript.isValid()) {
+					buildScriptHitCount.incrementAndGet();
+					return buildScript.location;
+				}
+				buildScripts.remove(buildFileId);
+			}
+		}
+		buildScriptMissCount.incrementAndGet();
+
 		IConfigurationElement resourceElem = null;
 		IExtensionRegistry er = Platform.getExtensionRegistry();
 		for (IConfigurationElement elem : er.getConfigurationElementsFor(BUILD_SCRIPT_POINT)) {
@@ -97,7 +143,28 @@ public class AntActor extends AbstractActor {
 			//
 			throw BuckminsterException.fromMessage(NLS.bind(Messages.AntActor_Unexpected_protocol_0, rsURL.getProtocol()));
 
-		return FileUtils.getFileAsPath(rsURL);
+		IPath location = FileUtils.getFileAsPath(rsURL);
+		synchronized (buildScripts) {
+			buildScripts.put(buildFileId, new BuildScript(contributorBundle, location));
+		}
+		CorePlugin.getLogger().debug("Resolved build script %s to %s, build script cache hits: %d, misses: %d", buildFileId, location, //$NON-NLS-1$
+				Long.valueOf(getBuildScriptCacheHitCount()), Long.valueOf(getBuildScriptCacheMissCount()));
+		return location;
+	}
+
+	/**
+	 * @return The number of times a build script was found in the cache
+	 */
+	public static long getBuildScriptCacheHitCount() {
+		return buildScriptHitCount.get();
+	}
+
+	/**
+	 * @return The number of times a build script had to be resolved using the
+	 *         extension registry
+	 */
+	public static long getBuildScriptCacheMissCount() {
+		return buildScriptMissCount.get();
 	}
 
 	private static void addPathGroupArraysToProperties(Map<String, PathGroup[]> namedPGA, Map<String, String> props) {
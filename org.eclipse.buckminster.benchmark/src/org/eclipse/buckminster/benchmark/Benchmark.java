@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark;
+
+/**
+ * A benchmark that measures the cost of one operation. The
+ * {@link BenchmarkRunner} will call {@link #setUp(int)} once for each size
+ * returned by {@link #getSizes()}, then call {@link #run()} repeatedly, and
+ * finally call {@link #tearDown()}. The size typically denotes the number of
+ * elements that each call to {@link #run()} will process.
+ *
+ * @author Thomas Hallgren
+ */
+public abstract class Benchmark {
+	private final String name;
+
+	private final int[] sizes;
+
+	protected Benchmark(String name, int... sizes) {
+		this.name = name;
+		this.sizes = sizes;
+	}
+
+	public final String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The sizes to run the benchmark with
+	 */
+	public final int[] getSizes() {
+		return sizes;
+	}
+
+	/**
+	 * Perform the measured operation once. The result is consumed by the
+	 * runner so that the work cannot be optimized away.
+	 *
+	 * @return The result of the operation
+	 * @throws Exception
+	 */
+	public abstract Object run() throws Exception;
+
+	/**
+	 * Prepare the benchmark for a series of runs with the given size.
+	 *
+	 * @param size
+	 *            The size of the runs
+	 * @throws Exception
+	 */
+	public void setUp(int size) throws Exception {
+	}
+
+	/**
+	 * Release everything that was allocated by {@link #setUp(int)}.
+	 *
+	 * @throws Exception
+	 */
+	public void tearDown() throws Exception {
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.buckminster.benchmark.internal.Messages;
+import org.eclipse.buckminster.benchmark.suites.FilterBenchmarks;
+import org.eclipse.buckminster.benchmark.suites.IdentityBenchmarks;
+import org.eclipse.buckminster.benchmark.suites.MatcherLookup;
+import org.eclipse.buckminster.benchmark.suites.ParserBenchmarks;
+import org.eclipse.buckminster.benchmark.suites.PropertyExpansion;
+import org.eclipse.buckminster.benchmark.suites.ResolverBenchmark;
+import org.eclipse.buckminster.benchmark.suites.StorageBenchmarks;
+import org.eclipse.buckminster.benchmark.suites.VersionBenchmarks;
+import org.eclipse.buckminster.cmdline.Option;
+import org.eclipse.buckminster.cmdline.OptionDescriptor;
+import org.eclipse.buckminster.cmdline.OptionValueType;
+import org.eclipse.buckminster.cmdline.UsageException;
+import org.eclipse.buckminster.core.commands.WorkspaceCommand;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.parser.AbstractParser;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Runs the benchmarks for the resolver, the storages, the parsers and the
+ * version handling and prints the results.
+ *
+ * @author Thomas Hallgren
+ */
+public class BenchmarkCommand extends WorkspaceCommand {
+	private static final OptionDescriptor WARMUP_DESCRIPTOR = new OptionDescriptor('w', "warmup", OptionValueType.REQUIRED); //$NON-NLS-1$
+
+	private static final OptionDescriptor ITERATIONS_DESCRIPTOR = new OptionDescriptor('i', "iterations", OptionValueType.REQUIRED); //$NON-NLS-1$
+
+	private static final OptionDescriptor TIME_DESCRIPTOR = new OptionDescriptor('t', "time", OptionValueType.REQUIRED); //$NON-NLS-1$
+
+	private static final OptionDescriptor FILTER_DESCRIPTOR = new OptionDescriptor('f', "filter", OptionValueType.REQUIRED); //$NON-NLS-1$
+
+	private static final OptionDescriptor OUTPUT_DESCRIPTOR = new OptionDescriptor('o', "output", OptionValueType.REQUIRED); //$NON-NLS-1$
+
+	private static final OptionDescriptor LIST_DESCRIPTOR = new OptionDescriptor('l', "list", OptionValueType.NONE); //$NON-NLS-1$
+
+	/**
+	 * @return All known benchmarks
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new VersionBenchmarks.VersionParsing());
+		benchmarks.add(new VersionBenchmarks.SelectorParsing());
+		benchmarks.add(new VersionBenchmarks.RangeParsing());
+		benchmarks.add(new VersionBenchmarks.RangeMatching());
+		benchmarks.add(new PropertyExpansion());
+		benchmarks.add(new FilterBenchmarks.FilterParsing());
+		benchmarks.add(new FilterBenchmarks.MapMatching());
+		benchmarks.add(new FilterBenchmarks.SnapshotMatching());
+		benchmarks.add(new ParserBenchmarks.CSpecParsing());
+		benchmarks.add(new ParserBenchmarks.ValidatingCSpecParsing());
+		benchmarks.add(new ParserBenchmarks.BOMParsing());
+		benchmarks.add(new ParserBenchmarks.BinaryBOMParsing());
+		benchmarks.add(new ParserBenchmarks.ResourceMapParsing());
+		benchmarks.add(new MatcherLookup());
+		benchmarks.add(new StorageBenchmarks.FileStoragePut());
+		benchmarks.add(new StorageBenchmarks.FileStorageGet());
+		benchmarks.add(new StorageBenchmarks.LogStoragePut());
+		benchmarks.add(new StorageBenchmarks.LogStorageGet());
+		benchmarks.add(new ResolverBenchmark());
+		benchmarks.add(new IdentityBenchmarks.Image());
+		benchmarks.add(new IdentityBenchmarks.Digest());
+		return benchmarks;
+	}
+
+	private static int parsePositive(Option option) throws UsageException {
+		try {
+			int value = Integer.parseInt(option.getValue());
+			if (value > 0)
+				return value;
+		} catch (NumberFormatException e) {
+		}
+		throw new UsageException(NLS.bind(Messages.Option_0_requires_a_positive_integer, option.getName()));
+	}
+
+	private final BenchmarkRunner runner = new BenchmarkRunner();
+
+	private Pattern filter;
+
+	private String outputPath;
+
+	private boolean listOnly;
+
+	@Override
+	protected void getOptionDescriptors(List<OptionDescriptor> appendHere) throws Exception {
+		super.getOptionDescriptors(appendHere);
+		appendHere.add(WARMUP_DESCRIPTOR);
+		appendHere.add(ITERATIONS_DESCRIPTOR);
+		appendHere.add(TIME_DESCRIPTOR);
+		appendHere.add(FILTER_DESCRIPTOR);
+		appendHere.add(OUTPUT_DESCRIPTOR);
+		appendHere.add(LIST_DESCRIPTOR);
+	}
+
+	@Override
+	protected void handleOption(Option option) throws Exception {
+		if (option.is(WARMUP_DESCRIPTOR))
+			runner.setWarmupIterations(parsePositive(option));
+		else if (option.is(ITERATIONS_DESCRIPTOR))
+			runner.setMeasuredIterations(parsePositive(option));
+		else if (option.is(TIME_DESCRIPTOR))
+			runner.setIterationMillis(parsePositive(option));
+		else if (option.is(FILTER_DESCRIPTOR))
+			filter = Pattern.compile(option.getValue());
+		else if (option.is(OUTPUT_DESCRIPTOR))
+			outputPath = option.getValue();
+		else if (option.is(LIST_DESCRIPTOR))
+			listOnly = true;
+		else
+			super.handleOption(option);
+	}
+
+	@Override
+	protected void handleUnparsed(String[] unparsed) throws Exception {
+		if (unparsed.length > 0)
+			throw new UsageException(Messages.Too_many_arguments);
+	}
+
+	@Override
+	protected int internalRun(IProgressMonitor monitor) throws Exception {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Benchmark benchmark : getBenchmarks())
+			if (filter == null || filter.matcher(benchmark.getName()).find())
+				benchmarks.add(benchmark);
+
+		if (benchmarks.isEmpty())
+			throw new UsageException(NLS.bind(Messages.No_benchmark_matches_0, filter));
+
+		PrintStream out = System.out;
+		if (listOnly) {
+			for (Benchmark benchmark : benchmarks)
+				out.println(benchmark.getName());
+			return 0;
+		}
+
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+		monitor.beginTask(null, benchmarks.size());
+		try {
+			out.println(String.format("%-32s %8s %5s %16s %14s %16s", //$NON-NLS-1$
+					"Benchmark", "Size", "Cnt", "Mean (ns/op)", "Error", "Min (ns/op)")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			for (Benchmark benchmark : benchmarks) {
+				for (BenchmarkResult result : runner.run(benchmark, MonitorUtils.subMonitor(monitor, 1))) {
+					out.println(result);
+					results.add(result);
+				}
+			}
+		} finally {
+			monitor.done();
+		}
+
+		out.println(String.format("Parsed %d documents in %d ms using %d readers and %d compiled schema sets", //$NON-NLS-1$
+				Long.valueOf(AbstractParser.getParseCount()), Long.valueOf(AbstractParser.getParseTime()),
+				Long.valueOf(AbstractParser.getReaderCount()), Long.valueOf(AbstractParser.getSchemaCount())));
+
+		if (outputPath != null)
+			writeCSV(results);
+		return 0;
+	}
+
+	private void writeCSV(List<BenchmarkResult> results) throws Exception {
+		File outputFile = new File(outputPath);
+		File parentFile = outputFile.getAbsoluteFile().getParentFile();
+		if (parentFile != null)
+			FileUtils.createDirectory(parentFile, new NullProgressMonitor());
+
+		PrintStream out = new PrintStream(new FileOutputStream(outputFile), false, "UTF-8"); //$NON-NLS-1$
+		try {
+			out.println("benchmark,size,samples,mean,error,min"); //$NON-NLS-1$
+			for (BenchmarkResult result : results) {
+				out.print(result.getName());
+				out.print(',');
+				out.print(result.getSize());
+				out.print(',');
+				out.print(result.getSampleCount());
+				out.print(',');
+				out.print(result.getMean());
+				out.print(',');
+				out.print(result.getError());
+				out.print(',');
+				out.println(result.getMin());
+			}
+		} finally {
+			IOUtils.close(out);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark;
+
+/**
+ * The outcome of running one benchmark with one size. All times are in
+ * nanoseconds per call to {@link Benchmark#run()}.
+ *
+ * @author Thomas Hallgren
+ */
+public class BenchmarkResult {
+	private final String name;
+
+	private final int size;
+
+	private final double[] samples;
+
+	public BenchmarkResult(String name, int size, double[] samples) {
+		this.name = name;
+		this.size = size;
+		this.samples = samples;
+	}
+
+	public double getError() {
+		int count = samples.length;
+		if (count < 2)
+			return 0.0;
+
+		double mean = getMean();
+		double sum = 0.0;
+		for (double sample : samples) {
+			double diff = sample - mean;
+			sum += diff * diff;
+		}
+		return Math.sqrt(sum / (count - 1));
+	}
+
+	public double getMean() {
+		double sum = 0.0;
+		for (double sample : samples)
+			sum += sample;
+		return samples.length == 0 ? 0.0 : sum / samples.length;
+	}
+
+	public double getMin() {
+		double min = Double.MAX_VALUE;
+		for (double sample : samples)
+			if (sample < min)
+				min = sample;
+		return samples.length == 0 ? 0.0 : min;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSampleCount() {
+		return samples.length;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-32s %8d %5d %16.1f %14.1f %16.1f", name, Integer.valueOf(size), Integer.valueOf(getSampleCount()), //$NON-NLS-1$
+				Double.valueOf(getMean()), Double.valueOf(getError()), Double.valueOf(getMin()));
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs benchmarks using a number of warmup iterations followed by a number of
+ * measured iterations. Each iteration calls the benchmark repeatedly until
+ * the iteration time has passed and records the average time per call.
+ *
+ * @author Thomas Hallgren
+ */
+public class BenchmarkRunner {
+	public static final int WARMUP_ITERATIONS_DEFAULT = 5;
+
+	public static final int MEASURED_ITERATIONS_DEFAULT = 10;
+
+	public static final long ITERATION_MILLIS_DEFAULT = 500;
+
+	private int warmupIterations = WARMUP_ITERATIONS_DEFAULT;
+
+	private int measuredIterations = MEASURED_ITERATIONS_DEFAULT;
+
+	private long iterationNanos = ITERATION_MILLIS_DEFAULT * 1000000L;
+
+	/**
+	 * Accumulates the results of all runs so that the JIT compiler cannot
+	 * eliminate the benchmarked code.
+	 */
+	private int sink;
+
+	public int getSink() {
+		return sink;
+	}
+
+	public List<BenchmarkResult> run(Benchmark benchmark, IProgressMonitor monitor) throws Exception {
+		int[] sizes = benchmark.getSizes();
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult>(sizes.length);
+		for (int size : sizes) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+
+			monitor.subTask(benchmark.getName() + " (" + size + ')'); //$NON-NLS-1$
+			benchmark.setUp(size);
+			try {
+				for (int idx = 0; idx < warmupIterations; ++idx)
+					runIteration(benchmark);
+
+				double[] samples = new double[measuredIterations];
+				for (int idx = 0; idx < measuredIterations; ++idx)
+					samples[idx] = runIteration(benchmark);
+				results.add(new BenchmarkResult(benchmark.getName(), size, samples));
+			} finally {
+				benchmark.tearDown();
+			}
+		}
+		return results;
+	}
+
+	public void setIterationMillis(long iterationMillis) {
+		this.iterationNanos = iterationMillis * 1000000L;
+	}
+
+	public void setMeasuredIterations(int measuredIterations) {
+		this.measuredIterations = measuredIterations;
+	}
+
+	public void setWarmupIterations(int warmupIterations) {
+		this.warmupIterations = warmupIterations;
+	}
+
+	/**
+	 * Call the benchmark until the iteration time has passed. At least one
+	 * call is always made.
+	 *
+	 * @return The average number of nanoseconds per call
+	 */
+	private double runIteration(Benchmark benchmark) throws Exception {
+		long start = System.nanoTime();
+		long deadline = start + iterationNanos;
+		long now;
+		int calls = 0;
+		do {
+			sink += System.identityHashCode(benchmark.run());
+			++calls;
+			now = System.nanoTime();
+		} while (now < deadline);
+		return (double) (now - start) / calls;
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.osgi.filter.Filter;
+import org.eclipse.buckminster.osgi.filter.FilterFactory;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
+
+/**
+ * Benchmarks for filter parsing and for matching filters against a property
+ * map and against a snapshot of the same map.
+ *
+ * @author Thomas Hallgren
+ */
+public class FilterBenchmarks {
+	public static class FilterParsing extends Benchmark {
+		private String[] strings;
+
+		public FilterParsing() {
+			super("filter.parsing", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			Object last = null;
+			for (String string : strings)
+				last = FilterFactory.newInstance(string);
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			strings = getFilterStrings(size);
+		}
+
+		@Override
+		public void tearDown() {
+			strings = null;
+		}
+	}
+
+	public static class MapMatching extends Benchmark {
+		private Filter[] filters;
+
+		private Map<String, Object> properties;
+
+		public MapMatching() {
+			super("filter.mapMatching", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			int matches = 0;
+			for (Filter filter : filters)
+				if (filter.matchCase(properties))
+					++matches;
+			return Integer.valueOf(matches);
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			filters = getFilters(size);
+			properties = getProperties();
+		}
+
+		@Override
+		public void tearDown() {
+			filters = null;
+			properties = null;
+		}
+	}
+
+	public static class SnapshotMatching extends Benchmark {
+		private Filter[] filters;
+
+		private PropertySnapshot snapshot;
+
+		public SnapshotMatching() {
+			super("filter.snapshotMatching", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			int matches = 0;
+			for (Filter filter : filters)
+				if (snapshot.match(filter))
+					++matches;
+			return Integer.valueOf(matches);
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			filters = getFilters(size);
+			snapshot = new PropertySnapshot(getProperties(), true);
+		}
+
+		@Override
+		public void tearDown() {
+			filters = null;
+			snapshot = null;
+		}
+	}
+
+	private static final String[] QUERIES = { "(osgi.os=linux)", //$NON-NLS-1$
+			"(&(osgi.os=linux)(osgi.ws=gtk))", //$NON-NLS-1$
+			"(&(osgi.os=linux)(osgi.ws=gtk)(|(osgi.arch=x86)(osgi.arch=x86_64)))", //$NON-NLS-1$
+			"(|(osgi.os=win32)(osgi.os=macosx)(!(osgi.nl=*)))", //$NON-NLS-1$
+			"(target.platform=*)" }; //$NON-NLS-1$
+
+	static String[] getFilterStrings(int size) {
+		String[] strings = new String[size];
+		for (int idx = 0; idx < size; ++idx)
+			strings[idx] = QUERIES[idx % QUERIES.length];
+		return strings;
+	}
+
+	static Filter[] getFilters(int size) throws Exception {
+		String[] strings = getFilterStrings(size);
+		Filter[] filters = new Filter[size];
+		for (int idx = 0; idx < size; ++idx)
+			filters[idx] = FilterFactory.newInstance(strings[idx]);
+		return filters;
+	}
+
+	static Map<String, Object> getProperties() {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put("osgi.os", "linux"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("osgi.ws", "gtk"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("osgi.arch", "x86_64"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("osgi.nl", "en_US"); //$NON-NLS-1$ //$NON-NLS-2$
+		for (int idx = 0; idx < 40; ++idx)
+			props.put("property." + idx, "value." + idx); //$NON-NLS-1$ //$NON-NLS-2$
+		return props;
+	}
+}
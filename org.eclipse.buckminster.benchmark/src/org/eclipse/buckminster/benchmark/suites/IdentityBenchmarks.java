@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.util.UUID;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
+import org.eclipse.buckminster.sax.Utils;
+
+/**
+ * Benchmarks for the computation of the id of a bill of materials. The
+ * <code>digest</code> variant streams the XML image into the digest while the
+ * <code>image</code> variant creates the image first.
+ *
+ * @author Thomas Hallgren
+ */
+public abstract class IdentityBenchmarks extends Benchmark {
+	public static class Digest extends IdentityBenchmarks {
+		public Digest() {
+			super("identity.bom.digest"); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return Utils.getImageUUID(getBillOfMaterials());
+		}
+	}
+
+	public static class Image extends IdentityBenchmarks {
+		public Image() {
+			super("identity.bom.image"); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return UUID.nameUUIDFromBytes(Utils.getImage(getBillOfMaterials()));
+		}
+	}
+
+	private BillOfMaterials bom;
+
+	protected IdentityBenchmarks(String name) {
+		super(name, 2000);
+	}
+
+	@Override
+	public void setUp(int size) throws Exception {
+		SyntheticComponents components = new SyntheticComponents(size);
+		try {
+			bom = components.resolve();
+		} finally {
+			components.dispose();
+		}
+
+		// Both ways of computing the id must yield the same result
+		if (!Utils.getImageUUID(bom).equals(UUID.nameUUIDFromBytes(Utils.getImage(bom))))
+			throw new IllegalStateException("Streamed id differs from image id"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void tearDown() {
+		bom = null;
+	}
+
+	protected BillOfMaterials getBillOfMaterials() {
+		return bom;
+	}
+}
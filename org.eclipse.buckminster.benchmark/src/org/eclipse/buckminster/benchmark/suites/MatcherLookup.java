@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.rmap.model.Locator;
+import org.eclipse.buckminster.core.rmap.model.ResourceMap;
+
+/**
+ * Benchmark for the lookup of the matchers of a resource map that has one
+ * locator per component group plus a few locators with patterns that cannot
+ * be indexed by prefix.
+ *
+ * @author Thomas Hallgren
+ */
+public class MatcherLookup extends Benchmark {
+	private ResourceMap rmap;
+
+	private String[] names;
+
+	public MatcherLookup() {
+		super("rmap.matcherLookup", 10, 100, 1000); //$NON-NLS-1$
+	}
+
+	@Override
+	public Object run() throws Exception {
+		Object last = null;
+		for (String name : names)
+			last = rmap.getMatchers(name);
+		return last;
+	}
+
+	@Override
+	public void setUp(int size) throws Exception {
+		rmap = new ResourceMap(null);
+		for (int idx = 0; idx < size; ++idx)
+			rmap.addMatcher(new Locator(rmap, "^org\\.example\\.group" + idx + "(\\..+)?$", "sp" + idx)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		rmap.addMatcher(new Locator(rmap, "\\.source$", "sources")); //$NON-NLS-1$ //$NON-NLS-2$
+		rmap.addMatcher(new Locator(rmap, "^org\\.ex?ample\\.", "optional")); //$NON-NLS-1$ //$NON-NLS-2$
+		rmap.addMatcher(new Locator(rmap, "^com\\.acme|^org\\.example", "alternation")); //$NON-NLS-1$ //$NON-NLS-2$
+		rmap.addMatcher(new Locator(rmap, null, "default")); //$NON-NLS-1$
+
+		names = new String[size];
+		for (int idx = 0; idx < size; ++idx)
+			names[idx] = "org.example.group" + (idx * 7 % size) + (idx % 2 == 0 ? ".bundle" : ".bundle.source"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	@Override
+	public void tearDown() {
+		rmap = null;
+		names = null;
+	}
+}
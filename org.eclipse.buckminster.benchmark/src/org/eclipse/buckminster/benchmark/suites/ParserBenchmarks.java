@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
+import org.eclipse.buckminster.core.parser.IParser;
+import org.eclipse.buckminster.core.parser.IParserFactory;
+import org.eclipse.buckminster.sax.Utils;
+
+/**
+ * Benchmarks for the SAX parsers that read cspecs, bills of materials and
+ * resource maps. The documents are parsed from memory so that the numbers
+ * reflect the cost of the parsers and not the cost of I/O.
+ *
+ * @author Thomas Hallgren
+ */
+public class ParserBenchmarks {
+	/**
+	 * Parses a bill of materials that has been written in the binary format.
+	 */
+	public static class BinaryBOMParsing extends Benchmark {
+		private IParser<BillOfMaterials> parser;
+
+		private byte[] image;
+
+		public BinaryBOMParsing() {
+			super("parser.bom.binary", 10, 100, 2000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return parser.parse("bench.bom", new ByteArrayInputStream(image)); //$NON-NLS-1$
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			parser = getParserFactory().getBillOfMaterialsParser(false);
+			SyntheticComponents components = new SyntheticComponents(size);
+			try {
+				ByteArrayOutputStream bld = new ByteArrayOutputStream();
+				Utils.serializeBinary(components.resolve(), bld);
+				image = bld.toByteArray();
+			} finally {
+				components.dispose();
+			}
+		}
+
+		@Override
+		public void tearDown() {
+			parser = null;
+			image = null;
+		}
+	}
+
+	public static class BOMParsing extends Benchmark {
+		private IParser<BillOfMaterials> parser;
+
+		private byte[] image;
+
+		public BOMParsing() {
+			super("parser.bom", 10, 100, 2000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return parser.parse("bench.bom", new ByteArrayInputStream(image)); //$NON-NLS-1$
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			parser = getParserFactory().getBillOfMaterialsParser(false);
+			SyntheticComponents components = new SyntheticComponents(size);
+			try {
+				image = Utils.getImage(components.resolve());
+			} finally {
+				components.dispose();
+			}
+		}
+
+		@Override
+		public void tearDown() {
+			parser = null;
+			image = null;
+		}
+	}
+
+	public static class CSpecParsing extends Benchmark {
+		private IParser<?> parser;
+
+		private byte[][] images;
+
+		public CSpecParsing() {
+			super("parser.cspec", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			Object last = null;
+			for (byte[] image : images)
+				last = parser.parse("buckminster.cspec", new ByteArrayInputStream(image)); //$NON-NLS-1$
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			parser = getParserFactory().getCSpecParser(false);
+			images = new byte[size][];
+			for (int idx = 0; idx < size; ++idx)
+				images[idx] = SyntheticComponents.getCSpecXML(idx, size).getBytes("UTF-8"); //$NON-NLS-1$
+		}
+
+		@Override
+		public void tearDown() {
+			parser = null;
+			images = null;
+		}
+	}
+
+	/**
+	 * Parses each cspec with a new validating parser, which is what happens
+	 * when the resolver reads the cspecs of the components.
+	 */
+	public static class ValidatingCSpecParsing extends Benchmark {
+		private byte[][] images;
+
+		public ValidatingCSpecParsing() {
+			super("parser.cspec.validating", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			IParserFactory parserFactory = getParserFactory();
+			Object last = null;
+			for (byte[] image : images)
+				last = parserFactory.getCSpecParser(true).parse("buckminster.cspec", new ByteArrayInputStream(image)); //$NON-NLS-1$
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			images = new byte[size][];
+			for (int idx = 0; idx < size; ++idx)
+				images[idx] = SyntheticComponents.getCSpecXML(idx, size).getBytes("UTF-8"); //$NON-NLS-1$
+		}
+
+		@Override
+		public void tearDown() {
+			images = null;
+		}
+	}
+
+	public static class ResourceMapParsing extends Benchmark {
+		private IParser<?> parser;
+
+		private byte[] image;
+
+		public ResourceMapParsing() {
+			super("parser.rmap", 10, 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return parser.parse("bench.rmap", new ByteArrayInputStream(image)); //$NON-NLS-1$
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			parser = getParserFactory().getResourceMapParser(false);
+			image = SyntheticComponents.getResourceMapXML("file:/tmp", size).getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		@Override
+		public void tearDown() {
+			parser = null;
+			image = null;
+		}
+	}
+
+	static IParserFactory getParserFactory() {
+		return CorePlugin.getDefault().getParserFactory();
+	}
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.common.model.ExpandingProperties;
+
+/**
+ * Benchmark for the expansion of property values that reference other
+ * properties in chains of increasing depth.
+ *
+ * @author Thomas Hallgren
+ */
+public class PropertyExpansion extends Benchmark {
+	private static final int CHAIN_LENGTH = 5;
+
+	private Map<String, String> properties;
+
+	private String[] values;
+
+	public PropertyExpansion() {
+		super("properties.expansion", 100, 1000); //$NON-NLS-1$
+	}
+
+	@Override
+	public Object run() throws Exception {
+		Object last = null;
+		for (String value : values)
+			last = ExpandingProperties.expand(properties, value, 0);
+		return last;
+	}
+
+	@Override
+	public void setUp(int size) throws Exception {
+		properties = new HashMap<String, String>();
+		values = new String[size];
+		for (int idx = 0; idx < size; ++idx) {
+			String key = "key" + idx; //$NON-NLS-1$
+			for (int link = 0; link < CHAIN_LENGTH; ++link)
+				properties.put(key + '.' + link, "${" + key + '.' + (link + 1) + "}/" + link); //$NON-NLS-1$ //$NON-NLS-2$
+			properties.put(key + '.' + CHAIN_LENGTH, "value" + idx); //$NON-NLS-1$
+			values[idx] = "prefix/${" + key + ".0}/suffix"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	@Override
+	public void tearDown() {
+		properties = null;
+		values = null;
+	}
+}
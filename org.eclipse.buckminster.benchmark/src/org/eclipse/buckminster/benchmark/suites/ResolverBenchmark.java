@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+
+/**
+ * Benchmark for a complete resolution of a synthetic component tree that is
+ * found using a resource map with a local reader only.
+ *
+ * @author Thomas Hallgren
+ */
+public class ResolverBenchmark extends Benchmark {
+	private SyntheticComponents components;
+
+	public ResolverBenchmark() {
+		super("resolver.localTree", 100, 1000, 10000); //$NON-NLS-1$
+	}
+
+	@Override
+	public Object run() throws Exception {
+		return components.resolve();
+	}
+
+	@Override
+	public void setUp(int size) throws Exception {
+		components = new SyntheticComponents(size);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		if (components != null) {
+			components.dispose();
+			components = null;
+		}
+	}
+}
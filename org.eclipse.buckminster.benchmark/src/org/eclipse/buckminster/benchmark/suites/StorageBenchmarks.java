@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.io.File;
+import java.util.UUID;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.cspec.builder.CSpecBuilder;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.FileStorage;
+import org.eclipse.buckminster.core.metadata.ISaxableStorage;
+import org.eclipse.buckminster.core.metadata.LogStorage;
+import org.eclipse.buckminster.core.version.VersionHelper;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Benchmarks for the metadata storages. The <code>put</code> benchmarks
+ * clear the storage and store all elements. The <code>get</code> benchmarks
+ * open a new storage on existing content and read all elements so that each
+ * element is parsed.
+ *
+ * @author Thomas Hallgren
+ */
+public abstract class StorageBenchmarks extends Benchmark {
+	public static class FileStorageGet extends StorageBenchmarks {
+		public FileStorageGet() {
+			super("storage.file.get", false, false); //$NON-NLS-1$
+		}
+	}
+
+	public static class FileStoragePut extends StorageBenchmarks {
+		public FileStoragePut() {
+			super("storage.file.put", false, true); //$NON-NLS-1$
+		}
+	}
+
+	public static class LogStorageGet extends StorageBenchmarks {
+		public LogStorageGet() {
+			super("storage.log.get", true, false); //$NON-NLS-1$
+		}
+	}
+
+	public static class LogStoragePut extends StorageBenchmarks {
+		public LogStoragePut() {
+			super("storage.log.put", true, true); //$NON-NLS-1$
+		}
+	}
+
+	private final boolean useLog;
+
+	private final boolean put;
+
+	private File folder;
+
+	private CSpec[] elements;
+
+	private UUID[] keys;
+
+	private ISaxableStorage<CSpec> storage;
+
+	protected StorageBenchmarks(String name, boolean useLog, boolean put) {
+		super(name, 10, 100, 1000);
+		this.useLog = useLog;
+		this.put = put;
+	}
+
+	@Override
+	public Object run() throws Exception {
+		if (put) {
+			storage.clear();
+			for (CSpec element : elements)
+				storage.putElement(element);
+			return storage;
+		}
+
+		ISaxableStorage<CSpec> fresh = createStorage();
+		Object last = null;
+		for (UUID key : keys)
+			last = fresh.getElement(key);
+		return last;
+	}
+
+	@Override
+	public void setUp(int size) throws Exception {
+		folder = FileUtils.createTempFolder("bmstorage", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		elements = new CSpec[size];
+		keys = new UUID[size];
+		CSpecBuilder bld = new CSpecBuilder();
+		bld.setComponentTypeID("buckminster"); //$NON-NLS-1$
+		for (int idx = 0; idx < size; ++idx) {
+			bld.setName(SyntheticComponents.getComponentName(idx));
+			bld.setVersion(VersionHelper.parseVersion("1.0." + idx)); //$NON-NLS-1$
+			CSpec cspec = bld.createCSpec();
+			elements[idx] = cspec;
+			keys[idx] = cspec.getId();
+		}
+		storage = createStorage();
+		for (CSpec element : elements)
+			storage.putElement(element);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		if (storage instanceof LogStorage<?>)
+			((LogStorage<?>) storage).close();
+		storage = null;
+		elements = null;
+		keys = null;
+		FileUtils.deleteRecursive(folder, new NullProgressMonitor());
+		folder = null;
+	}
+
+	private ISaxableStorage<CSpec> createStorage() throws CoreException {
+		if (useLog)
+			return new LogStorage<CSpec>(new File(folder, "cspecs" + LogStorage.LOG_SUFFIX), ParserBenchmarks.getParserFactory().getCSpecParser(false), //$NON-NLS-1$
+					CSpec.class, CSpec.SEQUENCE_NUMBER);
+		return new FileStorage<CSpec>(new File(folder, "cspecs"), ParserBenchmarks.getParserFactory().getCSpecParser(false), CSpec.class, //$NON-NLS-1$
+				CSpec.SEQUENCE_NUMBER);
+	}
+}
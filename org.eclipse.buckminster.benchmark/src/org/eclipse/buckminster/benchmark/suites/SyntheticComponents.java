@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.regex.Pattern;
+
+import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
+import org.eclipse.buckminster.core.query.builder.AdvisorNodeBuilder;
+import org.eclipse.buckminster.core.query.builder.ComponentQueryBuilder;
+import org.eclipse.buckminster.core.query.model.ComponentQuery;
+import org.eclipse.buckminster.core.resolver.MainResolver;
+import org.eclipse.buckminster.core.resolver.ResolutionContext;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * A generated set of components in a temporary folder. The components form a
+ * binary tree where component <code>n</code> depends on the components
+ * <code>2n+1</code> and <code>2n+2</code>. The folder also contains a
+ * resource map that will find the components using the local reader.
+ *
+ * @author Thomas Hallgren
+ */
+public class SyntheticComponents {
+	public static final String COMPONENT_PREFIX = "bench.node"; //$NON-NLS-1$
+
+	public static final String RMAP_FILE = "bench.rmap"; //$NON-NLS-1$
+
+	/**
+	 * Returns the XML for the cspec of component <code>idx</code> in a tree of
+	 * <code>size</code> components.
+	 */
+	public static String getCSpecXML(int idx, int size) {
+		StringBuilder bld = new StringBuilder();
+		bld.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		bld.append("<cs:cspec xmlns:cs=\"http://www.eclipse.org/buckminster/CSpec-1.0\" name=\""); //$NON-NLS-1$
+		bld.append(getComponentName(idx));
+		bld.append("\" componentType=\"buckminster\" version=\"1.0.0\">\n"); //$NON-NLS-1$
+		int first = 2 * idx + 1;
+		if (first < size) {
+			bld.append("\t<cs:dependencies>\n"); //$NON-NLS-1$
+			for (int child = first; child <= first + 1 && child < size; ++child) {
+				bld.append("\t\t<cs:dependency name=\""); //$NON-NLS-1$
+				bld.append(getComponentName(child));
+				bld.append("\" componentType=\"buckminster\" versionDesignator=\"[1.0.0,2.0.0)\"/>\n"); //$NON-NLS-1$
+			}
+			bld.append("\t</cs:dependencies>\n"); //$NON-NLS-1$
+		}
+		bld.append("</cs:cspec>\n"); //$NON-NLS-1$
+		return bld.toString();
+	}
+
+	public static String getComponentName(int idx) {
+		return COMPONENT_PREFIX + idx;
+	}
+
+	/**
+	 * Returns the XML for a resource map with <code>locatorCount</code>
+	 * locators where only the last one matches the synthetic components.
+	 */
+	public static String getResourceMapXML(String componentRoot, int locatorCount) {
+		StringBuilder bld = new StringBuilder();
+		bld.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		bld.append("<rmap xmlns=\"http://www.eclipse.org/buckminster/RMap-1.0\" xmlns:bc=\"http://www.eclipse.org/buckminster/Common-1.0\">\n"); //$NON-NLS-1$
+		bld.append("\t<property key=\"componentRoot\" value=\""); //$NON-NLS-1$
+		appendEscaped(bld, componentRoot);
+		bld.append("\"/>\n"); //$NON-NLS-1$
+		bld.append("\t<searchPath name=\"default\">\n"); //$NON-NLS-1$
+		bld.append("\t\t<provider readerType=\"local\" componentTypes=\"buckminster\">\n"); //$NON-NLS-1$
+		bld.append("\t\t\t<uri format=\"{0}/{1}\">\n"); //$NON-NLS-1$
+		bld.append("\t\t\t\t<bc:propertyRef key=\"componentRoot\"/>\n"); //$NON-NLS-1$
+		bld.append("\t\t\t\t<bc:propertyRef key=\"buckminster.component\"/>\n"); //$NON-NLS-1$
+		bld.append("\t\t\t</uri>\n"); //$NON-NLS-1$
+		bld.append("\t\t</provider>\n"); //$NON-NLS-1$
+		bld.append("\t</searchPath>\n"); //$NON-NLS-1$
+		for (int idx = 1; idx < locatorCount; ++idx) {
+			bld.append("\t<locator searchPathRef=\"default\" pattern=\"^org\\.example\\.group"); //$NON-NLS-1$
+			bld.append(idx);
+			bld.append("(\\..+)?$\"/>\n"); //$NON-NLS-1$
+		}
+		bld.append("\t<locator searchPathRef=\"default\" pattern=\"^bench\\.\"/>\n"); //$NON-NLS-1$
+		bld.append("</rmap>\n"); //$NON-NLS-1$
+		return bld.toString();
+	}
+
+	private static void appendEscaped(StringBuilder bld, String str) {
+		int top = str.length();
+		for (int idx = 0; idx < top; ++idx) {
+			char c = str.charAt(idx);
+			switch (c) {
+				case '&':
+					bld.append("&amp;"); //$NON-NLS-1$
+					break;
+				case '<':
+					bld.append("&lt;"); //$NON-NLS-1$
+					break;
+				case '"':
+					bld.append("&quot;"); //$NON-NLS-1$
+					break;
+				default:
+					bld.append(c);
+			}
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8")); //$NON-NLS-1$
+		} finally {
+			IOUtils.close(out);
+		}
+	}
+
+	private final File root;
+
+	private final ComponentQuery query;
+
+	public SyntheticComponents(int size) throws CoreException, IOException {
+		root = FileUtils.createTempFolder("bmbench", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		for (int idx = 0; idx < size; ++idx) {
+			File componentFolder = new File(root, getComponentName(idx));
+			if (!componentFolder.mkdir())
+				throw new IOException("Unable to create " + componentFolder); //$NON-NLS-1$
+			write(new File(componentFolder, "buckminster.cspec"), getCSpecXML(idx, size)); //$NON-NLS-1$
+		}
+
+		String componentRoot = root.toURI().toString();
+		if (componentRoot.endsWith("/")) //$NON-NLS-1$
+			componentRoot = componentRoot.substring(0, componentRoot.length() - 1);
+		File rmapFile = new File(root, RMAP_FILE);
+		write(rmapFile, getResourceMapXML(componentRoot, 1));
+
+		ComponentQueryBuilder queryBld = new ComponentQueryBuilder();
+		queryBld.setRootRequest(new ComponentRequest(getComponentName(0), null, null));
+		queryBld.setResourceMapURL(rmapFile.toURI().toURL().toString());
+		AdvisorNodeBuilder nodeBld = new AdvisorNodeBuilder();
+		nodeBld.setNamePattern(Pattern.compile(".*")); //$NON-NLS-1$
+		nodeBld.setUseWorkspace(false);
+		nodeBld.setUseTargetPlatform(false);
+		nodeBld.setUseMaterialization(false);
+		queryBld.addAdvisorNode(nodeBld);
+		query = queryBld.createComponentQuery();
+	}
+
+	public void dispose() throws CoreException {
+		FileUtils.deleteRecursive(root, new NullProgressMonitor());
+	}
+
+	public ComponentQuery getQuery() {
+		return query;
+	}
+
+	public BillOfMaterials resolve() throws CoreException {
+		return new MainResolver(new ResolutionContext(query)).resolve(new NullProgressMonitor());
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.benchmark.suites;
+
+import org.eclipse.buckminster.benchmark.Benchmark;
+import org.eclipse.buckminster.core.version.VersionHelper;
+import org.eclipse.buckminster.core.version.VersionSelector;
+import org.eclipse.equinox.p2.metadata.IVersionFormat;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+
+/**
+ * Benchmarks for version parsing and version range matching.
+ *
+ * @author Thomas Hallgren
+ */
+public class VersionBenchmarks {
+	public static class RangeMatching extends Benchmark {
+		private VersionRange[] ranges;
+
+		private Version[] versions;
+
+		public RangeMatching() {
+			super("version.rangeMatching", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			int matches = 0;
+			for (VersionRange range : ranges)
+				for (Version version : versions)
+					if (range.isIncluded(version))
+						++matches;
+			return Integer.valueOf(matches);
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			IVersionFormat osgi = VersionHelper.getOSGiFormat();
+			ranges = new VersionRange[] { VersionHelper.createRange(osgi, "[1.0.0,2.0.0)"), //$NON-NLS-1$
+					VersionHelper.createRange(osgi, "[1.2.0,1.3.0)"), //$NON-NLS-1$
+					VersionHelper.createRange(osgi, "3.0.0") }; //$NON-NLS-1$
+			String[] strings = getVersionStrings(size);
+			versions = new Version[size];
+			for (int idx = 0; idx < size; ++idx)
+				versions[idx] = VersionHelper.parseVersion(strings[idx]);
+		}
+
+		@Override
+		public void tearDown() {
+			ranges = null;
+			versions = null;
+		}
+	}
+
+	public static class RangeParsing extends Benchmark {
+		private String[] strings;
+
+		public RangeParsing() {
+			super("version.rangeParsing", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			IVersionFormat osgi = VersionHelper.getOSGiFormat();
+			Object last = null;
+			for (String string : strings)
+				last = VersionHelper.createRange(osgi, string);
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			String[] versionStrings = getVersionStrings(size + 1);
+			strings = new String[size];
+			for (int idx = 0; idx < size; ++idx)
+				strings[idx] = '[' + versionStrings[idx] + ',' + versionStrings[idx + 1] + ')';
+		}
+
+		@Override
+		public void tearDown() {
+			strings = null;
+		}
+	}
+
+	public static class SelectorParsing extends Benchmark {
+		private String[] strings;
+
+		public SelectorParsing() {
+			super("version.selectorParsing", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			Object last = null;
+			for (String string : strings)
+				last = VersionSelector.fromString(string);
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			strings = new String[size];
+			for (int idx = 0; idx < size; ++idx)
+				strings[idx] = (idx % 2 == 0 ? "branch-" : "tag-") + idx; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		@Override
+		public void tearDown() {
+			strings = null;
+		}
+	}
+
+	public static class VersionParsing extends Benchmark {
+		private String[] strings;
+
+		public VersionParsing() {
+			super("version.parsing", 100, 1000); //$NON-NLS-1$
+		}
+
+		@Override
+		public Object run() throws Exception {
+			Object last = null;
+			for (String string : strings)
+				last = VersionHelper.parseVersion(string);
+			return last;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception {
+			strings = getVersionStrings(size);
+		}
+
+		@Override
+		public void tearDown() {
+			strings = null;
+		}
+	}
+
+	static String[] getVersionStrings(int size) {
+		String[] strings = new String[size];
+		for (int idx = 0; idx < size; ++idx)
+			strings[idx] = (idx % 4) + "." + (idx % 10) + '.' + idx + ".v2013" + (idx % 1000); //$NON-NLS-1$ //$NON-NLS-2$
+		return strings;
+	}
+}
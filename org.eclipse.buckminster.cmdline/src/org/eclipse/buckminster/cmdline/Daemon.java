@@ -0,0 +1,206 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.buckminster.runtime.Buckminster;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Keeps the runtime alive and runs the invocations that are sent to it by the
+ * {@link DaemonClient}. Invocations are run one at a time in the same way as
+ * if they had been given to {@link Headless} on the command line. Preferences,
+ * workspace information, and other caches stay warm between invocations.
+ * <p>
+ * The output of an invocation is streamed to the client. The system
+ * properties are restored after each invocation so that properties that are
+ * set by one invocation are never seen by the next one.
+ * </p>
+ * <p>
+ * The process keeps its own working directory. Only the paths that
+ * {@link Headless} reads itself are resolved against the <code>user.dir</code>
+ * of the client. See {@link DaemonClient}.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+class Daemon {
+	private static final AtomicBoolean running = new AtomicBoolean();
+
+	private static String createKey() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder bld = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			bld.append(Character.forDigit((b >> 4) & 0xf, 16));
+			bld.append(Character.forDigit(b & 0xf, 16));
+		}
+		return bld.toString();
+	}
+
+	private static Properties copyOf(Properties props) {
+		// The copy is flattened since the properties might have defaults
+		Properties copy = new Properties();
+		for (String name : props.stringPropertyNames())
+			copy.setProperty(name, props.getProperty(name));
+		return copy;
+	}
+
+	private final File daemonFile;
+
+	private final String key = createKey();
+
+	Daemon(File daemonFile) {
+		this.daemonFile = daemonFile;
+	}
+
+	int run() throws Exception {
+		// An invocation must not start a daemon within the daemon
+		if (!running.compareAndSet(false, true))
+			throw new UsageException(Messages.Daemon_A_daemon_is_already_running);
+
+		Logger logger = Buckminster.getLogger();
+		ServerSocket server = null;
+		try {
+			server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			DaemonProtocol.writeDaemonFile(daemonFile, server.getLocalPort(), key);
+			logger.info(NLS.bind(Messages.Daemon_Listening_on_port_0_using_file_1, Integer.valueOf(server.getLocalPort()), daemonFile));
+
+			boolean stopped = false;
+			while (!stopped) {
+				Socket socket = server.accept();
+				try {
+					stopped = serve(socket);
+				} catch (SocketTimeoutException e) {
+					logger.warning(Messages.Daemon_Request_timed_out);
+				} catch (EOFException e) {
+					logger.warning(Messages.Daemon_Incomplete_request);
+				} catch (IOException e) {
+					logger.warning(e, e.getMessage());
+				} finally {
+					IOUtils.close(socket);
+				}
+			}
+		} finally {
+			if (server != null) {
+				IOUtils.close(server);
+				daemonFile.delete();
+			}
+			running.set(false);
+		}
+		logger.info(Messages.Daemon_Stopped);
+		return Headless.EXIT_OK;
+	}
+
+	private int invoke(String[] args, Properties props, DataOutputStream output) {
+		PrintStream clientOut = new PrintStream(new BufferedOutputStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_STDOUT),
+				0x2000), true);
+		PrintStream clientErr = new PrintStream(new BufferedOutputStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_STDERR),
+				0x2000), true);
+
+		Properties sysProps = copyOf(System.getProperties());
+		Properties requestProps = copyOf(sysProps);
+		requestProps.putAll(props);
+
+		InputStream sysIn = System.in;
+		PrintStream sysOut = System.out;
+		PrintStream sysErr = System.err;
+		PrintStream logOut = Logger.getOutStream();
+		PrintStream logErr = Logger.getErrStream();
+		try {
+			System.setProperties(requestProps);
+			System.setIn(new ByteArrayInputStream(new byte[0]));
+			System.setOut(clientOut);
+			System.setErr(clientErr);
+			Logger.setOutStream(clientOut);
+			Logger.setErrStream(clientErr);
+			return ((Integer) new Headless().run((Object) args)).intValue();
+		} catch (Exception e) {
+			e.printStackTrace(clientErr);
+			return Headless.EXIT_FAIL;
+		} finally {
+			clientOut.flush();
+			clientErr.flush();
+			Logger.setOutStream(logOut);
+			Logger.setErrStream(logErr);
+			System.setOut(sysOut);
+			System.setErr(sysErr);
+			System.setIn(sysIn);
+			System.setProperties(sysProps);
+		}
+	}
+
+	/**
+	 * Serves one request.
+	 *
+	 * @return <code>true</code> if the daemon was asked to stop
+	 */
+	private boolean serve(Socket socket) throws IOException {
+		socket.setSoTimeout(DaemonProtocol.REQUEST_TIMEOUT);
+		DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 0x2000));
+		if (input.readInt() != DaemonProtocol.MAGIC)
+			return false;
+
+		// Compare in constant time so that the key cannot be guessed from the
+		// time it takes to reject a request
+		if (!MessageDigest.isEqual(key.getBytes("UTF-8"), input.readUTF().getBytes("UTF-8"))) { //$NON-NLS-1$ //$NON-NLS-2$
+			Buckminster.getLogger().warning(Messages.Daemon_Rejected_request_with_invalid_key);
+			return false;
+		}
+
+		boolean stop = false;
+		int exitValue = Headless.EXIT_OK;
+		switch (input.readByte()) {
+			case DaemonProtocol.REQUEST_STOP:
+				stop = true;
+				break;
+			case DaemonProtocol.REQUEST_RUN:
+				String[] args = new String[input.readInt()];
+				for (int idx = 0; idx < args.length; ++idx)
+					args[idx] = input.readUTF();
+				Properties props = new Properties();
+				for (int idx = input.readInt(); idx > 0; --idx)
+					props.setProperty(input.readUTF(), input.readUTF());
+
+				// The invocation may take any amount of time
+				socket.setSoTimeout(0);
+				exitValue = invoke(args, props, output);
+				break;
+			default:
+				exitValue = Headless.EXIT_FAIL;
+		}
+
+		synchronized (output) {
+			output.writeByte(DaemonProtocol.FRAME_EXIT);
+			output.writeInt(exitValue);
+			output.flush();
+		}
+		return stop;
+	}
+}
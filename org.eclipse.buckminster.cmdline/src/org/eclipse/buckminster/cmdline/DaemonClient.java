@@ -0,0 +1,142 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * A thin client that sends an invocation to a daemon that was started with
+ * the <code>--daemon</code> option of {@link Headless}. The output of the
+ * invocation is written to standard out and standard error and the client
+ * exits with the exit value of the invocation.
+ * <p>
+ * This class does not depend on anything but the JRE so that it can be
+ * started using a plain <code>java</code> command with this bundle on the
+ * class path:
+ * </p>
+ *
+ * <pre>
+ * java -cp org.eclipse.buckminster.cmdline.jar org.eclipse.buckminster.cmdline.DaemonClient &lt;daemon file&gt; &lt;arguments&gt;
+ * </pre>
+ * <p>
+ * The arguments are the same as for the <code>buckminster</code> command.
+ * Use <code>--stop</code> as the only argument to stop the daemon.
+ * </p>
+ * <p>
+ * The working directory of the client is passed to the daemon as the
+ * <code>user.dir</code> property. The daemon resolves the paths of the
+ * <code>--scriptfile</code> and <code>--properties</code> options against it
+ * but the commands resolve paths in their own arguments against the working
+ * directory of the daemon. Use absolute paths in command arguments.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class DaemonClient {
+	private static final String STOP = "--stop"; //$NON-NLS-1$
+
+	/**
+	 * The system properties that are passed on to the daemon
+	 */
+	private static final String[] PASSED_PROPERTIES = { "user.dir" }; //$NON-NLS-1$
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("usage: DaemonClient <daemon file> [--stop | <buckminster arguments>]"); //$NON-NLS-1$
+			System.exit(Headless.EXIT_FAIL);
+		}
+
+		String[] commandArgs = new String[args.length - 1];
+		System.arraycopy(args, 1, commandArgs, 0, commandArgs.length);
+		int exitValue;
+		try {
+			exitValue = run(new File(args[0]), commandArgs);
+		} catch (IOException e) {
+			System.err.println("Unable to communicate with daemon: " + e.getMessage()); //$NON-NLS-1$
+			exitValue = Headless.EXIT_FAIL;
+		}
+		System.exit(exitValue);
+	}
+
+	private static int run(File daemonFile, String[] args) throws IOException {
+		Properties daemonProps = DaemonProtocol.readDaemonFile(daemonFile);
+		String port = daemonProps.getProperty(DaemonProtocol.PROP_PORT);
+		String key = daemonProps.getProperty(DaemonProtocol.PROP_KEY);
+		if (port == null || key == null)
+			throw new IOException("Invalid daemon file " + daemonFile); //$NON-NLS-1$
+
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			output.writeInt(DaemonProtocol.MAGIC);
+			output.writeUTF(key);
+			if (args.length == 1 && STOP.equals(args[0]))
+				output.writeByte(DaemonProtocol.REQUEST_STOP);
+			else {
+				output.writeByte(DaemonProtocol.REQUEST_RUN);
+				output.writeInt(args.length);
+				for (String arg : args)
+					output.writeUTF(arg);
+
+				int propCount = 0;
+				for (String name : PASSED_PROPERTIES)
+					if (System.getProperty(name) != null)
+						++propCount;
+				output.writeInt(propCount);
+				for (String name : PASSED_PROPERTIES) {
+					String value = System.getProperty(name);
+					if (value != null) {
+						output.writeUTF(name);
+						output.writeUTF(value);
+					}
+				}
+			}
+			output.flush();
+
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 0x2000));
+			byte[] buffer = new byte[0x2000];
+			for (;;) {
+				int frameType;
+				try {
+					frameType = input.readByte();
+				} catch (EOFException e) {
+					System.err.println("Daemon closed the connection"); //$NON-NLS-1$
+					return Headless.EXIT_FAIL;
+				}
+
+				if (frameType == DaemonProtocol.FRAME_EXIT) {
+					System.out.flush();
+					System.err.flush();
+					return input.readInt();
+				}
+
+				PrintStream out = frameType == DaemonProtocol.FRAME_STDERR ? System.err : System.out;
+				int length = input.readInt();
+				while (length > 0) {
+					int count = Math.min(length, buffer.length);
+					input.readFully(buffer, 0, count);
+					out.write(buffer, 0, count);
+					length -= count;
+				}
+				out.flush();
+			}
+		} finally {
+			socket.close();
+		}
+	}
+}
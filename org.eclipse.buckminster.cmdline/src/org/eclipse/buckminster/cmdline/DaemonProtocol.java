@@ -0,0 +1,150 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Properties;
+
+/**
+ * The protocol used between the {@link DaemonClient} and the daemon that is
+ * started with the <code>--daemon</code> option of {@link Headless}.
+ * <p>
+ * A request starts with {@link #MAGIC}, the key found in the daemon file, and
+ * the request type. A {@link #REQUEST_RUN} request is followed by the
+ * arguments and the properties of the invocation. The daemon responds with
+ * frames. Each frame starts with the frame type. Output frames have a length
+ * and the bytes written to standard out or standard error. The
+ * {@link #FRAME_EXIT} frame has the exit value and ends the response.
+ * </p>
+ * <p>
+ * This class is used by the client. It must not depend on anything but the
+ * JRE.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+final class DaemonProtocol {
+	/**
+	 * An output stream that writes all bytes as frames of a given type.
+	 */
+	static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream output;
+
+		private final int frameType;
+
+		FrameOutputStream(DataOutputStream output, int frameType) {
+			this.output = output;
+			this.frameType = frameType;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (output) {
+				output.flush();
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (length <= 0)
+				return;
+			synchronized (output) {
+				output.writeByte(frameType);
+				output.writeInt(length);
+				output.write(bytes, offset, length);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+	}
+
+	static final int MAGIC = 0x42756364;
+
+	static final int REQUEST_RUN = 1;
+
+	static final int REQUEST_STOP = 2;
+
+	static final int FRAME_STDOUT = 1;
+
+	static final int FRAME_STDERR = 2;
+
+	static final int FRAME_EXIT = 3;
+
+	static final String PROP_PORT = "port"; //$NON-NLS-1$
+
+	static final String PROP_KEY = "key"; //$NON-NLS-1$
+
+	/**
+	 * The time a daemon waits for a client to complete its request
+	 */
+	static final int REQUEST_TIMEOUT = 30000;
+
+	static Properties readDaemonFile(File daemonFile) throws IOException {
+		InputStream input = new BufferedInputStream(new FileInputStream(daemonFile));
+		try {
+			Properties props = new Properties();
+			props.load(input);
+			return props;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the daemon file so that only the current user can read it. The
+	 * file is created with owner only permissions before the key is written
+	 * to it. On file systems without POSIX permissions this method fails
+	 * rather than writing a key that others can read. The file is written
+	 * under a temporary name and then renamed so that a client never sees a
+	 * partial file.
+	 */
+	static void writeDaemonFile(File daemonFile, int port, String key) throws IOException {
+		File parent = daemonFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !(parent.mkdirs() || parent.isDirectory()))
+			throw new IOException("Unable to create directory " + parent); //$NON-NLS-1$
+
+		Path tmpPath = new File(daemonFile.getPath() + ".tmp").toPath(); //$NON-NLS-1$
+		Files.deleteIfExists(tmpPath);
+		try {
+			Files.createFile(tmpPath,
+					PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+		} catch (UnsupportedOperationException e) {
+			throw new IOException("Unable to protect the daemon file " + daemonFile //$NON-NLS-1$
+					+ ". The file system does not support POSIX file permissions"); //$NON-NLS-1$
+		}
+
+		OutputStream output = Files.newOutputStream(tmpPath);
+		try {
+			Properties props = new Properties();
+			props.setProperty(PROP_PORT, Integer.toString(port));
+			props.setProperty(PROP_KEY, key);
+			props.store(output, null);
+		} finally {
+			output.close();
+		}
+		Files.move(tmpPath, daemonFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private DaemonProtocol() {
+	}
+}
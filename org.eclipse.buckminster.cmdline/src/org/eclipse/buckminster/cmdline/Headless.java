@@ -8,6 +8,7 @@
 package org.eclipse.buckminster.cmdline;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -96,6 +97,8 @@ public class Headless implements IApplication, OptionValueType {
 	//
 	private static final OptionDescriptor DISPLAY_STACKTRACE = new OptionDescriptor(null, "displaystacktrace", NONE); //$NON-NLS-1$
 
+	private static final OptionDescriptor DAEMON = new OptionDescriptor(null, "daemon", REQUIRED); //$NON-NLS-1$
+
 	// help options, treated equally
 	//
 	private static final OptionDescriptor HELP = new OptionDescriptor('?', "help", OptionValueType.NONE); //$NON-NLS-1$
@@ -126,12 +129,25 @@ public class Headless implements IApplication, OptionValueType {
 
 	private boolean usingScript = false;
 
+	private String daemonFile;
+
 	private int logLevel = Logger.INFO;
 
 	private int antLogLevel = -1;
 
 	private static final Pattern commaSplit = Pattern.compile(","); //$NON-NLS-1$
 
+	/**
+	 * Resolves a path against the <code>user.dir</code> system property rather
+	 * than the working directory of the process. The two differ when the
+	 * invocation is run by a {@link Daemon} on behalf of a client that was
+	 * started in another directory.
+	 */
+	static File getAbsoluteFile(String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(System.getProperty("user.dir"), path); //$NON-NLS-1$
+	}
+
 	public void addProperty(String key, String value) {
 		if (props == null)
 			props = new Properties(System.getProperties());
@@ -156,6 +172,7 @@ public class Headless implements IApplication, OptionValueType {
 
 	protected void parse(String[] args) throws Exception {
 		ArrayList<OptionDescriptor> optionArr = new ArrayList<OptionDescriptor>();
+		optionArr.add(DAEMON);
 		optionArr.add(DISPLAY_STACKTRACE);
 		optionArr.add(FILE);
 		optionArr.add(HELP);
@@ -175,6 +192,8 @@ public class Headless implements IApplication, OptionValueType {
 				displayStackTrace = true;
 			else if (option.is(FILE))
 				scriptFile = option.getValue();
+			else if (option.is(DAEMON))
+				daemonFile = option.getValue();
 			else if (option.is(LOG_LEVEL)) {
 				int level;
 				for (String levelDecl : commaSplit.split(option.getValue())) {
@@ -224,7 +243,8 @@ public class Headless implements IApplication, OptionValueType {
 				String v = option.getValue();
 				InputStream input = null;
 				try {
-					URL propsURL = URLUtils.normalizeToURL(v);
+					// Anything with a scheme is a URL, anything else a path
+					URL propsURL = v.indexOf(':') > 1 ? URLUtils.normalizeToURL(v) : getAbsoluteFile(v).toURI().toURL();
 					input = new BufferedInputStream(propsURL.openStream());
 					if (props == null)
 						props = new Properties(System.getProperties());
@@ -242,6 +262,9 @@ public class Headless implements IApplication, OptionValueType {
 			System.setProperties(props);
 
 		String[] unparsed = pr.getUnparsed();
+		if (daemonFile != null && (unparsed.length > 0 || scriptFile != null))
+			throw new UsageException(Messages.Headless_The_daemon_option_cannot_be_combined_with_a_command, true);
+
 		if (unparsed.length > 0) {
 			if (scriptFile != null)
 				throw new UsageException(Messages.Headless_The_scriptfile_option_cannot_be_combined_with_a_command, true);
@@ -255,7 +278,7 @@ public class Headless implements IApplication, OptionValueType {
 				if (scriptFile.equals("-")) //$NON-NLS-1$
 					lines = System.in;
 				else
-					lines = new FileInputStream(scriptFile);
+					lines = new FileInputStream(getAbsoluteFile(scriptFile));
 
 				LineNumberReader reader = new LineNumberReader(new InputStreamReader(lines));
 				String line;
@@ -317,6 +340,9 @@ public class Headless implements IApplication, OptionValueType {
 				return EXIT_OK;
 			}
 
+			if (daemonFile != null)
+				return new Daemon(new File(daemonFile)).run();
+
 			final IJobManager jobMgr = Job.getJobManager();
 			int top = invocations.size();
 			if (top == 0) {
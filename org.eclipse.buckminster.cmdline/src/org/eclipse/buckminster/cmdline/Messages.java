@@ -27,6 +27,18 @@ public class Messages extends NLS {
 
 	public static String CommandLineParser_ENV_Variables_not_supported_unless_Java_1_5_or_higher;
 
+	public static String Daemon_A_daemon_is_already_running;
+
+	public static String Daemon_Incomplete_request;
+
+	public static String Daemon_Listening_on_port_0_using_file_1;
+
+	public static String Daemon_Rejected_request_with_invalid_key;
+
+	public static String Daemon_Request_timed_out;
+
+	public static String Daemon_Stopped;
+
 	public static String Headless_buckminster__help;
 
 	public static String Headless_buckminster_command__help;
@@ -43,6 +55,8 @@ public class Messages extends NLS {
 
 	public static String Headless_No_command_provided_Try_one_of;
 
+	public static String Headless_The_daemon_option_cannot_be_combined_with_a_command;
+
 	public static String Headless_The_scriptfile_option_cannot_be_combined_with_a_command;
 
 	public static String Headless_Unexpected_option;
@@ -3,11 +3,21 @@ package org.eclipse.buckminster.core.test;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.buckminster.core.test.actor.ActionCacheTest;
+import org.eclipse.buckminster.core.test.actor.ParallelActionsTest;
 import org.eclipse.buckminster.core.test.command.CommandsTest;
+import org.eclipse.buckminster.core.test.command.DaemonTest;
 import org.eclipse.buckminster.core.test.cspec.CSpecBuilderTest;
 import org.eclipse.buckminster.core.test.cspec.CSpecParserTest;
+import org.eclipse.buckminster.core.test.helpers.ParallelFileTasksTest;
+import org.eclipse.buckminster.core.test.helpers.TimedHashMapTest;
+import org.eclipse.buckminster.core.test.metadata.LogStorageTest;
+import org.eclipse.buckminster.core.test.parser.BinaryParserTest;
 import org.eclipse.buckminster.core.test.property.PropertyFormatTest;
+import org.eclipse.buckminster.core.test.reader.P2RepositoryIndexTest;
+import org.eclipse.buckminster.core.test.resolver.IncrementalResolutionIndexTest;
 import org.eclipse.buckminster.core.test.rmap.RMapTest;
+import org.eclipse.buckminster.core.test.version.VersionTest;
 
 public class AllTests {
 
@@ -16,10 +26,20 @@ public class AllTests {
 		// $JUnit-BEGIN$
 		suite.addTestSuite(SimpleLoaderTest.class);
 		suite.addTestSuite(CommandsTest.class);
+		suite.addTestSuite(ActionCacheTest.class);
+		suite.addTestSuite(BinaryParserTest.class);
 		suite.addTestSuite(CSpecBuilderTest.class);
 		suite.addTestSuite(CSpecParserTest.class);
+		suite.addTestSuite(DaemonTest.class);
+		suite.addTestSuite(IncrementalResolutionIndexTest.class);
+		suite.addTestSuite(LogStorageTest.class);
+		suite.addTestSuite(P2RepositoryIndexTest.class);
+		suite.addTestSuite(ParallelActionsTest.class);
+		suite.addTestSuite(ParallelFileTasksTest.class);
 		suite.addTestSuite(PropertyFormatTest.class);
 		suite.addTestSuite(RMapTest.class);
+		suite.addTestSuite(TimedHashMapTest.class);
+		suite.addTestSuite(VersionTest.class);
 		// $JUnit-END$
 		return suite;
 	}
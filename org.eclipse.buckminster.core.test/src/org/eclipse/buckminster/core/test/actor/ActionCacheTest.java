@@ -0,0 +1,197 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.actor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Date;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.KeyConstants;
+import org.eclipse.buckminster.core.actor.IGlobalContext;
+import org.eclipse.buckminster.core.common.model.Format;
+import org.eclipse.buckminster.core.cspec.builder.ActionBuilder;
+import org.eclipse.buckminster.core.cspec.builder.CSpecBuilder;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
+import org.eclipse.buckminster.core.cspec.model.UpToDatePolicy;
+import org.eclipse.buckminster.core.ctype.IComponentType;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.StorageManager;
+import org.eclipse.buckminster.core.metadata.model.Materialization;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.rmap.model.Provider;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.buckminster.core.version.VersionMatch;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.p2.metadata.Version;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class ActionCacheTest extends AbstractTestCase {
+	private static final String ACTION_CACHE_FOLDER = "actionCacheFolder"; //$NON-NLS-1$
+
+	private static final String ACTION_CACHE_MAX_ENTRIES = "actionCacheMaxEntries"; //$NON-NLS-1$
+
+	private static final String ACTION = "build"; //$NON-NLS-1$
+
+	private static final String INPUT = "input.txt"; //$NON-NLS-1$
+
+	private static final String PRODUCT = "output/product.txt"; //$NON-NLS-1$
+
+	private static final String ORIGINAL = "original"; //$NON-NLS-1$
+
+	private File tempDir;
+
+	private File cacheDir;
+
+	private CSpec cspec;
+
+	private Resolution resolution;
+
+	private Materialization materialization;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		getPlugin();
+		tempDir = File.createTempFile("actioncache", null); //$NON-NLS-1$
+		tempDir.delete();
+		cacheDir = new File(tempDir, "cache"); //$NON-NLS-1$
+		assertTrue(cacheDir.mkdirs());
+
+		CSpecBuilder cspecBld = new CSpecBuilder();
+		cspecBld.setName("buckminster.test.actioncache"); //$NON-NLS-1$
+		cspecBld.setComponentTypeID(IComponentType.BUCKMINSTER);
+		cspecBld.setVersion(Version.parseVersion("1.0.0")); //$NON-NLS-1$
+		cspecBld.addArtifact("inputs", false, null).addPath(new Path(INPUT)); //$NON-NLS-1$
+		ActionBuilder action = cspecBld.addAction(ACTION, true, CacheProbeActor.ID, false);
+		action.addLocalPrerequisite("inputs"); //$NON-NLS-1$
+		action.setProductBase(Path.fromPortableString(KeyConstants.ACTION_HOME_REF + "/output/")); //$NON-NLS-1$
+		action.addProductPath(new Path("product.txt")); //$NON-NLS-1$
+		action.setUpToDatePolicy(UpToDatePolicy.COUNT);
+		action.setProductFileCount(1);
+		cspec = cspecBld.createCSpec();
+
+		StorageManager sm = StorageManager.getDefault();
+		VersionMatch fixed = new VersionMatch(cspec.getVersion(), null, -1, new Date(), null);
+		Provider provider = new Provider(null, "local", new String[] { IComponentType.BUCKMINSTER }, //$NON-NLS-1$
+				null, new Format(tempDir.toURI().toString()), null, null, null, null, null, null);
+		resolution = new Resolution(cspec, IComponentType.BUCKMINSTER, fixed, provider, true, new ComponentRequest(cspec.getName(), null, null),
+				Collections.<String> emptyList(), null, provider.getURI(Collections.<String, String> emptyMap()), null, null, 0L, -1L, false);
+		resolution.store(sm);
+		materialize(new File(tempDir, "checkout1")); //$NON-NLS-1$
+		BuckminsterPreferences.getNode().put(ACTION_CACHE_FOLDER, cacheDir.getAbsolutePath());
+		CacheProbeActor.reset();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		StorageManager sm = StorageManager.getDefault();
+		materialization.remove(sm);
+		resolution.remove(sm);
+		BuckminsterPreferences.getNode().remove(ACTION_CACHE_FOLDER);
+		BuckminsterPreferences.getNode().remove(ACTION_CACHE_MAX_ENTRIES);
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	/**
+	 * Verifies that entries are evicted when the cache is full.
+	 */
+	public void testEviction() throws Exception {
+		BuckminsterPreferences.getNode().putInt(ACTION_CACHE_MAX_ENTRIES, 1);
+		perform();
+		writeInput("changed"); //$NON-NLS-1$
+		perform();
+		assertEquals(2, CacheProbeActor.getPerformedCount());
+
+		// The entry for the original input was evicted by the second one
+		writeInput(ORIGINAL);
+		perform();
+		assertEquals(3, CacheProbeActor.getPerformedCount());
+	}
+
+	/**
+	 * Verifies that a change to the content of a prerequisite gives a new key.
+	 */
+	public void testInputChangeIsMiss() throws Exception {
+		perform();
+		writeInput("changed"); //$NON-NLS-1$
+		perform();
+		assertEquals(2, CacheProbeActor.getPerformedCount());
+	}
+
+	/**
+	 * Verifies that a second checkout of the same component in another
+	 * location hits the entry stored by the first one.
+	 */
+	public void testOtherLocationIsHit() throws Exception {
+		perform();
+		materialize(new File(tempDir, "checkout2")); //$NON-NLS-1$
+		perform();
+		assertEquals(1, CacheProbeActor.getPerformedCount());
+		assertTrue(getProduct().isFile());
+	}
+
+	/**
+	 * Verifies that the first perform misses and that a perform with
+	 * identical input restores the products instead of performing the action.
+	 */
+	public void testSecondPerformIsHit() throws Exception {
+		perform();
+		assertEquals(1, CacheProbeActor.getPerformedCount());
+		perform();
+		assertEquals(1, CacheProbeActor.getPerformedCount());
+		assertTrue(getProduct().isFile());
+	}
+
+	private File getProduct() {
+		return new File(materialization.getComponentLocation().toFile(), PRODUCT);
+	}
+
+	/**
+	 * Make the component appear at <code>location</code> with the original
+	 * input.
+	 */
+	private void materialize(File location) throws Exception {
+		StorageManager sm = StorageManager.getDefault();
+		if (materialization != null)
+			materialization.remove(sm);
+		assertTrue(location.mkdirs());
+		materialization = new Materialization(Path.fromOSString(location.getAbsolutePath()).addTrailingSeparator(),
+				cspec.getComponentIdentifier());
+		materialization.store(sm);
+		writeInput(ORIGINAL);
+	}
+
+	/**
+	 * Perform the action after removing its product so that the action is
+	 * never up to date.
+	 */
+	private void perform() throws Exception {
+		getProduct().delete();
+		IGlobalContext ctx = CorePlugin.getPerformManager().perform(cspec, ACTION, Collections.<String, String> emptyMap(), false, true,
+				new NullProgressMonitor());
+		assertTrue(ctx.getStatus().isOK());
+	}
+
+	private void writeInput(String content) throws Exception {
+		OutputStream output = new FileOutputStream(new File(materialization.getComponentLocation().toFile(), INPUT));
+		try {
+			output.write(content.getBytes("UTF-8")); //$NON-NLS-1$
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.actor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.buckminster.core.actor.AbstractActor;
+import org.eclipse.buckminster.core.actor.IActionContext;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * An actor that records how many times it is performed and writes each
+ * product path of its action. Used to tell a performed action from one that
+ * had its products restored from the action cache.
+ *
+ * @author Thomas Hallgren
+ */
+public class CacheProbeActor extends AbstractActor {
+	public static final String ID = "test.cache.probe"; //$NON-NLS-1$
+
+	private static final AtomicInteger performed = new AtomicInteger();
+
+	public static int getPerformedCount() {
+		return performed.get();
+	}
+
+	public static void reset() {
+		performed.set(0);
+	}
+
+	@Override
+	protected IStatus internalPerform(IActionContext ctx, IProgressMonitor monitor) throws CoreException {
+		performed.incrementAndGet();
+		IPath base = ctx.getAction().getPathGroups(ctx, null)[0].getBase();
+		for (IPath path : ctx.getAction().getProductPaths()) {
+			File product = base.append(path).toFile();
+			product.getParentFile().mkdirs();
+			OutputStream output = null;
+			try {
+				output = new FileOutputStream(product);
+				output.write(path.toPortableString().getBytes("UTF-8")); //$NON-NLS-1$
+			} catch (IOException e) {
+				throw BuckminsterException.wrap(e);
+			} finally {
+				IOUtils.close(output);
+			}
+		}
+		MonitorUtils.complete(monitor);
+		return Status.OK_STATUS;
+	}
+}
@@ -0,0 +1,75 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.actor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.buckminster.core.actor.AbstractActor;
+import org.eclipse.buckminster.core.actor.IActionContext;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * An actor that records how many actions it performs and how many of them
+ * run at the same time. Each action waits a while for another action to
+ * start so that actions that are performed in parallel are sure to overlap.
+ *
+ * @author Thomas Hallgren
+ */
+public class ConcurrencyProbeActor extends AbstractActor {
+	public static final String ID = "test.concurrency.probe"; //$NON-NLS-1$
+
+	private static final long OVERLAP_TIMEOUT = 5000;
+
+	private static final AtomicInteger performed = new AtomicInteger();
+
+	private static final AtomicInteger running = new AtomicInteger();
+
+	private static final AtomicInteger peak = new AtomicInteger();
+
+	public static int getPeakConcurrency() {
+		return peak.get();
+	}
+
+	public static int getPerformedCount() {
+		return performed.get();
+	}
+
+	public static void reset() {
+		performed.set(0);
+		running.set(0);
+		peak.set(0);
+	}
+
+	@Override
+	protected IStatus internalPerform(IActionContext ctx, IProgressMonitor monitor) throws CoreException {
+		int current = running.incrementAndGet();
+		try {
+			int top;
+			while ((top = peak.get()) < current && !peak.compareAndSet(top, current))
+				;
+
+			long deadline = System.currentTimeMillis() + OVERLAP_TIMEOUT;
+			while (peak.get() < 2 && System.currentTimeMillis() < deadline) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			performed.incrementAndGet();
+		} finally {
+			running.decrementAndGet();
+		}
+		MonitorUtils.complete(monitor);
+		return Status.OK_STATUS;
+	}
+}
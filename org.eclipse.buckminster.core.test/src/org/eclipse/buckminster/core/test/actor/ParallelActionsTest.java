@@ -0,0 +1,125 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.actor;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.actor.IGlobalContext;
+import org.eclipse.buckminster.core.common.model.Format;
+import org.eclipse.buckminster.core.cspec.builder.ActionBuilder;
+import org.eclipse.buckminster.core.cspec.builder.CSpecBuilder;
+import org.eclipse.buckminster.core.cspec.builder.GroupBuilder;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
+import org.eclipse.buckminster.core.ctype.IComponentType;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.StorageManager;
+import org.eclipse.buckminster.core.metadata.model.Materialization;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.rmap.model.Provider;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.buckminster.core.version.VersionMatch;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.p2.metadata.Version;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class ParallelActionsTest extends AbstractTestCase {
+	private static final String MAX_PARALLEL_ACTIONS = "maxParallelActions"; //$NON-NLS-1$
+
+	private static final int ACTION_COUNT = 4;
+
+	private File tempDir;
+
+	private CSpec cspec;
+
+	private Resolution resolution;
+
+	private Materialization materialization;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		getPlugin();
+		tempDir = File.createTempFile("parallelactions", null); //$NON-NLS-1$
+		tempDir.delete();
+		assertTrue(tempDir.mkdirs());
+
+		CSpecBuilder cspecBld = new CSpecBuilder();
+		cspecBld.setName("buckminster.test.parallel"); //$NON-NLS-1$
+		cspecBld.setComponentTypeID(IComponentType.BUCKMINSTER);
+		cspecBld.setVersion(Version.parseVersion("1.0.0")); //$NON-NLS-1$
+
+		// All actions share the same local prerequisite so that its path
+		// groups are computed concurrently
+		//
+		cspecBld.addGroup("inputs", false); //$NON-NLS-1$
+		GroupBuilder all = cspecBld.addGroup("all", true); //$NON-NLS-1$
+		for (int idx = 0; idx < ACTION_COUNT; ++idx) {
+			String actionName = "action" + idx; //$NON-NLS-1$
+			ActionBuilder action = cspecBld.addAction(actionName, false, ConcurrencyProbeActor.ID, true);
+			action.addLocalPrerequisite("inputs"); //$NON-NLS-1$
+			all.addLocalPrerequisite(actionName);
+		}
+		cspec = cspecBld.createCSpec();
+
+		StorageManager sm = StorageManager.getDefault();
+		VersionMatch fixed = new VersionMatch(cspec.getVersion(), null, -1, new Date(), null);
+		Provider provider = new Provider(null, "local", new String[] { IComponentType.BUCKMINSTER }, //$NON-NLS-1$
+				null, new Format(tempDir.toURI().toString()), null, null, null, null, null, null);
+		resolution = new Resolution(cspec, IComponentType.BUCKMINSTER, fixed, provider, true, new ComponentRequest(cspec.getName(), null, null),
+				Collections.<String> emptyList(), null, provider.getURI(Collections.<String, String> emptyMap()), null, null, 0L, -1L, false);
+		resolution.store(sm);
+		materialization = new Materialization(Path.fromOSString(tempDir.getAbsolutePath()).addTrailingSeparator(),
+				cspec.getComponentIdentifier());
+		materialization.store(sm);
+		ConcurrencyProbeActor.reset();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		StorageManager sm = StorageManager.getDefault();
+		materialization.remove(sm);
+		resolution.remove(sm);
+		BuckminsterPreferences.getNode().remove(MAX_PARALLEL_ACTIONS);
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	/**
+	 * Verifies that independent actions overlap when more than one action
+	 * may be performed at a time and that all of them are performed.
+	 */
+	public void testIndependentActionsInParallel() throws Exception {
+		BuckminsterPreferences.getNode().putInt(MAX_PARALLEL_ACTIONS, ACTION_COUNT);
+		IGlobalContext ctx = CorePlugin.getPerformManager().perform(cspec, "all", Collections.<String, String> emptyMap(), true, true, //$NON-NLS-1$
+				new NullProgressMonitor());
+		assertTrue(ctx.getStatus().isOK());
+		assertEquals(ACTION_COUNT, ConcurrencyProbeActor.getPerformedCount());
+		assertTrue(ConcurrencyProbeActor.getPeakConcurrency() > 1);
+	}
+
+	/**
+	 * Verifies that the actions never overlap when only one action may be
+	 * performed at a time.
+	 */
+	public void testIndependentActionsInSequence() throws Exception {
+		BuckminsterPreferences.getNode().putInt(MAX_PARALLEL_ACTIONS, 1);
+		IGlobalContext ctx = CorePlugin.getPerformManager().perform(cspec, "all", Collections.<String, String> emptyMap(), true, true, //$NON-NLS-1$
+				new NullProgressMonitor());
+		assertTrue(ctx.getStatus().isOK());
+		assertEquals(ACTION_COUNT, ConcurrencyProbeActor.getPerformedCount());
+		assertEquals(1, ConcurrencyProbeActor.getPeakConcurrency());
+	}
+}
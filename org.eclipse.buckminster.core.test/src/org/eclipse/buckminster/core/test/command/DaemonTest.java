@@ -0,0 +1,190 @@
+package org.eclipse.buckminster.core.test.command;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.cmdline.Headless;
+
+/**
+ * Tests the frame protocol of a daemon started with the <code>--daemon</code>
+ * option. The client side is implemented here so that the test does not
+ * depend on the package private protocol class.
+ *
+ * @author Thomas Hallgren
+ */
+public class DaemonTest extends TestCase {
+	private static final int MAGIC = 0x42756364;
+
+	private static final int REQUEST_RUN = 1;
+
+	private static final int REQUEST_STOP = 2;
+
+	private static final int FRAME_STDOUT = 1;
+
+	private static final int FRAME_EXIT = 3;
+
+	/**
+	 * Exit value used when the daemon closes the connection without an exit
+	 * frame
+	 */
+	private static final int CLOSED = -1;
+
+	private File daemonFile;
+
+	private Thread daemonThread;
+
+	private int daemonExitValue = CLOSED;
+
+	private int port;
+
+	private String key;
+
+	/**
+	 * The working directory of the client
+	 */
+	private String clientDir = System.getProperty("user.dir"); //$NON-NLS-1$
+
+	private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+
+	public void testBadKeyIsRejected() throws Exception {
+		assertEquals(CLOSED, request(key + "0", REQUEST_RUN, "lscmds")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(0, stdout.size());
+
+		// The daemon keeps serving requests with the right key
+		assertEquals(Headless.EXIT_OK, request(key, REQUEST_RUN, "lscmds")); //$NON-NLS-1$
+	}
+
+	public void testExitValueOfFailingCommand() throws Exception {
+		assertEquals(Headless.EXIT_FAIL, request(key, REQUEST_RUN, "no.such.command")); //$NON-NLS-1$
+	}
+
+	public void testRelativeScriptFile() throws Exception {
+		File dir = daemonFile.getParentFile();
+		File scriptFile = new File(dir, "commands.bcmd"); //$NON-NLS-1$
+		PrintStream scriptOut = new PrintStream(scriptFile);
+		scriptOut.println("lscmds"); //$NON-NLS-1$
+		scriptOut.close();
+		clientDir = dir.getAbsolutePath();
+		assertEquals(Headless.EXIT_OK, request(key, REQUEST_RUN, "--scriptfile", scriptFile.getName())); //$NON-NLS-1$
+	}
+
+	public void testRun() throws Exception {
+		assertEquals(Headless.EXIT_OK, request(key, REQUEST_RUN, "lscmds")); //$NON-NLS-1$
+		assertTrue(stdout.size() > 0);
+	}
+
+	public void testStop() throws Exception {
+		assertEquals(Headless.EXIT_OK, request(key, REQUEST_STOP));
+		daemonThread.join(10000);
+		assertFalse(daemonThread.isAlive());
+		assertEquals(Headless.EXIT_OK, daemonExitValue);
+		assertFalse(daemonFile.exists());
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		File dir = File.createTempFile("daemon", ".dir"); //$NON-NLS-1$ //$NON-NLS-2$
+		dir.delete();
+		dir.mkdir();
+		daemonFile = new File(dir, "daemon.properties"); //$NON-NLS-1$
+
+		daemonThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					daemonExitValue = ((Integer) new Headless().run(new String[] { "--daemon", daemonFile.getAbsolutePath() })).intValue(); //$NON-NLS-1$
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		daemonThread.start();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!daemonFile.exists()) {
+			assertTrue("Daemon did not start", System.currentTimeMillis() < deadline); //$NON-NLS-1$
+			Thread.sleep(50);
+		}
+		Properties props = new Properties();
+		InputStream input = new FileInputStream(daemonFile);
+		try {
+			props.load(input);
+		} finally {
+			input.close();
+		}
+		port = Integer.parseInt(props.getProperty("port")); //$NON-NLS-1$
+		key = props.getProperty("key"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (daemonThread.isAlive()) {
+			request(key, REQUEST_STOP);
+			daemonThread.join(10000);
+		}
+		File dir = daemonFile.getParentFile();
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Sends a request and collects the standard output frames of the response.
+	 *
+	 * @return the exit value or {@link #CLOSED}
+	 */
+	private int request(String requestKey, int requestType, String... args) throws Exception {
+		stdout.reset();
+
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			output.writeInt(MAGIC);
+			output.writeUTF(requestKey);
+			output.writeByte(requestType);
+			if (requestType == REQUEST_RUN) {
+				output.writeInt(args.length);
+				for (String arg : args)
+					output.writeUTF(arg);
+				output.writeInt(1);
+				output.writeUTF("user.dir"); //$NON-NLS-1$
+				output.writeUTF(clientDir);
+			}
+			output.flush();
+
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			for (;;) {
+				int frameType;
+				try {
+					frameType = input.readByte();
+				} catch (EOFException e) {
+					return CLOSED;
+				}
+				if (frameType == FRAME_EXIT)
+					return input.readInt();
+
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				if (frameType == FRAME_STDOUT)
+					stdout.write(bytes);
+			}
+		} finally {
+			socket.close();
+		}
+	}
+}
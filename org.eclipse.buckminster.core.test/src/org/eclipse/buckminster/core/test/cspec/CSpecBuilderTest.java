@@ -14,6 +14,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.Collections;
 import java.util.Date;
+import java.util.UUID;
 
 import junit.framework.TestCase;
 
@@ -35,6 +36,20 @@ import org.eclipse.buckminster.sax.Utils;
 import org.eclipse.equinox.p2.metadata.Version;
 
 public class CSpecBuilderTest extends TestCase {
+	public void testImageIsSharedWithId() throws Exception {
+		CSpecBuilder cspecBld = new CSpecBuilder();
+		cspecBld.setName("my.test.project"); //$NON-NLS-1$
+		cspecBld.setVersion(Version.parseVersion("1.2.3")); //$NON-NLS-1$
+		CSpec c = cspecBld.createCSpec();
+
+		// The id is computed from the image that is later stored
+		UUID id = c.getId();
+		byte[] image = c.getImage();
+		assertSame(image, c.getImage());
+		assertEquals(id, UUID.nameUUIDFromBytes(image));
+		assertEquals(id, Utils.getImageUUID(c));
+	}
+
 	public void testSaxGenerator() throws Exception {
 		CorePlugin plugin = CorePlugin.getDefault();
 		if (plugin == null)
@@ -0,0 +1,135 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.helpers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.mspec.ConflictResolution;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.buckminster.runtime.IOUtils;
+
+/**
+ * Tests the parallel copy and unzip of {@link FileUtils}.
+ *
+ * @author Thomas Hallgren
+ */
+public class ParallelFileTasksTest extends AbstractTestCase {
+	private static String read(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[(int) file.length()];
+			int pos = 0;
+			while (pos < bytes.length) {
+				int count = input.read(bytes, pos, bytes.length - pos);
+				if (count < 0)
+					break;
+				pos += count;
+			}
+			return new String(bytes, 0, pos, "UTF-8"); //$NON-NLS-1$
+		} finally {
+			IOUtils.close(input);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content.getBytes("UTF-8")); //$NON-NLS-1$
+		} finally {
+			IOUtils.close(output);
+		}
+	}
+
+	private File tempDir;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		tempDir = File.createTempFile("filetasks", null); //$NON-NLS-1$
+		tempDir.delete();
+		assertTrue(tempDir.mkdirs());
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	public void testCopy() throws Exception {
+		File source = new File(tempDir, "source"); //$NON-NLS-1$
+		for (int idx = 0; idx < 20; ++idx)
+			write(new File(source, "dir" + (idx % 3) + "/sub/file" + idx + ".txt"), "content " + idx); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		new File(source, "empty").mkdirs(); //$NON-NLS-1$
+
+		File dest = new File(tempDir, "dest"); //$NON-NLS-1$
+		FileUtils.deepCopyUnchecked(source, dest, null);
+		for (int idx = 0; idx < 20; ++idx)
+			assertEquals("content " + idx, read(new File(dest, "dir" + (idx % 3) + "/sub/file" + idx + ".txt"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertTrue(new File(dest, "empty").isDirectory()); //$NON-NLS-1$
+	}
+
+	public void testCopyDefaultExcludes() throws Exception {
+		File source = new File(tempDir, "source"); //$NON-NLS-1$
+		write(new File(source, "a/keep.txt"), "keep"); //$NON-NLS-1$ //$NON-NLS-2$
+		write(new File(source, "a/backup.txt~"), "backup"); //$NON-NLS-1$ //$NON-NLS-2$
+		write(new File(source, "a/.cvsignore"), "ignore"); //$NON-NLS-1$ //$NON-NLS-2$
+		write(new File(source, "a/CVS/Entries"), "entries"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		File dest = new File(tempDir, "dest"); //$NON-NLS-1$
+		FileUtils.deepCopyUnchecked(source, dest, null);
+		assertTrue(new File(dest, "a/keep.txt").isFile()); //$NON-NLS-1$
+		assertFalse(new File(dest, "a/backup.txt~").exists()); //$NON-NLS-1$
+		assertFalse(new File(dest, "a/.cvsignore").exists()); //$NON-NLS-1$
+		assertFalse(new File(dest, "a/CVS").exists()); //$NON-NLS-1$
+	}
+
+	public void testCopyIncludes() throws Exception {
+		File source = new File(tempDir, "source"); //$NON-NLS-1$
+		write(new File(source, "a/include.txt"), "include"); //$NON-NLS-1$ //$NON-NLS-2$
+		write(new File(source, "a/exclude.bin"), "exclude"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Directories are matched with a trailing slash
+		Pattern[] includes = { Pattern.compile(".*/"), Pattern.compile(".*\\.txt") }; //$NON-NLS-1$ //$NON-NLS-2$
+		File dest = new File(tempDir, "dest"); //$NON-NLS-1$
+		FileUtils.deepCopyUnchecked(source, dest, includes, null, null);
+		assertTrue(new File(dest, "a/include.txt").isFile()); //$NON-NLS-1$
+		assertFalse(new File(dest, "a/exclude.bin").exists()); //$NON-NLS-1$
+	}
+
+	public void testUnzip() throws Exception {
+		File zip = new File(tempDir, "test.zip"); //$NON-NLS-1$
+		ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			output.putNextEntry(new ZipEntry("root/")); //$NON-NLS-1$
+			output.closeEntry();
+			for (int idx = 0; idx < 50; ++idx) {
+				output.putNextEntry(new ZipEntry("root/dir" + (idx % 4) + "/entry" + idx)); //$NON-NLS-1$ //$NON-NLS-2$
+				output.write(("entry " + idx).getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+				output.closeEntry();
+			}
+		} finally {
+			IOUtils.close(output);
+		}
+
+		File dest = new File(tempDir, "dest"); //$NON-NLS-1$
+		FileUtils.unzip(zip, "root", dest, ConflictResolution.REPLACE, null); //$NON-NLS-1$
+		for (int idx = 0; idx < 50; ++idx)
+			assertEquals("entry " + idx, read(new File(dest, "dir" + (idx % 4) + "/entry" + idx))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -0,0 +1,225 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.helpers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.core.helpers.FileHandle;
+import org.eclipse.buckminster.core.helpers.ShortDurationFileCache;
+import org.eclipse.buckminster.core.helpers.TimedHashMap;
+import org.eclipse.buckminster.runtime.FileInfoBuilder;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class TimedHashMapTest extends TestCase {
+	private static class RecordingPolicy implements TimedHashMap.EvictionPolicy<String, String> {
+		final List<String> evicted = Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public void evict(Entry<String, String> entry) {
+			evicted.add(entry.getKey() + '=' + entry.getValue());
+		}
+	}
+
+	private static final long KEEP_ALIVE = 200;
+
+	/**
+	 * The longest time that we wait for an entry to expire. The timing wheel
+	 * has a resolution of 100 milliseconds so this leaves plenty of margin.
+	 */
+	private static final long EXPIRY_TIMEOUT = 5000;
+
+	/**
+	 * More than one tick of the timing wheel
+	 */
+	private static final long TICK_MARGIN = 150;
+
+	private static void awaitEmpty(TimedHashMap<?, ?> map) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + EXPIRY_TIMEOUT;
+		while (!map.isEmpty() && System.currentTimeMillis() < timeout)
+			Thread.sleep(20);
+	}
+
+	public void testCapacity() throws Exception {
+		RecordingPolicy policy = new RecordingPolicy();
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(EXPIRY_TIMEOUT, 3, policy);
+
+		// Each entry is put one tick after the previous one so that the
+		// entry that is closest to expiry is known
+		map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		Thread.sleep(TICK_MARGIN);
+		map.put("b", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+		Thread.sleep(TICK_MARGIN);
+		map.put("c", "3"); //$NON-NLS-1$ //$NON-NLS-2$
+		Thread.sleep(TICK_MARGIN);
+		map.put("d", "4"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(3, map.size());
+		assertFalse(map.containsKey("a")); //$NON-NLS-1$
+		assertEquals(Collections.singletonList("a=1"), policy.evicted); //$NON-NLS-1$
+		assertEquals(1, map.getEvictionCount());
+
+		// Replacing a value does not grow the map
+		map.put("d", "5"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(3, map.size());
+		assertTrue(map.containsKey("b")); //$NON-NLS-1$
+		map.clear();
+	}
+
+	public void testCapacityKeepsUnscheduledEntries() throws Exception {
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(EXPIRY_TIMEOUT, 2, null);
+		map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		map.cancel("a"); //$NON-NLS-1$
+		map.put("b", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+		Thread.sleep(TICK_MARGIN);
+		map.put("c", "3"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, map.size());
+		assertTrue(map.containsKey("a")); //$NON-NLS-1$
+		assertFalse(map.containsKey("b")); //$NON-NLS-1$
+
+		// When all other entries are in use, the new entry is the only one
+		// that can be evicted
+		map.cancel("c"); //$NON-NLS-1$
+		map.putIfAbsent("d", "4"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, map.size());
+		assertTrue(map.containsKey("a")); //$NON-NLS-1$
+		assertTrue(map.containsKey("c")); //$NON-NLS-1$
+		map.clear();
+	}
+
+	public void testCancel() throws Exception {
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(KEEP_ALIVE, null);
+		map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		map.cancel("a"); //$NON-NLS-1$
+		Thread.sleep(KEEP_ALIVE * 3);
+		assertEquals("1", map.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		map.schedule("a"); //$NON-NLS-1$
+		awaitEmpty(map);
+		assertNull(map.get("a")); //$NON-NLS-1$
+	}
+
+	public void testExpiry() throws Exception {
+		RecordingPolicy policy = new RecordingPolicy();
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(KEEP_ALIVE, policy);
+		map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		map.put("b", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("1", map.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, map.size());
+
+		awaitEmpty(map);
+		assertTrue(map.isEmpty());
+		assertEquals(2, map.getEvictionCount());
+		assertEquals(2, policy.evicted.size());
+		assertTrue(policy.evicted.contains("a=1")); //$NON-NLS-1$
+		assertTrue(policy.evicted.contains("b=2")); //$NON-NLS-1$
+	}
+
+	public void testHitAndMissCount() {
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(EXPIRY_TIMEOUT, null);
+		map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		map.get("a"); //$NON-NLS-1$
+		map.get("a"); //$NON-NLS-1$
+		map.get("b"); //$NON-NLS-1$
+		assertEquals(2, map.getHitCount());
+		assertEquals(1, map.getMissCount());
+		map.clear();
+	}
+
+	public void testPutAndRemove() {
+		RecordingPolicy policy = new RecordingPolicy();
+		TimedHashMap<String, String> map = new TimedHashMap<String, String>(EXPIRY_TIMEOUT, policy);
+		assertNull(map.put("a", "1")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// The replaced entry is handed to the policy
+		assertEquals("1", map.put("a", "2")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(Collections.singletonList("a=1"), policy.evicted); //$NON-NLS-1$
+
+		assertEquals("2", map.putIfAbsent("a", "3")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("2", map.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(map.putIfAbsent("b", "4")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("4", map.get("b")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertEquals("2", map.remove("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(map.containsKey("a")); //$NON-NLS-1$
+		map.clear();
+		assertTrue(map.isEmpty());
+
+		// Removed entries are not counted as evictions
+		assertEquals(0, map.getEvictionCount());
+	}
+
+	public void testShortDurationFileCache() throws Exception {
+		final File file = File.createTempFile("timedmap", null); //$NON-NLS-1$
+		OutputStream output = new FileOutputStream(file);
+		output.write(42);
+		output.close();
+
+		final AtomicInteger materializations = new AtomicInteger();
+		final ShortDurationFileCache.Materializer materializer = new ShortDurationFileCache.Materializer() {
+			@Override
+			public String getKey() {
+				return "key"; //$NON-NLS-1$
+			}
+
+			@Override
+			public FileHandle materialize(IProgressMonitor monitor, FileInfoBuilder fileInfo) throws IOException {
+				materializations.incrementAndGet();
+				return new FileHandle("file", file, true); //$NON-NLS-1$
+			}
+		};
+
+		final ShortDurationFileCache cache = new ShortDurationFileCache(1000, "timedmap", null, null); //$NON-NLS-1$
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			// Concurrent opens go through putIfAbsent and must share one
+			// materialization
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int idx = 0; idx < 32; ++idx)
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						InputStream input = cache.open(materializer, null);
+						try {
+							return Integer.valueOf(input.read());
+						} finally {
+							IOUtils.close(input);
+						}
+					}
+				}));
+			for (Future<Integer> result : results)
+				assertEquals(42, result.get().intValue());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, materializations.get());
+
+		// The entry is scheduled when it has been materialized. The
+		// temporary file is deleted when the entry expires.
+		awaitEmpty(cache);
+		assertTrue(cache.isEmpty());
+		assertFalse(file.exists());
+	}
+}
@@ -0,0 +1,134 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.metadata;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.FileStorage;
+import org.eclipse.buckminster.core.metadata.LogStorage;
+import org.eclipse.buckminster.core.metadata.model.ElementNotFoundException;
+import org.eclipse.buckminster.core.parser.IParser;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class LogStorageTest extends AbstractTestCase {
+	private File tempDir;
+
+	private IParser<CSpec> parser;
+
+	private final ArrayList<LogStorage<CSpec>> openLogs = new ArrayList<LogStorage<CSpec>>();
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		parser = getPlugin().getParserFactory().getCSpecParser(true);
+		tempDir = File.createTempFile("logstorage", null); //$NON-NLS-1$
+		tempDir.delete();
+		assertTrue(tempDir.mkdirs());
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		for (LogStorage<CSpec> log : openLogs)
+			log.close();
+		openLogs.clear();
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	public void testAppendIsSeenByOtherInstance() throws Exception {
+		CSpec cspec = loadCSpec();
+		LogStorage<CSpec> reader = openLog();
+		assertEquals(0, reader.getKeys().length);
+
+		openLog().putElement(cspec);
+
+		// The other instance only scans the records appended since it was
+		// opened
+		Thread.sleep(1100);
+		assertEquals(1, reader.getKeys().length);
+		assertEquals(cspec.getComponentIdentifier(), reader.getElement(cspec.getId()).getComponentIdentifier());
+	}
+
+	public void testClose() throws Exception {
+		CSpec cspec = loadCSpec();
+		LogStorage<CSpec> log = openLog();
+		log.putElement(cspec);
+		log.close();
+		log.close();
+
+		// A closed log is opened again when it is used
+		assertEquals(cspec.getComponentIdentifier(), log.getElement(cspec.getId()).getComponentIdentifier());
+		log.clear();
+		assertEquals(0, log.getKeys().length);
+	}
+
+	public void testImport() throws Exception {
+		CSpec cspec = loadCSpec();
+		UUID id = cspec.getId();
+		FileStorage<CSpec> folder = new FileStorage<CSpec>(new File(tempDir, CSpec.TAG), parser, CSpec.class, CSpec.SEQUENCE_NUMBER);
+		folder.putElement(cspec);
+		long creationTime = folder.getCreationTime(id);
+
+		assertEquals(1, openLog().importElements(folder));
+
+		LogStorage<CSpec> log = openLog();
+		assertEquals(1, log.getKeys().length);
+		assertEquals(creationTime, log.getCreationTime(id));
+		assertEquals(cspec.getComponentIdentifier(), log.getElement(id).getComponentIdentifier());
+	}
+
+	public void testPutGetRemove() throws Exception {
+		CSpec cspec = loadCSpec();
+		UUID id = cspec.getId();
+
+		LogStorage<CSpec> log = openLog();
+		log.putElement(cspec);
+		assertTrue(log.contains(cspec));
+
+		// A new instance must find the element by scanning the log
+		log = openLog();
+		CSpec restored = log.getElement(id);
+		assertEquals(id, restored.getId());
+		assertEquals(cspec.getComponentIdentifier(), restored.getComponentIdentifier());
+		assertTrue(Arrays.equals(cspec.getImage(), restored.getImage()));
+
+		log.removeElement(id);
+		log = openLog();
+		assertEquals(0, log.getKeys().length);
+		try {
+			log.getElement(id);
+			fail("Removed element was found"); //$NON-NLS-1$
+		} catch (ElementNotFoundException e) {
+			// Expected
+		}
+	}
+
+	private CSpec loadCSpec() throws Exception {
+		InputStream input = getClass().getResourceAsStream("/testData/cspecs/test.cspec"); //$NON-NLS-1$
+		try {
+			return parser.parse("test.cspec", input); //$NON-NLS-1$
+		} finally {
+			input.close();
+		}
+	}
+
+	private LogStorage<CSpec> openLog() throws Exception {
+		LogStorage<CSpec> log = new LogStorage<CSpec>(new File(tempDir, CSpec.TAG + LogStorage.LOG_SUFFIX), parser, CSpec.class, CSpec.SEQUENCE_NUMBER);
+		openLogs.add(log);
+		return log;
+	}
+}
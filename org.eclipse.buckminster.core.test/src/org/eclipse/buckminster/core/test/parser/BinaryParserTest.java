@@ -0,0 +1,133 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.eclipse.buckminster.core.cspec.QualifiedDependency;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
+import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
+import org.eclipse.buckminster.core.metadata.model.UnresolvedNode;
+import org.eclipse.buckminster.core.parser.IParser;
+import org.eclipse.buckminster.core.query.builder.ComponentQueryBuilder;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.buckminster.sax.ISaxable;
+import org.eclipse.buckminster.sax.Utils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+
+/**
+ * Writes elements with {@link Utils#serializeBinary(ISaxable, java.io.OutputStream)}
+ * and reads them back using the binary detection of the parsers.
+ *
+ * @author Thomas Hallgren
+ */
+public class BinaryParserTest extends AbstractTestCase {
+	/**
+	 * The length of the magic header and the version of a binary document
+	 */
+	private static final int HEADER_LENGTH = 5;
+
+	private static byte[] serializeBinary(ISaxable saxable) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Utils.serializeBinary(saxable, output);
+		return output.toByteArray();
+	}
+
+	private IParser<CSpec> cspecParser;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		cspecParser = getPlugin().getParserFactory().getCSpecParser(true);
+	}
+
+	public void testBillOfMaterials() throws Exception {
+		ComponentQueryBuilder queryBld = new ComponentQueryBuilder();
+		ComponentRequest request = new ComponentRequest("test.unresolved", null, (VersionRange) null); //$NON-NLS-1$
+		queryBld.setRootRequest(request);
+		BillOfMaterials bom = BillOfMaterials.create(new UnresolvedNode(new QualifiedDependency(request, null)), queryBld.createComponentQuery());
+
+		byte[] binary = serializeBinary(bom);
+		IParser<BillOfMaterials> parser = getPlugin().getParserFactory().getBillOfMaterialsParser(true);
+		BillOfMaterials restored = parser.parse("test.bom", new ByteArrayInputStream(binary)); //$NON-NLS-1$
+		assertEquals(bom.getId(), restored.getId());
+		assertTrue(Arrays.equals(bom.getImage(), restored.getImage()));
+	}
+
+	public void testCorruptInput() throws Exception {
+		byte[] binary = serializeBinary(loadCSpec());
+
+		// Unsupported version
+		byte[] corrupt = binary.clone();
+		corrupt[HEADER_LENGTH - 1] = 2;
+		assertParseFails(corrupt);
+
+		// Unknown event
+		corrupt = binary.clone();
+		corrupt[HEADER_LENGTH] = 0x7f;
+		assertParseFails(corrupt);
+
+		// A start element that refers to a string that has not been written
+		corrupt = Arrays.copyOf(binary, HEADER_LENGTH + 2);
+		corrupt[HEADER_LENGTH] = 1;
+		corrupt[HEADER_LENGTH + 1] = 5;
+		assertParseFails(corrupt);
+
+		// A start element with a new string that has a negative length
+		corrupt = Arrays.copyOf(binary, HEADER_LENGTH + 7);
+		corrupt[HEADER_LENGTH] = 1;
+		corrupt[HEADER_LENGTH + 1] = 0;
+		corrupt[HEADER_LENGTH + 2] = (byte) 0xff;
+		corrupt[HEADER_LENGTH + 3] = (byte) 0xff;
+		corrupt[HEADER_LENGTH + 4] = (byte) 0xff;
+		corrupt[HEADER_LENGTH + 5] = (byte) 0xff;
+		corrupt[HEADER_LENGTH + 6] = 0x0f;
+		assertParseFails(corrupt);
+	}
+
+	public void testCSpec() throws Exception {
+		CSpec cspec = loadCSpec();
+		byte[] binary = serializeBinary(cspec);
+		CSpec restored = cspecParser.parse("test.cspec", new ByteArrayInputStream(binary)); //$NON-NLS-1$
+		assertEquals(cspec.getId(), restored.getId());
+		assertEquals(cspec.getComponentIdentifier(), restored.getComponentIdentifier());
+		assertTrue(Arrays.equals(cspec.getImage(), restored.getImage()));
+	}
+
+	public void testTruncatedInput() throws Exception {
+		byte[] binary = serializeBinary(loadCSpec());
+
+		// The document ends with its last byte so every shorter prefix must
+		// be rejected
+		for (int length = 0; length < binary.length; ++length)
+			assertParseFails(Arrays.copyOf(binary, length));
+	}
+
+	private void assertParseFails(byte[] input) {
+		try {
+			cspecParser.parse("corrupt.cspec", new ByteArrayInputStream(input)); //$NON-NLS-1$
+			fail("Corrupt input of length " + input.length + " was accepted"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (CoreException e) {
+			// Expected
+		}
+	}
+
+	private CSpec loadCSpec() throws Exception {
+		InputStream input = getClass().getResourceAsStream("/testData/cspecs/test.cspec"); //$NON-NLS-1$
+		try {
+			return cspecParser.parse("test.cspec", input); //$NON-NLS-1$
+		} finally {
+			input.close();
+		}
+	}
+}
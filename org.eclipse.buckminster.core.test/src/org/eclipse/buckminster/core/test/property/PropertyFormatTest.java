@@ -128,6 +128,35 @@ public class PropertyFormatTest extends TestCase {
 		assertEquals(expected, result);
 	}
 
+	public void testExpansionInvalidation() {
+		IProperties<String> dflts = new ExpandingProperties<String>();
+		dflts.put("greeting", "Hello"); //$NON-NLS-1$ //$NON-NLS-2$
+		IProperties<String> props = new ExpandingProperties<String>(dflts);
+		props.put("name", "${first} ${last}"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("first", "John"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("last", "Doe"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("salut", "${greeting} ${name}!"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Hello John Doe!", props.get("salut")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Change a key that is referenced indirectly
+		props.put("last", "Smith"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Hello John Smith!", props.get("salut")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Change a key in the defaults
+		dflts.put("greeting", "Hi"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Hi John Smith!", props.get("salut")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Override a default
+		props.put("greeting", "Howdy"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Howdy John Smith!", props.get("salut")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Define a key that was unresolved
+		props.put("rest", "${first} is ${mood}"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("John is ${mood}", props.get("rest")); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("mood", "happy"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("John is happy", props.get("rest")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	public void testExpandingResourcePath() throws Exception {
 		URL dotProjectResource = getClass().getResource("/testData/projects/buckminster.test.build_a/.project"); // $NON-NLS
 		assertNotNull("No resource found for .project file", dotProjectResource);
@@ -0,0 +1,125 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.buckminster.core.RMContext;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.reader.P2RepositoryIndex;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class P2RepositoryIndexTest extends AbstractTestCase {
+	private File tempDir;
+
+	private IMetadataRepositoryManager manager;
+
+	private IMetadataRepository mdr;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		tempDir = File.createTempFile("p2index", null); //$NON-NLS-1$
+		tempDir.delete();
+		assertTrue(tempDir.mkdirs());
+
+		manager = (IMetadataRepositoryManager) getPlugin().getResolverAgent().getService(IMetadataRepositoryManager.SERVICE_NAME);
+		mdr = manager.createRepository(tempDir.toURI(), "test", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null); //$NON-NLS-1$
+		List<IInstallableUnit> ius = new ArrayList<IInstallableUnit>();
+		ius.add(createIU("org.example.a", "1.0.0")); //$NON-NLS-1$ //$NON-NLS-2$
+		ius.add(createIU("org.example.a", "2.0.0")); //$NON-NLS-1$ //$NON-NLS-2$
+		ius.add(createIU("org.example.a", "1.1.0")); //$NON-NLS-1$ //$NON-NLS-2$
+		ius.add(createIU("org.example.b", "3.0.0")); //$NON-NLS-1$ //$NON-NLS-2$
+		mdr.addInstallableUnits(ius);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		manager.removeRepository(tempDir.toURI());
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	public void testBestVersion() throws Exception {
+		P2RepositoryIndex index = P2RepositoryIndex.getIndex(createContext(), mdr, new NullProgressMonitor());
+		assertEquals(Version.create("2.0.0"), index.getBestVersion("org.example.a", null)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(Version.create("1.1.0"), index.getBestVersion("org.example.a", new VersionRange("[1.0.0,2.0.0)"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertNull(index.getBestVersion("org.example.a", new VersionRange("[3.0.0,4.0.0)"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(index.getBestVersion("org.example.c", null)); //$NON-NLS-1$
+
+		Version[] versions = index.getVersions("org.example.a"); //$NON-NLS-1$
+		assertEquals(3, versions.length);
+		assertEquals(Version.create("1.0.0"), versions[2]); //$NON-NLS-1$
+	}
+
+	public void testGetIU() throws Exception {
+		P2RepositoryIndex index = P2RepositoryIndex.getIndex(createContext(), mdr, new NullProgressMonitor());
+		Version version = Version.create("1.1.0"); //$NON-NLS-1$
+		IInstallableUnit iu = index.getIU("org.example.a", version, new NullProgressMonitor()); //$NON-NLS-1$
+		assertNotNull(iu);
+		assertEquals(version, iu.getVersion());
+		assertSame(iu, index.getIU("org.example.a", version, new NullProgressMonitor())); //$NON-NLS-1$
+		assertNull(index.getIU("org.example.a", Version.create("1.2.0"), new NullProgressMonitor())); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Verifies that an index is shared within a context but not between
+	 * contexts, and that a new context reads the same versions back.
+	 */
+	public void testIndexIsScopedToContext() throws Exception {
+		RMContext context = createContext();
+		P2RepositoryIndex index = P2RepositoryIndex.getIndex(context, mdr, new NullProgressMonitor());
+		assertSame(index, P2RepositoryIndex.getIndex(context, mdr, new NullProgressMonitor()));
+
+		P2RepositoryIndex other = P2RepositoryIndex.getIndex(createContext(), mdr, new NullProgressMonitor());
+		assertNotSame(index, other);
+		assertEquals(3, other.getVersions("org.example.a").length); //$NON-NLS-1$
+		assertEquals(Version.create("3.0.0"), other.getBestVersion("org.example.b", null)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Verifies that an index is rebuilt when units are added to the
+	 * repository.
+	 */
+	public void testIndexFollowsRepository() throws Exception {
+		RMContext context = createContext();
+		P2RepositoryIndex index = P2RepositoryIndex.getIndex(context, mdr, new NullProgressMonitor());
+		assertEquals(Version.create("2.0.0"), index.getBestVersion("org.example.a", null)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Make sure that the timestamp changes
+		Thread.sleep(10);
+		mdr.addInstallableUnits(Collections.singletonList(createIU("org.example.a", "2.1.0"))); //$NON-NLS-1$ //$NON-NLS-2$
+		index = P2RepositoryIndex.getIndex(context, mdr, new NullProgressMonitor());
+		assertEquals(Version.create("2.1.0"), index.getBestVersion("org.example.a", null)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static RMContext createContext() {
+		return new RMContext(Collections.<String, String> emptyMap());
+	}
+
+	private static IInstallableUnit createIU(String id, String version) {
+		InstallableUnitDescription desc = new InstallableUnitDescription();
+		desc.setId(id);
+		desc.setVersion(Version.create(version));
+		return MetadataFactory.createInstallableUnit(desc);
+	}
+}
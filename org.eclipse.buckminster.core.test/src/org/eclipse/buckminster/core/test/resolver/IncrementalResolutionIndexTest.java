@@ -0,0 +1,151 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.test.resolver;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+
+import org.eclipse.buckminster.core.RMContext;
+import org.eclipse.buckminster.core.common.model.Format;
+import org.eclipse.buckminster.core.cspec.builder.CSpecBuilder;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
+import org.eclipse.buckminster.core.ctype.IComponentType;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.StorageManager;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.query.builder.ComponentQueryBuilder;
+import org.eclipse.buckminster.core.resolver.IncrementalResolutionIndex;
+import org.eclipse.buckminster.core.resolver.NodeQuery;
+import org.eclipse.buckminster.core.resolver.ResolutionContext;
+import org.eclipse.buckminster.core.rmap.model.Provider;
+import org.eclipse.buckminster.core.rmap.model.ResourceMap;
+import org.eclipse.buckminster.core.test.AbstractTestCase;
+import org.eclipse.buckminster.core.version.VersionMatch;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.p2.metadata.Version;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class IncrementalResolutionIndexTest extends AbstractTestCase {
+	/**
+	 * An index that uses a fixed fingerprint instead of asking the remote
+	 * repository.
+	 */
+	static class FixedFingerprintIndex extends IncrementalResolutionIndex {
+		private final String fingerprint;
+
+		FixedFingerprintIndex(File indexFile, RMContext context, String fingerprint) throws CoreException {
+			super(indexFile, context);
+			this.fingerprint = fingerprint;
+		}
+
+		@Override
+		protected String getRemoteFingerprint(Resolution resolution, IProgressMonitor monitor) {
+			return fingerprint;
+		}
+	}
+
+	private File tempDir;
+
+	private File indexFile;
+
+	private ComponentRequest request;
+
+	private ResolutionContext context;
+
+	private NodeQuery query;
+
+	private ResourceMap rmap;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		getPlugin();
+		tempDir = File.createTempFile("resolutionindex", null); //$NON-NLS-1$
+		tempDir.delete();
+		assertTrue(tempDir.mkdirs());
+		indexFile = new File(tempDir, IncrementalResolutionIndex.INDEX_FILE);
+
+		request = new ComponentRequest("my.test.project", null, null); //$NON-NLS-1$
+		ComponentQueryBuilder queryBld = new ComponentQueryBuilder();
+		queryBld.setRootRequest(request);
+		context = new ResolutionContext(queryBld.createComponentQuery());
+		query = new NodeQuery(context, request, null);
+		rmap = new ResourceMap(null);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		FileUtils.deleteRecursive(tempDir, null);
+		super.tearDown();
+	}
+
+	/**
+	 * Verifies that a recorded resolution is found by an index that is read
+	 * from the same file, i.e. by a later process, even when the resolution
+	 * is no longer present in the default storage manager.
+	 */
+	public void testReuseFromNewIndex() throws Exception {
+		Resolution resolution = createResolution();
+		IncrementalResolutionIndex index = new FixedFingerprintIndex(indexFile, context, "42"); //$NON-NLS-1$
+		index.recordResolution(query, rmap, resolution, new NullProgressMonitor());
+		index.save();
+		assertTrue(indexFile.isFile());
+
+		StorageManager sm = StorageManager.getDefault();
+		sm.getResolutions().removeElement(resolution.getId());
+		sm.getCSpecs().removeElement(resolution.getCSpec().getId());
+		sm.getProviders().removeElement(resolution.getProvider().getId());
+
+		index = new FixedFingerprintIndex(indexFile, context, "42"); //$NON-NLS-1$
+		Resolution reused = index.getReusableResolution(query, rmap, new NullProgressMonitor());
+		assertNotNull(reused);
+		assertEquals(resolution.getId(), reused.getId());
+		assertEquals(resolution.getComponentIdentifier(), reused.getComponentIdentifier());
+		assertEquals(1, index.getReuseCount());
+	}
+
+	/**
+	 * Verifies that an entry whose fingerprint has changed is not reused and
+	 * that it is removed from the index together with its stored elements.
+	 */
+	public void testStaleEntryIsRemoved() throws Exception {
+		Resolution resolution = createResolution();
+		IncrementalResolutionIndex index = new FixedFingerprintIndex(indexFile, context, "42"); //$NON-NLS-1$
+		index.recordResolution(query, rmap, resolution, new NullProgressMonitor());
+		index.save();
+
+		index = new FixedFingerprintIndex(indexFile, context, "43"); //$NON-NLS-1$
+		assertNull(index.getReusableResolution(query, rmap, new NullProgressMonitor()));
+		index.save();
+
+		File resolutionFolder = new File(indexFile.getPath() + IncrementalResolutionIndex.STORAGE_SUFFIX, Resolution.TAG);
+		assertFalse(new File(resolutionFolder, resolution.getId().toString()).exists());
+
+		index = new FixedFingerprintIndex(indexFile, context, "42"); //$NON-NLS-1$
+		assertNull(index.getReusableResolution(query, rmap, new NullProgressMonitor()));
+	}
+
+	private Resolution createResolution() throws Exception {
+		CSpecBuilder cspecBld = new CSpecBuilder();
+		cspecBld.setName("my.test.project"); //$NON-NLS-1$
+		cspecBld.setVersion(Version.parseVersion("1.2.3")); //$NON-NLS-1$
+		CSpec cspec = cspecBld.createCSpec();
+
+		VersionMatch fixed = new VersionMatch(cspec.getVersion(), null, -1, new Date(), null);
+		Provider provider = new Provider(null, "url", new String[] { IComponentType.BUCKMINSTER }, //$NON-NLS-1$
+				null, new Format("http://foo.bar.com/foobar"), null, null, null, null, null, null); //$NON-NLS-1$
+		return new Resolution(cspec, IComponentType.BUCKMINSTER, fixed, provider, true, request,
+				Collections.<String> emptyList(), null, provider.getURI(Collections.<String, String> emptyMap()), null, null, 0L, -1L, false);
+	}
+}
@@ -12,6 +12,8 @@ package org.eclipse.buckminster.core.test.rmap;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.eclipse.buckminster.core.CorePlugin;
@@ -22,6 +24,8 @@ import org.eclipse.buckminster.core.query.builder.ComponentQueryBuilder;
 import org.eclipse.buckminster.core.query.model.ComponentQuery;
 import org.eclipse.buckminster.core.resolver.MainResolver;
 import org.eclipse.buckminster.core.resolver.ResolutionContext;
+import org.eclipse.buckminster.core.rmap.model.Locator;
+import org.eclipse.buckminster.core.rmap.model.Matcher;
 import org.eclipse.buckminster.core.rmap.model.ResourceMap;
 import org.eclipse.buckminster.core.test.AbstractTestCase;
 import org.eclipse.buckminster.sax.Utils;
@@ -49,6 +53,44 @@ public class RMapTest extends AbstractTestCase {
 		resolver.resolve(new NullProgressMonitor());
 	}
 
+	/**
+	 * Verifies that the indexed matcher lookup, and the memoized second
+	 * lookup, agree with a linear scan of the matchers for resource maps of
+	 * growing size.
+	 */
+	public void testMatcherLookup() throws Exception {
+		for (int size = 10; size <= 1000; size *= 10) {
+			ResourceMap rmap = new ResourceMap(null);
+			for (int idx = 0; idx < size; ++idx)
+				rmap.addMatcher(new Locator(rmap, "^org\\.example\\.group" + idx + "(\\..+)?$", "sp" + idx)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			rmap.addMatcher(new Locator(rmap, "\\.source$", "sources")); //$NON-NLS-1$ //$NON-NLS-2$
+			rmap.addMatcher(new Locator(rmap, "^org\\.ex?ample\\.", "optional")); //$NON-NLS-1$ //$NON-NLS-2$
+			rmap.addMatcher(new Locator(rmap, "^com\\.acme|^org\\.example", "alternation")); //$NON-NLS-1$ //$NON-NLS-2$
+			rmap.addMatcher(new Locator(rmap, null, "default")); //$NON-NLS-1$
+
+			String[] names = new String[size];
+			for (int idx = 0; idx < size; ++idx)
+				names[idx] = "org.example.group" + (idx * 7 % size) + (idx % 2 == 0 ? ".bundle" : ".bundle.source"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+			List<Matcher> allMatchers = rmap.getMatchers();
+			List<List<Matcher>> expected = new ArrayList<List<Matcher>>(size);
+			for (String name : names) {
+				List<Matcher> matching = new ArrayList<Matcher>();
+				for (Matcher matcher : allMatchers)
+					if (matcher.matches(name))
+						matching.add(matcher);
+				expected.add(matching);
+			}
+
+			for (int idx = 0; idx < size; ++idx)
+				assertEquals(names[idx], expected.get(idx), rmap.getMatchers(names[idx]));
+
+			// The second lookup is served from the memo and must not differ
+			for (int idx = 0; idx < size; ++idx)
+				assertEquals(names[idx], expected.get(idx), rmap.getMatchers(names[idx]));
+		}
+	}
+
 	public void testRMAPSerialization() throws Exception {
 		CorePlugin plugin = CorePlugin.getDefault();
 		IParser<ResourceMap> rmapParser = plugin.getParserFactory().getResourceMapParser(true);
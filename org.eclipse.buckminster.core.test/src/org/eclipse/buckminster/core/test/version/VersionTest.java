@@ -3,6 +3,7 @@ package org.eclipse.buckminster.core.test.version;
 import junit.framework.TestCase;
 
 import org.eclipse.buckminster.core.version.VersionHelper;
+import org.eclipse.equinox.p2.metadata.IVersionFormat;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.metadata.VersionRange;
 
@@ -12,4 +13,33 @@ public class VersionTest extends TestCase {
 		VersionRange range = VersionHelper.exactRange(empty);
 		assertNull("Range from empty version is not an empty range", range);
 	}
+
+	public void testInternCacheIsBounded() {
+		Version hot = VersionHelper.parseVersion("7.7.7.hot"); //$NON-NLS-1$
+		int count = VersionHelper.getInternCapacity() + 1000;
+		for (int idx = 0; idx < count; ++idx) {
+			VersionHelper.parseVersion("1.0.0.v" + idx); //$NON-NLS-1$
+			assertSame("A version in use was evicted", hot, VersionHelper.parseVersion("7.7.7.hot")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertTrue("The cache is not bounded", VersionHelper.getInternSize() <= VersionHelper.getInternCapacity());
+
+		// Evicted versions are parsed again
+		assertEquals(Version.parseVersion("1.0.0.v0"), VersionHelper.parseVersion("1.0.0.v0")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testInternedVersions() throws Exception {
+		long hits = VersionHelper.getInternHitCount();
+		long misses = VersionHelper.getInternMissCount();
+
+		Version version = VersionHelper.parseVersion("3.4.5.interned"); //$NON-NLS-1$
+		assertSame(version, VersionHelper.parseVersion("3.4.5.interned")); //$NON-NLS-1$
+		assertSame(VersionHelper.createVersion((IVersionFormat) null, "3.4.6"), VersionHelper.createVersion((IVersionFormat) null, "3.4.6")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		VersionRange range = VersionHelper.createRange((IVersionFormat) null, "[3.4.5,4.0.0)"); //$NON-NLS-1$
+		assertSame(range, VersionHelper.createRange((IVersionFormat) null, "[3.4.5,4.0.0)")); //$NON-NLS-1$
+		assertTrue(range.isIncluded(version));
+
+		assertTrue(VersionHelper.getInternHitCount() >= hits + 3);
+		assertTrue(VersionHelper.getInternMissCount() >= misses + 3);
+	}
 }
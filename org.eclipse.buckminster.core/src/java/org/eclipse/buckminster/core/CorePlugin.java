@@ -33,6 +33,7 @@ import org.eclipse.buckminster.core.materializer.IMaterializer;
 import org.eclipse.buckminster.core.materializer.MaterializationJob;
 import org.eclipse.buckminster.core.materializer.WorkspaceBindingInstallJob;
 import org.eclipse.buckminster.core.metadata.MetadataSynchronizer;
+import org.eclipse.buckminster.core.metadata.StorageManager;
 import org.eclipse.buckminster.core.parser.IParserFactory;
 import org.eclipse.buckminster.core.parser.ParserFactory;
 import org.eclipse.buckminster.core.reader.ICatalogReader;
@@ -566,6 +567,7 @@ public class CorePlugin extends LogAwarePlugin {
 	public void stop(BundleContext context) throws Exception {
 		if (resolverAgent != null)
 			resolverAgent.stop();
+		StorageManager.disposeDefault();
 		super.stop(context);
 	}
 
@@ -239,13 +239,17 @@ public class Messages extends NLS {
 
 	public static String _0_illegal_value_for_maxParallelResolutions;
 
+	public static String _0_illegal_value_for_maxParallelActions;
+
 	public static String Buckminster_workspace_catch_up;
 
+	public static String Flushing_pending_workspace_changes;
+
 	public static String Metadata_refresh;
 
 	public static String Problem_during_meta_data_refresh_0;
 
-	public static String Project_0_now_has_dynamic_dependencies_to;
+	public static String Project_0_now_has_dynamic_dependencies_to_1;
 
 	public static String Project_0_references_closed_project_1;
 
@@ -327,6 +331,16 @@ public class Messages extends NLS {
 
 	public static String Actions_to_perform_in_order;
 
+	public static String Action_0_completed_in_1_ms;
+
+	public static String Performed_0_actions_using_1_threads_in_2_ms;
+
+	public static String Action_0_restored_from_cache_entry_1;
+
+	public static String Discarding_invalid_metadata_log_0;
+
+	public static String Migrated_0_metadata_elements;
+
 	public static String No_preference_matches_0;
 
 	public static String Preference_0_is_ambiguous;
@@ -443,6 +457,8 @@ public class Messages extends NLS {
 
 	public static String Override_URL_in_Component_Query;
 
+	public static String Perform_incremental_resolution;
+
 	public static String Perform_local_resolution;
 
 	public static String Resource_map_URL;
@@ -56,14 +56,22 @@ public class Import extends WorkspaceInitCommand {
 
 	static private final OptionDescriptor NO_IMPORT = new OptionDescriptor('N', "noimport", OptionValueType.NONE); //$NON-NLS-1$
 
+	static private final OptionDescriptor BINARY_BOM = new OptionDescriptor(null, "binarybom", OptionValueType.NONE); //$NON-NLS-1$
+
 	private File bomFile;
 
+	private boolean binaryBom;
+
 	private boolean resolveOnly;
 
 	private URL url;
 
 	private IConnectContext connectContext;
 
+	public void setBinaryBom(boolean flag) {
+		binaryBom = flag;
+	}
+
 	public void setBomFile(File bomFile) {
 		this.bomFile = bomFile;
 	}
@@ -85,6 +93,7 @@ public class Import extends WorkspaceInitCommand {
 		super.getOptionDescriptors(appendHere);
 		appendHere.add(NO_IMPORT);
 		appendHere.add(BOM_FILE);
+		appendHere.add(BINARY_BOM);
 	}
 
 	@Override
@@ -93,6 +102,8 @@ public class Import extends WorkspaceInitCommand {
 			setResolveOnly(true);
 		} else if (option.is(BOM_FILE)) {
 			setBomFile(new File(option.getValue()));
+		} else if (option.is(BINARY_BOM)) {
+			setBinaryBom(true);
 		} else
 			super.handleOption(option);
 	}
@@ -186,7 +197,10 @@ public class Import extends WorkspaceInitCommand {
 			}
 
 			if (bomOut != null) {
-				Utils.serialize(bom, bomOut);
+				if (binaryBom)
+					Utils.serializeBinary(bom, bomOut);
+				else
+					Utils.serialize(bom, bomOut);
 
 				// Close now so it can be accessed during materialization
 				//
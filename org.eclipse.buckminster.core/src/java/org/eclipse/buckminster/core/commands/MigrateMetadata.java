@@ -0,0 +1,34 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.commands;
+
+import org.eclipse.buckminster.cmdline.UsageException;
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.metadata.StorageManager;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Moves the persistent metadata from the folder per element type layout into
+ * indexed log files and makes the log format the preferred storage format.
+ */
+public class MigrateMetadata extends WorkspaceCommand {
+	@Override
+	protected void handleUnparsed(String[] unparsed) throws Exception {
+		if (unparsed.length > 0)
+			throw new UsageException(Messages.Too_many_arguments);
+	}
+
+	@Override
+	protected int internalRun(IProgressMonitor monitor) throws Exception {
+		int count = StorageManager.migrateToLog(CorePlugin.getDefault().getStateLocation().toFile());
+		System.out.println(NLS.bind(Messages.Migrated_0_metadata_elements, Integer.valueOf(count)));
+		return 0;
+	}
+}
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.buckminster.core.helpers.BMProperties;
 import org.eclipse.buckminster.core.helpers.MapUnion;
@@ -46,6 +47,14 @@ import org.xml.sax.helpers.AttributesImpl;
  * the value cannot be changed or removed from the map.</li>
  * </ul>
  * </p>
+ * <p>
+ * Expanded values are memoised. Each memoised value remembers the keys that
+ * were consulted when it was expanded and is discarded as soon as one of those
+ * keys is changed. All memoised values are discarded when the defaults that
+ * this instance was created with are changed. Values that depend on anything
+ * but constants, i.e. formats, property references, and Eclipse variables, are
+ * never memoised.
+ * </p>
  * 
  * @author Thomas Hallgren
  */
@@ -64,7 +73,7 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 
 		@Override
 		public T getValue() {
-			T value = convertValue(entry.getValue(), 0);
+			T value = getExpandedProperty(entry.getKey(), 0);
 			if (value != null)
 				value = expand(ExpandingProperties.this, value, 0);
 			return value;
@@ -78,12 +87,32 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 			if (!(vh == null || vh.isMutable() || vh.equals(constant)))
 				throw new ImmutablePropertyException(key);
 			entry.setValue(constant);
+			invalidate(key);
 			return convertValue(vh, 0);
 		}
 	}
 
+	/**
+	 * Collects the keys that are consulted during the expansion of one value.
+	 */
+	private static class Expansion {
+		final ExpandingProperties<?> scope;
+
+		final Set<String> keys = new HashSet<String>();
+
+		boolean memoisable = true;
+
+		Expansion(ExpandingProperties<?> scope) {
+			this.scope = scope;
+		}
+	}
+
 	public static final int MAX_NESTING_DEPTH = 64;
 
+	private static final Object NULL_VALUE = new Object();
+
+	private static final ThreadLocal<Expansion> currentExpansion = new ThreadLocal<Expansion>();
+
 	public static <T> Map<String, T> createUnmodifiableProperties(Map<String, T> aMap) {
 		if (aMap == null || aMap.size() == 0)
 			aMap = Collections.emptyMap();
@@ -209,12 +238,24 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 
 	private final Map<String, ValueHolder<T>> map;
 
+	private final ExpandingProperties<T> defaults;
+
+	private volatile Map<String, Object> expanded;
+
+	private ConcurrentHashMap<String, Set<String>> dependents;
+
+	private volatile long modificationCount;
+
+	private long defaultsModificationCount;
+
 	public ExpandingProperties() {
 		map = new HashMap<String, ValueHolder<T>>();
+		defaults = null;
 	}
 
 	public ExpandingProperties(int size) {
 		map = new HashMap<String, ValueHolder<T>>(size);
+		defaults = null;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -222,13 +263,17 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 		Map<String, ValueHolder<T>> overlay = new HashMap<String, ValueHolder<T>>();
 		if (dflts == null || dflts.size() == 0) {
 			map = overlay;
+			defaults = null;
 			return;
 		}
 
 		Map<String, ValueHolder<T>> dfltMap;
-		if (dflts instanceof ExpandingProperties<?>)
-			dfltMap = ((ExpandingProperties<T>) dflts).map;
-		else {
+		if (dflts instanceof ExpandingProperties<?>) {
+			defaults = (ExpandingProperties<T>) dflts;
+			dfltMap = defaults.map;
+		} else {
+			// The defaults are copied so they cannot change
+			defaults = null;
 			dfltMap = new HashMap<String, ValueHolder<T>>(dflts.size());
 			for (Map.Entry<String, ? extends T> de : dflts.entrySet()) {
 				ValueHolder<T> vh = new Constant<T>(de.getValue());
@@ -249,6 +294,7 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 				throw new ImmutablePropertyException(ee.getKey());
 
 		map.clear();
+		invalidateAll();
 	}
 
 	@Override
@@ -350,7 +396,41 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 
 	@Override
 	public Set<String> keySet() {
-		return map.keySet();
+		final Set<String> keys = map.keySet();
+		return new AbstractSet<String>() {
+			@Override
+			public boolean contains(Object key) {
+				return keys.contains(key);
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private final Iterator<String> itor = keys.iterator();
+
+					@Override
+					public boolean hasNext() {
+						return itor.hasNext();
+					}
+
+					@Override
+					public String next() {
+						return itor.next();
+					}
+
+					@Override
+					public void remove() {
+						itor.remove();
+						invalidateAll();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.size();
+			}
+		};
 	}
 
 	@Override
@@ -413,6 +493,7 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 					map.put(strKey, vh);
 					throw new ImmutablePropertyException(strKey);
 				}
+				invalidate(strKey);
 				return vh.checkedGetValue(this, 0);
 			}
 		}
@@ -432,6 +513,7 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 			map.put(key, v);
 			throw new ImmutablePropertyException(key);
 		}
+		invalidate(key);
 		return v;
 	}
 
@@ -530,22 +612,140 @@ public class ExpandingProperties<T extends Object> implements IProperties<T>, IE
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	T getExpandedProperty(String key, int recursionGuard) {
-		if (map.containsKey(key))
-			return convertValue(map.get(key), recursionGuard);
+		if (recursionGuard == 0)
+			return getMemoisedProperty(key);
+
+		Expansion expansion = currentExpansion.get();
+		if (expansion != null && expansion.scope == this)
+			expansion.keys.add(key);
+		else
+			expansion = null;
+		return lookupProperty(key, recursionGuard, expansion);
+	}
+
+	/**
+	 * Returns a number that changes whenever this instance or any of its
+	 * defaults are changed.
+	 */
+	long getModificationCount() {
+		return defaults == null ? modificationCount : modificationCount + defaults.getModificationCount();
+	}
+
+	private T convertValue(ValueHolder<T> vh, int recursionGuard) {
+		return vh == null ? null : vh.checkedGetValue(this, recursionGuard);
+	}
+
+	private synchronized Map<String, Object> getExpanded() {
+		if (expanded == null) {
+			dependents = new ConcurrentHashMap<String, Set<String>>();
+			defaultsModificationCount = defaults == null ? 0 : defaults.getModificationCount();
+			expanded = new ConcurrentHashMap<String, Object>();
+		}
+		return expanded;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T getMemoisedProperty(String key) {
+		Map<String, Object> memo = expanded;
+		if (memo == null)
+			memo = getExpanded();
+
+		// Changes to the defaults are not tracked per key so they discard
+		// everything
+		if (defaults != null && defaultsModificationCount != defaults.getModificationCount())
+			clearExpanded();
+
+		Object value = memo.get(key);
+		if (value != null)
+			return value == NULL_VALUE ? null : (T) value;
+
+		long startCount = getModificationCount();
+		Expansion outer = currentExpansion.get();
+		Expansion expansion = new Expansion(this);
+		expansion.keys.add(key);
+		currentExpansion.set(expansion);
+		T result;
+		try {
+			result = lookupProperty(key, 0, expansion);
+		} finally {
+			currentExpansion.set(outer);
+		}
+
+		if (outer != null && outer.scope == this) {
+			outer.keys.addAll(expansion.keys);
+			if (!expansion.memoisable)
+				outer.memoisable = false;
+		}
+
+		if (expansion.memoisable && startCount == getModificationCount()) {
+			for (String dependency : expansion.keys) {
+				Set<String> keys = dependents.get(dependency);
+				if (keys == null) {
+					keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+					Set<String> existing = dependents.putIfAbsent(dependency, keys);
+					if (existing != null)
+						keys = existing;
+				}
+				keys.add(key);
+			}
+			memo.put(key, result == null ? NULL_VALUE : result);
+
+			// A change that happened while we expanded might have missed the
+			// value that we just added
+			if (startCount != getModificationCount())
+				memo.remove(key);
+		}
+		return result;
+	}
+
+	private synchronized void clearExpanded() {
+		if (expanded == null)
+			return;
+
+		defaultsModificationCount = defaults == null ? 0 : defaults.getModificationCount();
+		expanded.clear();
+		dependents.clear();
+	}
+
+	private synchronized void invalidate(String key) {
+		++modificationCount;
+		if (expanded == null)
+			return;
+
+		expanded.remove(key);
+		Set<String> keys = dependents.remove(key);
+		if (keys != null)
+			for (String dependent : keys)
+				expanded.remove(dependent);
+	}
+
+	private synchronized void invalidateAll() {
+		++modificationCount;
+		clearExpanded();
+	}
+
+	@SuppressWarnings("unchecked")
+	private T lookupProperty(String key, int recursionGuard, Expansion expansion) {
+		if (map.containsKey(key)) {
+			ValueHolder<T> vh = map.get(key);
+			if (expansion != null && !(vh == null || vh instanceof Constant<?>))
+				// Other holders may consult other scopes
+				expansion.memoisable = false;
+			return convertValue(vh, recursionGuard);
+		}
 		try {
-			return (T) resolveEclipseVariables(key);
+			String value = resolveEclipseVariables(key);
+			if (value != null && expansion != null)
+				// Eclipse variables may change at any time
+				expansion.memoisable = false;
+			return (T) value;
 		} catch (ClassCastException e) {
 			// String is not compatible to T
 		}
 		return null;
 	}
 
-	private T convertValue(ValueHolder<T> vh, int recursionGuard) {
-		return vh == null ? null : vh.checkedGetValue(this, recursionGuard);
-	}
-
 	private String resolveEclipseVariables(String key) {
 		if (key == null)
 			return null;
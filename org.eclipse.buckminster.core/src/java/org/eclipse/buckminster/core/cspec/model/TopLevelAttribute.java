@@ -9,6 +9,7 @@ package org.eclipse.buckminster.core.cspec.model;
 
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.buckminster.core.KeyConstants;
 import org.eclipse.buckminster.core.Messages;
@@ -167,14 +168,20 @@ public abstract class TopLevelAttribute extends Attribute implements Cloneable {
 	public final PathGroup[] getPathGroups(IModelCache ctx, Stack<IAttributeFilter> filters) throws CoreException {
 		PathGroup[] pga;
 		if (filters == null || filters.isEmpty()) {
-			Map<String, PathGroup[]> cache = ctx.getPathGroupsCache();
+			ConcurrentMap<String, PathGroup[]> cache = ctx.getPathGroupsCache();
 			String qName = getQualifiedName();
 			pga = cache.get(qName);
 			if (pga == null) {
 				ExpandingProperties<Object> local = new ExpandingProperties<Object>(ctx.getProperties());
 				addDynamicProperties(local);
 				pga = internalGetPathGroups(ctx, local, filters);
-				cache.put(qName, pga);
+
+				// Another action that runs in parallel might have computed
+				// the same path groups. Use the one that got there first.
+				//
+				PathGroup[] existing = cache.putIfAbsent(qName, pga);
+				if (existing != null)
+					pga = existing;
 			}
 		} else {
 			// Can't use the cache
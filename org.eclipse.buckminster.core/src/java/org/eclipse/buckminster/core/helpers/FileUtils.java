@@ -27,11 +27,14 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.eclipse.buckminster.core.CorePlugin;
@@ -39,6 +42,7 @@ import org.eclipse.buckminster.core.Messages;
 import org.eclipse.buckminster.core.mspec.ConflictResolution;
 import org.eclipse.buckminster.download.DownloadManager;
 import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
 import org.eclipse.buckminster.runtime.IOUtils;
 import org.eclipse.buckminster.runtime.MonitorUtils;
 import org.eclipse.core.resources.IContainer;
@@ -108,6 +112,18 @@ public abstract class FileUtils {
 
 	public static final boolean CASE_INSENSITIVE_FS = (new File("a").equals(new File("A"))); //$NON-NLS-1$ //$NON-NLS-2$
 
+	/**
+	 * Preference that controls the number of threads used when copying
+	 * directory trees and extracting zip files
+	 */
+	public static final String FILE_COPY_THREADS = "fileCopyThreads"; //$NON-NLS-1$
+
+	/**
+	 * Preference that makes a deep copy create hard links instead of copies
+	 * when the source and the destination are on the same file system
+	 */
+	public static final String FILE_COPY_HARD_LINKS = "fileCopyHardLinks"; //$NON-NLS-1$
+
 	private static final Pattern[] defaultExcludes;
 
 	private static final Object THREADLOCK = new Object();
@@ -425,41 +441,25 @@ public abstract class FileUtils {
 			return;
 		}
 
-		File[] files = source.listFiles();
-		if (files == null || files.length == 0) {
-			// Reason might be that the files is in fact a file or
-			// an empty directory. Both are ok. A missing entry is
-			// not OK.
+		if (!isDir) {
+			// A single file is copied into the destination directory. A
+			// missing entry is not OK.
 			//
 			try {
-				if (isDir)
-					MonitorUtils.complete(monitor);
-				else if (source.isFile())
+				if (source.isFile())
 					copyFile(source, dest, source.getName(), monitor);
 				else
 					throw new FileNotFoundException(source.getAbsolutePath());
 			} catch (IOException e) {
 				throw BuckminsterException.wrap(e);
 			}
+			return;
 		}
 
-		MonitorUtils.begin(monitor, 10 + files.length * 100);
-		try {
-			createDirectory(dest, MonitorUtils.subMonitor(monitor, 10));
-			for (File file : files) {
-				IProgressMonitor subMonitor = MonitorUtils.subMonitor(monitor, 100);
-				if (file.isFile()) {
-					sourceStr = source.toString().replace('\\', '/');
-					if (isMatch(sourceStr, includes, true) && !isMatch(sourceStr, excludes, false))
-						copyFile(file, dest, file.getName(), subMonitor);
-					else
-						MonitorUtils.complete(subMonitor);
-				} else
-					deepCopyUnchecked(file, new File(dest, file.getName()), includes, excludes, subMonitor);
-			}
-		} finally {
-			MonitorUtils.done(monitor);
-		}
+		// Directories are copied in parallel, one task per entry. Files are
+		// copied using FileChannel.transferTo or linked when so configured.
+		//
+		ParallelFileTasks.copy(source, dest, includes, excludes, isFileCopyHardLinks(), monitor);
 	}
 
 	public static void deleteRecursive(File file, IProgressMonitor monitor) throws DeleteException {
@@ -531,6 +531,16 @@ public abstract class FileUtils {
 		return crc32.getValue();
 	}
 
+	/**
+	 * @return The number of threads to use when copying directory trees and
+	 *         extracting zip files. Defaults to the number of available
+	 *         processors.
+	 */
+	public static int getFileCopyThreads() {
+		int threads = BuckminsterPreferences.getNode().getInt(FILE_COPY_THREADS, Runtime.getRuntime().availableProcessors());
+		return threads < 1 ? 1 : threads;
+	}
+
 	public static File getFile(URL url) {
 		if (url == null)
 			return null;
@@ -689,6 +699,16 @@ public abstract class FileUtils {
 		}
 	}
 
+	/**
+	 * @return <code>true</code> if a deep copy should link files rather than
+	 *         copy them when the source and destination are on the same file
+	 *         system. Linked files share their content so this must only be
+	 *         used when neither copy is modified in place.
+	 */
+	public static boolean isFileCopyHardLinks() {
+		return BuckminsterPreferences.getNode().getBoolean(FILE_COPY_HARD_LINKS, false);
+	}
+
 	/**
 	 * Perform an OS sensitive equality comparison between two paths. This is
 	 * very different from the {@link IPath#equals(Object)} since that method is
@@ -882,6 +902,75 @@ public abstract class FileUtils {
 		}
 	}
 
+	/**
+	 * Unzip the contents of the local file <code>source</code> into the
+	 * <code>dest</code> directory. The directories are created first. The
+	 * files are then extracted in parallel using random access to the entries
+	 * of the zip file.
+	 * 
+	 * @param source
+	 *            The zip file.
+	 * @param sourceRelPath
+	 *            Relative path to material inside the source file.
+	 * @param dest
+	 *            The destination directory.
+	 * @param strategy
+	 *            how to handle a destination that is not empty
+	 * @param monitor
+	 *            The progress monitor used during the operation
+	 * @throws CoreException
+	 */
+	public static void unzip(File source, String sourceRelPath, File dest, ConflictResolution strategy, IProgressMonitor monitor)
+			throws CoreException {
+		ZipFile zipFile = null;
+		MonitorUtils.begin(monitor, 600);
+		try {
+			prepareDestination(dest, strategy, MonitorUtils.subMonitor(monitor, 100));
+			zipFile = new ZipFile(source);
+			List<ZipEntry> entries = new ArrayList<ZipEntry>();
+			List<File> targets = new ArrayList<File>();
+			HashSet<File> directories = new HashSet<File>();
+			Enumeration<? extends ZipEntry> allEntries = zipFile.entries();
+			while (allEntries.hasMoreElements()) {
+				ZipEntry entry = allEntries.nextElement();
+				String name = entry.getName();
+				if (sourceRelPath != null) {
+					if (!name.startsWith(sourceRelPath))
+						continue;
+					name = name.substring(sourceRelPath.length() + 1);
+					if (name.length() == 0)
+						continue;
+				}
+
+				File target = new File(dest, name);
+				if (entry.isDirectory()) {
+					directories.add(target);
+					continue;
+				}
+				File parent = target.getParentFile();
+				if (parent != null)
+					directories.add(parent);
+				entries.add(entry);
+				targets.add(target);
+			}
+
+			for (File directory : directories)
+				mkdirs(directory);
+			MonitorUtils.worked(monitor, 50);
+			ParallelFileTasks.unzip(zipFile, entries, targets, 1000, MonitorUtils.subMonitor(monitor, 450));
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			if (zipFile != null) {
+				try {
+					zipFile.close();
+				} catch (IOException e) {
+				}
+			}
+			MonitorUtils.done(monitor);
+		}
+	}
+
 	/**
 	 * Unzip the <code>source</code> contents to a <code>destDir</code>
 	 * directory and give it the name <code>destName</code>. This method assumes
@@ -902,6 +991,15 @@ public abstract class FileUtils {
 	 */
 	public static void unzip(URL source, IConnectContext cctx, String sourceRelPath, File dest, ConflictResolution strategy, IProgressMonitor monitor)
 			throws CoreException {
+		if (dest != null) {
+			// Local files are extracted in parallel
+			File file = getFile(source);
+			if (file != null && file.isFile()) {
+				unzip(file, sourceRelPath, dest, strategy, monitor);
+				return;
+			}
+		}
+
 		InputStream input = null;
 		try {
 			input = DownloadManager.read(source, cctx);
@@ -1000,7 +1098,7 @@ public abstract class FileUtils {
 		}
 	}
 
-	private static boolean isMatch(String fileStr, Pattern[] patterns, boolean whenEmpty) {
+	static boolean isMatch(String fileStr, Pattern[] patterns, boolean whenEmpty) {
 		if (patterns != null) {
 			int idx = patterns.length;
 			if (idx > 0) {
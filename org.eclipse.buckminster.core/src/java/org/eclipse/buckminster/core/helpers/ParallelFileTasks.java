@@ -0,0 +1,344 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.helpers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Copies directory trees and extracts zip files using a shared fork/join
+ * pool. The tasks never touch the progress monitor. They add their share of
+ * the work to a counter that the calling thread reports to the monitor while
+ * it waits. The calling thread also propagates cancellation to the tasks.
+ *
+ * @author Thomas Hallgren
+ */
+class ParallelFileTasks {
+	/**
+	 * Copies a file or a directory. A directory is copied by one task per
+	 * entry. The share of the work that the task represents is divided evenly
+	 * between the entries. Files and directories that are not included, or
+	 * that are excluded, are skipped. The path of a directory is matched with
+	 * a trailing slash.
+	 */
+	private class CopyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final File source;
+
+		private final File dest;
+
+		private final double share;
+
+		CopyTask(File source, File dest, double share) {
+			this.source = source;
+			this.dest = dest;
+			this.share = share;
+		}
+
+		@Override
+		protected void compute() {
+			if (!proceed())
+				return;
+
+			try {
+				boolean isDir = source.isDirectory();
+				String sourceStr = source.toString().replace('\\', '/');
+				if (isDir && sourceStr.charAt(sourceStr.length() - 1) != '/')
+					sourceStr += '/';
+				if (!FileUtils.isMatch(sourceStr, includes, true) || FileUtils.isMatch(sourceStr, excludes, false)) {
+					worked(share);
+					return;
+				}
+
+				if (source.isFile()) {
+					copyFile(source, dest);
+					worked(share);
+					return;
+				}
+				if (!isDir)
+					throw new FileNotFoundException(source.getAbsolutePath());
+
+				mkdirs(dest);
+				File[] files = source.listFiles();
+				if (files == null || files.length == 0) {
+					worked(share);
+					return;
+				}
+
+				double fileShare = share / files.length;
+				List<CopyTask> subTasks = new ArrayList<CopyTask>(files.length);
+				for (File file : files)
+					subTasks.add(new CopyTask(file, new File(dest, file.getName()), fileShare));
+				invokeAll(subTasks);
+			} catch (Throwable e) {
+				failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Extracts a range of entries from a zip file. The range is split in
+	 * halves until it is small enough to be extracted by one task.
+	 */
+	private class UnzipTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private static final int THRESHOLD = 8;
+
+		private final ZipFile zipFile;
+
+		private final List<ZipEntry> entries;
+
+		private final List<File> targets;
+
+		private final int start;
+
+		private final int end;
+
+		private final double entryShare;
+
+		UnzipTask(ZipFile zipFile, List<ZipEntry> entries, List<File> targets, int start, int end, double entryShare) {
+			this.zipFile = zipFile;
+			this.entries = entries;
+			this.targets = targets;
+			this.start = start;
+			this.end = end;
+			this.entryShare = entryShare;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > THRESHOLD) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new UnzipTask(zipFile, entries, targets, start, middle, entryShare), new UnzipTask(zipFile, entries, targets, middle,
+						end, entryShare));
+				return;
+			}
+
+			byte[] buf = null;
+			for (int idx = start; idx < end && proceed(); ++idx) {
+				InputStream input = null;
+				OutputStream output = null;
+				try {
+					if (buf == null)
+						buf = new byte[0x10000];
+					input = zipFile.getInputStream(entries.get(idx));
+					output = new FileOutputStream(targets.get(idx));
+					int count;
+					while ((count = input.read(buf)) > 0)
+						output.write(buf, 0, count);
+					worked(entryShare);
+				} catch (Throwable e) {
+					failed(e);
+				} finally {
+					IOUtils.close(input);
+					IOUtils.close(output);
+				}
+			}
+		}
+	}
+
+	private static final double TICK_SCALE = 1000.0;
+
+	private static ForkJoinPool pool;
+
+	static void copy(File source, File dest, Pattern[] includes, Pattern[] excludes, boolean hardLinks, IProgressMonitor monitor)
+			throws CoreException {
+		ParallelFileTasks tasks = new ParallelFileTasks(includes, excludes, hardLinks && isSameStore(source, dest));
+		tasks.run(tasks.new CopyTask(source, dest, 1000), 1000, monitor);
+	}
+
+	static void unzip(ZipFile zipFile, List<ZipEntry> entries, List<File> targets, int ticks, IProgressMonitor monitor) throws CoreException {
+		int top = entries.size();
+		ParallelFileTasks tasks = new ParallelFileTasks(null, null, false);
+		tasks.run(tasks.new UnzipTask(zipFile, entries, targets, 0, top, top == 0 ? 0 : (double) ticks / top), ticks, monitor);
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		int parallelism = FileUtils.getFileCopyThreads();
+		if (pool == null || pool.getParallelism() != parallelism) {
+			if (pool != null)
+				pool.shutdown();
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	private static boolean isSameStore(File source, File dest) {
+		// The destination might not exist yet so the closest existing
+		// parent is used
+		File existing = dest.getAbsoluteFile();
+		while (existing != null && !existing.exists())
+			existing = existing.getParentFile();
+		if (existing == null)
+			return false;
+
+		try {
+			FileStore sourceStore = Files.getFileStore(source.toPath());
+			return sourceStore.equals(Files.getFileStore(existing.toPath()));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void mkdirs(File directory) throws CoreException {
+		if (!(directory.mkdirs() || directory.isDirectory()))
+			throw new FileUtils.MkdirException(directory);
+	}
+
+	private final Pattern[] includes;
+
+	private final Pattern[] excludes;
+
+	private volatile boolean hardLinks;
+
+	private final AtomicLong progress = new AtomicLong();
+
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	private volatile boolean canceled;
+
+	private ParallelFileTasks(Pattern[] includes, Pattern[] excludes, boolean hardLinks) {
+		this.includes = includes;
+		this.excludes = excludes;
+		this.hardLinks = hardLinks;
+	}
+
+	void copyFile(File source, File destFile) throws IOException {
+		if (hardLinks) {
+			Path target = destFile.toPath();
+			try {
+				Files.deleteIfExists(target);
+				Files.createLink(target, source.toPath());
+				return;
+			} catch (UnsupportedOperationException e) {
+				hardLinks = false;
+			} catch (IOException e) {
+				// Linking is not permitted here. Fall back to copying for the
+				// rest of this copy.
+				hardLinks = false;
+				CorePlugin.getLogger().debug(e, "Unable to link %s, copying instead", source); //$NON-NLS-1$
+			}
+		}
+
+		FileInputStream input = null;
+		FileOutputStream output = null;
+		try {
+			input = new FileInputStream(source);
+			output = new FileOutputStream(destFile);
+			FileChannel in = input.getChannel();
+			FileChannel out = output.getChannel();
+			long size = in.size();
+			long pos = 0;
+			while (pos < size) {
+				long count = in.transferTo(pos, size - pos, out);
+				if (count <= 0)
+					throw new IOException("Incomplete copy!"); //$NON-NLS-1$
+				pos += count;
+			}
+		} finally {
+			IOUtils.close(input);
+			IOUtils.close(output);
+		}
+	}
+
+	void failed(Throwable e) {
+		failure.compareAndSet(null, e);
+	}
+
+	boolean proceed() {
+		return !canceled && failure.get() == null;
+	}
+
+	void worked(double share) {
+		progress.addAndGet((long) (share * TICK_SCALE));
+	}
+
+	private int reportProgress(int reported, IProgressMonitor monitor) {
+		int done = (int) (progress.get() / TICK_SCALE);
+		if (done > reported && monitor != null) {
+			monitor.worked(done - reported);
+			reported = done;
+		}
+		return reported;
+	}
+
+	private void run(ForkJoinTask<?> task, int ticks, IProgressMonitor monitor) throws CoreException {
+		MonitorUtils.begin(monitor, ticks);
+		try {
+			getPool().execute(task);
+			int reported = 0;
+			for (;;) {
+				try {
+					task.get(100, TimeUnit.MILLISECONDS);
+					break;
+				} catch (TimeoutException e) {
+					// A cancelled task stops at its next file. We keep waiting
+					// so that no file is left open when we return.
+					if (monitor != null && monitor.isCanceled())
+						canceled = true;
+				} catch (InterruptedException e) {
+					canceled = true;
+					task.quietlyJoin();
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					failed(e.getCause());
+					break;
+				}
+
+				reported = reportProgress(reported, monitor);
+			}
+			reportProgress(reported, monitor);
+
+			Throwable problem = failure.get();
+			if (problem != null) {
+				if (problem instanceof CoreException)
+					throw (CoreException) problem;
+				if (problem instanceof OperationCanceledException)
+					throw (OperationCanceledException) problem;
+				throw BuckminsterException.wrap(problem);
+			}
+			if (canceled)
+				throw new OperationCanceledException();
+		} finally {
+			MonitorUtils.done(monitor);
+		}
+	}
+}
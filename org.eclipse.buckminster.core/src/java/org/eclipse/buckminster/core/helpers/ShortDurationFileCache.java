@@ -48,17 +48,15 @@ public class ShortDurationFileCache extends TimedHashMap<String, CacheEntry> {
 
 	public InputStream open(Materializer materializer, IProgressMonitor monitor, FileInfoBuilder fileInfo) throws IOException, CoreException {
 		String key = materializer.getKey();
-		CacheEntry ce;
-
-		// Synchronize the actual cache access. Not the whole method. We do not
-		// want everyone to wait for every file.
-		//
-		synchronized (this) {
-			ce = get(key);
-			if (ce == null) {
-				ce = new CacheEntry();
-				put(key, ce);
-			}
+		CacheEntry ce = get(key);
+		if (ce == null) {
+			// The map is concurrent so there's no need to lock it. We do
+			// not want everyone to wait for every file.
+			//
+			ce = new CacheEntry();
+			CacheEntry existing = putIfAbsent(key, ce);
+			if (existing != null)
+				ce = existing;
 		}
 
 		// This call is synchronized and will only do something for the first
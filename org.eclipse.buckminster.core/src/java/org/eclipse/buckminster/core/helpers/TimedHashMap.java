@@ -12,15 +12,30 @@ package org.eclipse.buckminster.core.helpers;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.buckminster.core.CorePlugin;
 
 /**
+ * A concurrent map where entries are evicted when they have been kept alive
+ * for a given time. The expiry is driven by one hashed timing wheel that is
+ * shared by all instances. Scheduling and cancelling an entry only locks the
+ * bucket of the wheel that holds the entry.
+ * <p>
+ * A map can be given a capacity. When a put makes the map exceed its
+ * capacity, the scheduled entry that is closest to expiry is evicted at once.
+ * The wheel is scanned from the current tick so the victim is found without
+ * ordering all entries. Entries that are not scheduled are never evicted.
+ * </p>
+ *
  * @author thhal
  */
 public class TimedHashMap<K, V> implements Map<K, V> {
@@ -28,10 +43,175 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 		void evict(Entry<EK, EV> entry);
 	}
 
-	final class TimedEntry extends TimerTask implements Map.Entry<K, V> {
+	/**
+	 * A task that can be scheduled on the {@link TimingWheel}. All fields are
+	 * guarded by the monitor of the task.
+	 */
+	abstract static class WheelTask {
+		long deadline;
+
+		int bucket = -1;
+
+		abstract void expire();
+
+		/**
+		 * @return The object that scheduled this task
+		 */
+		abstract Object getOwner();
+	}
+
+	/**
+	 * A hashed timing wheel. Each bucket holds the tasks whose deadline maps
+	 * to the bucket. Tasks that are due further away than one revolution stay
+	 * in their bucket until the revolution of their deadline comes.
+	 */
+	static final class TimingWheel implements Runnable {
+		static final long TICK_MILLIS = 100;
+
+		static final int WHEEL_SIZE = 512;
+
+		private static final int MASK = WHEEL_SIZE - 1;
+
+		private final List<Set<WheelTask>> buckets = new ArrayList<Set<WheelTask>>(WHEEL_SIZE);
+
+		private final long startTime = System.nanoTime();
+
+		private long processedTick;
+
+		private Thread thread;
+
+		TimingWheel() {
+			for (int idx = 0; idx < WHEEL_SIZE; ++idx)
+				buckets.add(new HashSet<WheelTask>());
+		}
+
+		@Override
+		public void run() {
+			for (;;) {
+				long now = currentTick();
+				while (processedTick < now)
+					expire(++processedTick);
+
+				try {
+					Thread.sleep(TICK_MILLIS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Finds the task of <code>owner</code> that is closest to expiry. The
+		 * buckets are scanned in tick order starting with the current tick so
+		 * the scan stops at the first bucket that holds a task of
+		 * <code>owner</code> that is due in the current revolution. The task
+		 * is not cancelled.
+		 *
+		 * @return The task or <code>null</code> if <code>owner</code> has no
+		 *         scheduled tasks
+		 */
+		WheelTask findEarliest(Object owner) {
+			// A task stays in its bucket while it is scheduled and its
+			// deadline is not changed until it has been removed, so the
+			// deadline can be read while holding the bucket lock
+			long tick = currentTick();
+			WheelTask later = null;
+			for (int n = 0; n < WHEEL_SIZE; ++n) {
+				long due = tick + n;
+				Set<WheelTask> bucket = buckets.get((int) (due & MASK));
+				synchronized (bucket) {
+					for (WheelTask task : bucket) {
+						if (task.getOwner() != owner)
+							continue;
+						if (task.deadline <= due)
+							return task;
+						if (later == null || task.deadline < later.deadline)
+							later = task;
+					}
+				}
+			}
+			return later;
+		}
+
+		boolean cancel(WheelTask task) {
+			synchronized (task) {
+				int idx = task.bucket;
+				if (idx < 0)
+					return false;
+
+				task.bucket = -1;
+				Set<WheelTask> bucket = buckets.get(idx);
+				synchronized (bucket) {
+					return bucket.remove(task);
+				}
+			}
+		}
+
+		void schedule(WheelTask task, long delayMillis) {
+			long ticks = (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+			if (ticks < 1)
+				ticks = 1;
+
+			synchronized (task) {
+				cancel(task);
+				task.deadline = currentTick() + ticks;
+				int idx = (int) (task.deadline & MASK);
+				task.bucket = idx;
+				Set<WheelTask> bucket = buckets.get(idx);
+				synchronized (bucket) {
+					bucket.add(task);
+				}
+			}
+			start();
+		}
+
+		private long currentTick() {
+			return (System.nanoTime() - startTime) / (TICK_MILLIS * 1000000);
+		}
+
+		private void expire(long tick) {
+			int idx = (int) (tick & MASK);
+			Set<WheelTask> bucket = buckets.get(idx);
+			List<WheelTask> candidates;
+			synchronized (bucket) {
+				if (bucket.isEmpty())
+					return;
+				candidates = new ArrayList<WheelTask>(bucket);
+			}
+
+			for (WheelTask task : candidates) {
+				synchronized (task) {
+					// The task might have been cancelled or rescheduled since
+					// the candidates were collected
+					if (task.bucket != idx || task.deadline > tick)
+						continue;
+					task.bucket = -1;
+					synchronized (bucket) {
+						bucket.remove(task);
+					}
+				}
+				try {
+					task.expire();
+				} catch (Throwable t) {
+					CorePlugin.getLogger().error(t, t.getMessage());
+				}
+			}
+		}
+
+		private synchronized void start() {
+			if (thread == null) {
+				processedTick = currentTick();
+				thread = new Thread(this, "TimedHashMap eviction"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	final class TimedEntry extends WheelTask implements Map.Entry<K, V> {
 		private final K key;
 
-		private V value;
+		private volatile V value;
 
 		TimedEntry(K key, V value) {
 			this.key = key;
@@ -49,88 +229,123 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 		}
 
 		@Override
-		public void run() {
-			TimedEntry val = null;
-			synchronized (map) {
-				val = map.remove(key);
-			}
-			if (val != null && evictionPolicy != null)
-				evictionPolicy.evict(val);
+		public V setValue(V newValue) {
+			V old = value;
+			wheel.cancel(this);
+			if (evictionPolicy != null)
+				evictionPolicy.evict(this);
+			value = newValue;
+			wheel.schedule(this, keepAliveTime);
+			return old;
 		}
 
 		@Override
-		public V setValue(V value) {
-			V old = value;
-			this.remove();
-			this.value = value;
-			timer.schedule(this, keepAliveTime);
-			return old;
+		Object getOwner() {
+			return TimedHashMap.this;
+		}
+
+		@Override
+		void expire() {
+			if (map.remove(key, this)) {
+				evictionCount.incrementAndGet();
+				if (evictionPolicy != null)
+					evictionPolicy.evict(this);
+			}
 		}
 
 		void remove() {
-			this.cancel();
+			wheel.cancel(this);
 			if (evictionPolicy != null)
 				evictionPolicy.evict(this);
 		}
 	}
 
-	private static final Timer timer = new Timer();
+	private static final TimingWheel wheel = new TimingWheel();
 
 	private final long keepAliveTime;
 
+	private final int capacity;
+
 	private final EvictionPolicy<K, V> evictionPolicy;
 
-	private final HashMap<K, TimedEntry> map = new HashMap<K, TimedEntry>();
+	private final ConcurrentHashMap<K, TimedEntry> map = new ConcurrentHashMap<K, TimedEntry>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
 
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param keepAliveTime
+	 *            The number of milliseconds that an entry is kept once it has
+	 *            been scheduled
+	 * @param evictionPolicy
+	 *            The policy that is informed of evicted entries, or
+	 *            <code>null</code>
+	 */
 	public TimedHashMap(long keepAliveTime, EvictionPolicy<K, V> evictionPolicy) {
+		this(keepAliveTime, Integer.MAX_VALUE, evictionPolicy);
+	}
+
+	/**
+	 * @param keepAliveTime
+	 *            The number of milliseconds that an entry is kept once it has
+	 *            been scheduled
+	 * @param capacity
+	 *            The number of entries that the map can hold before the
+	 *            scheduled entry that is closest to expiry is evicted
+	 * @param evictionPolicy
+	 *            The policy that is informed of evicted entries, or
+	 *            <code>null</code>
+	 */
+	public TimedHashMap(long keepAliveTime, int capacity, EvictionPolicy<K, V> evictionPolicy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive"); //$NON-NLS-1$
 		this.keepAliveTime = keepAliveTime;
+		this.capacity = capacity;
 		this.evictionPolicy = evictionPolicy;
 	}
 
 	public void cancel(K key) {
 		TimedEntry entry = map.get(key);
 		if (entry != null)
-			entry.cancel();
+			wheel.cancel(entry);
 	}
 
 	@Override
 	public void clear() {
-		synchronized (map) {
-			for (TimedEntry entry : map.values())
+		for (TimedEntry entry : map.values())
+			if (map.remove(entry.getKey(), entry))
 				entry.remove();
-			map.clear();
-		}
 	}
 
 	@Override
 	public boolean containsKey(Object key) {
-		synchronized (map) {
-			return map.containsKey(key);
-		}
+		return key != null && map.containsKey(key);
 	}
 
 	@Override
 	public boolean containsValue(Object value) {
-		synchronized (map) {
-			for (Entry<K, V> te : map.values()) {
-				Object tv = te.getValue();
-				if (value == null) {
-					if (tv == null)
-						return true;
-				} else if (value.equals(tv))
+		for (Entry<K, V> te : map.values()) {
+			Object tv = te.getValue();
+			if (value == null) {
+				if (tv == null)
 					return true;
-			}
+			} else if (value.equals(tv))
+				return true;
 		}
 		return false;
 	}
 
 	@Override
 	public Set<Entry<K, V>> entrySet() {
-		final Iterator<TimedEntry> entries = map.values().iterator();
 		return new AbstractSet<Entry<K, V>>() {
 			@Override
 			public Iterator<Entry<K, V>> iterator() {
+				final Iterator<TimedEntry> entries = map.values().iterator();
 				return new Iterator<Entry<K, V>>() {
+					private TimedEntry current;
 
 					@Override
 					public boolean hasNext() {
@@ -139,12 +354,14 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 
 					@Override
 					public Entry<K, V> next() {
-						return entries.next();
+						current = entries.next();
+						return current;
 					}
 
 					@Override
 					public void remove() {
 						entries.remove();
+						wheel.cancel(current);
 					}
 				};
 			}
@@ -158,10 +375,42 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 
 	@Override
 	public V get(Object key) {
-		synchronized (map) {
-			Entry<K, V> te = map.get(key);
-			return te == null ? null : te.getValue();
+		Entry<K, V> te = key == null ? null : map.get(key);
+		if (te == null) {
+			missCount.incrementAndGet();
+			return null;
 		}
+		hitCount.incrementAndGet();
+		return te.getValue();
+	}
+
+	/**
+	 * @return The number of entries that the map can hold
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The number of entries that has been evicted because they
+	 *         expired or because the capacity was exceeded
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return The number of calls to {@link #get(Object)} that found an entry
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return The number of calls to {@link #get(Object)} that found no entry
+	 */
+	public long getMissCount() {
+		return missCount.get();
 	}
 
 	@Override
@@ -176,21 +425,15 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 
 	@Override
 	public V put(K key, V value) {
-		V oldVal;
 		TimedEntry entry = new TimedEntry(key, value);
-		synchronized (map) {
-			TimedEntry oldEntry = map.get(key);
-
-			if (oldEntry != null) {
-				oldVal = oldEntry.getValue();
-				oldEntry.remove();
-			} else
-				oldVal = null;
-
-			map.put(key, entry);
-		}
-		if (scheduleOnPut())
-			timer.schedule(entry, keepAliveTime);
+		TimedEntry oldEntry = map.put(key, entry);
+		V oldVal;
+		if (oldEntry != null) {
+			oldVal = oldEntry.getValue();
+			oldEntry.remove();
+		} else
+			oldVal = null;
+		added(entry);
 		return oldVal;
 	}
 
@@ -200,22 +443,36 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 			this.put(entry.getKey(), entry.getValue());
 	}
 
+	/**
+	 * Puts <code>value</code> in the map unless the map already has a value
+	 * for <code>key</code>.
+	 *
+	 * @return The value that was already in the map or <code>null</code> if
+	 *         <code>value</code> was added
+	 */
+	public V putIfAbsent(K key, V value) {
+		TimedEntry entry = new TimedEntry(key, value);
+		TimedEntry oldEntry = map.putIfAbsent(key, entry);
+		if (oldEntry != null)
+			return oldEntry.getValue();
+		added(entry);
+		return null;
+	}
+
 	@Override
 	public V remove(Object key) {
-		synchronized (map) {
-			TimedEntry te = map.remove(key);
-			if (te == null)
-				return null;
-			V oldVal = te.getValue();
-			te.remove();
-			return oldVal;
-		}
+		TimedEntry te = key == null ? null : map.remove(key);
+		if (te == null)
+			return null;
+		V oldVal = te.getValue();
+		te.remove();
+		return oldVal;
 	}
 
 	public void schedule(K key) {
 		TimedEntry entry = map.get(key);
 		if (entry != null)
-			timer.schedule(entry, keepAliveTime);
+			wheel.schedule(entry, keepAliveTime);
 	}
 
 	public boolean scheduleOnPut() {
@@ -229,11 +486,12 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 
 	@Override
 	public Collection<V> values() {
-		final Iterator<TimedEntry> entries = map.values().iterator();
 		return new AbstractCollection<V>() {
 			@Override
 			public Iterator<V> iterator() {
+				final Iterator<TimedEntry> entries = map.values().iterator();
 				return new Iterator<V>() {
+					private TimedEntry current;
 
 					@Override
 					public boolean hasNext() {
@@ -242,12 +500,14 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 
 					@Override
 					public V next() {
-						return entries.next().getValue();
+						current = entries.next();
+						return current.getValue();
 					}
 
 					@Override
 					public void remove() {
 						entries.remove();
+						wheel.cancel(current);
 					}
 				};
 			}
@@ -258,4 +518,30 @@ public class TimedHashMap<K, V> implements Map<K, V> {
 			}
 		};
 	}
+
+	private void added(TimedEntry entry) {
+		if (scheduleOnPut())
+			wheel.schedule(entry, keepAliveTime);
+		if (capacity != Integer.MAX_VALUE)
+			evictOverflow();
+	}
+
+	private void evictOverflow() {
+		// The size of a ConcurrentHashMap is kept in counters so this check
+		// does not depend on the number of entries
+		while (map.size() > capacity) {
+			@SuppressWarnings("unchecked")
+			TimedEntry victim = (TimedEntry) wheel.findEarliest(this);
+			if (victim == null)
+				// Entries that are not scheduled are in use
+				return;
+
+			if (map.remove(victim.getKey(), victim)) {
+				evictionCount.incrementAndGet();
+				victim.remove();
+			} else
+				// Removed by someone else. Make sure it is not found again.
+				wheel.cancel(victim);
+		}
+	}
 }
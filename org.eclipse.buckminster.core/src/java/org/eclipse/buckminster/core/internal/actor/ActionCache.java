@@ -0,0 +1,390 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.internal.actor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.KeyConstants;
+import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.common.model.ExpandingProperties;
+import org.eclipse.buckminster.core.cspec.PathGroup;
+import org.eclipse.buckminster.core.cspec.model.Action;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.mspec.ConflictResolution;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * A content addressed cache for the products of actions. The key of an entry
+ * is a digest computed from the identity of the action, its expanded
+ * properties and actor properties, and the names and contents of all files
+ * that it has as prerequisites. Since file timestamps are not part of the key,
+ * an action that is performed in a fresh checkout can have its products
+ * restored from the cache instead of running its actor. Paths below the
+ * component location and the output and temp roots are digested relative to
+ * those locations so that the key is the same wherever the component was
+ * checked out.
+ * <p>
+ * The cache is enabled by setting the {@link #ACTION_CACHE_FOLDER} preference.
+ * When the cache holds more than {@link #ACTION_CACHE_MAX_ENTRIES} entries,
+ * the least recently used entries are evicted.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class ActionCache {
+	public static final String ACTION_CACHE_FOLDER = "actionCacheFolder"; //$NON-NLS-1$
+
+	public static final String ACTION_CACHE_MAX_ENTRIES = "actionCacheMaxEntries"; //$NON-NLS-1$
+
+	public static final int ACTION_CACHE_MAX_ENTRIES_DEFAULT = 500;
+
+	private static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+
+	private static final String COMPLETE_MARKER = ".complete"; //$NON-NLS-1$
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * Returns the cache that is configured by the preferences or
+	 * <code>null</code> if no cache has been configured.
+	 *
+	 * @return the configured cache or <code>null</code>
+	 */
+	public static ActionCache getConfigured() {
+		String folder = BuckminsterPreferences.getNode().get(ACTION_CACHE_FOLDER, null);
+		if (folder == null)
+			return null;
+		folder = folder.trim();
+		if (folder.length() == 0)
+			return null;
+		int maxEntries = BuckminsterPreferences.getNode().getInt(ACTION_CACHE_MAX_ENTRIES, ACTION_CACHE_MAX_ENTRIES_DEFAULT);
+		return new ActionCache(new File(folder), maxEntries);
+	}
+
+	private static void addLocation(List<String[]> locations, Object location, String ref) {
+		if (location == null)
+			return;
+		IPath path = location instanceof IPath ? (IPath) location : Path.fromOSString(location.toString());
+		if (!path.isAbsolute() || path.segmentCount() == 0)
+			return;
+		path = path.removeTrailingSeparator();
+		locations.add(new String[] { path.toOSString(), ref });
+		if (!path.toOSString().equals(path.toPortableString()))
+			locations.add(new String[] { path.toPortableString(), ref });
+	}
+
+	private static void digestFiles(MessageDigest md, PathGroup[] pathGroups, byte[] buf, List<String[]> locations) throws IOException {
+		for (PathGroup pathGroup : pathGroups) {
+			Map<String, Long> relFiles = new HashMap<String, Long>();
+			pathGroup.appendRelativeFiles(relFiles);
+			File baseDir = pathGroup.getBase().toFile();
+			for (String relFile : new TreeMap<String, Long>(relFiles).keySet()) {
+				digestString(md, relativize(relFile, locations).replace('\\', '/'));
+				File file = new File(relFile);
+				if (!file.isAbsolute())
+					file = new File(baseDir, relFile);
+				InputStream input = new FileInputStream(file);
+				try {
+					int len;
+					while ((len = input.read(buf)) > 0)
+						md.update(buf, 0, len);
+				} finally {
+					IOUtils.close(input);
+				}
+			}
+		}
+	}
+
+	private static void digestProperties(MessageDigest md, Map<String, String> props, Map<String, ? extends Object> scope, List<String[]> locations)
+			throws UnsupportedEncodingException {
+		for (Map.Entry<String, String> entry : new TreeMap<String, String>(props).entrySet()) {
+			digestString(md, entry.getKey());
+			digestString(md, relativize(ExpandingProperties.expand(scope, entry.getValue(), 0), locations));
+		}
+	}
+
+	private static void digestString(MessageDigest md, String str) throws UnsupportedEncodingException {
+		if (str != null)
+			md.update(str.getBytes("UTF-8")); //$NON-NLS-1$
+		md.update((byte) 0);
+	}
+
+	/**
+	 * Returns the locations that differ between checkouts, longest first so
+	 * that a location within another location is replaced first. Each element
+	 * is the location and the property reference that replaces it.
+	 */
+	private static List<String[]> getLocations(PerformContext ctx, Map<String, ? extends Object> scope) throws CoreException {
+		List<String[]> locations = new ArrayList<String[]>();
+		addLocation(locations, ctx.getComponentLocation(), KeyConstants.ACTION_HOME_REF);
+		addLocation(locations, scope.get(KeyConstants.ACTION_OUTPUT_ROOT), "${" + KeyConstants.ACTION_OUTPUT_ROOT + '}'); //$NON-NLS-1$
+		addLocation(locations, scope.get(KeyConstants.ACTION_TEMP_ROOT), KeyConstants.ACTION_TEMPROOT_REF);
+		Collections.sort(locations, new Comparator<String[]>() {
+			@Override
+			public int compare(String[] a, String[] b) {
+				return b[0].length() - a[0].length();
+			}
+		});
+		return locations;
+	}
+
+	private static String relativize(String str, List<String[]> locations) {
+		if (str != null)
+			for (String[] location : locations)
+				str = str.replace(location[0], location[1]);
+		return str;
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int idx = 0; idx < bytes.length; ++idx) {
+			int b = bytes[idx] & 0xff;
+			chars[idx * 2] = HEX_DIGITS[b >> 4];
+			chars[idx * 2 + 1] = HEX_DIGITS[b & 0xf];
+		}
+		return new String(chars);
+	}
+
+	private final File root;
+
+	private final int maxEntries;
+
+	public ActionCache(File root, int maxEntries) {
+		this.root = root;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Compute the key for the action in the given context.
+	 *
+	 * @param ctx
+	 *            The context of the action
+	 * @return The key or <code>null</code> if the action produces nothing that
+	 *         can be cached
+	 * @throws CoreException
+	 */
+	public String computeKey(PerformContext ctx) throws CoreException {
+		Action action = ctx.getAction();
+		if (action.isAlways() || action.isInternal())
+			return null;
+
+		PathGroup[] products = action.getPathGroups(ctx, null);
+		if (products.length == 0)
+			return null;
+
+		try {
+			MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			digestString(md, action.getCSpec().getComponentIdentifier().toString());
+			digestString(md, action.getName());
+			digestString(md, action.getActorName());
+
+			Map<String, ? extends Object> scope = ctx.getProperties();
+			List<String[]> locations = getLocations(ctx, scope);
+			digestProperties(md, action.getProperties(), scope, locations);
+			digestProperties(md, action.getActorProperties(), scope, locations);
+
+			// The layout of the products is part of the key since a restore
+			// must be able to put everything back where it belongs. Products
+			// outside of the product base cannot be stored so an action that
+			// has such products is not cached.
+			//
+			for (PathGroup product : products) {
+				if (!product.getBase().isAbsolute())
+					return null;
+				digestString(md, relativize(product.getBase().toPortableString(), locations));
+				for (IPath path : product.getPaths()) {
+					if (path.isAbsolute())
+						return null;
+					digestString(md, path.toPortableString());
+				}
+				md.update((byte) 1);
+			}
+
+			Map<String, PathGroup[]> prereqs = new TreeMap<String, PathGroup[]>();
+			ctx.addPrerequisitePathGroups(prereqs);
+			byte[] buf = new byte[0x10000];
+			for (Map.Entry<String, PathGroup[]> entry : prereqs.entrySet()) {
+				digestString(md, entry.getKey());
+				digestFiles(md, entry.getValue(), buf, locations);
+			}
+			return toHex(md.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw BuckminsterException.wrap(e);
+		} catch (IOException e) {
+			// A prerequisite that cannot be read is not something
+			// that we can cache.
+			CorePlugin.getLogger().debug(e, "Unable to compute cache key for %s", action); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/**
+	 * Restore the products of the action from the cache entry denoted by
+	 * <code>key</code>.
+	 *
+	 * @return <code>true</code> if the products were restored,
+	 *         <code>false</code> if the cache had no such entry.
+	 */
+	public boolean restore(String key, PerformContext ctx, IProgressMonitor monitor) throws CoreException {
+		File entry = getEntryFolder(key);
+		File marker = new File(entry, COMPLETE_MARKER);
+		if (!marker.isFile()) {
+			MonitorUtils.complete(monitor);
+			return false;
+		}
+
+		// The time of the marker tells eviction when the entry was last used
+		marker.setLastModified(System.currentTimeMillis());
+
+		PathGroup[] products = ctx.getAction().getPathGroups(ctx, null);
+		MonitorUtils.begin(monitor, products.length * 100);
+		try {
+			for (int idx = 0; idx < products.length; ++idx) {
+				File groupFolder = new File(entry, Integer.toString(idx));
+				if (groupFolder.isDirectory())
+					FileUtils.deepCopy(groupFolder, products[idx].getBase().toFile(), ConflictResolution.UPDATE, MonitorUtils.subMonitor(monitor, 100));
+				else
+					MonitorUtils.worked(monitor, 100);
+			}
+		} finally {
+			MonitorUtils.done(monitor);
+		}
+
+		Logger logger = CorePlugin.getLogger();
+		if (logger.isDebugEnabled())
+			logger.debug(NLS.bind(Messages.Action_0_restored_from_cache_entry_1, ctx.getAction(), key));
+		return true;
+	}
+
+	/**
+	 * Store the products of the action in the cache entry denoted by
+	 * <code>key</code>. The entry is first written to a temporary folder and
+	 * then renamed so that other processes that share the cache never see a
+	 * partially written entry.
+	 */
+	public void store(String key, PerformContext ctx, IProgressMonitor monitor) throws CoreException {
+		File entry = getEntryFolder(key);
+		if (new File(entry, COMPLETE_MARKER).isFile()) {
+			MonitorUtils.complete(monitor);
+			return;
+		}
+
+		File tmpEntry = new File(entry.getParentFile(), key + '-' + UUID.randomUUID());
+		PathGroup[] products = ctx.getAction().getPathGroups(ctx, null);
+		MonitorUtils.begin(monitor, products.length * 100 + 10);
+		try {
+			FileUtils.createDirectory(tmpEntry, MonitorUtils.subMonitor(monitor, 5));
+			for (int idx = 0; idx < products.length; ++idx) {
+				PathGroup product = products[idx];
+				Map<String, Long> relFiles = new HashMap<String, Long>();
+				product.appendRelativeFiles(relFiles);
+				File groupFolder = new File(tmpEntry, Integer.toString(idx));
+				File baseDir = product.getBase().toFile();
+				IProgressMonitor groupMonitor = MonitorUtils.subMonitor(monitor, 100);
+				MonitorUtils.begin(groupMonitor, relFiles.size());
+				for (String relFile : relFiles.keySet()) {
+					File source = new File(baseDir, relFile);
+					File dest = new File(groupFolder, relFile);
+					FileUtils.copyFile(source, dest.getParentFile(), dest.getName(), MonitorUtils.subMonitor(groupMonitor, 1));
+				}
+				MonitorUtils.done(groupMonitor);
+			}
+			if (!new File(tmpEntry, COMPLETE_MARKER).createNewFile() || !tmpEntry.renameTo(entry))
+				// Some other process stored the same entry in parallel
+				FileUtils.deleteRecursive(tmpEntry, MonitorUtils.subMonitor(monitor, 5));
+			else
+				evict(entry, MonitorUtils.subMonitor(monitor, 5));
+		} catch (IOException e) {
+			FileUtils.deleteRecursive(tmpEntry, new NullProgressMonitor());
+			throw BuckminsterException.wrap(e);
+		} finally {
+			MonitorUtils.done(monitor);
+		}
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache holds no more
+	 * than the maximum number of entries. The entry that was just stored is
+	 * never evicted. An entry is renamed before it is deleted so that no one
+	 * restores from a partially deleted entry.
+	 */
+	private void evict(File stored, IProgressMonitor monitor) throws CoreException {
+		final Map<File, Long> lastUsed = new HashMap<File, Long>();
+		File[] shards = root.listFiles();
+		if (shards != null) {
+			for (File shard : shards) {
+				File[] entries = shard.listFiles();
+				if (entries == null)
+					continue;
+				for (File entry : entries) {
+					File marker = new File(entry, COMPLETE_MARKER);
+					if (marker.isFile() && !entry.equals(stored))
+						lastUsed.put(entry, Long.valueOf(marker.lastModified()));
+				}
+			}
+		}
+
+		int excess = lastUsed.size() + 1 - maxEntries;
+		if (excess <= 0) {
+			MonitorUtils.complete(monitor);
+			return;
+		}
+
+		List<File> entries = new ArrayList<File>(lastUsed.keySet());
+		Collections.sort(entries, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return lastUsed.get(a).compareTo(lastUsed.get(b));
+			}
+		});
+
+		MonitorUtils.begin(monitor, excess);
+		try {
+			for (int idx = 0; idx < excess; ++idx) {
+				File entry = entries.get(idx);
+				File doomed = new File(entry.getParentFile(), entry.getName() + '-' + UUID.randomUUID());
+				if (entry.renameTo(doomed))
+					FileUtils.deleteRecursive(doomed, MonitorUtils.subMonitor(monitor, 1));
+				else
+					MonitorUtils.worked(monitor, 1);
+			}
+		} finally {
+			MonitorUtils.done(monitor);
+		}
+		CorePlugin.getLogger().debug("Evicted %d entries from action cache %s", Integer.valueOf(excess), root); //$NON-NLS-1$
+	}
+
+	private File getEntryFolder(String key) {
+		return new File(new File(root, key.substring(0, 2)), key);
+	}
+}
@@ -42,7 +42,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 
 	private final ArrayList<IPath> scheduledRemovals = new ArrayList<IPath>();
 
-	private final Map<UUID, Object> invocationCache = new HashMap<UUID, Object>();
+	private final Map<UUID, Object> invocationCache = Collections.synchronizedMap(new HashMap<UUID, Object>());
 
 	private final HashSet<Action> actionsPerformed = new HashSet<Action>();
 
@@ -52,7 +52,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 
 	private final boolean quietExecution;
 
-	private boolean workspaceRefreshPending;
+	private volatile boolean workspaceRefreshPending;
 
 	private IStatus status;
 
@@ -78,7 +78,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 	}
 
 	@Override
-	public void addProperty(String key, Object value) {
+	public synchronized void addProperty(String key, Object value) {
 		@SuppressWarnings("unchecked")
 		Map<String, Object> userProps = (Map<String, Object>) super.getProperties();
 		userProps.put(key, value);
@@ -92,7 +92,10 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 		ExpandingProperties<Object> allProps = new ExpandingProperties<Object>(mapSize);
 		allProps.putAll(globalProps, true);
 		allProps.putAll(actionProps, true);
-		allProps.putAll(super.getProperties());
+		synchronized (this) {
+			// Other actions may add properties concurrently
+			allProps.putAll(super.getProperties());
+		}
 		attribute.addDynamicProperties(allProps);
 		return allProps;
 	}
@@ -144,7 +147,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 	}
 
 	@Override
-	public void scheduleRemoval(IPath path) {
+	public synchronized void scheduleRemoval(IPath path) {
 		if (!path.isAbsolute())
 			throw new IllegalArgumentException(NLS.bind(Messages.Only_absolute_paths_can_be_scheduled_for_removal_0, path.toOSString()));
 
@@ -168,12 +171,14 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 	 * 
 	 * @param action
 	 *            The action to add.
+	 * @return <code>true</code> if the action was added or
+	 *         <code>false</code> if it had been added already
 	 */
-	void addPerformedAction(Action action) {
-		actionsPerformed.add(action);
+	synchronized boolean addPerformedAction(Action action) {
+		return actionsPerformed.add(action);
 	}
 
-	boolean hasExecutedKind(int kind) {
+	synchronized boolean hasExecutedKind(int kind) {
 		return executedEclipseKinds.contains(new Integer(kind));
 	}
 
@@ -185,7 +190,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 	 *            The action to check
 	 * @return <code>true</code> if the action has been added.
 	 */
-	boolean hasPerformedAction(IAction action) {
+	synchronized boolean hasPerformedAction(IAction action) {
 		return actionsPerformed.contains(action);
 	}
 
@@ -201,7 +206,7 @@ public class GlobalContext extends ModelCache implements IGlobalContext {
 		return workspaceRefreshPending;
 	}
 
-	void kindWasExecuted(int kind) {
+	synchronized void kindWasExecuted(int kind) {
 		Integer objKind = new Integer(kind);
 		if (!executedEclipseKinds.contains(objKind))
 			executedEclipseKinds.add(objKind);
@@ -0,0 +1,254 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.internal.actor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.cspec.model.Action;
+import org.eclipse.buckminster.core.internal.actor.PerformManager.ActionInvocation;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.DaemonThreadFactory;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Performs a list of action invocations on a bounded pool of worker threads.
+ * The list must be in an order that is valid for sequential execution. An
+ * invocation is started as soon as all of its predecessors have completed.
+ * Predecessor edges that point forward in the list are ignored which
+ * guarantees that the graph is acyclic. Barrier invocations wait for all
+ * earlier invocations and block all later ones.
+ *
+ * @author Thomas Hallgren
+ */
+class ParallelActionExecutor {
+	/**
+	 * Progress monitor given to the workers. Progress is reported by the
+	 * calling thread when an invocation completes so the only thing this
+	 * monitor propagates is cancellation.
+	 */
+	private class WorkerMonitor extends NullProgressMonitor {
+		@Override
+		public boolean isCanceled() {
+			return canceled || super.isCanceled();
+		}
+	}
+
+	private static class InvocationResult {
+		final int index;
+
+		final IStatus status;
+
+		final Throwable problem;
+
+		InvocationResult(int index, IStatus status, Throwable problem) {
+			this.index = index;
+			this.status = status;
+			this.problem = problem;
+		}
+	}
+
+	private final PerformManager performManager;
+
+	private final GlobalContext globalCtx;
+
+	private final List<ActionInvocation> invocations;
+
+	private final int maxThreads;
+
+	private final int[] pendingCounts;
+
+	private final List<List<Integer>> successors;
+
+	private volatile boolean canceled;
+
+	ParallelActionExecutor(PerformManager performManager, GlobalContext globalCtx, List<ActionInvocation> invocations, int maxThreads) {
+		this.performManager = performManager;
+		this.globalCtx = globalCtx;
+		this.invocations = invocations;
+		this.maxThreads = maxThreads;
+
+		int top = invocations.size();
+		pendingCounts = new int[top];
+		successors = new ArrayList<List<Integer>>(top);
+		for (int idx = 0; idx < top; ++idx)
+			successors.add(new ArrayList<Integer>());
+		buildGraph();
+	}
+
+	void run(MultiStatus retStatus, IProgressMonitor monitor) throws CoreException {
+		int top = invocations.size();
+		LinkedList<Integer> ready = new LinkedList<Integer>();
+		for (int idx = 0; idx < top; ++idx)
+			if (pendingCounts[idx] == 0)
+				ready.add(Integer.valueOf(idx));
+
+		ExecutorService pool = Executors.newFixedThreadPool(maxThreads, new DaemonThreadFactory("Buckminster perform")); //$NON-NLS-1$
+
+		CompletionService<InvocationResult> completionService = new ExecutorCompletionService<InvocationResult>(pool);
+		long start = System.currentTimeMillis();
+		int running = 0;
+		int performed = 0;
+		boolean failed = false;
+		try {
+			for (;;) {
+				while (!(failed || canceled || ready.isEmpty()) && running < maxThreads) {
+					submit(completionService, ready.removeFirst().intValue());
+					++running;
+				}
+				if (running == 0)
+					break;
+
+				Future<InvocationResult> future;
+				while ((future = completionService.poll(200, TimeUnit.MILLISECONDS)) == null)
+					if (monitor.isCanceled())
+						canceled = true;
+				--running;
+
+				InvocationResult result = future.get();
+				MonitorUtils.worked(monitor, 100);
+				++performed;
+
+				if (result.problem instanceof OperationCanceledException) {
+					canceled = true;
+					continue;
+				}
+
+				IStatus status = result.problem == null ? result.status : toStatus(result.problem);
+				switch (status.getSeverity()) {
+					case IStatus.WARNING:
+					case IStatus.INFO:
+						retStatus.add(status);
+						// fall through
+
+					case IStatus.OK:
+						for (Integer successor : successors.get(result.index))
+							if (--pendingCounts[successor.intValue()] == 0)
+								ready.add(successor);
+						continue;
+
+					case IStatus.CANCEL:
+						canceled = true;
+						continue;
+
+					case IStatus.ERROR:
+						retStatus.add(status);
+						failed = true;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			// Should never happen since the callable catches everything
+			throw BuckminsterException.wrap(e.getCause());
+		} finally {
+			canceled = true;
+			pool.shutdownNow();
+		}
+
+		if (monitor.isCanceled() || !failed && performed < top)
+			throw new OperationCanceledException();
+
+		CorePlugin.getLogger().info(
+				NLS.bind(Messages.Performed_0_actions_using_1_threads_in_2_ms,
+						new Object[] { Integer.valueOf(performed), Integer.valueOf(maxThreads), Long.valueOf(System.currentTimeMillis() - start) }));
+	}
+
+	private void addEdge(int from, int to) {
+		List<Integer> succ = successors.get(from);
+		Integer toObj = Integer.valueOf(to);
+		if (!succ.contains(toObj)) {
+			succ.add(toObj);
+			++pendingCounts[to];
+		}
+	}
+
+	private void buildGraph() {
+		// An action may have been replaced in the list after the predecessor
+		// sets were computed (when it was discovered to be a generator) so
+		// invocations of actions are matched using the action.
+		//
+		int top = invocations.size();
+		Map<ActionInvocation, Integer> indexes = new IdentityHashMap<ActionInvocation, Integer>(top);
+		Map<Action, Integer> actionIndexes = new IdentityHashMap<Action, Integer>(top);
+		for (int idx = 0; idx < top; ++idx) {
+			ActionInvocation invocation = invocations.get(idx);
+			Integer idxObj = Integer.valueOf(idx);
+			indexes.put(invocation, idxObj);
+			Action action = invocation.getAction();
+			if (action != null)
+				actionIndexes.put(action, idxObj);
+		}
+
+		int lastBarrier = -1;
+		for (int idx = 0; idx < top; ++idx) {
+			ActionInvocation invocation = invocations.get(idx);
+			if (invocation.isBarrier()) {
+				for (int pred = lastBarrier + 1; pred < idx; ++pred)
+					addEdge(pred, idx);
+				if (lastBarrier >= 0)
+					addEdge(lastBarrier, idx);
+				lastBarrier = idx;
+				continue;
+			}
+
+			if (lastBarrier >= 0)
+				addEdge(lastBarrier, idx);
+
+			for (ActionInvocation predecessor : invocation.getPredecessors()) {
+				Action action = predecessor.getAction();
+				Integer predIdx = action == null ? indexes.get(predecessor) : actionIndexes.get(action);
+				if (predIdx != null && predIdx.intValue() < idx)
+					addEdge(predIdx.intValue(), idx);
+			}
+		}
+	}
+
+	private void submit(CompletionService<InvocationResult> completionService, final int index) {
+		final ActionInvocation invocation = invocations.get(index);
+		completionService.submit(new Callable<InvocationResult>() {
+			@Override
+			public InvocationResult call() {
+				IStatus status = null;
+				Throwable problem = null;
+				try {
+					status = performManager.executeTimed(invocation, globalCtx, new WorkerMonitor());
+				} catch (Throwable t) {
+					problem = t;
+				}
+				return new InvocationResult(index, status, problem);
+			}
+		});
+	}
+
+	private static IStatus toStatus(Throwable problem) {
+		if (problem instanceof CoreException)
+			return ((CoreException) problem).getStatus();
+		return BuckminsterException.wrap(problem).getStatus();
+	}
+}
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.Messages;
@@ -291,7 +292,7 @@ public class PerformContext implements IActionContext {
 	}
 
 	@Override
-	public Map<String, PathGroup[]> getPathGroupsCache() {
+	public ConcurrentMap<String, PathGroup[]> getPathGroupsCache() {
 		return globalCtx.getPathGroupsCache();
 	}
 
@@ -9,7 +9,9 @@ package org.eclipse.buckminster.core.internal.actor;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +39,7 @@ import org.eclipse.buckminster.core.metadata.AmbigousComponentException;
 import org.eclipse.buckminster.core.metadata.MissingComponentException;
 import org.eclipse.buckminster.core.metadata.WorkspaceInfo;
 import org.eclipse.buckminster.osgi.filter.Filter;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
 import org.eclipse.buckminster.runtime.Logger;
 import org.eclipse.buckminster.runtime.MonitorUtils;
 import org.eclipse.core.resources.IContainer;
@@ -53,6 +56,7 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * @author kolwing
@@ -60,10 +64,37 @@ import org.eclipse.core.runtime.SubProgressMonitor;
  */
 public class PerformManager implements IPerformManager {
 	abstract class ActionInvocation {
+		private final Set<ActionInvocation> predecessors = new HashSet<ActionInvocation>();
+
+		void addPredecessors(Collection<ActionInvocation> invocations) {
+			predecessors.addAll(invocations);
+		}
+
 		abstract IStatus execute(GlobalContext globalCtx, IProgressMonitor monitor) throws CoreException;
 
 		abstract Action getAction();
 
+		/**
+		 * Returns the invocations that must complete before this invocation
+		 * can start. The set reflects the prerequisite graph only and is used
+		 * when actions are performed in parallel.
+		 * 
+		 * @return the invocations that this invocation depends on
+		 */
+		Set<ActionInvocation> getPredecessors() {
+			return predecessors;
+		}
+
+		/**
+		 * Returns <code>true</code> if no other invocation can run
+		 * concurrently with this one.
+		 * 
+		 * @return <code>true</code> if this invocation is a barrier
+		 */
+		boolean isBarrier() {
+			return false;
+		}
+
 		abstract void toString(StringBuilder bld);
 	}
 
@@ -98,6 +129,16 @@ public class PerformManager implements IPerformManager {
 			return null;
 		}
 
+		/**
+		 * A deferred invocation will perform attributes of a generated
+		 * component. Those attributes are unknown until the generator has run
+		 * so the invocation cannot run concurrently with anything else.
+		 */
+		@Override
+		boolean isBarrier() {
+			return true;
+		}
+
 		@Override
 		void toString(StringBuilder bld) {
 			bld.append("Deferred invocation of "); //$NON-NLS-1$
@@ -128,25 +169,51 @@ public class PerformManager implements IPerformManager {
 
 			MonitorUtils.begin(monitor, 100);
 			performContext = new PerformContext(globalCtx, action, out, err, monitor);
-			if (globalCtx.hasPerformedAction(action)) {
+			if (!globalCtx.addPerformedAction(action)) {
 				MonitorUtils.done(monitor);
 				return Status.OK_STATUS;
 			}
-			globalCtx.addPerformedAction(action);
 
 			if (!performContext.isForced() && action.isUpToDate(performContext)) {
 				MonitorUtils.done(monitor);
 				return Status.OK_STATUS;
 			}
 
+			// Products that were produced from identical input can be
+			// restored from the action cache. The restore attempt gets its
+			// own share of the ticks so that both the restore path and the
+			// perform path add up to 100.
+			//
+			ActionCache actionCache = ActionCache.getConfigured();
+			String cacheKey = null;
+			int performTicks = 80;
+			if (actionCache != null) {
+				cacheKey = actionCache.computeKey(performContext);
+				if (cacheKey != null) {
+					performTicks = 70;
+					IProgressMonitor restoreMonitor = MonitorUtils.subMonitor(monitor, 10);
+					if (performContext.isForced())
+						MonitorUtils.complete(restoreMonitor);
+					else if (actionCache.restore(cacheKey, performContext, restoreMonitor)) {
+						makeWorkspaceAwareOfProducts(MonitorUtils.subMonitor(monitor, 10));
+						MonitorUtils.done(monitor);
+						return Status.OK_STATUS;
+					}
+				}
+			}
+
 			IActor actor = ActorFactory.getInstance().getActor(action);
-			IStatus status = actor.perform(performContext, new SubProgressMonitor(monitor, 90, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+			IStatus status = actor.perform(performContext, new SubProgressMonitor(monitor, performTicks,
+					SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
 
 			if (status.getSeverity() == IStatus.CANCEL)
 				throw new OperationCanceledException();
 
-			if (status.getSeverity() != IStatus.ERROR)
+			if (status.getSeverity() != IStatus.ERROR) {
+				if (cacheKey != null)
+					actionCache.store(cacheKey, performContext, MonitorUtils.subMonitor(monitor, 10));
 				makeWorkspaceAwareOfProducts(MonitorUtils.subMonitor(monitor, 10));
+			}
 			MonitorUtils.done(monitor);
 			return status;
 		}
@@ -206,6 +273,10 @@ public class PerformManager implements IPerformManager {
 		}
 	}
 
+	public static final String MAX_PARALLEL_ACTIONS = "maxParallelActions"; //$NON-NLS-1$
+
+	public static final int MAX_PARALLEL_ACTIONS_DEFAULT = 1;
+
 	private static final PerformManager INSTANCE = new PerformManager();
 
 	private static final PrintStream nullPrintStream = new PrintStream(NullOutputStream.INSTANCE);
@@ -220,6 +291,22 @@ public class PerformManager implements IPerformManager {
 		return INSTANCE;
 	}
 
+	/**
+	 * Returns the maximum number of actions that will be performed in
+	 * parallel. A value of 1 means that all actions are performed in sequence
+	 * by the calling thread.
+	 * 
+	 * @return the maximum number of parallel actions
+	 */
+	public static int getMaxParallelActions() {
+		return BuckminsterPreferences.getNode().getInt(MAX_PARALLEL_ACTIONS, MAX_PARALLEL_ACTIONS_DEFAULT);
+	}
+
+	public static void setMaxParallelActions(int maxActions) {
+		if (maxActions > 0 && maxActions <= 64)
+			BuckminsterPreferences.getNode().putInt(MAX_PARALLEL_ACTIONS, maxActions);
+	}
+
 	private static void refreshAndSetDerivedPath(IPath path, HashSet<IPath> alreadyRefreshed, IProgressMonitor monitor) throws CoreException {
 		monitor.beginTask(null, 100);
 		try {
@@ -279,21 +366,34 @@ public class PerformManager implements IPerformManager {
 		}
 	}
 
-	private void addAttributeChildren(GlobalContext ctx, Attribute attribute, Set<String> seen, List<ActionInvocation> ordered,
-			Generator attrGenerator) throws CoreException {
+	/**
+	 * Adds the invocations needed to perform <code>attribute</code> to the
+	 * <code>ordered</code> list and records the prerequisite edges between
+	 * them.
+	 * 
+	 * @return the invocations that must have completed before the
+	 *         <code>attribute</code> can be considered performed
+	 */
+	private Set<ActionInvocation> addAttributeChildren(GlobalContext ctx, Attribute attribute, Map<String, Set<ActionInvocation>> seen,
+			List<ActionInvocation> ordered, Generator attrGenerator) throws CoreException {
 		if (attribute instanceof ActionArtifact)
 			attribute = ((ActionArtifact) attribute).getAction();
 
 		String attrId = attribute.toString();
-		if (!seen.add(attrId))
-			return;
+		Set<ActionInvocation> frontier = seen.get(attrId);
+		if (frontier != null)
+			return frontier;
+
+		frontier = new HashSet<ActionInvocation>();
+		seen.put(attrId, frontier);
 
+		Set<ActionInvocation> predecessors = new HashSet<ActionInvocation>();
 		CSpec cspec = attribute.getCSpec();
 		for (Prerequisite preq : attribute.getPrerequisites()) {
 			try {
 				Attribute ag = preq.getReferencedAttribute(cspec, ctx);
 				if (ag != null)
-					addAttributeChildren(ctx, ag, seen, ordered, null);
+					predecessors.addAll(addAttributeChildren(ctx, ag, seen, ordered, null));
 			} catch (MissingComponentException e) {
 				// The component might need to be generated in which case it's
 				// generator must be built.
@@ -349,33 +449,66 @@ public class PerformManager implements IPerformManager {
 				// Add the attribute that represents the generated component
 				//
 				Attribute ag = generatorCSpec.getAttribute(actionGenerator.getAttribute());
-				if (seen.contains(ag.toString())) {
+				Set<ActionInvocation> agFrontier = seen.get(ag.toString());
+				DeferredActionInvocation deferred = null;
+				if (agFrontier != null) {
 					// Make sure it was added as a generator
 					//
 					int top = ordered.size();
 					for (int idx = 0; idx < top; ++idx) {
 						ActionInvocation ai = ordered.get(idx);
 						if (ai.getAction() == ag && !(ai instanceof GeneratorInvocation)) {
-							ordered.set(idx, new GeneratorInvocation(actionGenerator, ai.getAction()));
-							ordered.add(new DeferredActionInvocation(cspec, preq));
+							GeneratorInvocation gi = new GeneratorInvocation(actionGenerator, ai.getAction());
+							gi.addPredecessors(ai.getPredecessors());
+							ordered.set(idx, gi);
+							deferred = new DeferredActionInvocation(cspec, preq);
+							ordered.add(deferred);
 							break;
 						}
 					}
 				} else {
-					addAttributeChildren(ctx, ag, seen, ordered, actionGenerator);
-					ordered.add(new DeferredActionInvocation(cspec, preq));
+					agFrontier = addAttributeChildren(ctx, ag, seen, ordered, actionGenerator);
+					deferred = new DeferredActionInvocation(cspec, preq);
+					ordered.add(deferred);
+				}
+				if (deferred != null) {
+					deferred.addPredecessors(agFrontier);
+					predecessors.add(deferred);
 				}
 			}
 		}
 
 		if (attribute instanceof Action) {
 			Action action = (Action) attribute;
-			ordered.add(attrGenerator == null ? new DirectActionInvocation(action) : new GeneratorInvocation(attrGenerator, action));
+			ActionInvocation invocation = attrGenerator == null ? new DirectActionInvocation(action) : new GeneratorInvocation(attrGenerator,
+					action);
+			invocation.addPredecessors(predecessors);
+			ordered.add(invocation);
+			frontier.add(invocation);
+		} else
+			frontier.addAll(predecessors);
+		return frontier;
+	}
+
+	/**
+	 * Executes one invocation and logs the time it took.
+	 */
+	IStatus executeTimed(ActionInvocation invocation, GlobalContext globalCtx, IProgressMonitor monitor) throws CoreException {
+		long start = System.currentTimeMillis();
+		try {
+			return invocation.execute(globalCtx, monitor);
+		} finally {
+			Logger logger = CorePlugin.getLogger();
+			if (logger.isDebugEnabled()) {
+				StringBuilder bld = new StringBuilder();
+				invocation.toString(bld);
+				logger.debug(NLS.bind(Messages.Action_0_completed_in_1_ms, bld, Long.valueOf(System.currentTimeMillis() - start)));
+			}
 		}
 	}
 
 	private List<ActionInvocation> getOrderedActionList(GlobalContext ctx, List<? extends IAttribute> attributes) throws CoreException {
-		Set<String> seen = new HashSet<String>();
+		Map<String, Set<ActionInvocation>> seen = new HashMap<String, Set<ActionInvocation>>();
 		List<ActionInvocation> ordered = new ArrayList<ActionInvocation>();
 		for (IAttribute attribute : attributes)
 			addAttributeChildren(ctx, (Attribute) attribute, seen, ordered, null);
@@ -385,10 +518,14 @@ public class PerformManager implements IPerformManager {
 				attribute = ((ActionArtifact) attribute).getAction();
 
 			String attrId = attribute.toString();
-			if (!seen.contains(attrId)) {
-				seen.add(attrId);
-				if (attribute instanceof Action)
-					ordered.add(new DirectActionInvocation((Action) attribute));
+			if (!seen.containsKey(attrId)) {
+				Set<ActionInvocation> frontier = new HashSet<ActionInvocation>();
+				seen.put(attrId, frontier);
+				if (attribute instanceof Action) {
+					ActionInvocation invocation = new DirectActionInvocation((Action) attribute);
+					ordered.add(invocation);
+					frontier.add(invocation);
+				}
 			}
 		}
 		return ordered;
@@ -413,12 +550,29 @@ public class PerformManager implements IPerformManager {
 		}
 
 		MultiStatus retStatus = new MultiStatus(CorePlugin.getID(), IStatus.OK, "", null); //$NON-NLS-1$
+		int maxParallel = getMaxParallelActions();
+		if (maxParallel > 1 && actionList.size() > 1)
+			new ParallelActionExecutor(this, globalCtx, actionList, maxParallel).run(retStatus, monitor);
+		else
+			performInSequence(globalCtx, actionList, retStatus, monitor);
+
+		IStatus[] children = retStatus.getChildren();
+		IStatus status = children.length == 1 ? children[0] : retStatus;
+
+		if (status.getSeverity() == IStatus.ERROR)
+			throw new CoreException(status);
+
+		return status;
+	}
+
+	private void performInSequence(GlobalContext globalCtx, List<ActionInvocation> actionList, MultiStatus retStatus, IProgressMonitor monitor)
+			throws CoreException {
 		for (ActionInvocation action : actionList) {
 			// Check that the action hasn't been executed already. This may
 			// happen when actions
 			// explicitly call on other actions (such as the fragment actor)
 			//
-			IStatus status = action.execute(globalCtx, MonitorUtils.subMonitor(monitor, 100));
+			IStatus status = executeTimed(action, globalCtx, MonitorUtils.subMonitor(monitor, 100));
 			switch (status.getSeverity()) {
 				case IStatus.WARNING:
 				case IStatus.INFO:
@@ -434,14 +588,6 @@ public class PerformManager implements IPerformManager {
 			}
 			break;
 		}
-
-		IStatus[] children = retStatus.getChildren();
-		IStatus status = children.length == 1 ? children[0] : retStatus;
-
-		if (status.getSeverity() == IStatus.ERROR)
-			throw new CoreException(status);
-
-		return status;
 	}
 
 	@Override
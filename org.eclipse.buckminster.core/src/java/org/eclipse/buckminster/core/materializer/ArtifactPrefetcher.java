@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.core.materializer;
+
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.reader.IReaderType;
+import org.eclipse.buckminster.download.DownloadManager;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.runtime.DaemonThreadFactory;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.ecf.core.security.IConnectContext;
+
+/**
+ * Downloads the remote artifacts of a materialization into the download cache
+ * ahead of the materializers. The downloads are performed in the order of the
+ * materialization on a bounded number of connections with a limit on the
+ * number of concurrent connections to each host. A materializer that reaches
+ * an artifact that is being prefetched will wait for the download to complete
+ * and then read the artifact from the cache, so the unpacking of one
+ * component overlaps with the download of the next.
+ * <p>
+ * Only artifacts of reader types that read single files are prefetched. A
+ * failed prefetch is ignored. The materializer will make its own attempt and
+ * report the problem.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class ArtifactPrefetcher {
+	private class Download implements Runnable {
+		private final URL url;
+
+		private final IConnectContext cctx;
+
+		Download(URL url, IConnectContext cctx) {
+			this.url = url;
+			this.cctx = cctx;
+		}
+
+		String getHost() {
+			String host = url.getHost();
+			return host == null ? "" : host; //$NON-NLS-1$
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (cancelMonitor.isCanceled())
+					return;
+
+				InputStream input = DownloadManager.getCache().open(url, cctx, null, null, cancelMonitor);
+				IOUtils.close(input);
+				completedCount.incrementAndGet();
+			} catch (Throwable t) {
+				Logger logger = CorePlugin.getLogger();
+				if (logger.isDebugEnabled())
+					logger.debug(t, "Prefetch of %s failed", url); //$NON-NLS-1$
+			} finally {
+				downloadDone(this);
+			}
+		}
+	}
+
+	public static final String MAX_CONNECTIONS = "maxPrefetchConnections"; //$NON-NLS-1$
+
+	public static final int MAX_CONNECTIONS_DEFAULT = 4;
+
+	public static final String MAX_CONNECTIONS_PER_HOST = "maxPrefetchConnectionsPerHost"; //$NON-NLS-1$
+
+	public static final int MAX_CONNECTIONS_PER_HOST_DEFAULT = 2;
+
+	public static int getMaxConnections() {
+		return BuckminsterPreferences.getNode().getInt(MAX_CONNECTIONS, MAX_CONNECTIONS_DEFAULT);
+	}
+
+	public static int getMaxConnectionsPerHost() {
+		return Math.max(1, BuckminsterPreferences.getNode().getInt(MAX_CONNECTIONS_PER_HOST, MAX_CONNECTIONS_PER_HOST_DEFAULT));
+	}
+
+	/**
+	 * Start prefetching the remote artifacts of the given resolutions.
+	 *
+	 * @param context
+	 *            The context of the materialization
+	 * @param resolutions
+	 *            The resolutions in the order that they will be materialized
+	 * @return The started prefetcher or <code>null</code> if prefetching has
+	 *         been disabled or if there is nothing to prefetch
+	 */
+	public static ArtifactPrefetcher start(MaterializationContext context, List<Resolution> resolutions) {
+		int maxConnections = getMaxConnections();
+		if (maxConnections <= 0)
+			return null;
+
+		List<Download> downloads = new ArrayList<Download>();
+		Set<URL> seen = new HashSet<URL>();
+		for (Resolution resolution : resolutions) {
+			URL url;
+			IConnectContext cctx;
+			try {
+				IReaderType readerType = resolution.getProvider().getReaderType();
+				if (!readerType.isFileReader())
+					continue;
+
+				URI uri = readerType.getArtifactURL(resolution, context);
+				if (uri == null)
+					continue;
+
+				url = uri.toURL();
+				if ("file".equalsIgnoreCase(url.getProtocol()) || !seen.add(url)) //$NON-NLS-1$
+					continue;
+
+				cctx = resolution.getProvider().getConnectContext(context.getProperties(resolution));
+				if (cctx == null)
+					cctx = context.getComponentQuery().getConnectContext();
+			} catch (CoreException e) {
+				continue;
+			} catch (MalformedURLException e) {
+				continue;
+			} catch (IllegalArgumentException e) {
+				continue;
+			}
+			downloads.add(new Download(url, cctx));
+		}
+
+		if (downloads.isEmpty())
+			return null;
+
+		ArtifactPrefetcher prefetcher = new ArtifactPrefetcher(Math.min(maxConnections, downloads.size()));
+		for (Download download : downloads)
+			prefetcher.enqueue(download);
+		return prefetcher;
+	}
+
+	private final ThreadPoolExecutor executor;
+
+	private final int maxConnectionsPerHost;
+
+	private final Map<String, LinkedList<Download>> waitingPerHost = new HashMap<String, LinkedList<Download>>();
+
+	private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+
+	private final IProgressMonitor cancelMonitor = new NullProgressMonitor();
+
+	private final AtomicInteger completedCount = new AtomicInteger();
+
+	private ArtifactPrefetcher(int maxConnections) {
+		maxConnectionsPerHost = getMaxConnectionsPerHost();
+		executor = new ThreadPoolExecutor(maxConnections, maxConnections, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("Buckminster prefetch")); //$NON-NLS-1$
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Cancel all downloads that has not yet completed and release the
+	 * connection threads.
+	 */
+	public void shutdown() {
+		cancelMonitor.setCanceled(true);
+		synchronized (this) {
+			waitingPerHost.clear();
+		}
+		executor.shutdownNow();
+		Logger logger = CorePlugin.getLogger();
+		if (logger.isDebugEnabled())
+			logger.debug("Prefetched %d artifacts", Integer.valueOf(completedCount.get())); //$NON-NLS-1$
+	}
+
+	private synchronized void downloadDone(Download download) {
+		String host = download.getHost();
+		LinkedList<Download> waiting = waitingPerHost.get(host);
+		Download next = waiting == null ? null : waiting.poll();
+		if (next != null) {
+			try {
+				executor.execute(next);
+				return;
+			} catch (RejectedExecutionException e) {
+				// The prefetcher has been shut down
+			}
+		}
+
+		Integer running = runningPerHost.get(host);
+		if (running != null) {
+			if (running.intValue() <= 1)
+				runningPerHost.remove(host);
+			else
+				runningPerHost.put(host, Integer.valueOf(running.intValue() - 1));
+		}
+	}
+
+	private synchronized void enqueue(Download download) {
+		String host = download.getHost();
+		Integer running = runningPerHost.get(host);
+		int count = running == null ? 0 : running.intValue();
+		if (count < maxConnectionsPerHost) {
+			runningPerHost.put(host, Integer.valueOf(count + 1));
+			executor.execute(download);
+			return;
+		}
+
+		LinkedList<Download> waiting = waitingPerHost.get(host);
+		if (waiting == null) {
+			waiting = new LinkedList<Download>();
+			waitingPerHost.put(host, waiting);
+		}
+		waiting.add(download);
+	}
+}
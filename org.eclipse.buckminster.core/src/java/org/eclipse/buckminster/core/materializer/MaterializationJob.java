@@ -20,12 +20,14 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.metadata.MetadataSynchronizer;
 import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
 import org.eclipse.buckminster.core.metadata.model.Resolution;
 import org.eclipse.buckminster.core.mspec.model.MaterializationSpec;
 import org.eclipse.buckminster.runtime.Buckminster;
 import org.eclipse.buckminster.runtime.BuckminsterException;
 import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.runtime.Logger;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -49,10 +51,22 @@ public class MaterializationJob extends Job {
 
 	public static final int MAX_PARALLEL_JOBS_DEFAULT = 4;
 
+	public static final String SETTLE_TIMEOUT = "materializationSettleTimeout"; //$NON-NLS-1$
+
+	public static final int SETTLE_TIMEOUT_DEFAULT = 3000;
+
 	public static int getMaxParallelJobs() {
 		return BuckminsterPreferences.getNode().getInt(MAX_PARALLEL_JOBS, MAX_PARALLEL_JOBS_DEFAULT);
 	}
 
+	/**
+	 * Returns the maximum number of milliseconds to wait for the workspace to
+	 * settle after a materialization.
+	 */
+	public static int getSettleTimeout() {
+		return BuckminsterPreferences.getNode().getInt(SETTLE_TIMEOUT, SETTLE_TIMEOUT_DEFAULT);
+	}
+
 	public static void run(MaterializationContext context) throws CoreException {
 		try {
 			MaterializationJob mbJob = new MaterializationJob(context);
@@ -63,11 +77,16 @@ public class MaterializationJob extends Job {
 			if (status.getSeverity() == IStatus.CANCEL)
 				throw new OperationCanceledException();
 
-			// We wait to give the event manager a chance to deliver all
-			// events while the JobBlocker still active. This gives us
-			// a chance to add dynamic dependencies to projects
+			// We wait for the event manager to deliver all events while the
+			// JobBlocker is still active. This gives us a chance to add
+			// dynamic dependencies to projects
 			//
-			Thread.sleep(3000);
+			long start = System.currentTimeMillis();
+			boolean settled = MetadataSynchronizer.waitUntilIdle(getSettleTimeout());
+			Logger logger = CorePlugin.getLogger();
+			if (logger.isDebugEnabled())
+				logger.debug("Workspace %s after %d ms", settled ? "settled" : "did not settle", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+						Long.valueOf(System.currentTimeMillis() - start));
 		} catch (InterruptedException e) {
 			throw new OperationCanceledException();
 		} catch (OperationCanceledException e) {
@@ -142,8 +161,18 @@ public class MaterializationJob extends Job {
 		Queue<MaterializerJob> allJobs = prepareJobs(monitor, bom);
 
 		if (allJobs != null) {
-			triggerJobs(monitor, allJobs);
-			waitForJobs(monitor, allJobs, bom);
+			List<Resolution> resolutions = new ArrayList<Resolution>();
+			for (MaterializerJob job : allJobs)
+				resolutions.addAll(job.getResolutions());
+
+			ArtifactPrefetcher prefetcher = ArtifactPrefetcher.start(context, resolutions);
+			try {
+				triggerJobs(monitor, allJobs);
+				waitForJobs(monitor, allJobs, bom);
+			} finally {
+				if (prefetcher != null)
+					prefetcher.shutdown();
+			}
 		}
 		if (context.getStatus().getSeverity() == IStatus.ERROR)
 			throw BuckminsterException.wrap(context.getStatus());
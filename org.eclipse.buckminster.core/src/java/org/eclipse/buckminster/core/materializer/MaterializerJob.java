@@ -52,6 +52,10 @@ public class MaterializerJob extends Job implements IJobInfo {
 		return context == family;
 	}
 
+	public List<Resolution> getResolutions() {
+		return resolutions;
+	}
+
 	@Override
 	public String getOperationName() {
 		Resolution lastResolution = resolutions.get(resolutions.size() - 1);
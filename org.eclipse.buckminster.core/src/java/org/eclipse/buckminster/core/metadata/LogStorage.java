@@ -0,0 +1,655 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.core.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.core.metadata.FileStorage.Lock;
+import org.eclipse.buckminster.core.metadata.model.ElementNotFoundException;
+import org.eclipse.buckminster.core.parser.IParser;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Trivial;
+import org.eclipse.buckminster.sax.UUIDKeyed;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * A storage that keeps all elements in one append-only log file. Each record
+ * in the log has a fixed size header that contains the operation, the id of
+ * the element, and a timestamp followed by the deflated XML image of the
+ * element. The index from id to record is built by scanning the record
+ * headers only, which means that opening the storage or detecting changes made
+ * by other processes never involves a directory listing or XML parsing.
+ * Elements are parsed lazily when requested.
+ * <p>
+ * Changes are appended under an exclusive lock. Records that have been
+ * superseded are reclaimed by compacting the log when the storage is opened.
+ * </p>
+ * <p>
+ * The log is read using positional reads rather than a memory mapping. A
+ * mapping cannot be released explicitly and would prevent the log from being
+ * truncated or replaced on some platforms. Only the part of the log that was
+ * appended since the last scan is read when the index is brought up to date.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class LogStorage<T extends UUIDKeyed> extends AbstractSaxableStorage<T> {
+	private static class Entry extends TimestampedKey {
+		final long payloadOffset;
+
+		final int payloadLength;
+
+		Entry(UUID uuid, long creationTime, long payloadOffset, int payloadLength) {
+			super(uuid, creationTime);
+			this.payloadOffset = payloadOffset;
+			this.payloadLength = payloadLength;
+		}
+	}
+
+	public static final String LOG_SUFFIX = ".log"; //$NON-NLS-1$
+
+	private static final String LOCK_SUFFIX = ".lock"; //$NON-NLS-1$
+
+	private static final String COMPACT_SUFFIX = ".compact"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x424d4c47; // "BMLG"
+
+	private static final int FORMAT_VERSION = 1;
+
+	// magic, format version, sequence number, generation
+	private static final int FILE_HEADER_SIZE = 16;
+
+	private static final int GENERATION_OFFSET = 12;
+
+	// operation, uuid msb, uuid lsb, timestamp, payload length
+	private static final int RECORD_HEADER_SIZE = 1 + 8 + 8 + 8 + 4;
+
+	private static final byte OP_PUT = 1;
+
+	private static final byte OP_TOUCH = 2;
+
+	private static final byte OP_REMOVE = 3;
+
+	private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+	/**
+	 * Compaction is not considered until the log has grown beyond this size
+	 */
+	private static final long COMPACTION_THRESHOLD = 0x100000;
+
+	/**
+	 * The size of the buffer used when scanning record headers
+	 */
+	private static final int SCAN_BUFFER_SIZE = 0x10000;
+
+	private final File logFile;
+
+	private final File lockFile;
+
+	private final IParser<T> parser;
+
+	private final int sequenceNumber;
+
+	private final HashMap<UUID, Entry> entries = new HashMap<UUID, Entry>();
+
+	private final HashMap<UUID, T> parsed = new HashMap<UUID, T>();
+
+	private transient T[] allElements;
+
+	private RandomAccessFile raFile;
+
+	private FileChannel channel;
+
+	private long scannedLength;
+
+	private int generation;
+
+	private long liveBytes;
+
+	private long lastChecked;
+
+	private boolean sequenceChanged;
+
+	public LogStorage(File logFile, IParser<T> parser, Class<T> clazz, int sequenceNumber) throws CoreException {
+		super(clazz);
+		this.logFile = logFile;
+		this.lockFile = new File(logFile.getPath() + LOCK_SUFFIX);
+		this.parser = parser;
+		this.sequenceNumber = sequenceNumber;
+
+		FileUtils.createDirectory(logFile.getAbsoluteFile().getParentFile(), null);
+		Lock lock = Lock.lock(lockFile, true);
+		try {
+			open();
+			if (scannedLength > COMPACTION_THRESHOLD && liveBytes * 2 < scannedLength - FILE_HEADER_SIZE)
+				compact();
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			lock.release();
+		}
+		lastChecked = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void clear() {
+		try {
+			Lock lock = Lock.lock(lockFile, true);
+			try {
+				refresh();
+				channel.truncate(FILE_HEADER_SIZE);
+				scannedLength = FILE_HEADER_SIZE;
+				liveBytes = 0;
+			} finally {
+				lock.release();
+			}
+		} catch (CoreException e) {
+			CorePlugin.getLogger().error(e, e.toString());
+		} catch (IOException e) {
+			CorePlugin.getLogger().error(e, e.toString());
+		}
+		parsed.clear();
+		entries.clear();
+		allElements = null;
+	}
+
+	/**
+	 * Close the log file. The file is opened again if the storage is used
+	 * after it has been closed.
+	 */
+	public synchronized void close() {
+		closeChannel();
+	}
+
+	@Override
+	public synchronized boolean contains(T element) throws CoreException {
+		checkCache();
+		return entries.containsKey(element.getId());
+	}
+
+	@Override
+	public synchronized long getCreationTime(UUID elementId) throws ElementNotFoundException {
+		checkCache();
+		Entry entry = entries.get(elementId);
+		if (entry == null)
+			throw new ElementNotFoundException(this, elementId);
+		return entry.getCreationTime();
+	}
+
+	@Override
+	public synchronized T getElement(UUID elementId) throws CoreException {
+		checkCache();
+		Entry entry = entries.get(elementId);
+		if (entry == null)
+			throw new ElementNotFoundException(this, elementId);
+
+		T element = parsed.get(elementId);
+		if (element != null)
+			return element;
+
+		byte[] payload = new byte[entry.payloadLength];
+		try {
+			if (read(ByteBuffer.wrap(payload), entry.payloadOffset) < payload.length)
+				throw new EOFException(logFile.getPath());
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		}
+
+		InflaterInputStream input = new InflaterInputStream(new ByteArrayInputStream(payload));
+		try {
+			element = parser.parse(logFile.getName() + '/' + elementId, input);
+		} finally {
+			IOUtils.close(input);
+		}
+		element.setId(elementId);
+		parsed.put(elementId, element);
+		return element;
+	}
+
+	@Override
+	public synchronized T[] getElements() throws CoreException {
+		checkCache();
+		if (allElements == null) {
+			Set<UUID> keys = entries.keySet();
+			Set<UUID> badKeys = null;
+			int idx = keys.size();
+			T[] elems = createArray(idx);
+			for (UUID key : keys) {
+				try {
+					--idx;
+					elems[idx] = getElement(key);
+				} catch (CoreException e) {
+					CorePlugin.getLogger().warning(BuckminsterException.unwind(e), NLS.bind(Messages.Unable_to_read_0, getElementClass().getName()));
+					if (badKeys == null)
+						badKeys = new HashSet<UUID>();
+					badKeys.add(key);
+				}
+			}
+
+			if (badKeys != null) {
+				idx = elems.length;
+				int goodIdx = idx - badKeys.size();
+				T[] goodElems = createArray(goodIdx);
+				while (--idx >= 0) {
+					T elem = elems[idx];
+					if (elem != null)
+						goodElems[--goodIdx] = elem;
+				}
+				elems = goodElems;
+				for (UUID badKey : badKeys)
+					entries.remove(badKey);
+			}
+			allElements = elems;
+		}
+		return allElements;
+	}
+
+	@Override
+	public synchronized UUID[] getKeys() {
+		checkCache();
+		Set<UUID> keys = entries.keySet();
+		return keys.toArray(new UUID[keys.size()]);
+	}
+
+	@Override
+	public String getName() {
+		String name = logFile.getName();
+		return name.endsWith(LOG_SUFFIX) ? name.substring(0, name.length() - LOG_SUFFIX.length()) : name;
+	}
+
+	@Override
+	public synchronized List<UUID> getReferencingKeys(UUID foreignKey, String keyName) throws CoreException {
+		List<UUID> result = null;
+		Method getter = getGetter(keyName);
+		try {
+			for (UUID elementId : entries.keySet()) {
+				T element = getElement(elementId);
+				UUID fkey = (UUID) getter.invoke(element, Trivial.EMPTY_OBJECT_ARRAY);
+				if (fkey != null && fkey.equals(foreignKey)) {
+					if (result == null)
+						result = new ArrayList<UUID>();
+					result.add(elementId);
+				}
+			}
+			if (result == null)
+				result = Collections.emptyList();
+			return result;
+		} catch (Exception e) {
+			throw BuckminsterException.wrap(e);
+		}
+	}
+
+	@Override
+	public synchronized TimestampedKey[] getTimestampedKeys() {
+		checkCache();
+		return entries.values().toArray(new TimestampedKey[entries.size()]);
+	}
+
+	/**
+	 * Copy all elements of <code>source</code> into this storage. The creation
+	 * time of each element is retained. This is used when migrating from
+	 * another storage format.
+	 *
+	 * @param source
+	 *            The storage to copy from
+	 * @return The number of elements copied
+	 * @throws CoreException
+	 */
+	public synchronized int importElements(ISaxableStorage<T> source) throws CoreException {
+		int count = 0;
+		for (TimestampedKey tsKey : source.getTimestampedKeys()) {
+			UUID id = tsKey.getKey();
+			T element = source.getElement(id);
+			appendRecord(OP_PUT, id, tsKey.getCreationTime(), element.getImage());
+			parsed.put(id, element);
+			++count;
+		}
+		return count;
+	}
+
+	@Override
+	public synchronized void putElement(T element) throws CoreException {
+		UUID id = element.getId();
+		if (!entries.containsKey(id)) {
+			parsed.put(id, element);
+			appendRecord(OP_PUT, id, System.currentTimeMillis(), element.getImage());
+		} else
+			appendRecord(OP_TOUCH, id, System.currentTimeMillis(), null);
+	}
+
+	@Override
+	public synchronized void putElement(UUID id, T element) throws CoreException {
+		UUID realId = element.getId();
+		putElement(element);
+		if (id.equals(realId))
+			return;
+
+		// A discreprancy has occured between elements. Likely due to
+		// different XML versions.
+		//
+		CorePlugin.getLogger().debug("Element id discrepancy in storage %s, expected %s, was %s", getName(), realId, id); //$NON-NLS-1$
+
+		if (entries.containsKey(id))
+			return;
+
+		parsed.put(id, element);
+		appendRecord(OP_PUT, id, System.currentTimeMillis(), element.getImage());
+	}
+
+	@Override
+	public synchronized void removeElement(UUID elementId) throws CoreException {
+		parsed.remove(elementId);
+		appendRecord(OP_REMOVE, elementId, System.currentTimeMillis(), null);
+	}
+
+	@Override
+	public boolean sequenceChanged() {
+		return sequenceChanged;
+	}
+
+	private void appendRecord(byte op, UUID id, long timestamp, byte[] image) throws CoreException {
+		byte[] payload = EMPTY_PAYLOAD;
+		if (image != null) {
+			ByteArrayOutputStream bld = new ByteArrayOutputStream(image.length / 4 + 64);
+			DeflaterOutputStream deflater = new DeflaterOutputStream(bld);
+			try {
+				deflater.write(image);
+				deflater.close();
+			} catch (IOException e) {
+				throw BuckminsterException.wrap(e);
+			}
+			payload = bld.toByteArray();
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		record.put(op);
+		record.putLong(id.getMostSignificantBits());
+		record.putLong(id.getLeastSignificantBits());
+		record.putLong(timestamp);
+		record.putInt(payload.length);
+		record.put(payload);
+		record.flip();
+
+		Lock lock = Lock.lock(lockFile, true);
+		try {
+			// Pick up changes made by others so that the index is current and
+			// the record ends up at the true end of the log.
+			//
+			refresh();
+			long pos = scannedLength;
+			if (channel.size() > pos)
+				// Remains of a record that was never completed
+				channel.truncate(pos);
+			while (record.hasRemaining())
+				pos += channel.write(record, pos);
+			channel.force(false);
+			scan();
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			lock.release();
+		}
+		lastChecked = System.currentTimeMillis();
+	}
+
+	private void checkCache() {
+		// Avoid the IO involved in the check if it was done less then a
+		// second ago
+		//
+		long now = System.currentTimeMillis();
+		if (channel != null) {
+			if (now - lastChecked < 1000)
+				return;
+
+			lastChecked = now;
+			if (logFile.length() == scannedLength)
+				return;
+		}
+
+		try {
+			Lock lock = Lock.lock(lockFile, false);
+			try {
+				refresh();
+			} finally {
+				lock.release();
+			}
+		} catch (CoreException e) {
+			CorePlugin.getLogger().error(e, e.getMessage());
+		} catch (IOException e) {
+			CorePlugin.getLogger().error(e, e.getMessage());
+		}
+	}
+
+	private void closeChannel() {
+		if (raFile != null) {
+			IOUtils.close(raFile);
+			raFile = null;
+			channel = null;
+		}
+	}
+
+	/**
+	 * Rewrite the log so that it only contains the current image of each
+	 * element. Must be called with an exclusive lock.
+	 */
+	private void compact() throws IOException, CoreException {
+		File compactFile = new File(logFile.getPath() + COMPACT_SUFFIX);
+		RandomAccessFile compactRA = new RandomAccessFile(compactFile, "rw"); //$NON-NLS-1$
+		try {
+			compactRA.setLength(0);
+			FileChannel out = compactRA.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt(sequenceNumber);
+			header.putInt(generation + 1);
+			header.flip();
+			out.write(header);
+
+			ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			for (Entry entry : entries.values()) {
+				recordHeader.clear();
+				recordHeader.put(OP_PUT);
+				recordHeader.putLong(entry.getKey().getMostSignificantBits());
+				recordHeader.putLong(entry.getKey().getLeastSignificantBits());
+				recordHeader.putLong(entry.getCreationTime());
+				recordHeader.putInt(entry.payloadLength);
+				recordHeader.flip();
+				out.write(recordHeader);
+
+				long pos = entry.payloadOffset;
+				long end = pos + entry.payloadLength;
+				while (pos < end) {
+					long count = channel.transferTo(pos, end - pos, out);
+					if (count <= 0)
+						throw new EOFException(logFile.getPath());
+					pos += count;
+				}
+			}
+			out.force(true);
+		} finally {
+			IOUtils.close(compactRA);
+		}
+
+		closeChannel();
+		if (!compactFile.renameTo(logFile)) {
+			// Some platforms will not allow a rename onto an existing file or
+			// a file that is open by others. Just keep the current log.
+			//
+			compactFile.delete();
+		}
+		open();
+	}
+
+	/**
+	 * Open the log file, write its header if it is new, and build the index.
+	 * Must be called with an exclusive lock.
+	 */
+	private void open() throws IOException {
+		raFile = new RandomAccessFile(logFile, "rw"); //$NON-NLS-1$
+		channel = raFile.getChannel();
+		entries.clear();
+		parsed.clear();
+		allElements = null;
+		liveBytes = 0;
+
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		boolean valid = channel.read(header, 0) == FILE_HEADER_SIZE && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+		if (valid) {
+			int foundSequenceNumber = header.getInt(8);
+			generation = header.getInt(GENERATION_OFFSET);
+			if (foundSequenceNumber != sequenceNumber) {
+				sequenceChanged = true;
+				header.putInt(8, sequenceNumber);
+				header.rewind();
+				channel.write(header, 0);
+			}
+			scannedLength = FILE_HEADER_SIZE;
+			scan();
+		} else {
+			if (channel.size() > 0)
+				CorePlugin.getLogger().warning(NLS.bind(Messages.Discarding_invalid_metadata_log_0, logFile));
+			channel.truncate(0);
+			header.clear();
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt(sequenceNumber);
+			header.putInt(generation);
+			header.flip();
+			channel.write(header, 0);
+			scannedLength = FILE_HEADER_SIZE;
+		}
+	}
+
+	/**
+	 * Bring the index up to date with the log file. Must be called with a
+	 * lock.
+	 */
+	private void refresh() throws IOException {
+		long size = logFile.length();
+		boolean reopen = channel == null || size < scannedLength;
+		if (!reopen && size >= FILE_HEADER_SIZE) {
+			// The log might have been compacted by someone else in which case
+			// our channel still refers to the old file.
+			//
+			RandomAccessFile current = new RandomAccessFile(logFile, "r"); //$NON-NLS-1$
+			try {
+				current.seek(GENERATION_OFFSET);
+				reopen = current.readInt() != generation;
+			} finally {
+				IOUtils.close(current);
+			}
+		}
+
+		if (reopen) {
+			closeChannel();
+			open();
+		} else
+			scan();
+	}
+
+	/**
+	 * Read bytes from the log into <code>buf</code> until it is full or the
+	 * end of the log is reached.
+	 *
+	 * @return The number of bytes read
+	 */
+	private int read(ByteBuffer buf, long pos) throws IOException {
+		int start = buf.position();
+		while (buf.hasRemaining()) {
+			int count = channel.read(buf, pos + buf.position() - start);
+			if (count < 0)
+				break;
+		}
+		return buf.position() - start;
+	}
+
+	/**
+	 * Read record headers from the end of what has been scanned so far up to
+	 * the last complete record. Only the headers are read. The payloads are
+	 * skipped.
+	 */
+	private void scan() throws IOException {
+		long pos = scannedLength;
+		long top = channel.size();
+
+		// The buffer holds the bytes of the log that starts at bufStart
+		ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		buf.limit(0);
+		long bufStart = pos;
+		while (pos + RECORD_HEADER_SIZE <= top) {
+			if (pos + RECORD_HEADER_SIZE > bufStart + buf.limit()) {
+				buf.clear();
+				bufStart = pos;
+				read(buf, pos);
+				buf.flip();
+				if (buf.limit() < RECORD_HEADER_SIZE)
+					break;
+			}
+			buf.position((int) (pos - bufStart));
+			byte op = buf.get();
+			UUID id = new UUID(buf.getLong(), buf.getLong());
+			long timestamp = buf.getLong();
+			int payloadLength = buf.getInt();
+			long payloadOffset = pos + RECORD_HEADER_SIZE;
+			if (payloadLength < 0 || payloadOffset + payloadLength > top)
+				break;
+
+			Entry old;
+			switch (op) {
+				case OP_PUT:
+					old = entries.put(id, new Entry(id, timestamp, payloadOffset, payloadLength));
+					if (old != null)
+						liveBytes -= RECORD_HEADER_SIZE + old.payloadLength;
+					liveBytes += RECORD_HEADER_SIZE + payloadLength;
+					break;
+				case OP_TOUCH:
+					old = entries.get(id);
+					if (old != null)
+						entries.put(id, new Entry(id, timestamp, old.payloadOffset, old.payloadLength));
+					break;
+				case OP_REMOVE:
+					old = entries.remove(id);
+					if (old != null) {
+						liveBytes -= RECORD_HEADER_SIZE + old.payloadLength;
+						parsed.remove(id);
+					}
+					break;
+				default:
+					// Garbage. Treat it as the end of the log
+					top = pos;
+					continue;
+			}
+			allElements = null;
+			pos = payloadOffset + payloadLength;
+		}
+		scannedLength = pos;
+	}
+}
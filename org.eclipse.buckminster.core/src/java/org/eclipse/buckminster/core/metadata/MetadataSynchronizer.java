@@ -12,6 +12,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,6 +48,7 @@ import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -193,6 +196,41 @@ public class MetadataSynchronizer implements IResourceChangeListener {
 		}
 	}
 
+	static class WorkspaceFlushJob extends Job {
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		public WorkspaceFlushJob() {
+			super(Messages.Flushing_pending_workspace_changes);
+			setSystem(true);
+			setPriority(Job.SHORT);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				// The end of a top level workspace operation broadcasts the
+				// changes that are pending. An empty operation is therefore
+				// enough to flush them to the listener.
+				//
+				ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+					@Override
+					public void run(IProgressMonitor m) {
+					}
+				}, null, 0, monitor);
+			} catch (CoreException e) {
+				CorePlugin.getLogger().warning(e, e.getMessage());
+			} finally {
+				done.countDown();
+			}
+			return Status.OK_STATUS;
+		}
+
+		boolean await(long deadline) throws InterruptedException {
+			long remaining = deadline - System.currentTimeMillis();
+			return remaining > 0 && done.await(remaining, TimeUnit.MILLISECONDS);
+		}
+	}
+
 	private class Visitor implements IResourceDeltaVisitor {
 		@Override
 		public boolean visit(IResourceDelta delta) throws CoreException {
@@ -355,6 +393,35 @@ public class MetadataSynchronizer implements IResourceChangeListener {
 		ws.addResourceChangeListener(defaultSynchronizer, IResourceChangeEvent.PRE_DELETE | IResourceChangeEvent.POST_CHANGE);
 	}
 
+	/**
+	 * Wait until the resource change events that are pending have been
+	 * delivered and until the metadata refresh that they trigger has
+	 * completed.
+	 * 
+	 * @param timeout
+	 *            The maximum number of milliseconds to wait
+	 * @return <code>true</code> if everything completed within the given
+	 *         time, <code>false</code> if the wait timed out
+	 * @throws InterruptedException
+	 */
+	public static boolean waitUntilIdle(long timeout) throws InterruptedException {
+		MetadataSynchronizer mds = defaultSynchronizer;
+		if (mds == null)
+			return true;
+
+		long deadline = System.currentTimeMillis() + timeout;
+
+		// The empty operation must wait for the workspace lock so it runs
+		// in a job of its own. That way, a long running operation held by
+		// someone else cannot make us exceed the timeout.
+		//
+		WorkspaceFlushJob flushJob = new WorkspaceFlushJob();
+		flushJob.schedule();
+		if (!flushJob.await(deadline))
+			return false;
+		return mds.waitForRefreshJob(deadline);
+	}
+
 	public static void tearDown() {
 		MetadataSynchronizer mds = defaultSynchronizer;
 		if (mds == null)
@@ -452,12 +519,12 @@ public class MetadataSynchronizer implements IResourceChangeListener {
 			project.setDescription(projDesc, MonitorUtils.subMonitor(monitor, 50));
 			if (logger.isDebugEnabled()) {
 				StringBuilder bld = new StringBuilder();
-				bld.append(NLS.bind(Messages.Project_0_now_has_dynamic_dependencies_to, project.getName()));
 				for (IProject ref : refs) {
-					bld.append(' ');
+					if (bld.length() > 0)
+						bld.append(' ');
 					bld.append(ref.getName());
 				}
-				logger.debug(bld.toString());
+				logger.debug(NLS.bind(Messages.Project_0_now_has_dynamic_dependencies_to_1, project.getName(), bld));
 			}
 		}
 		monitor.done();
@@ -564,6 +631,7 @@ public class MetadataSynchronizer implements IResourceChangeListener {
 								// We're done
 								//
 								currentRefreshJob = null;
+								MetadataSynchronizer.this.notifyAll();
 							} else
 								currentRefreshJob.schedule();
 						}
@@ -574,6 +642,16 @@ public class MetadataSynchronizer implements IResourceChangeListener {
 		}
 	}
 
+	private synchronized boolean waitForRefreshJob(long deadline) throws InterruptedException {
+		while (currentRefreshJob != null) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				return false;
+			wait(remaining);
+		}
+		return true;
+	}
+
 	synchronized IProject getNextProjectNeedingUpdate() {
 		if (projectsNeedingUpdate.isEmpty())
 			return null;
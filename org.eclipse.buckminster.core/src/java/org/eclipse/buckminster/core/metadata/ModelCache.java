@@ -11,6 +11,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.buckminster.core.cspec.ICSpecData;
 import org.eclipse.buckminster.core.cspec.PathGroup;
@@ -25,7 +27,7 @@ import org.eclipse.core.runtime.CoreException;
 public class ModelCache implements IModelCache {
 	private Map<String, ? extends Object> properties;
 
-	private Map<String, PathGroup[]> pathGroupsCache;
+	private ConcurrentMap<String, PathGroup[]> pathGroupsCache;
 
 	private Map<ComponentRequest, CSpec> cspecCache;
 
@@ -57,9 +59,9 @@ public class ModelCache implements IModelCache {
 	}
 
 	@Override
-	public synchronized Map<String, PathGroup[]> getPathGroupsCache() {
+	public synchronized ConcurrentMap<String, PathGroup[]> getPathGroupsCache() {
 		if (pathGroupsCache == null)
-			pathGroupsCache = new HashMap<String, PathGroup[]>();
+			pathGroupsCache = new ConcurrentHashMap<String, PathGroup[]>();
 		return pathGroupsCache;
 	}
 
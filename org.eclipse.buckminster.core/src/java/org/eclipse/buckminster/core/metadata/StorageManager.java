@@ -11,20 +11,48 @@ import java.io.File;
 
 import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.helpers.FileUtils;
 import org.eclipse.buckminster.core.metadata.model.Materialization;
 import org.eclipse.buckminster.core.metadata.model.Resolution;
 import org.eclipse.buckminster.core.metadata.model.WorkspaceBinding;
+import org.eclipse.buckminster.core.parser.IParser;
 import org.eclipse.buckminster.core.parser.IParserFactory;
 import org.eclipse.buckminster.core.rmap.model.Provider;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.sax.UUIDKeyed;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.osgi.service.prefs.BackingStoreException;
 
 /**
  * @author Thomas Hallgren
  */
 public class StorageManager {
+	/**
+	 * The preference that controls how persistent metadata is stored. The
+	 * value is either {@link #STORAGE_FORMAT_FOLDER} (one file per element)
+	 * or {@link #STORAGE_FORMAT_LOG} (one indexed log file per element type).
+	 */
+	public static final String STORAGE_FORMAT = "metadataStorageFormat"; //$NON-NLS-1$
+
+	public static final String STORAGE_FORMAT_FOLDER = "folder"; //$NON-NLS-1$
+
+	public static final String STORAGE_FORMAT_LOG = "log"; //$NON-NLS-1$
+
 	private static StorageManager defaultManager;
 
+	/**
+	 * Close and discard the default manager. The next call to
+	 * {@link #getDefault()} creates a new one.
+	 */
+	public static synchronized void disposeDefault() {
+		if (defaultManager != null) {
+			defaultManager.close();
+			defaultManager = null;
+		}
+	}
+
 	public static synchronized StorageManager getDefault() throws CoreException {
 		if (defaultManager == null) {
 			defaultManager = new StorageManager(CorePlugin.getDefault().getStateLocation().toFile());
@@ -33,6 +61,72 @@ public class StorageManager {
 		return defaultManager;
 	}
 
+	public static String getStorageFormat() {
+		return BuckminsterPreferences.getNode().get(STORAGE_FORMAT, STORAGE_FORMAT_FOLDER);
+	}
+
+	/**
+	 * Move all persistent metadata found in the folder layout below
+	 * <code>baseLocation</code> into log storages and make the log format
+	 * the preferred format. The folders are not deleted until all elements
+	 * have been imported and the preference has been stored, so a migration
+	 * that fails half way never loses any metadata. The default manager is
+	 * discarded so that the next call to {@link #getDefault()} uses the new
+	 * format.
+	 * 
+	 * @param baseLocation
+	 *            The location of the storages
+	 * @return The number of elements that were migrated
+	 * @throws CoreException
+	 */
+	public static synchronized int migrateToLog(File baseLocation) throws CoreException {
+		IParserFactory pf = CorePlugin.getDefault().getParserFactory();
+		int count = importToLog(baseLocation, Materialization.TAG, pf.getMaterializationParser(), Materialization.class,
+				Materialization.SEQUENCE_NUMBER);
+		count += importToLog(baseLocation, WorkspaceBinding.TAG, pf.getWorkspaceBindingParser(false), WorkspaceBinding.class,
+				WorkspaceBinding.SEQUENCE_NUMBER);
+		try {
+			BuckminsterPreferences.getNode().put(STORAGE_FORMAT, STORAGE_FORMAT_LOG);
+			BuckminsterPreferences.getNode().flush();
+		} catch (BackingStoreException e) {
+			throw BuckminsterException.wrap(e);
+		}
+		disposeDefault();
+
+		// The log format is now in effect so the folders can go
+		//
+		FileUtils.deleteRecursive(new File(baseLocation, Materialization.TAG), new NullProgressMonitor());
+		FileUtils.deleteRecursive(new File(baseLocation, WorkspaceBinding.TAG), new NullProgressMonitor());
+		return count;
+	}
+
+	private static <T extends UUIDKeyed> ISaxableStorage<T> createStorage(File baseLocation, String tag, IParser<T> parser, Class<T> clazz,
+			int sequenceNumber) throws CoreException {
+		if (STORAGE_FORMAT_LOG.equals(getStorageFormat()))
+			return new LogStorage<T>(new File(baseLocation, tag + LogStorage.LOG_SUFFIX), parser, clazz, sequenceNumber);
+		return new FileStorage<T>(new File(baseLocation, tag), parser, clazz, sequenceNumber);
+	}
+
+	private static <T extends UUIDKeyed> int importToLog(File baseLocation, String tag, IParser<T> parser, Class<T> clazz, int sequenceNumber)
+			throws CoreException {
+		File folder = new File(baseLocation, tag);
+		if (!folder.isDirectory())
+			return 0;
+
+		FileStorage<T> source = new FileStorage<T>(folder, parser, clazz, sequenceNumber);
+		LogStorage<T> target = new LogStorage<T>(new File(baseLocation, tag + LogStorage.LOG_SUFFIX), parser, clazz, sequenceNumber);
+		try {
+			return target.importElements(source);
+		} finally {
+			target.close();
+		}
+	}
+
+	private static void close(ISaxableStorage<?> storage) {
+		if (storage instanceof LogStorage<?>)
+			((LogStorage<?>) storage).close();
+	}
+
 	private final ISaxableStorage<CSpec> cspecs;
 
 	private final ISaxableStorage<WorkspaceBinding> wsBindings;
@@ -56,11 +150,19 @@ public class StorageManager {
 
 		resolutions = new MemoryStorage<Resolution>(Resolution.class);
 
-		materializations = new FileStorage<Materialization>(new File(baseLocation, Materialization.TAG), pf.getMaterializationParser(),
-				Materialization.class, Materialization.SEQUENCE_NUMBER);
+		materializations = createStorage(baseLocation, Materialization.TAG, pf.getMaterializationParser(), Materialization.class,
+				Materialization.SEQUENCE_NUMBER);
+
+		wsBindings = createStorage(baseLocation, WorkspaceBinding.TAG, pf.getWorkspaceBindingParser(false), WorkspaceBinding.class,
+				WorkspaceBinding.SEQUENCE_NUMBER);
+	}
 
-		wsBindings = new FileStorage<WorkspaceBinding>(new File(baseLocation, WorkspaceBinding.TAG), pf.getWorkspaceBindingParser(false),
-				WorkspaceBinding.class, WorkspaceBinding.SEQUENCE_NUMBER);
+	/**
+	 * Close the files held open by the storages of this manager.
+	 */
+	public void close() {
+		close(materializations);
+		close(wsBindings);
 	}
 
 	public ISaxableStorage<CSpec> getCSpecs() throws CoreException {
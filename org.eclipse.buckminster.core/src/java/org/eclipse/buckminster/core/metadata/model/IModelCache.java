@@ -2,6 +2,7 @@ package org.eclipse.buckminster.core.metadata.model;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.buckminster.core.cspec.ICSpecData;
 import org.eclipse.buckminster.core.cspec.PathGroup;
@@ -34,9 +35,10 @@ public interface IModelCache {
 	Collection<CSpec> getAllFoundCSpecs();
 
 	/**
-	 * Returns the cache used when evaulating attribute path groups
+	 * Returns the cache used when evaulating attribute path groups. The cache
+	 * is shared by actions that are performed in parallel.
 	 */
-	Map<String, PathGroup[]> getPathGroupsCache();
+	ConcurrentMap<String, PathGroup[]> getPathGroupsCache();
 
 	/**
 	 * Returns the invocation properties.
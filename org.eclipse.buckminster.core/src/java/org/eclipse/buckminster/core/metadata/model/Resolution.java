@@ -439,9 +439,8 @@ public class Resolution extends UUIDKeyed implements IUUIDPersisted, IResolution
 			return true;
 
 		Map<String, String[]> attributeUsageMap = query.getContext().getFilterAttributeUsageMap();
-		Map<String, ? extends Object> queryProps = query.getProperties();
 		cspecFilter.addConsultedAttributes(attributeUsageMap);
-		if (cspecFilter.matchCase(queryProps))
+		if (query.getPropertySnapshot().match(cspecFilter))
 			return true;
 
 		if (failingFilter != null)
@@ -13,21 +13,37 @@ package org.eclipse.buckminster.core.parser;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
 import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.Messages;
 import org.eclipse.buckminster.core.helpers.FileUtils;
 import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.runtime.Logger;
 import org.eclipse.buckminster.sax.AbstractHandler;
+import org.eclipse.buckminster.sax.BinaryXMLReader;
 import org.eclipse.buckminster.sax.ChildHandler;
 import org.eclipse.buckminster.sax.TopHandler;
 import org.eclipse.buckminster.sax.Utils;
@@ -45,13 +61,60 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 
 /**
+ * Base class for the parsers of Buckminster documents.
+ * <p>
+ * The XML schemas of a validating parser are compiled once for each
+ * combination of namespaces and locations and then shared by all parsers that
+ * use the same combination. The parser does not own an <code>XMLReader</code>.
+ * A reader is instead taken from a pool that is kept per thread when a parse
+ * starts and returned to that pool when it ends.
+ * </p>
+ * <p>
+ * Documents in the binary format of the
+ * {@link org.eclipse.buckminster.sax.BinarySerializer BinarySerializer} are
+ * recognized and read without validation.
+ * </p>
+ *
  * @author Thomas Hallgren
  */
 public abstract class AbstractParser<T> extends TopHandler implements ErrorHandler, IParser<T> {
+	/**
+	 * Preference that, when set to <code>true</code>, turns off the schema
+	 * validation of all parsed documents.
+	 */
+	public static final String SKIP_SCHEMA_VALIDATION = "skipSchemaValidation"; //$NON-NLS-1$
+
+	private static final String EXTERNAL_SCHEMA_LOCATION = "http://apache.org/xml/properties/schema/external-schemaLocation"; //$NON-NLS-1$
+
+	private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler"; //$NON-NLS-1$
+
+	private static final String NON_VALIDATING_KEY = ""; //$NON-NLS-1$
+
+	private static final int MAX_IDLE_READERS = 4;
+
 	private static Pattern saxParseCleaner = Pattern.compile("^cvc-[^:]+:(.*)$"); //$NON-NLS-1$
 
 	private static IFile[] noFiles = new IFile[0];
 
+	private static final Map<String, SAXParserFactory> schemaParserFactories = new ConcurrentHashMap<String, SAXParserFactory>();
+
+	private static final Set<String> uncompiledSchemas = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private static final ThreadLocal<Map<String, List<XMLReader>>> idleReaders = new ThreadLocal<Map<String, List<XMLReader>>>() {
+		@Override
+		protected Map<String, List<XMLReader>> initialValue() {
+			return new HashMap<String, List<XMLReader>>();
+		}
+	};
+
+	private static final AtomicLong parseCount = new AtomicLong();
+
+	private static final AtomicLong parseNanos = new AtomicLong();
+
+	private static final AtomicLong readerCount = new AtomicLong();
+
+	private static final AtomicLong schemaCount = new AtomicLong();
+
 	public static IFile[] clearMarkers(String systemId) {
 		// If the systemId is represented as a resource in the workspace, then
 		// remove
@@ -75,6 +138,39 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 		}
 	}
 
+	/**
+	 * @return The number of documents that has been parsed
+	 */
+	public static long getParseCount() {
+		return parseCount.get();
+	}
+
+	/**
+	 * @return The total number of milliseconds spent parsing documents
+	 */
+	public static long getParseTime() {
+		return parseNanos.get() / 1000000;
+	}
+
+	/**
+	 * @return The number of <code>XMLReader</code> instances that has been
+	 *         created
+	 */
+	public static long getReaderCount() {
+		return readerCount.get();
+	}
+
+	/**
+	 * @return The number of schema sets that has been compiled
+	 */
+	public static long getSchemaCount() {
+		return schemaCount.get();
+	}
+
+	public static boolean isSkipSchemaValidation() {
+		return BuckminsterPreferences.getNode().getBoolean(SKIP_SCHEMA_VALIDATION, false);
+	}
+
 	public static void setMarkers(IFile[] files, SAXParseException e) {
 		// Annotate the file if "systemId" denotes a resource in a project
 		//
@@ -112,6 +208,49 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 		return ResourcesPlugin.getWorkspace().getRoot().findFilesForLocationURI(new Path(systemId).toFile().toURI());
 	}
 
+	/**
+	 * Returns a factory for readers that validate using a compiled schema for
+	 * the given namespace locations. The schema is compiled on first request.
+	 *
+	 * @return The factory or <code>null</code> if the schemas could not be
+	 *         compiled
+	 */
+	private static SAXParserFactory getSchemaParserFactory(String schemaKey, List<String> namespaceLocations) {
+		SAXParserFactory factory = schemaParserFactories.get(schemaKey);
+		if (factory != null || uncompiledSchemas.contains(schemaKey))
+			return factory;
+
+		synchronized (schemaParserFactories) {
+			factory = schemaParserFactories.get(schemaKey);
+			if (factory != null || uncompiledSchemas.contains(schemaKey))
+				return factory;
+
+			int top = namespaceLocations.size();
+			Source[] sources = new Source[top];
+			for (int idx = 0; idx < top; ++idx) {
+				String namespaceLocation = namespaceLocations.get(idx);
+				sources[idx] = new StreamSource(namespaceLocation.substring(namespaceLocation.indexOf(' ') + 1));
+			}
+
+			Logger logger = CorePlugin.getLogger();
+			try {
+				SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+				factory = SAXParserFactory.newInstance();
+				factory.setNamespaceAware(true);
+				factory.setSchema(schemaFactory.newSchema(sources));
+				schemaParserFactories.put(schemaKey, factory);
+				schemaCount.incrementAndGet();
+			} catch (Exception e) {
+				// Readers will use the schema locations instead
+				if (logger.isDebugEnabled())
+					logger.debug(e, "Unable to compile schemas %s", schemaKey); //$NON-NLS-1$
+				uncompiledSchemas.add(schemaKey);
+				factory = null;
+			}
+			return factory;
+		}
+	}
+
 	private final boolean validating;
 
 	private final List<String> namespaceLocations;
@@ -120,11 +259,11 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 
 	private HashSet<String> printedWarnings;
 
+	private boolean compiledSchema;
+
 	protected AbstractParser(List<ParserFactory.ParserExtension> parserExtensions, String[] namespaces, String[] schemaLocations, boolean validating)
 			throws CoreException {
-		super(createXMLReader(validating, true));
-
-		this.validating = validating;
+		this.validating = validating && !isSkipSchemaValidation();
 		int top = namespaces.length;
 
 		if (top != schemaLocations.length)
@@ -144,8 +283,6 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 				addNamespaceLocation(pe.getNamespace(), pe.getResource());
 		}
 		this.parserExtensions = parserExtensions;
-		setNamespaceAware(true);
-		setErrorHandler(this);
 	}
 
 	public <H extends ChildHandler> H createContentHandler(AbstractHandler parent, Class<H> handlerClass, String namespace, String xsiType)
@@ -204,12 +341,61 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 	}
 
 	protected void init() throws SAXException {
+		if (compiledSchema)
+			// The schemas are already known by the reader
+			return;
+
 		XMLReader reader = getXMLReader();
 		if (validating) {
 			reader.setFeature("http://apache.org/xml/features/validation/schema", true); //$NON-NLS-1$
 			reader.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true); //$NON-NLS-1$
 		}
+		reader.setProperty(EXTERNAL_SCHEMA_LOCATION, getSchemaKey());
+	}
+
+	protected void parseInput(String systemId, InputStream input) throws CoreException {
+		IFile[] files = clearMarkers(systemId);
+		if (!(input instanceof BufferedInputStream || input instanceof ByteArrayInputStream))
+			input = new BufferedInputStream(input);
 
+		boolean binary;
+		try {
+			binary = BinaryXMLReader.isBinary(input);
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		}
+
+		String readerKey = validating ? getSchemaKey() : NON_VALIDATING_KEY;
+		XMLReader reader = binary ? new BinaryXMLReader() : obtainReader(readerKey);
+		long start = System.nanoTime();
+		try {
+			setXMLReader(reader);
+			setNamespaceAware(true);
+			setErrorHandler(this);
+			if (!binary)
+				init();
+			InputSource source = new InputSource(input);
+			if (systemId != null)
+				source.setSystemId(systemId);
+			getXMLReader().parse(source);
+		} catch (SAXParseException e) {
+			setMarkers(files, e);
+			throw BuckminsterException.wrap(e);
+		} catch (Exception e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			if (!binary)
+				releaseReader(readerKey, reader);
+			long nanos = System.nanoTime() - start;
+			parseCount.incrementAndGet();
+			parseNanos.addAndGet(nanos);
+			Logger logger = CorePlugin.getLogger();
+			if (logger.isDebugEnabled())
+				logger.debug("Parsed %s in %d ms", systemId, Long.valueOf(nanos / 1000000)); //$NON-NLS-1$
+		}
+	}
+
+	private String getSchemaKey() {
 		int len = 0;
 		int top = namespaceLocations.size();
 		for (int idx = 0; idx < top; ++idx) {
@@ -222,26 +408,54 @@ public abstract class AbstractParser<T> extends TopHandler implements ErrorHandl
 				bld.append(' ');
 			bld.append(namespaceLocations.get(idx));
 		}
-		reader.setProperty("http://apache.org/xml/properties/schema/external-schemaLocation", bld.toString()); //$NON-NLS-1$
+		return bld.toString();
 	}
 
-	protected void parseInput(String systemId, InputStream input) throws CoreException {
-		IFile[] files = clearMarkers(systemId);
+	private XMLReader obtainReader(String readerKey) throws CoreException {
+		compiledSchema = false;
+		List<XMLReader> idle = idleReaders.get().get(readerKey);
+		if (idle != null && !idle.isEmpty()) {
+			XMLReader reader = idle.remove(idle.size() - 1);
+			compiledSchema = validating && schemaParserFactories.containsKey(readerKey);
+			return reader;
+		}
+
+		readerCount.incrementAndGet();
+		if (validating) {
+			SAXParserFactory factory = getSchemaParserFactory(readerKey, namespaceLocations);
+			if (factory != null) {
+				try {
+					XMLReader reader;
+					synchronized (factory) {
+						reader = factory.newSAXParser().getXMLReader();
+					}
+					compiledSchema = true;
+					return reader;
+				} catch (Exception e) {
+					throw BuckminsterException.wrap(e);
+				}
+			}
+		}
+		return createXMLReader(validating, true);
+	}
+
+	private void releaseReader(String readerKey, XMLReader reader) {
+		// Don't let the pooled reader keep this parser alive
+		reader.setContentHandler(null);
+		reader.setErrorHandler(null);
 		try {
-			init();
-			if (!(input instanceof BufferedInputStream || input instanceof ByteArrayInputStream))
-				input = new BufferedInputStream(input);
-			InputSource source = new InputSource(input);
-			if (systemId != null)
-				source.setSystemId(systemId);
-			getXMLReader().parse(source);
-		} catch (SAXParseException e) {
-			setMarkers(files, e);
-			throw BuckminsterException.wrap(e);
-		} catch (Exception e) {
-			throw BuckminsterException.wrap(e);
-		} finally {
-			getXMLReader().setContentHandler(this);
+			reader.setProperty(LEXICAL_HANDLER, null);
+		} catch (SAXException e) {
+			// Reader doesn't support lexical handlers so none was set
+		}
+
+		Map<String, List<XMLReader>> pool = idleReaders.get();
+		List<XMLReader> idle = pool.get(readerKey);
+		if (idle == null) {
+			idle = new ArrayList<XMLReader>(MAX_IDLE_READERS);
+			pool.put(readerKey, idle);
 		}
+		if (idle.size() < MAX_IDLE_READERS)
+			idle.add(reader);
 	}
 }
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.core.prefs;
+
+import org.eclipse.buckminster.cmdline.BasicPreferenceHandler;
+import org.eclipse.buckminster.core.Messages;
+import org.eclipse.buckminster.core.internal.actor.PerformManager;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.service.prefs.BackingStoreException;
+
+public class MaxParallelActions extends BasicPreferenceHandler {
+	@Override
+	public String get(String defaultValue) throws CoreException {
+		return Integer.toString(PerformManager.getMaxParallelActions());
+	}
+
+	@Override
+	public void set(String prefValue) throws BackingStoreException {
+		try {
+			int maxActions = Integer.parseInt(prefValue);
+			if (maxActions > 0 && maxActions <= 64) {
+				PerformManager.setMaxParallelActions(maxActions);
+				BuckminsterPreferences.getNode().flush();
+				return;
+			}
+		} catch (NumberFormatException e) {
+		}
+		throw new IllegalArgumentException(NLS.bind(Messages._0_illegal_value_for_maxParallelActions, prefValue));
+	}
+
+	@Override
+	public void unset() throws BackingStoreException {
+		PerformManager.setMaxParallelActions(PerformManager.MAX_PARALLEL_ACTIONS_DEFAULT);
+		BuckminsterPreferences.getNode().flush();
+	}
+}
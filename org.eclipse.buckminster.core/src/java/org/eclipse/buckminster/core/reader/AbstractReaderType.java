@@ -165,6 +165,31 @@ public abstract class AbstractReaderType extends AbstractExtension implements IR
 		return IMaterializer.WORKSPACE;
 	}
 
+	/**
+	 * The default fingerprint is the last revision of the repository location
+	 * of the resolution or, if no revision is available, its last modification
+	 * timestamp.
+	 */
+	@Override
+	public String getRemoteFingerprint(Resolution resolution, RMContext context, IProgressMonitor monitor) throws CoreException {
+		monitor.beginTask(null, 100);
+		try {
+			String repository = resolution.getRepository();
+			if (repository == null)
+				return null;
+
+			VersionSelector branchOrTag = resolution.getVersionMatch().getBranchOrTag();
+			long revision = getLastRevision(repository, branchOrTag, MonitorUtils.subMonitor(monitor, 50));
+			if (revision != -1)
+				return "r" + revision; //$NON-NLS-1$
+
+			Date timestamp = getLastModification(repository, branchOrTag, MonitorUtils.subMonitor(monitor, 50));
+			return timestamp == null ? null : "t" + timestamp.getTime(); //$NON-NLS-1$
+		} finally {
+			monitor.done();
+		}
+	}
+
 	@Override
 	public String getRemoteLocation(File workingCopy, IProgressMonitor monitor) throws CoreException {
 		return null;
@@ -290,6 +290,25 @@ public interface IReaderType extends IBuckminsterExtension {
 	 */
 	String getRecommendedMaterializer();
 
+	/**
+	 * Returns a fingerprint of the remote state that the given
+	 * <code>resolution</code> was based on, such as a repository timestamp or
+	 * the last revision of the repository location. Two equal fingerprints
+	 * obtained at different times indicate that a new resolution of the same
+	 * request would yield the same result.
+	 * 
+	 * @param resolution
+	 *            The resolution to compute the fingerprint for
+	 * @param context
+	 *            The context used when resolving
+	 * @param monitor
+	 *            The monitor used for progress reporting
+	 * @return The fingerprint or <code>null</code> if this reader type cannot
+	 *         determine the remote state.
+	 * @throws CoreException
+	 */
+	String getRemoteFingerprint(Resolution resolution, RMContext context, IProgressMonitor monitor) throws CoreException;
+
 	/**
 	 * Returns the remote location of the workin copy or null if that cannot be
 	 * determined
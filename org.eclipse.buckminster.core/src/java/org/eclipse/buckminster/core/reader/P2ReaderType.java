@@ -48,8 +48,7 @@ import org.eclipse.equinox.internal.p2.touchpoint.eclipse.PublisherUtil;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
-import org.eclipse.equinox.p2.query.IQueryResult;
-import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.IRepository;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepositoryManager;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRequest;
@@ -92,10 +91,10 @@ public class P2ReaderType extends CatalogReaderType {
 	}
 
 	public static IInstallableUnit getIU(ProviderMatch providerMatch, IProgressMonitor monitor) throws CoreException {
-		IMetadataRepository mdr = getMetadataRepository(providerMatch, monitor);
+		SubMonitor subMon = SubMonitor.convert(monitor, 3);
+		IMetadataRepository mdr = getMetadataRepository(providerMatch, subMon.newChild(1));
 		VersionMatch vm = providerMatch.getVersionMatch();
-		IQueryResult<IInstallableUnit> result = mdr.query(QueryUtil.createIUQuery(vm.getArtifactInfo(), vm.getVersion()), monitor);
-		return result.isEmpty() ? null : result.iterator().next();
+		return P2RepositoryIndex.getIndex(providerMatch.getNodeQuery().getContext(), mdr, subMon.newChild(1)).getIU(vm.getArtifactInfo(), vm.getVersion(), subMon.newChild(1));
 	}
 
 	public static IMetadataRepository getMetadataRepository(Provider provider, Map<String, ? extends Object> properties, IProgressMonitor monitor)
@@ -174,6 +173,16 @@ public class P2ReaderType extends CatalogReaderType {
 		return IMaterializer.P2;
 	}
 
+	/**
+	 * The fingerprint of a p2 resolution is the timestamp of the metadata
+	 * repository that it was found in.
+	 */
+	@Override
+	public String getRemoteFingerprint(Resolution resolution, RMContext context, IProgressMonitor monitor) throws CoreException {
+		URI repoLocation = P2Materializer.cleanURIFromImportType(URLUtils.normalizeToURI(resolution.getRepository(), true));
+		return getMetadataRepository(repoLocation, monitor).getProperty(IRepository.PROP_TIMESTAMP);
+	}
+
 	public BOMNode getResolution(ProviderMatch providerMatch, IProgressMonitor monitor) throws CoreException {
 		SubMonitor subMon = SubMonitor.convert(monitor, 20);
 		try {
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.core.reader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.RMContext;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.ICompositeRepository;
+import org.eclipse.equinox.p2.repository.IRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+
+/**
+ * An index of the installable unit ids of a metadata repository and the
+ * versions that are available for each id. The index makes it possible to
+ * find the best version for a request without a query that scans all units of
+ * the repository.
+ * <p>
+ * Indexes are kept in the user cache of the {@link RMContext} for each
+ * repository location as long as the timestamp of the repository is
+ * unchanged, so they are released together with the context. They are also
+ * written to the
+ * state location of the core plug-in so that a later run can reuse them
+ * without scanning the repository, provided that the timestamp is still the
+ * same. Indexes for composite repositories are not persisted.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class P2RepositoryIndex {
+	public static final String INDEX_FOLDER = "p2index"; //$NON-NLS-1$
+
+	/**
+	 * The indexes of one context
+	 */
+	private static class IndexCache {
+		final Map<URI, P2RepositoryIndex> indexes = new ConcurrentHashMap<URI, P2RepositoryIndex>();
+
+		/**
+		 * One lock per location so that the population of one index doesn't
+		 * block the use of other indexes
+		 */
+		final ConcurrentHashMap<URI, Object> locks = new ConcurrentHashMap<URI, Object>();
+
+		Object getLock(URI location) {
+			Object lock = locks.get(location);
+			if (lock == null) {
+				Object newLock = new Object();
+				lock = locks.putIfAbsent(location, newLock);
+				if (lock == null)
+					lock = newLock;
+			}
+			return lock;
+		}
+	}
+
+	private static final UUID CACHE_KEY_P2_INDEXES = UUID.randomUUID();
+
+	private static final Version[] NO_VERSIONS = new Version[0];
+
+	/**
+	 * Returns the index for the given metadata repository. A new index is
+	 * created when the context has no index for the repository or when the
+	 * timestamp of the repository has changed.
+	 *
+	 * @param context
+	 *            The context that keeps the index
+	 * @param mdr
+	 *            The repository to obtain the index for
+	 * @param monitor
+	 *            The monitor used for progress reporting
+	 * @return The index
+	 */
+	public static P2RepositoryIndex getIndex(RMContext context, IMetadataRepository mdr, IProgressMonitor monitor) {
+		IndexCache cache = getIndexCache(context.getUserCache());
+		URI location = mdr.getLocation();
+		String timestamp = mdr.getProperty(IRepository.PROP_TIMESTAMP);
+		P2RepositoryIndex index = cache.indexes.get(location);
+		if (index == null || !index.isCurrent(mdr, timestamp)) {
+			synchronized (cache.getLock(location)) {
+				index = cache.indexes.get(location);
+				if (index == null || !index.isCurrent(mdr, timestamp)) {
+					index = new P2RepositoryIndex(mdr, timestamp);
+					index.populate(monitor);
+					cache.indexes.put(location, index);
+				}
+			}
+		}
+		MonitorUtils.complete(monitor);
+		return index;
+	}
+
+	private static IndexCache getIndexCache(Map<UUID, Object> ctxUserCache) {
+		synchronized (ctxUserCache) {
+			IndexCache cache = (IndexCache) ctxUserCache.get(CACHE_KEY_P2_INDEXES);
+			if (cache == null) {
+				cache = new IndexCache();
+				ctxUserCache.put(CACHE_KEY_P2_INDEXES, cache);
+			}
+			return cache;
+		}
+	}
+
+	private static File getIndexFile(URI location) {
+		String name;
+		try {
+			name = UUID.nameUUIDFromBytes(location.toString().getBytes("UTF-8")).toString(); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new RuntimeException(e);
+		}
+		return CorePlugin.getDefault().getStateLocation().append(INDEX_FOLDER).append(name).toFile();
+	}
+
+	private final IMetadataRepository mdr;
+
+	private final String timestamp;
+
+	private final Map<String, Version[]> versionsById = new HashMap<String, Version[]>();
+
+	private final Map<String, IInstallableUnit> units = new ConcurrentHashMap<String, IInstallableUnit>();
+
+	private P2RepositoryIndex(IMetadataRepository mdr, String timestamp) {
+		this.mdr = mdr;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Returns the highest version of the unit with the given id that is
+	 * included in <code>range</code>.
+	 *
+	 * @param id
+	 *            The id of the installable unit
+	 * @param range
+	 *            The range, or <code>null</code> to accept any version
+	 * @return The best version or <code>null</code> if no version matches
+	 */
+	public Version getBestVersion(String id, VersionRange range) {
+		Version[] versions = getVersions(id);
+		if (versions.length == 0)
+			return null;
+
+		if (range == null || range.equals(VersionRange.emptyRange))
+			return versions[0];
+
+		// Versions are sorted in descending order
+		for (Version version : versions)
+			if (range.isIncluded(version))
+				return version;
+		return null;
+	}
+
+	/**
+	 * Returns the installable unit with the given id and version. The result
+	 * is remembered so that subsequent calls become map lookups.
+	 *
+	 * @return The unit or <code>null</code> if the repository has no such
+	 *         unit
+	 */
+	public IInstallableUnit getIU(String id, Version version, IProgressMonitor monitor) {
+		if (Arrays.binarySearch(getVersions(id), version, Collections.reverseOrder()) < 0) {
+			MonitorUtils.complete(monitor);
+			return null;
+		}
+
+		String key = id + '/' + version;
+		IInstallableUnit iu = units.get(key);
+		if (iu == null) {
+			IQueryResult<IInstallableUnit> result = mdr.query(QueryUtil.createIUQuery(id, version), monitor);
+			if (result.isEmpty())
+				return null;
+			iu = result.iterator().next();
+			units.put(key, iu);
+		} else
+			MonitorUtils.complete(monitor);
+		return iu;
+	}
+
+	/**
+	 * @return The versions of the unit with the given id, sorted with the
+	 *         highest version first
+	 */
+	public Version[] getVersions(String id) {
+		Version[] versions = versionsById.get(id);
+		return versions == null ? NO_VERSIONS : versions;
+	}
+
+	private boolean isCurrent(IMetadataRepository repo, String stamp) {
+		// Without a timestamp we can only trust the index for as long as the
+		// repository instance is the same. The same is true for a composite
+		// since its timestamp doesn't change when its children change.
+		if (timestamp == null || repo instanceof ICompositeRepository<?>)
+			return mdr == repo;
+		return timestamp.equals(stamp);
+	}
+
+	private boolean load(File indexFile) {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8")); //$NON-NLS-1$
+			if (!timestamp.equals(reader.readLine()))
+				return false;
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t"); //$NON-NLS-1$
+				Version[] versions = new Version[parts.length - 1];
+				for (int idx = 1; idx < parts.length; ++idx)
+					versions[idx - 1] = Version.create(parts[idx]);
+				versionsById.put(parts[0], versions);
+			}
+			return true;
+		} catch (FileNotFoundException e) {
+			return false;
+		} catch (Exception e) {
+			// Corrupt index. It will be rebuilt
+			versionsById.clear();
+			CorePlugin.getLogger().warning(e, e.getMessage());
+			return false;
+		} finally {
+			IOUtils.close(reader);
+		}
+	}
+
+	private void populate(IProgressMonitor monitor) {
+		Logger logger = CorePlugin.getLogger();
+		File indexFile = null;
+		if (timestamp != null && !(mdr instanceof ICompositeRepository<?>)) {
+			// The timestamp of a composite doesn't reflect changes in its
+			// children so those indexes are never persisted
+			indexFile = getIndexFile(mdr.getLocation());
+			if (load(indexFile)) {
+				if (logger.isDebugEnabled())
+					logger.debug("Reusing p2 index for %s", mdr.getLocation()); //$NON-NLS-1$
+				return;
+			}
+		}
+
+		Map<String, List<Version>> collector = new HashMap<String, List<Version>>();
+		for (IInstallableUnit iu : mdr.query(QueryUtil.createIUAnyQuery(), monitor)) {
+			String id = iu.getId();
+			List<Version> versions = collector.get(id);
+			if (versions == null) {
+				versions = new ArrayList<Version>(1);
+				collector.put(id, versions);
+			}
+			versions.add(iu.getVersion());
+		}
+
+		for (Map.Entry<String, List<Version>> entry : collector.entrySet()) {
+			List<Version> versions = entry.getValue();
+			Collections.sort(versions, Collections.reverseOrder());
+			versionsById.put(entry.getKey(), versions.toArray(new Version[versions.size()]));
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("Created p2 index with %d ids for %s", Integer.valueOf(versionsById.size()), mdr.getLocation()); //$NON-NLS-1$
+
+		if (indexFile != null)
+			save(indexFile);
+	}
+
+	private void save(File indexFile) {
+		File folder = indexFile.getParentFile();
+		File tempFile = new File(folder, indexFile.getName() + ".tmp"); //$NON-NLS-1$
+		Writer writer = null;
+		try {
+			folder.mkdirs();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8")); //$NON-NLS-1$
+			writer.write(timestamp);
+			writer.write('\n');
+			for (Map.Entry<String, Version[]> entry : versionsById.entrySet()) {
+				writer.write(entry.getKey());
+				for (Version version : entry.getValue()) {
+					writer.write('\t');
+					writer.write(version.toString());
+				}
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			CorePlugin.getLogger().warning(e, e.getMessage());
+			return;
+		} finally {
+			IOUtils.close(writer);
+		}
+		indexFile.delete();
+		if (!tempFile.renameTo(indexFile))
+			tempFile.delete();
+	}
+}
@@ -9,11 +9,7 @@ import org.eclipse.buckminster.core.version.AbstractVersionFinder;
 import org.eclipse.buckminster.core.version.VersionMatch;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.equinox.p2.metadata.IInstallableUnit;
-import org.eclipse.equinox.p2.metadata.VersionRange;
-import org.eclipse.equinox.p2.query.IQuery;
-import org.eclipse.equinox.p2.query.IQueryResult;
-import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 
 public class P2VersionFinder extends AbstractVersionFinder {
@@ -36,15 +32,10 @@ public class P2VersionFinder extends AbstractVersionFinder {
 				name += P2Constants.FEATURE_GROUP;
 		}
 
-		VersionRange range = request.getVersionRange();
-		IQuery<IInstallableUnit> query = (range == null || range.equals(VersionRange.emptyRange)) //
-				? QueryUtil.createQuery("select(x | x.id == $0).latest()", name) //$NON-NLS-1$
-				: QueryUtil.createQuery("select(x | x.id == $0 && x.version ~= $1).latest()", name, range); //$NON-NLS-1$
-		IQueryResult<IInstallableUnit> result = mdr.query(query, monitor);
-		if (result.isEmpty())
+		Version best = P2RepositoryIndex.getIndex(getQuery().getContext(), mdr, monitor).getBestVersion(name, request.getVersionRange());
+		if (best == null)
 			return null;
 
-		IInstallableUnit best = result.iterator().next();
-		return new VersionMatch(best.getVersion(), null, -1, null, best.getId());
+		return new VersionMatch(best, null, -1, null, name);
 	}
 }
@@ -13,6 +13,7 @@
 
 package org.eclipse.buckminster.core.reader;
 
+import java.io.FileNotFoundException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -35,13 +36,16 @@ import org.eclipse.buckminster.core.rmap.model.Provider;
 import org.eclipse.buckminster.core.rmap.model.ProviderScore;
 import org.eclipse.buckminster.core.version.ProviderMatch;
 import org.eclipse.buckminster.core.version.VersionMatch;
+import org.eclipse.buckminster.download.DownloadManager;
 import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IFileInfo;
 import org.eclipse.buckminster.runtime.MonitorUtils;
 import org.eclipse.buckminster.runtime.URLUtils;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.ecf.core.security.IConnectContext;
 
 /**
  * @author Thomas Hallgren
@@ -132,6 +136,27 @@ public class URLReaderType extends AbstractReaderType {
 		return new URLFileReader(this, resolution.getProviderMatch(context), getURI(resolution.getRepository()));
 	}
 
+	/**
+	 * The fingerprint of a URL is the size and last modification timestamp
+	 * reported by the server.
+	 */
+	@Override
+	public String getRemoteFingerprint(Resolution resolution, RMContext context, IProgressMonitor monitor) throws CoreException {
+		MonitorUtils.complete(monitor);
+		try {
+			URL url = getURI(resolution.getRepository()).toURL();
+			IConnectContext cctx = resolution.getProvider().getConnectContext(resolution.getProperties());
+			IFileInfo info = DownloadManager.readInfo(url, cctx);
+			if (info == null || info.getLastModified() == 0)
+				return null;
+			return info.getSize() + "@" + info.getLastModified(); //$NON-NLS-1$
+		} catch (FileNotFoundException e) {
+			return null;
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
 	@Override
 	public String getRemotePath(String repositoryLocation) throws CoreException {
 		return getURI(repositoryLocation).getPath();
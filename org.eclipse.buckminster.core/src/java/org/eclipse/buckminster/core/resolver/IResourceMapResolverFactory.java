@@ -30,6 +30,16 @@ public interface IResourceMapResolverFactory extends IResolverFactory {
 	 */
 	public URL getResourceMapURL() throws CoreException;
 
+	/**
+	 * Obtains the {@link #INCREMENTAL_RESOLVE_PARAM} setting for this factory
+	 * from the preference store. If not found there, it defaults to the value
+	 * set in the extension definition.
+	 * 
+	 * @return <code>true</code> if resolutions from earlier runs should be
+	 *         reused when their remote fingerprints are unchanged.
+	 */
+	public boolean isIncrementalResolve();
+
 	/**
 	 * Obtains the {@link #LOCAL_RESOLVE_PARAM} setting for this factory from
 	 * the preference store. If not found there, it defaults to the value set in
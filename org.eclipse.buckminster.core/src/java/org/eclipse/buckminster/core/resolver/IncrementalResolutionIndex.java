@@ -0,0 +1,416 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.core.resolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.buckminster.core.CorePlugin;
+import org.eclipse.buckminster.core.RMContext;
+import org.eclipse.buckminster.core.cspec.model.CSpec;
+import org.eclipse.buckminster.core.metadata.FileStorage;
+import org.eclipse.buckminster.core.metadata.ISaxableStorage;
+import org.eclipse.buckminster.core.metadata.StorageManager;
+import org.eclipse.buckminster.core.metadata.model.ElementNotFoundException;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.parser.IParserFactory;
+import org.eclipse.buckminster.core.query.model.ComponentQuery;
+import org.eclipse.buckminster.core.reader.IReaderType;
+import org.eclipse.buckminster.core.rmap.model.Provider;
+import org.eclipse.buckminster.core.rmap.model.ResourceMap;
+import org.eclipse.buckminster.core.version.VersionSelector;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.buckminster.sax.UUIDKeyed;
+import org.eclipse.buckminster.sax.Utils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Remembers the resolutions of earlier runs of the {@link ResourceMapResolver}
+ * together with a fingerprint of the remote state that each resolution was
+ * based on. A node query that is equal to a query of an earlier run, that is
+ * resolved using an identical resource map, and whose remote fingerprint has
+ * not changed, can reuse the earlier resolution instead of consulting the
+ * providers again.
+ * <p>
+ * The fingerprints are obtained from the reader type of the resolution. They
+ * are computed once per repository location and run so a large number of
+ * components that stem from the same repository will only cause one remote
+ * request. Resolutions for which no fingerprint can be obtained are always
+ * resolved.
+ * </p>
+ * <p>
+ * The recorded resolutions, together with their component specifications and
+ * providers, are kept in file storages in a folder next to the index file so
+ * that they survive the process that recorded them. Entries that turn out to
+ * be stale are dropped from the index and the elements that no entry refers
+ * to are removed from the storages when the index is saved.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class IncrementalResolutionIndex {
+	public static final String INDEX_FILE = "resolutions.index"; //$NON-NLS-1$
+
+	public static final String STORAGE_SUFFIX = ".store"; //$NON-NLS-1$
+
+	private static final String NO_FINGERPRINT = ""; //$NON-NLS-1$
+
+	public static IncrementalResolutionIndex getDefault(RMContext context) throws CoreException {
+		return new IncrementalResolutionIndex(CorePlugin.getDefault().getStateLocation().append(INDEX_FILE).toFile(), context);
+	}
+
+	private final File indexFile;
+
+	private final RMContext context;
+
+	private final Properties entries = new Properties();
+
+	private final ISaxableStorage<Provider> providers;
+
+	private final ISaxableStorage<CSpec> cspecs;
+
+	private final ISaxableStorage<Resolution> resolutions;
+
+	private final Map<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+
+	private final Map<ResourceMap, String> resourceMapDigests = Collections.synchronizedMap(new IdentityHashMap<ResourceMap, String>());
+
+	private boolean dirty;
+
+	private int reuseCount;
+
+	public IncrementalResolutionIndex(File indexFile, RMContext context) throws CoreException {
+		this.indexFile = indexFile;
+		this.context = context;
+		InputStream input = null;
+		try {
+			input = new BufferedInputStream(new FileInputStream(indexFile));
+			entries.load(input);
+		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			IOUtils.close(input);
+		}
+
+		File storageFolder = new File(indexFile.getPath() + STORAGE_SUFFIX);
+		IParserFactory pf = CorePlugin.getDefault().getParserFactory();
+		providers = new FileStorage<Provider>(new File(storageFolder, Provider.TAG), pf.getProviderParser(false), Provider.class,
+				Provider.SEQUENCE_NUMBER);
+		cspecs = new FileStorage<CSpec>(new File(storageFolder, CSpec.TAG), pf.getCSpecParser(false), CSpec.class, CSpec.SEQUENCE_NUMBER);
+		resolutions = new FileStorage<Resolution>(new File(storageFolder, Resolution.TAG), pf.getResolutionParser(), Resolution.class,
+				Resolution.SEQUENCE_NUMBER);
+	}
+
+	/**
+	 * Returns the resolution that was recorded for <code>query</code> by an
+	 * earlier run provided that the resource map is unchanged and that the
+	 * remote fingerprint of the resolution is still the same.
+	 *
+	 * @param query
+	 *            The query to find a resolution for
+	 * @param rmap
+	 *            The resource map that would be used for the resolution
+	 * @param monitor
+	 *            The monitor used for progress reporting
+	 * @return The reusable resolution or <code>null</code>
+	 */
+	public Resolution getReusableResolution(NodeQuery query, ResourceMap rmap, IProgressMonitor monitor) {
+		monitor.beginTask(null, 100);
+		try {
+			String key = getKey(query, rmap);
+			String entry;
+			synchronized (entries) {
+				entry = entries.getProperty(key);
+			}
+			if (entry == null)
+				return null;
+
+			// The entry is <resolution id> <cspec id> <provider id> <fingerprint>
+			//
+			String[] parts = entry.split(" ", 4); //$NON-NLS-1$
+			if (parts.length < 4) {
+				removeEntry(key, entry);
+				return null;
+			}
+
+			Resolution resolution;
+			try {
+				// The resolution parser finds the cspec and the provider of
+				// the resolution in the default storage manager so they
+				// must be stored there first.
+				//
+				StorageManager sm = StorageManager.getDefault();
+				cspecs.getElement(UUID.fromString(parts[1])).store(sm);
+				providers.getElement(UUID.fromString(parts[2])).store(sm);
+				resolution = resolutions.getElement(UUID.fromString(parts[0]));
+			} catch (ElementNotFoundException e) {
+				removeEntry(key, entry);
+				return null;
+			} catch (IllegalArgumentException e) {
+				removeEntry(key, entry);
+				return null;
+			}
+
+			if (!query.isMatch(resolution.getVersionMatch())) {
+				removeEntry(key, entry);
+				return null;
+			}
+
+			String fingerprint = getFingerprint(resolution, monitor);
+			if (fingerprint == null || !fingerprint.equals(parts[3])) {
+				removeEntry(key, entry);
+				return null;
+			}
+
+			synchronized (entries) {
+				++reuseCount;
+			}
+			return resolution;
+		} catch (CoreException e) {
+			// Missing resolution or unreachable repository. A full resolution
+			// will take place and report any real problem.
+			Logger logger = CorePlugin.getLogger();
+			if (logger.isDebugEnabled())
+				logger.debug(e, "Unable to reuse resolution of %s", query.getComponentRequest()); //$NON-NLS-1$
+			return null;
+		} finally {
+			monitor.done();
+		}
+	}
+
+	public int getReuseCount() {
+		synchronized (entries) {
+			return reuseCount;
+		}
+	}
+
+	/**
+	 * Record the resolution found for <code>query</code> so that it can be
+	 * reused by later runs. Resolutions without a remote fingerprint are not
+	 * recorded.
+	 *
+	 * @param query
+	 *            The query that was resolved
+	 * @param rmap
+	 *            The resource map that was used for the resolution
+	 * @param resolution
+	 *            The resolution
+	 * @param monitor
+	 *            The monitor used for progress reporting
+	 */
+	public void recordResolution(NodeQuery query, ResourceMap rmap, Resolution resolution, IProgressMonitor monitor) {
+		monitor.beginTask(null, 100);
+		try {
+			String key = getKey(query, rmap);
+			String fingerprint = getFingerprint(resolution, monitor);
+			if (fingerprint == null) {
+				synchronized (entries) {
+					if (entries.remove(key) != null)
+						dirty = true;
+				}
+				return;
+			}
+
+			CSpec cspec = resolution.getCSpec();
+			Provider provider = resolution.getProvider();
+			providers.putElement(provider);
+			cspecs.putElement(cspec);
+			resolutions.putElement(resolution);
+
+			StringBuilder bld = new StringBuilder();
+			bld.append(resolution.getId());
+			bld.append(' ');
+			bld.append(cspec.getId());
+			bld.append(' ');
+			bld.append(provider.getId());
+			bld.append(' ');
+			bld.append(fingerprint);
+			String entry = bld.toString();
+			synchronized (entries) {
+				if (!entry.equals(entries.setProperty(key, entry)))
+					dirty = true;
+			}
+		} catch (CoreException e) {
+			Logger logger = CorePlugin.getLogger();
+			if (logger.isDebugEnabled())
+				logger.debug(e, "Unable to record resolution of %s", query.getComponentRequest()); //$NON-NLS-1$
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Write the index to disk if it has changed since it was read and remove
+	 * the stored elements that are no longer referenced from the index.
+	 *
+	 * @throws CoreException
+	 */
+	public void save() throws CoreException {
+		synchronized (entries) {
+			if (!dirty)
+				return;
+
+			Set<UUID> resolutionIds = new HashSet<UUID>();
+			Set<UUID> cspecIds = new HashSet<UUID>();
+			Set<UUID> providerIds = new HashSet<UUID>();
+			for (Object value : entries.values()) {
+				String[] parts = ((String) value).split(" ", 4); //$NON-NLS-1$
+				if (parts.length < 4)
+					continue;
+				try {
+					resolutionIds.add(UUID.fromString(parts[0]));
+					cspecIds.add(UUID.fromString(parts[1]));
+					providerIds.add(UUID.fromString(parts[2]));
+				} catch (IllegalArgumentException e) {
+				}
+			}
+			removeUnreferenced(resolutions, resolutionIds);
+			removeUnreferenced(cspecs, cspecIds);
+			removeUnreferenced(providers, providerIds);
+
+			File folder = indexFile.getParentFile();
+			File tempFile = new File(folder, indexFile.getName() + ".tmp"); //$NON-NLS-1$
+			OutputStream output = null;
+			try {
+				output = new BufferedOutputStream(new FileOutputStream(tempFile));
+				entries.store(output, null);
+			} catch (IOException e) {
+				throw BuckminsterException.wrap(e);
+			} finally {
+				IOUtils.close(output);
+			}
+
+			indexFile.delete();
+			if (!tempFile.renameTo(indexFile))
+				throw BuckminsterException.fromMessage("Unable to rename %s to %s", tempFile, indexFile); //$NON-NLS-1$
+			dirty = false;
+		}
+	}
+
+	/**
+	 * Obtains the fingerprint of the remote state that <code>resolution</code>
+	 * was based on.
+	 *
+	 * @param resolution
+	 *            The resolution
+	 * @param monitor
+	 *            The monitor used for progress reporting
+	 * @return The fingerprint or <code>null</code> if no fingerprint can be
+	 *         obtained
+	 * @throws CoreException
+	 */
+	protected String getRemoteFingerprint(Resolution resolution, IProgressMonitor monitor) throws CoreException {
+		return resolution.getProvider().getReaderType().getRemoteFingerprint(resolution, context, monitor);
+	}
+
+	private String getFingerprint(Resolution resolution, IProgressMonitor monitor) throws CoreException {
+		IReaderType readerType = resolution.getProvider().getReaderType();
+		VersionSelector branchOrTag = resolution.getVersionMatch().getBranchOrTag();
+		StringBuilder bld = new StringBuilder();
+		bld.append(readerType.getId());
+		bld.append('|');
+		bld.append(resolution.getRepository());
+		if (branchOrTag != null) {
+			bld.append('|');
+			bld.append(branchOrTag);
+		}
+		String fingerprintKey = bld.toString();
+
+		String fingerprint = fingerprints.get(fingerprintKey);
+		if (fingerprint == null) {
+			fingerprint = getRemoteFingerprint(resolution, monitor);
+			if (fingerprint == null)
+				fingerprint = NO_FINGERPRINT;
+			fingerprints.put(fingerprintKey, fingerprint);
+		}
+		return fingerprint == NO_FINGERPRINT ? null : fingerprint;
+	}
+
+	/**
+	 * The key is a digest of everything that the outcome of resolving the
+	 * query depends on, besides the remote state. That is the resource map,
+	 * the component query, the request, the required attributes, and the
+	 * effective properties of the query. The properties are included since
+	 * they drive the expansion of the resource map and the evaluation of
+	 * filters, e.g. a resolution for one target platform must never be used
+	 * for another.
+	 */
+	private String getKey(NodeQuery query, ResourceMap rmap) throws CoreException {
+		String rmapDigest = resourceMapDigests.get(rmap);
+		if (rmapDigest == null) {
+			rmapDigest = UUID.nameUUIDFromBytes(Utils.getImage(rmap)).toString();
+			resourceMapDigests.put(rmap, rmapDigest);
+		}
+
+		ComponentQuery cquery = query.getComponentQuery();
+		StringBuilder bld = new StringBuilder();
+		bld.append(rmapDigest);
+		bld.append('|');
+		bld.append(cquery.getId());
+		bld.append('|');
+		bld.append(query.getComponentRequest());
+		List<String> attributes = new ArrayList<String>(query.getRequiredAttributes());
+		Collections.sort(attributes);
+		for (String attribute : attributes) {
+			bld.append('|');
+			bld.append(attribute);
+		}
+		bld.append('|');
+		Map<String, ? extends Object> properties = query.getProperties();
+		for (String key : new TreeSet<String>(properties.keySet())) {
+			bld.append('|');
+			bld.append(key);
+			bld.append('=');
+			bld.append(properties.get(key));
+		}
+		try {
+			return UUID.nameUUIDFromBytes(bld.toString().getBytes("UTF-8")).toString(); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			throw BuckminsterException.wrap(e);
+		}
+	}
+
+	private void removeEntry(String key, String entry) {
+		synchronized (entries) {
+			if (entry.equals(entries.get(key))) {
+				entries.remove(key);
+				dirty = true;
+			}
+		}
+	}
+
+	private static <T extends UUIDKeyed> void removeUnreferenced(ISaxableStorage<T> storage, Set<UUID> referenced) throws CoreException {
+		for (UUID id : storage.getKeys())
+			if (!referenced.contains(id))
+				storage.removeElement(id);
+	}
+}
@@ -9,11 +9,14 @@ package org.eclipse.buckminster.core.resolver;
 
 import java.util.List;
 
+import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.Messages;
 import org.eclipse.buckminster.core.cspec.model.ComponentRequest;
 import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
 import org.eclipse.buckminster.core.metadata.model.UnresolvedNode;
+import org.eclipse.buckminster.core.version.VersionHelper;
 import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.Logger;
 import org.eclipse.buckminster.runtime.MonitorUtils;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -161,6 +164,7 @@ public class MainResolver implements IResolver {
 				monitor.done();
 			}
 		}
+		logInternStatistics();
 		return bom;
 	}
 
@@ -168,4 +172,11 @@ public class MainResolver implements IResolver {
 	public void setRecursiveResolve(boolean flag) {
 		recursiveResolve = flag;
 	}
+
+	private void logInternStatistics() {
+		Logger logger = CorePlugin.getLogger();
+		if (logger.isDebugEnabled())
+			logger.debug("Interned versions and ranges: %d, hits: %d, misses: %d", Integer.valueOf(VersionHelper.getInternSize()), //$NON-NLS-1$
+					Long.valueOf(VersionHelper.getInternHitCount()), Long.valueOf(VersionHelper.getInternMissCount()));
+	}
 }
@@ -34,6 +34,7 @@ import org.eclipse.buckminster.core.version.VersionHelper;
 import org.eclipse.buckminster.core.version.VersionMatch;
 import org.eclipse.buckminster.core.version.VersionSelector;
 import org.eclipse.buckminster.core.version.VersionType;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.metadata.VersionRange;
@@ -55,6 +56,8 @@ public class NodeQuery implements Comparator<VersionMatch>, IResolverBackchannel
 
 	private transient IComponentType componentType;
 
+	private transient PropertySnapshot propertySnapshot;
+
 	public NodeQuery(NodeQuery query, Map<String, ? extends Object> additionalProperties) {
 		this(query, additionalProperties, true);
 	}
@@ -273,6 +276,19 @@ public class NodeQuery implements Comparator<VersionMatch>, IResolverBackchannel
 		return properties;
 	}
 
+	/**
+	 * Returns a case sensitive snapshot of the properties of this query. Filters
+	 * that are matched against the snapshot are compiled once per query.
+	 * 
+	 * @return The snapshot of the properties returned by
+	 *         {@link #getProperties()}
+	 */
+	public synchronized PropertySnapshot getPropertySnapshot() {
+		if (propertySnapshot == null)
+			propertySnapshot = new PropertySnapshot(properties, true);
+		return propertySnapshot;
+	}
+
 	public Object getProperty(String mapName) {
 		return getProperties().get(mapName);
 	}
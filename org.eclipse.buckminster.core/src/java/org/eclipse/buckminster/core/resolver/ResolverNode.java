@@ -43,13 +43,13 @@ public class ResolverNode {
 
 	private GeneratorNode generatorNode;
 
-	private boolean invalidateRun;
+	private volatile boolean invalidateRun;
 
 	private NodeQuery query;
 
-	private Resolution resolution;
+	private volatile Resolution resolution;
 
-	private boolean forceUnresolved;
+	private volatile boolean forceUnresolved;
 
 	private final String tagInfo;
 
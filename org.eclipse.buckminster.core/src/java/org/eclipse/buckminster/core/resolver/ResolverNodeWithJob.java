@@ -11,6 +11,7 @@ package org.eclipse.buckminster.core.resolver;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.buckminster.core.RMContext;
 import org.eclipse.buckminster.core.cspec.QualifiedDependency;
@@ -27,42 +28,23 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 
+/**
+ * A resolver node that is resolved as a task on the executor of its
+ * {@link ResourceMapResolver}. The scheduling state is maintained without
+ * locking so that scheduling never contends with a running resolution of the
+ * same node.
+ */
 class ResolverNodeWithJob extends ResolverNode {
-	class NodeResolutionJob extends Job {
-		private boolean scheduled;
+	private static final int IDLE = 0;
 
-		NodeResolutionJob(String name) {
-			super(name);
-		}
-
-		@Override
-		public boolean belongsTo(Object family) {
-			return family == resolver;
-		}
-
-		@Override
-		protected IStatus run(IProgressMonitor monitor) {
-			return ResolverNodeWithJob.this.run(monitor);
-		}
-
-		ResolverNodeWithJob getNode() {
-			return ResolverNodeWithJob.this;
-		}
-
-		boolean isScheduled() {
-			return scheduled;
-		}
-
-		void setScheduled(boolean flag) {
-			scheduled = flag;
-		}
-	}
+	private static final int SCHEDULED = 1;
 
 	private final ResourceMapResolver resolver;
 
-	private final NodeResolutionJob job;
+	private final AtomicInteger state = new AtomicInteger(IDLE);
+
+	private volatile int depth = Integer.MAX_VALUE;
 
 	private static final String SOURCE_SUFFIX = ".source"; //$NON-NLS-1$
 
@@ -78,7 +60,6 @@ class ResolverNodeWithJob extends ResolverNode {
 
 	ResolverNodeWithJob(ResourceMapResolver resolver, ResolutionContext context, QualifiedDependency qDep, String requestorInfo) {
 		super(context.getNodeQuery(qDep), requestorInfo);
-		this.job = new NodeResolutionJob(qDep.getRequest().toString());
 		this.resolver = resolver;
 	}
 
@@ -90,20 +71,16 @@ class ResolverNodeWithJob extends ResolverNode {
 	}
 
 	protected IStatus run(IProgressMonitor monitor) {
-		if (isForceUnresolved()) {
-			resolver.resolutionPartDone();
+		if (isForceUnresolved())
 			return Status.OK_STATUS;
-		}
 
 		clearInvalidationFlag();
 		resolver.addJobMonitor(monitor);
 		BOMNode node = null;
 		try {
 			node = resolve(monitor);
-			if (node != null) {
-				resolver.resolutionPartDone();
+			if (node != null)
 				buildTree(node);
-			}
 		} catch (CoreException e) {
 			RMContext context = resolver.getContext();
 			context.addRequestStatus(getQuery().getComponentRequest(), e.getStatus());
@@ -115,18 +92,36 @@ class ResolverNodeWithJob extends ResolverNode {
 			resolver.getContext().addRequestStatus(getQuery().getComponentRequest(), BuckminsterException.wrap(e).getStatus());
 		} finally {
 			resolver.removeJobMonitor(monitor);
-			if (node == null)
-				resolver.resolutionPartDone();
 		}
 		return Status.OK_STATUS;
 	}
 
-	NodeResolutionJob getJob() {
-		return job;
+	/**
+	 * Returns the shortest distance from the root of the resolution at which
+	 * this node has been requested.
+	 */
+	int getDepth() {
+		return depth;
 	}
 
 	boolean isScheduled() {
-		return job.isScheduled();
+		return state.get() == SCHEDULED;
+	}
+
+	/**
+	 * Atomically mark this node as scheduled.
+	 * 
+	 * @return <code>true</code> if the node was idle and is now scheduled,
+	 *         <code>false</code> if it was scheduled already
+	 */
+	boolean markScheduled() {
+		return state.compareAndSet(IDLE, SCHEDULED);
+	}
+
+	void offerDepth(int newDepth) {
+		// A lost update here only affects the scheduling priority
+		if (newDepth < depth)
+			depth = newDepth;
 	}
 
 	boolean rebuildTree(BOMNode node) throws CoreException {
@@ -134,8 +129,8 @@ class ResolverNodeWithJob extends ResolverNode {
 		return buildTree(node);
 	}
 
-	void setScheduled(boolean scheduled) {
-		job.setScheduled(scheduled);
+	void markIdle() {
+		state.set(IDLE);
 	}
 
 	private boolean buildTree(BOMNode node) throws CoreException {
@@ -192,6 +187,7 @@ class ResolverNodeWithJob extends ResolverNode {
 			ComponentQuery childQuery = childNode.getQuery();
 			ResolutionContext childContext = (childQuery == null) ? context : new ResolutionContext(childQuery, context);
 			ResolverNode child = resolver.getResolverNode(childContext, childReq, tagInfo);
+			((ResolverNodeWithJob) child).offerDepth(depth + 1);
 			if (children == null)
 				children = new ArrayList<ResolverNode>();
 			children.add(child);
@@ -12,8 +12,14 @@ package org.eclipse.buckminster.core.resolver;
 
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.LinkedList;
-
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.Messages;
 import org.eclipse.buckminster.core.RMContext;
 import org.eclipse.buckminster.core.cspec.QualifiedDependency;
@@ -22,29 +28,96 @@ import org.eclipse.buckminster.core.helpers.FibonacciMonitorWrapper;
 import org.eclipse.buckminster.core.helpers.JobBlocker;
 import org.eclipse.buckminster.core.metadata.model.BOMNode;
 import org.eclipse.buckminster.core.metadata.model.BillOfMaterials;
+import org.eclipse.buckminster.core.metadata.model.Resolution;
+import org.eclipse.buckminster.core.metadata.model.ResolvedNode;
 import org.eclipse.buckminster.core.query.model.ComponentQuery;
 import org.eclipse.buckminster.core.rmap.model.Provider;
 import org.eclipse.buckminster.core.rmap.model.ResourceMap;
+import org.eclipse.buckminster.runtime.DaemonThreadFactory;
+import org.eclipse.buckminster.runtime.Logger;
 import org.eclipse.buckminster.runtime.MonitorUtils;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.IJobChangeEvent;
-import org.eclipse.core.runtime.jobs.IJobChangeListener;
-import org.eclipse.core.runtime.jobs.Job;
 
 /**
+ * A resolver that resolves the nodes of the dependency graph in parallel. Each
+ * resolution gets its own pool of at most
+ * {@link IResourceMapResolverFactory#getResolverThreadsMax()} threads. Nodes
+ * that are closer to the root are given precedence since their resolution is
+ * what discovers the rest of the graph.
+ * <p>
+ * When {@link IResourceMapResolverFactory#isIncrementalResolve()} is set, the
+ * resolutions are recorded in an {@link IncrementalResolutionIndex} and reused
+ * by later runs for as long as their remote fingerprints are unchanged.
+ * </p>
+ * 
  * @author Thomas Hallgren
  */
 @SuppressWarnings("serial")
-public class ResourceMapResolver extends LocalResolver implements IJobChangeListener, IResolver {
-	private boolean singleThreaded = false;
+public class ResourceMapResolver extends LocalResolver implements IResolver {
+	/**
+	 * The task that resolves one node. Tasks are ordered by the depth of their
+	 * node and then by the order in which they were scheduled. The number of
+	 * children that a node will unblock is not known until the node has been
+	 * resolved, so the depth is used in its place. Nodes close to the root are
+	 * the ones whose children spread out into the rest of the graph.
+	 * <p>
+	 * Each task counts down the pending counter of the run that scheduled it.
+	 * A task that is still running when its run has ended can therefore not
+	 * disturb the count of a later run.
+	 * </p>
+	 */
+	private class NodeTask implements Runnable, Comparable<NodeTask> {
+		private final ResolverNodeWithJob node;
+
+		private final AtomicInteger pending;
+
+		private final int depth;
+
+		private final long sequence;
+
+		NodeTask(ResolverNodeWithJob node, AtomicInteger pending) {
+			this.node = node;
+			this.pending = pending;
+			this.depth = node.getDepth();
+			this.sequence = taskSequence.incrementAndGet();
+		}
+
+		@Override
+		public int compareTo(NodeTask o) {
+			if (depth != o.depth)
+				return depth < o.depth ? -1 : 1;
+			return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+		}
+
+		@Override
+		public void run() {
+			try {
+				synchronized (ResourceMapResolver.this) {
+					if (topMonitor != null)
+						MonitorUtils.worked(topMonitor, 1);
+				}
+				node.run(new NullProgressMonitor());
+			} finally {
+				node.markIdle();
+
+				// Reschedule before the pending count is decremented so that
+				// the count never reaches zero while there is work left
+				//
+				if (node.isInvalidated() && !node.isForceUnresolved())
+					schedule(node);
+				taskDone(pending);
+			}
+		}
+	}
 
-	private boolean holdQueue = false;
+	private boolean singleThreaded = false;
 
-	private static int jobCounter = 0;
+	private volatile boolean holdQueue = false;
 
 	private final ArrayList<IProgressMonitor> jobMonitors = new ArrayList<IProgressMonitor>();
 
@@ -52,7 +125,17 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 
 	private IProgressMonitor topMonitor;
 
-	private final LinkedList<ResolverNodeWithJob> waitQueue = new LinkedList<ResolverNodeWithJob>();
+	private volatile ThreadPoolExecutor executor;
+
+	private final ArrayList<NodeTask> heldTasks = new ArrayList<NodeTask>();
+
+	private volatile AtomicInteger pendingCount = new AtomicInteger();
+
+	private final AtomicLong taskSequence = new AtomicLong();
+
+	private final Object completionLock = new Object();
+
+	private volatile IncrementalResolutionIndex incrementalIndex;
 
 	public ResourceMapResolver(IResourceMapResolverFactory factory, ResolutionContext context, boolean singleThreaded) throws CoreException {
 		super(context);
@@ -60,35 +143,17 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 		this.singleThreaded = singleThreaded;
 	}
 
-	@Override
-	public void aboutToRun(IJobChangeEvent event) {
-	}
-
-	@Override
-	public void awake(IJobChangeEvent event) {
-	}
-
-	@Override
-	public void done(IJobChangeEvent event) {
-		ResolverNodeWithJob.NodeResolutionJob job = (ResolverNodeWithJob.NodeResolutionJob) event.getJob();
-		job.removeJobChangeListener(this);
-		ResolverNodeWithJob node = job.getNode();
-
-		synchronized (node) {
-			node.setScheduled(false);
-			if (node.isInvalidated() && !node.isForceUnresolved())
-				schedule(node);
-		}
-	}
-
 	@Override
 	public BillOfMaterials resolve(ComponentRequest request, IProgressMonitor monitor) throws CoreException {
 		beginTopMonitor(monitor);
+		startExecutor();
+		openIncrementalIndex();
 		try {
 			ResolutionContext ctx = getContext();
 			ComponentQuery query = ctx.getComponentQuery();
 			ResolverNodeWithJob topNode = (ResolverNodeWithJob) getResolverNode(ctx,
 					new QualifiedDependency(request, query.getAttributes(request, ctx)), null);
+			topNode.offerDepth(0);
 
 			if (singleThreaded) {
 				beginTopMonitor(monitor);
@@ -100,6 +165,8 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 			}
 			return createBillOfMaterials(topNode);
 		} finally {
+			shutdownExecutor();
+			closeIncrementalIndex();
 			endTopMonitor();
 		}
 	}
@@ -112,6 +179,8 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 		}
 
 		beginTopMonitor(monitor);
+		startExecutor();
+		openIncrementalIndex();
 		try {
 			ComponentQuery cquery = bom.getQuery();
 			ResolutionContext context = getContext();
@@ -119,6 +188,7 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 				context = new ResolutionContext(cquery, context);
 
 			ResolverNodeWithJob topNode = (ResolverNodeWithJob) getResolverNode(context, bom.getQualifiedDependency(), bom.getTagInfo());
+			topNode.offerDepth(0);
 
 			holdQueue = true;
 			if (topNode.rebuildTree(bom)) {
@@ -128,7 +198,7 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 					if (status.getSeverity() == IStatus.ERROR && !context.isContinueOnError())
 						throw new CoreException(status);
 				} else {
-					scheduleNext();
+					releaseHeldTasks();
 					waitForCompletion(MonitorUtils.subMonitor(monitor, 1));
 				}
 				BillOfMaterials newBom = createBillOfMaterials(topNode);
@@ -138,24 +208,12 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 			return bom;
 		} finally {
 			holdQueue = false;
+			shutdownExecutor();
+			closeIncrementalIndex();
 			endTopMonitor();
 		}
 	}
 
-	@Override
-	public synchronized void running(IJobChangeEvent event) {
-		if (topMonitor != null)
-			MonitorUtils.worked(topMonitor, 1);
-	}
-
-	@Override
-	public void scheduled(IJobChangeEvent event) {
-	}
-
-	@Override
-	public void sleeping(IJobChangeEvent event) {
-	}
-
 	synchronized void addJobMonitor(IProgressMonitor monitor) {
 		if (singleThreaded)
 			return;
@@ -214,8 +272,23 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 			}
 
 			if (node == null && rmap != null) {
-				query.logDecision(ResolverDecisionType.USING_RESOURCE_MAP, rmapURL);
-				node = rmap.resolve(query, MonitorUtils.subMonitor(monitor, 95));
+				IncrementalResolutionIndex index = incrementalIndex;
+				if (index != null) {
+					Resolution previous = index.getReusableResolution(query, rmap, MonitorUtils.subMonitor(monitor, 5));
+					if (previous != null) {
+						query.logDecision(ResolverDecisionType.USING_RESOLVER, "Incremental resolver"); //$NON-NLS-1$
+						node = new ResolvedNode(query, previous);
+					}
+				} else
+					MonitorUtils.worked(monitor, 5);
+
+				if (node == null) {
+					query.logDecision(ResolverDecisionType.USING_RESOURCE_MAP, rmapURL);
+					node = rmap.resolve(query, MonitorUtils.subMonitor(monitor, 85));
+					Resolution resolution = node.getResolution();
+					if (index != null && resolution != null)
+						index.recordResolution(query, rmap, resolution, MonitorUtils.subMonitor(monitor, 5));
+				}
 			} else
 				MonitorUtils.worked(monitor, 95);
 
@@ -244,32 +317,34 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 		}
 	}
 
-	synchronized void resolutionPartDone() {
-		if (singleThreaded)
-			return;
-
-		// Allow another job to enter. The resolution part of the
-		// calling job is done.
-		//
-		--jobCounter;
-		scheduleNext();
-	}
-
 	boolean schedule(ResolverNodeWithJob node) {
-		synchronized (node) {
-			if (node.isScheduled() || node.isResolved())
-				return false;
-			node.setScheduled(true);
-		}
+		if (node.isResolved() || !node.markScheduled())
+			return false;
 
 		if (singleThreaded) {
 			node.run(MonitorUtils.subMonitor(topMonitor, 1));
-			node.setScheduled(false);
-		} else {
-			pushOnWaitQueue(node);
-			if (!holdQueue)
-				scheduleNext();
+			node.markIdle();
+			return true;
+		}
+
+		AtomicInteger pending = pendingCount;
+		NodeTask task = new NodeTask(node, pending);
+		pending.incrementAndGet();
+		if (holdQueue) {
+			synchronized (heldTasks) {
+				heldTasks.add(task);
+			}
+			return true;
 		}
+
+		ThreadPoolExecutor pool = executor;
+		if (pool == null || pool.isShutdown()) {
+			// The resolution has been canceled or has ended
+			node.markIdle();
+			taskDone(pending);
+			return false;
+		}
+		pool.execute(task);
 		return true;
 	}
 
@@ -280,9 +355,7 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 	}
 
 	private void cancelAllJobs() {
-		synchronized (waitQueue) {
-			waitQueue.clear();
-		}
+		shutdownExecutor();
 
 		synchronized (this) {
 			int idx = jobMonitors.size();
@@ -298,44 +371,84 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 		topMonitor = null;
 	}
 
-	private ResolverNodeWithJob popWaitQueue() {
-		synchronized (waitQueue) {
-			return waitQueue.poll();
+	private void closeIncrementalIndex() {
+		IncrementalResolutionIndex index = incrementalIndex;
+		if (index == null)
+			return;
+
+		incrementalIndex = null;
+		try {
+			index.save();
+		} catch (CoreException e) {
+			CorePlugin.getLogger().warning(e, e.getMessage());
 		}
+		Logger logger = CorePlugin.getLogger();
+		if (logger.isDebugEnabled())
+			logger.debug("Reused %d resolutions from earlier runs", Integer.valueOf(index.getReuseCount())); //$NON-NLS-1$
 	}
 
-	private void pushOnWaitQueue(ResolverNodeWithJob node) {
-		synchronized (waitQueue) {
-			waitQueue.add(node);
+	private void openIncrementalIndex() {
+		if (!factory.isIncrementalResolve())
+			return;
+
+		try {
+			incrementalIndex = IncrementalResolutionIndex.getDefault(getContext());
+		} catch (CoreException e) {
+			// Resolve everything
+			CorePlugin.getLogger().warning(e, e.getMessage());
 		}
 	}
 
-	private boolean scheduleNext() {
-		ArrayList<ResolverNodeWithJob> nodes = null;
-		synchronized (getClass()) {
-			int jobsToSchedule = factory.getResolverThreadsMax() - jobCounter;
-			while (--jobsToSchedule >= 0) {
-				ResolverNodeWithJob node = popWaitQueue();
-				if (node == null)
-					break;
-
-				if (nodes == null)
-					nodes = new ArrayList<ResolverNodeWithJob>();
-				nodes.add(node);
-				++jobCounter;
-			}
+	private void releaseHeldTasks() {
+		NodeTask[] tasks;
+		synchronized (heldTasks) {
+			tasks = heldTasks.toArray(new NodeTask[heldTasks.size()]);
+			heldTasks.clear();
 		}
+		ThreadPoolExecutor pool = executor;
+		for (NodeTask task : tasks)
+			pool.execute(task);
+	}
 
-		if (nodes == null)
-			return false;
+	private void shutdownExecutor() {
+		ThreadPoolExecutor pool = executor;
+		if (pool == null)
+			return;
 
-		int top = nodes.size();
-		for (int idx = 0; idx < top; ++idx) {
-			ResolverNodeWithJob.NodeResolutionJob job = nodes.get(idx).getJob();
-			job.addJobChangeListener(this);
-			job.schedule();
+		// Tasks that never started are counted down here. Tasks that are
+		// running count themselves down when they finish.
+		//
+		executor = null;
+		List<Runnable> neverStarted = pool.shutdownNow();
+		synchronized (heldTasks) {
+			neverStarted.addAll(heldTasks);
+			heldTasks.clear();
+		}
+		for (Runnable runnable : neverStarted) {
+			NodeTask task = (NodeTask) runnable;
+			task.node.markIdle();
+			taskDone(task.pending);
+		}
+	}
+
+	private void startExecutor() {
+		if (singleThreaded)
+			return;
+
+		int threads = Math.max(1, factory.getResolverThreadsMax());
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("Buckminster resolver")); //$NON-NLS-1$
+		pool.allowCoreThreadTimeOut(true);
+		pendingCount = new AtomicInteger();
+		executor = pool;
+	}
+
+	private void taskDone(AtomicInteger pending) {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (completionLock) {
+				completionLock.notifyAll();
+			}
 		}
-		return true;
 	}
 
 	private void waitForCompletion(IProgressMonitor monitor) throws CoreException {
@@ -347,21 +460,12 @@ public class ResourceMapResolver extends LocalResolver implements IJobChangeList
 			IStatus status;
 			RMContext context = getContext();
 			try {
-				for (;;) {
-					Job.getJobManager().join(this, MonitorUtils.subMonitor(monitor, 1));
-
-					// The waitQueue is ours but the job counter is share
-					// between instances so we might run into situations
-					// where we're not yet allowed to schedule anything.
-					//
-					if (waitQueue.isEmpty())
-						break;
-
-					while (!scheduleNext())
-						//
-						// Sleep a while, then try again
-						//
-						Thread.sleep(100);
+				synchronized (completionLock) {
+					while (pendingCount.get() > 0) {
+						if (monitor.isCanceled())
+							throw new OperationCanceledException();
+						completionLock.wait(100);
+					}
 				}
 				status = context.getStatus();
 			} catch (OperationCanceledException e) {
@@ -50,6 +50,10 @@ public class ResourceMapResolverFactory extends AbstractExtension implements IRe
 
 	public static final boolean LOCAL_RESOLVE_DEFAULT = true;
 
+	public static final String INCREMENTAL_RESOLVE_PARAM = "incrementalResolve"; //$NON-NLS-1$
+
+	public static final boolean INCREMENTAL_RESOLVE_DEFAULT = false;
+
 	public static final String RESOLVER_THREADS_MAX_PARAM = "resolverThreadsMax"; //$NON-NLS-1$
 
 	public static final int RESOLVER_THREADS_MAX_DEFAULT = 4;
@@ -70,6 +74,8 @@ public class ResourceMapResolverFactory extends AbstractExtension implements IRe
 
 	private boolean localResolve = LOCAL_RESOLVE_DEFAULT;
 
+	private boolean incrementalResolve = INCREMENTAL_RESOLVE_DEFAULT;
+
 	private int resolverThreadsMax = RESOLVER_THREADS_MAX_DEFAULT;
 
 	private static final UUID CACHE_KEY_RESOURCE_MAP = UUID.randomUUID();
@@ -115,13 +121,14 @@ public class ResourceMapResolverFactory extends AbstractExtension implements IRe
 
 	@Override
 	public IPreferenceDescriptor[] getPreferenceDescriptors() {
-		PreferenceDescriptor[] pds = new PreferenceDescriptor[4];
+		PreferenceDescriptor[] pds = new PreferenceDescriptor[5];
 		pds[0] = new PreferenceDescriptor(RESOURCE_MAP_URL_PARAM, PreferenceType.String, Messages.Resource_map_URL);
 		pds[1] = new PreferenceDescriptor(OVERRIDE_QUERY_URL_PARAM, PreferenceType.Boolean, Messages.Override_URL_in_Component_Query);
 		pds[2] = new PreferenceDescriptor(LOCAL_RESOLVE_PARAM, PreferenceType.Boolean, Messages.Perform_local_resolution);
 		pds[3] = new PreferenceDescriptor(RESOLVER_THREADS_MAX_PARAM, PreferenceType.Integer, Messages.Maximum_number_of_resolver_threads);
 		pds[3].setTextWidth(2);
 		pds[3].setIntegerRange(1, 12);
+		pds[4] = new PreferenceDescriptor(INCREMENTAL_RESOLVE_PARAM, PreferenceType.Boolean, Messages.Perform_incremental_resolution);
 		return pds;
 	}
 
@@ -174,10 +181,24 @@ public class ResourceMapResolverFactory extends AbstractExtension implements IRe
 			//
 			dfltNode.putBoolean(OVERRIDE_QUERY_URL_PARAM, OVERRIDE_QUERY_URL_DEFAULT);
 			dfltNode.putBoolean(LOCAL_RESOLVE_PARAM, LOCAL_RESOLVE_DEFAULT);
+			dfltNode.putBoolean(INCREMENTAL_RESOLVE_PARAM, INCREMENTAL_RESOLVE_DEFAULT);
 			dfltNode.putInt(RESOLVER_THREADS_MAX_PARAM, RESOLVER_THREADS_MAX_DEFAULT);
 		}
 	}
 
+	/**
+	 * Obtains the {@link #INCREMENTAL_RESOLVE_PARAM} setting for this factory
+	 * from the preference store. If not found there, it defaults to the value
+	 * set in the extension definition.
+	 * 
+	 * @return <code>true</code> if resolutions from earlier runs should be
+	 *         reused when their remote fingerprints are unchanged.
+	 */
+	@Override
+	public boolean isIncrementalResolve() {
+		return getPreferences().getBoolean(INCREMENTAL_RESOLVE_PARAM, incrementalResolve);
+	}
+
 	/**
 	 * Obtains the {@link #LOCAL_RESOLVE_PARAM} setting for this factory from
 	 * the preference store. If not found there, it defaults to the value set in
@@ -210,12 +231,18 @@ public class ResourceMapResolverFactory extends AbstractExtension implements IRe
 			overrideQueryURL = Boolean.parseBoolean(value);
 		} else if (LOCAL_RESOLVE_PARAM.equalsIgnoreCase(key)) {
 			localResolve = Boolean.parseBoolean(value);
+		} else if (INCREMENTAL_RESOLVE_PARAM.equalsIgnoreCase(key)) {
+			incrementalResolve = Boolean.parseBoolean(value);
 		} else if (RESOLVER_THREADS_MAX_PARAM.equalsIgnoreCase(key)) {
 			resolverThreadsMax = Integer.parseInt(value);
 		} else
 			throw new IllegalParameterException(ResolverFactoryMaintainer.QUERY_RESOLVERS_POINT, this.getId(), key);
 	}
 
+	public void setIncrementalResolve(boolean incrementalResolve) {
+		getPreferences().putBoolean(INCREMENTAL_RESOLVE_PARAM, incrementalResolve);
+	}
+
 	public void setLocalResolve(boolean localResolve) {
 		getPreferences().putBoolean(LOCAL_RESOLVE_PARAM, localResolve);
 	}
@@ -72,10 +72,9 @@ public abstract class Matcher extends AbstractSaxableElement {
 
 		Map<String, String[]> attributeUsageMap = query.getContext().getFilterAttributeUsageMap();
 		Filter resFilter = getResolutionFilter();
-		Map<String, ? extends Object> props = query.getProperties();
 
 		resolutionFilter.addConsultedAttributes(attributeUsageMap);
-		if (resolutionFilter.matchCase(props))
+		if (query.getPropertySnapshot().match(resolutionFilter))
 			return true;
 
 		if (failingFilter != null)
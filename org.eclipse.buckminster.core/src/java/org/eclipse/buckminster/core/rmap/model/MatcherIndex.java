@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.core.rmap.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * An index over the matchers of a {@link ResourceMap}. Patterns that are
+ * anchored at the start of the name and begin with a literal prefix are
+ * stored in a trie keyed by that prefix. A lookup will therefore only run the
+ * regular expressions of the matchers whose prefix is a prefix of the
+ * component name, along with the matchers that have no such prefix. The
+ * outcome of a lookup is memoized per component name.
+ *
+ * @author Thomas Hallgren
+ */
+class MatcherIndex {
+	private static class TrieNode {
+		private final Map<Character, TrieNode> children = new HashMap<Character, TrieNode>(4);
+
+		private int[] matcherIndexes = NO_INDEXES;
+
+		void addMatcherIndex(int matcherIndex) {
+			int top = matcherIndexes.length;
+			int[] newIndexes = new int[top + 1];
+			System.arraycopy(matcherIndexes, 0, newIndexes, 0, top);
+			newIndexes[top] = matcherIndex;
+			matcherIndexes = newIndexes;
+		}
+
+		TrieNode getChild(char c) {
+			return children.get(Character.valueOf(c));
+		}
+
+		TrieNode getOrCreateChild(char c) {
+			Character key = Character.valueOf(c);
+			TrieNode child = children.get(key);
+			if (child == null) {
+				child = new TrieNode();
+				children.put(key, child);
+			}
+			return child;
+		}
+	}
+
+	private static final int[] NO_INDEXES = new int[0];
+
+	private static final Matcher[] NO_MATCHERS = new Matcher[0];
+
+	/**
+	 * The maximum number of memoized lookups. The memo is cleared when it
+	 * grows beyond this limit.
+	 */
+	private static final int MAX_MEMO_SIZE = 10000;
+
+	private static final String REGEX_META_CHARS = ".[]{}()*+?^$|\\"; //$NON-NLS-1$
+
+	/**
+	 * Returns the literal prefix that all names matched by the
+	 * <code>pattern</code> must start with. The prefix is only found when the
+	 * pattern is anchored with a leading <code>^</code>. Patterns that are not
+	 * anchored, that contain an alternation at the top level, or that are
+	 * compiled with flags, yield the empty string.
+	 *
+	 * @param pattern
+	 *            The pattern to examine
+	 * @return The literal prefix, possibly empty.
+	 */
+	static String getLiteralPrefix(Pattern pattern) {
+		String regex = pattern.pattern();
+		if (pattern.flags() != 0 || !regex.startsWith("^") || hasTopLevelAlternation(regex)) //$NON-NLS-1$
+			return ""; //$NON-NLS-1$
+
+		StringBuilder prefix = new StringBuilder();
+		int top = regex.length();
+		int idx = 1;
+		char stopChar = 0;
+		while (idx < top) {
+			char c = regex.charAt(idx);
+			if (c == '\\') {
+				if (idx + 1 >= top)
+					break;
+				char escaped = regex.charAt(idx + 1);
+				if (Character.isLetterOrDigit(escaped)) {
+					// Character class, back reference, or quote
+					stopChar = c;
+					break;
+				}
+				prefix.append(escaped);
+				idx += 2;
+				continue;
+			}
+			if (REGEX_META_CHARS.indexOf(c) >= 0) {
+				stopChar = c;
+				break;
+			}
+			prefix.append(c);
+			++idx;
+		}
+
+		// A quantifier that permits zero occurrences applies to the last
+		// literal which therefore is optional
+		//
+		if ((stopChar == '?' || stopChar == '*' || stopChar == '{') && prefix.length() > 0)
+			prefix.setLength(prefix.length() - 1);
+		return prefix.toString();
+	}
+
+	private static boolean hasTopLevelAlternation(String regex) {
+		int depth = 0;
+		boolean inClass = false;
+		int top = regex.length();
+		for (int idx = 0; idx < top; ++idx) {
+			char c = regex.charAt(idx);
+			if (c == '\\') {
+				++idx;
+				continue;
+			}
+			if (inClass) {
+				if (c == ']')
+					inClass = false;
+				continue;
+			}
+			switch (c) {
+				case '[':
+					inClass = true;
+					break;
+				case '(':
+					++depth;
+					break;
+				case ')':
+					--depth;
+					break;
+				case '|':
+					if (depth == 0)
+						return true;
+			}
+		}
+		return false;
+	}
+
+	private final Matcher[] matchers;
+
+	private final TrieNode root = new TrieNode();
+
+	private final Map<String, Matcher[]> memo = new ConcurrentHashMap<String, Matcher[]>();
+
+	MatcherIndex(List<Matcher> matcherList) {
+		matchers = matcherList.toArray(new Matcher[matcherList.size()]);
+		int top = matchers.length;
+		for (int idx = 0; idx < top; ++idx) {
+			Pattern pattern = matchers[idx].getPattern();
+			TrieNode node = root;
+			if (pattern != null) {
+				String prefix = getLiteralPrefix(pattern);
+				int prefixLen = prefix.length();
+				for (int pdx = 0; pdx < prefixLen; ++pdx)
+					node = node.getOrCreateChild(prefix.charAt(pdx));
+			}
+			node.addMatcherIndex(idx);
+		}
+	}
+
+	/**
+	 * Returns the matchers with a pattern that matches
+	 * <code>componentName</code>. The matchers are returned in the order they
+	 * appear in the resource map. The resolution filters of the matchers are
+	 * not considered.
+	 *
+	 * @param componentName
+	 *            The name to match
+	 * @return The matching matchers. Callers must not modify the array.
+	 */
+	Matcher[] getMatchers(String componentName) {
+		Matcher[] result = memo.get(componentName);
+		if (result == null) {
+			result = findMatchers(componentName);
+			if (memo.size() >= MAX_MEMO_SIZE)
+				memo.clear();
+			memo.put(componentName, result);
+		}
+		return result;
+	}
+
+	private Matcher[] findMatchers(String componentName) {
+		int[] candidates = new int[matchers.length];
+		int candidateCount = 0;
+		TrieNode node = root;
+		int nameLen = componentName.length();
+		int cdx = 0;
+		for (;;) {
+			for (int matcherIndex : node.matcherIndexes)
+				candidates[candidateCount++] = matcherIndex;
+			if (cdx >= nameLen)
+				break;
+			node = node.getChild(componentName.charAt(cdx++));
+			if (node == null)
+				break;
+		}
+
+		if (candidateCount == 0)
+			return NO_MATCHERS;
+
+		Arrays.sort(candidates, 0, candidateCount);
+		Matcher[] result = new Matcher[candidateCount];
+		int resultCount = 0;
+		for (int idx = 0; idx < candidateCount; ++idx) {
+			Matcher matcher = matchers[candidates[idx]];
+			if (matcher.matches(componentName))
+				result[resultCount++] = matcher;
+		}
+		if (resultCount < candidateCount) {
+			Matcher[] trimmed = new Matcher[resultCount];
+			System.arraycopy(result, 0, trimmed, 0, resultCount);
+			result = trimmed;
+		}
+		return result;
+	}
+}
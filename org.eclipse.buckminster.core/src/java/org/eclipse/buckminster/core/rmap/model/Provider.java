@@ -387,10 +387,9 @@ public class Provider extends UUIDKeyed implements IUUIDPersisted {
 
 		Map<String, String[]> attributeUsageMap = query.getContext().getFilterAttributeUsageMap();
 		Filter resFilter = getResolutionFilter();
-		Map<String, ? extends Object> props = query.getProperties();
 
 		resolutionFilter.addConsultedAttributes(attributeUsageMap);
-		if (resolutionFilter.matchCase(props))
+		if (query.getPropertySnapshot().match(resolutionFilter))
 			return true;
 
 		if (failingFilter != null)
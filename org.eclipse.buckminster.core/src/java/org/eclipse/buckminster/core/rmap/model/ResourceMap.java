@@ -14,7 +14,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -104,12 +106,15 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 
 	private final URL contextURL;
 
+	private MatcherIndex matcherIndex;
+
 	public ResourceMap(URL contextURL) {
 		this.contextURL = contextURL;
 	}
 
-	public void addMatcher(Matcher matcher) {
+	public synchronized void addMatcher(Matcher matcher) {
 		matchers.add(matcher);
+		matcherIndex = null;
 	}
 
 	public void addPrefixMappings(HashMap<String, String> prefixMappings) {
@@ -123,8 +128,9 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 		searchPaths.put(searchPath.getName(), searchPath);
 	}
 
-	public void clear() {
+	public synchronized void clear() {
 		matchers.clear();
+		matcherIndex = null;
 		searchPaths.clear();
 		properties.clear();
 		documentation = null;
@@ -158,9 +164,8 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 			props = query.getProperties();
 		}
 
-		String componentName = request.getName();
-		for (Matcher matcher : matchers) {
-			if (!(matcher.isFilterMatchFor(query, null) && matcher.matches(componentName)))
+		for (Matcher matcher : getMatcherIndex().getMatchers(request.getName())) {
+			if (!matcher.isFilterMatchFor(query, null))
 				continue;
 
 			if (matcher instanceof Redirect)
@@ -183,7 +188,20 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 	}
 
 	public List<Matcher> getMatchers() {
-		return matchers;
+		return Collections.unmodifiableList(matchers);
+	}
+
+	/**
+	 * Returns the matchers that has a pattern that matches the given
+	 * <code>componentName</code> in the order that they are declared. The
+	 * resolution filters of the matchers are not considered.
+	 * 
+	 * @param componentName
+	 *            The name of the component
+	 * @return The matching matchers
+	 */
+	public List<Matcher> getMatchers(String componentName) {
+		return Collections.unmodifiableList(Arrays.asList(getMatcherIndex().getMatchers(componentName)));
 	}
 
 	public Map<String, String> getProperties() {
@@ -217,8 +235,9 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 		return searchPaths.values();
 	}
 
-	public void removeMatcher(Matcher matcher) {
+	public synchronized void removeMatcher(Matcher matcher) {
 		matchers.remove(matcher);
+		matcherIndex = null;
 	}
 
 	public BOMNode resolve(NodeQuery query, IProgressMonitor monitor) throws CoreException {
@@ -234,10 +253,9 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 			props = query.getProperties();
 		}
 
-		String componentName = request.getName();
-		for (Matcher matcher : matchers) {
+		for (Matcher matcher : getMatcherIndex().getMatchers(request.getName())) {
 			Filter[] filterHandle = new Filter[1];
-			if (!(matcher.isFilterMatchFor(query, filterHandle) && matcher.matches(componentName)))
+			if (!matcher.isFilterMatchFor(query, filterHandle))
 				continue;
 
 			if (matcher instanceof Redirect)
@@ -323,6 +341,12 @@ public class ResourceMap extends AbstractSaxableElement implements ISaxable {
 			matcher.toSax(handler, namespace, prefix, matcher.getDefaultTag());
 	}
 
+	private synchronized MatcherIndex getMatcherIndex() {
+		if (matcherIndex == null)
+			matcherIndex = new MatcherIndex(matchers);
+		return matcherIndex;
+	}
+
 	private BOMNode resolve(NodeQuery query, SearchPath searchPath, IProgressMonitor monitor) throws CoreException {
 		MultiStatus problemCollector = new MultiStatus(CorePlugin.getID(), IStatus.ERROR, NLS.bind(
 				Messages.No_suitable_provider_for_component_0_was_found_in_searchPath_1, query.getComponentRequest(), searchPath.getName()), null);
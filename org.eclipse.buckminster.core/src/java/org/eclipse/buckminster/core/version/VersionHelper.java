@@ -8,6 +8,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.buckminster.core.CorePlugin;
 import org.eclipse.buckminster.core.cspec.model.ComponentIdentifier;
@@ -28,6 +30,116 @@ import org.xml.sax.Attributes;
 
 @SuppressWarnings("restriction")
 public class VersionHelper {
+	/**
+	 * A concurrent cache that maps a version format and a string to the
+	 * immutable instance that results from parsing the string. Lookups do not
+	 * lock. When the cache is full, one entry is evicted using the second
+	 * chance clock algorithm so that the instances that are in use stay in
+	 * the cache.
+	 */
+	private static class InternCache<T> {
+		private static class Slot<T> {
+			final InternKey key;
+
+			final T instance;
+
+			volatile boolean referenced;
+
+			Slot(InternKey key, T instance) {
+				this.key = key;
+				this.instance = instance;
+			}
+		}
+
+		private final ConcurrentHashMap<InternKey, Slot<T>> instances = new ConcurrentHashMap<InternKey, Slot<T>>();
+
+		private final List<Slot<T>> clock = new ArrayList<Slot<T>>();
+
+		private int hand;
+
+		T get(IVersionFormat format, String string) {
+			Slot<T> slot = instances.get(new InternKey(format, string));
+			if (slot == null) {
+				internMisses.incrementAndGet();
+				return null;
+			}
+			internHits.incrementAndGet();
+			slot.referenced = true;
+			return slot.instance;
+		}
+
+		synchronized T intern(IVersionFormat format, String string, T instance) {
+			InternKey key = new InternKey(format, string);
+			Slot<T> slot = instances.get(key);
+			if (slot != null)
+				return slot.instance;
+
+			slot = new Slot<T>(key, instance);
+			if (clock.size() < MAX_INTERNED)
+				clock.add(slot);
+			else {
+				// Pass over the entries that were used since the hand last
+				// passed them. All entries are unreferenced after one turn so
+				// the loop ends.
+				Slot<T> victim;
+				while ((victim = clock.get(hand)).referenced) {
+					victim.referenced = false;
+					hand = (hand + 1) % MAX_INTERNED;
+				}
+				instances.remove(victim.key);
+				clock.set(hand, slot);
+				hand = (hand + 1) % MAX_INTERNED;
+			}
+			instances.put(key, slot);
+			return instance;
+		}
+
+		int size() {
+			return instances.size();
+		}
+	}
+
+	private static class InternKey {
+		private final IVersionFormat format;
+
+		private final String string;
+
+		private final int hashCode;
+
+		InternKey(IVersionFormat format, String string) {
+			this.format = format;
+			this.string = string;
+			this.hashCode = 31 * (format == null ? 0 : format.hashCode()) + string.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this)
+				return true;
+			if (!(o instanceof InternKey))
+				return false;
+			InternKey that = (InternKey) o;
+			return string.equals(that.string) && Trivial.equalsAllowNull(format, that.format);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private static final int MAX_INTERNED = 16384;
+
+	private static final AtomicLong internHits = new AtomicLong();
+
+	private static final AtomicLong internMisses = new AtomicLong();
+
+	private static final InternCache<Version> versions = new InternCache<Version>();
+
+	private static final InternCache<Version> parsedVersions = new InternCache<Version>();
+
+	private static final InternCache<VersionRange> ranges = new InternCache<VersionRange>();
+
 	private static final Version sampleOSGiVersion;
 
 	static final String VERSION_TYPES_POINT = CorePlugin.CORE_NAMESPACE + ".versionTypes"; //$NON-NLS-1$
@@ -89,14 +201,23 @@ public class VersionHelper {
 		if (rangeString == null)
 			return null;
 
-		if (versionFormat == null || versionFormat.equals(getOSGiFormat()))
-			return new VersionRange(rangeString);
+		if (versionFormat != null && versionFormat.equals(getOSGiFormat()))
+			versionFormat = null;
+
+		VersionRange range = ranges.get(versionFormat, rangeString);
+		if (range != null)
+			return range;
 
-		StringBuffer bld = new StringBuffer();
-		versionFormat.toString(bld);
-		bld.append(':');
-		bld.append(rangeString);
-		return new VersionRange(bld.toString());
+		if (versionFormat == null)
+			range = new VersionRange(rangeString);
+		else {
+			StringBuffer bld = new StringBuffer();
+			versionFormat.toString(bld);
+			bld.append(':');
+			bld.append(rangeString);
+			range = new VersionRange(bld.toString());
+		}
+		return ranges.intern(versionFormat, rangeString, range);
 	}
 
 	public static VersionRange createRange(String versionTypeLabel, String rangeString) throws MissingVersionTypeException {
@@ -118,7 +239,10 @@ public class VersionHelper {
 		if (versionFormat == null)
 			versionFormat = getOSGiFormat();
 
-		return versionFormat.parse(versionString);
+		Version version = versions.get(versionFormat, versionString);
+		if (version == null)
+			version = versions.intern(versionFormat, versionString, versionFormat.parse(versionString));
+		return version;
 	}
 
 	public static Version createVersion(String versionTypeLabel, String versionString) throws MissingVersionTypeException {
@@ -178,6 +302,35 @@ public class VersionHelper {
 		return v == null || v == Version.emptyVersion ? null : new VersionRange(v, true, v, true);
 	}
 
+	/**
+	 * @return The number of times a version or range was found among the
+	 *         interned instances
+	 */
+	public static long getInternHitCount() {
+		return internHits.get();
+	}
+
+	/**
+	 * @return The number of times a version or range had to be parsed
+	 */
+	public static long getInternMissCount() {
+		return internMisses.get();
+	}
+
+	/**
+	 * @return The maximum number of interned versions and ranges
+	 */
+	public static int getInternCapacity() {
+		return 3 * MAX_INTERNED;
+	}
+
+	/**
+	 * @return The number of interned versions and ranges
+	 */
+	public static int getInternSize() {
+		return versions.size() + parsedVersions.size() + ranges.size();
+	}
+
 	public static String getHumanReadable(Version version) {
 		if (version == null || version == Version.emptyVersion)
 			return null;
@@ -320,7 +473,10 @@ public class VersionHelper {
 	}
 
 	public static Version parseVersion(String versionStr) {
-		Version version;
+		Version version = versionStr == null ? null : parsedVersions.get(null, versionStr);
+		if (version != null)
+			return version;
+
 		try {
 			version = Version.parseVersion(versionStr);
 		} catch (IllegalArgumentException e) {
@@ -331,8 +487,8 @@ public class VersionHelper {
 			}
 		}
 		if (version.equals(Version.emptyVersion))
-			version = null;
-		return version;
+			return null;
+		return versionStr == null ? version : parsedVersions.intern(null, versionStr, version);
 	}
 
 	public static Version parseVersionAttributes(Attributes attrs) throws CoreException {
@@ -359,7 +515,7 @@ public class VersionHelper {
 
 		try {
 			String type = AbstractHandler.getOptionalStringValue(attrs, versionTypeAttr);
-			return (type == null) ? new VersionRange(tmp) : createRange(type, tmp);
+			return (type == null) ? createRange((IVersionFormat) null, tmp) : createRange(type, tmp);
 		} catch (IllegalArgumentException e) {
 			throw BuckminsterException.wrap(e);
 		}
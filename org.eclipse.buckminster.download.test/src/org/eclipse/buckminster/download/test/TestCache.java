@@ -9,6 +9,7 @@
 package org.eclipse.buckminster.download.test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -20,6 +21,7 @@ import junit.framework.TestSuite;
 
 import org.eclipse.buckminster.download.ICache;
 import org.eclipse.buckminster.download.internal.CacheImpl;
+import org.eclipse.buckminster.download.internal.CacheIndex;
 import org.eclipse.buckminster.runtime.IOUtils;
 import org.eclipse.buckminster.runtime.NullOutputStream;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -66,6 +68,8 @@ public class TestCache extends TestCase
 		};
 		suite.addTest(new TestCache("testPlainCache", cacheFolder));
 		suite.addTest(new TestCache("testDigestCache", cacheFolder));
+		suite.addTest(new TestCache("testEviction", cacheFolder));
+		suite.addTest(new TestCache("testEvictionSkipsOpenEntries", cacheFolder));
 		return suite;
 	}
 
@@ -93,6 +97,99 @@ public class TestCache extends TestCase
 		assertTrue("Not up to date when expected", c.isUpToDate(url, digestURL, null, "MD5", m_monitor));
 	}
 
+	public void testEviction() throws Exception
+	{
+		File folder = new File(m_cacheFolder, "eviction");
+		File hostFolder = new File(new File(folder, "http"), "localhost");
+		assertTrue("Unable to create " + hostFolder, hostFolder.mkdirs());
+
+		// Four entries of 1000 bytes each where entry0 is the oldest
+		//
+		long now = System.currentTimeMillis();
+		for(int idx = 0; idx < 4; ++idx)
+		{
+			File entry = new File(hostFolder, "entry" + idx);
+			FileOutputStream output = new FileOutputStream(entry);
+			try
+			{
+				output.write(new byte[1000]);
+			}
+			finally
+			{
+				output.close();
+			}
+			entry.setLastModified(now - (4 - idx) * 60000L);
+		}
+
+		CacheIndex index = new CacheIndex(folder);
+		index.recordAccess(new File(hostFolder, "entry0"));
+
+		// The limit is 2500 bytes and eviction stops at 90% of that
+		//
+		assertEquals("Wrong number of evicted entries", 2, index.evict(2500));
+		assertTrue("Recently used entry was evicted", new File(hostFolder, "entry0").exists());
+		assertFalse("Least recently used entry was kept", new File(hostFolder, "entry1").exists());
+		assertFalse("Least recently used entry was kept", new File(hostFolder, "entry2").exists());
+		assertTrue("Recently used entry was evicted", new File(hostFolder, "entry3").exists());
+		assertEquals("Nothing should be evicted below the limit", 0, index.evict(2500));
+	}
+
+	public void testEvictionSkipsOpenEntries() throws Exception
+	{
+		File folder = new File(m_cacheFolder, "openEviction");
+		File hostFolder = new File(new File(folder, "http"), "localhost");
+		assertTrue("Unable to create " + hostFolder, hostFolder.mkdirs());
+
+		long now = System.currentTimeMillis();
+		for(int idx = 0; idx < 2; ++idx)
+		{
+			File entry = new File(hostFolder, "entry" + idx);
+			FileOutputStream output = new FileOutputStream(entry);
+			try
+			{
+				output.write(new byte[1000]);
+			}
+			finally
+			{
+				output.close();
+			}
+			entry.setLastModified(now - (2 - idx) * 60000L);
+		}
+
+		// The oldest entry is kept while it is read
+		//
+		CacheIndex index = new CacheIndex(folder);
+		File entry0 = new File(hostFolder, "entry0");
+		InputStream input;
+		CacheIndex.EntryLock lock = index.getLock(entry0);
+		lock.acquire();
+		try
+		{
+			input = index.openEntry(entry0);
+		}
+		finally
+		{
+			lock.release();
+		}
+		try
+		{
+			assertEquals("Wrong number of evicted entries", 1, index.evict(1500));
+			assertTrue("Entry was evicted while it was read", entry0.exists());
+			assertFalse("Least recently used entry was kept", new File(hostFolder, "entry1").exists());
+			assertEquals(0, input.read());
+		}
+		finally
+		{
+			input.close();
+		}
+
+		// Closing twice must not release the entry twice
+		//
+		input.close();
+		assertEquals("Closed entry was not evicted", 1, index.evict(500));
+		assertFalse("Closed entry was kept", entry0.exists());
+	}
+
 	static void delete(File file)
 	{
 		File[] files = file.listFiles();
@@ -69,6 +69,17 @@ public class DownloadManager {
 		return cctx;
 	}
 
+	/**
+	 * Write the pending bookkeeping of the cache to disk. This is a no-op if
+	 * the cache has not been used.
+	 *
+	 * @throws CoreException
+	 */
+	public static synchronized void flushCache() throws CoreException {
+		if (instance instanceof CacheImpl)
+			((CacheImpl) instance).flush();
+	}
+
 	public static synchronized ICache getCache() throws CoreException {
 		if (instance != null)
 			return instance;
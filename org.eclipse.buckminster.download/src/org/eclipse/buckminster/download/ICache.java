@@ -26,6 +26,14 @@ public interface ICache {
 
 	IFileInfo getRemoteInfo(URL url, IConnectContext cctx) throws CoreException, FileNotFoundException;
 
+	/**
+	 * Returns the hit, miss, and eviction statistics that this cache has
+	 * collected since it was created.
+	 *
+	 * @return The statistics of this cache
+	 */
+	ICacheStatistics getStatistics();
+
 	boolean isUpToDate(IFetchPolicy policy, URL remoteFile, IProgressMonitor monitor) throws CoreException, FileNotFoundException;
 
 	boolean isUpToDate(URL remoteFile, IConnectContext cctx, String remoteName, IProgressMonitor monitor) throws CoreException, FileNotFoundException;
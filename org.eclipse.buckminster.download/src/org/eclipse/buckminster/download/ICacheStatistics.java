@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.download;
+
+/**
+ * Statistics collected by an {@link ICache} since it was created. The numbers
+ * reflect the activity of the current process only.
+ *
+ * @author Thomas Hallgren
+ */
+public interface ICacheStatistics {
+	/**
+	 * @return The number of bytes that were downloaded into the cache
+	 */
+	long getBytesDownloaded();
+
+	/**
+	 * @return The number of bytes that were served from the cache without
+	 *         being downloaded
+	 */
+	long getBytesSaved();
+
+	/**
+	 * @return The number of entries that were evicted from the cache
+	 */
+	long getEvictionCount();
+
+	/**
+	 * @return The number of times a file was served from the cache without
+	 *         being downloaded
+	 */
+	long getHitCount();
+
+	/**
+	 * @return The number of times a file had to be downloaded
+	 */
+	long getMissCount();
+}
@@ -17,6 +17,8 @@ public class Messages extends NLS {
 
 	public static String digest_mismatch_reading_0;
 
+	public static String download_cache_max_size;
+
 	public static String digest_not_fully_read_expected_0_got_1;
 
 	public static String error_0_cause_1;
@@ -37,6 +39,8 @@ public class Messages extends NLS {
 
 	public static String unable_to_rename_temp_0;
 
+	public static String unable_to_resume_0_at_1;
+
 	public static String unable_to_unzip_into_directory_0;
 
 	public static String URL_reader;
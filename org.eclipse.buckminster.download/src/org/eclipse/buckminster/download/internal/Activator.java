@@ -7,6 +7,7 @@
  ******************************************************************************/
 package org.eclipse.buckminster.download.internal;
 
+import org.eclipse.buckminster.download.DownloadManager;
 import org.eclipse.ecf.core.ContainerFactory;
 import org.eclipse.ecf.core.IContainer;
 import org.eclipse.ecf.filetransfer.IRetrieveFileTransferContainerAdapter;
@@ -43,6 +44,7 @@ public class Activator implements BundleActivator {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		DownloadManager.flushCache();
 		plugin = null;
 		container = null;
 	}
@@ -1,191 +1,293 @@
-/*******************************************************************************
- * Copyright (c) 2006-2013, Cloudsmith Inc.
- * The code, documentation and other materials contained herein have been
- * licensed under the Eclipse Public License - v 1.0 by the copyright holder
- * listed above, as the Initial Contributor under such license. The text of
- * such license is available at www.eclipse.org.
- ******************************************************************************/
-package org.eclipse.buckminster.download.internal;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.util.UUID;
-
-import org.eclipse.buckminster.download.DownloadManager;
-import org.eclipse.buckminster.download.ICache;
-import org.eclipse.buckminster.download.IFetchPolicy;
-import org.eclipse.buckminster.download.Messages;
-import org.eclipse.buckminster.download.policy.ArchivePolicy;
-import org.eclipse.buckminster.download.policy.DigestPolicy;
-import org.eclipse.buckminster.runtime.BuckminsterException;
-import org.eclipse.buckminster.runtime.FileInfoBuilder;
-import org.eclipse.buckminster.runtime.IFileInfo;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.FileLocator;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.ecf.core.security.IConnectContext;
-import org.eclipse.osgi.util.NLS;
-
-/**
- * @author Thomas Hallgren
- */
-public class CacheImpl implements ICache {
-	public static final String LAST_MODIFIED_HEADER = "Last-Modified"; //$NON-NLS-1$
-
-	private static File asLocal(URL url) {
-		try {
-			url = FileLocator.resolve(url);
-			return "file".equalsIgnoreCase(url.getProtocol()) ? new File(url.toURI()) : null; //$NON-NLS-1$
-		} catch (IOException e) {
-			return null;
-		} catch (URISyntaxException e) {
-			return null;
-		}
-	}
-
-	private final File location;
-
-	public CacheImpl(File location) throws CoreException {
-		this.location = location;
-		if (!(location.isDirectory() || location.mkdirs()))
-			throw BuckminsterException.fromMessage(NLS.bind(Messages.unable_to_access_cache_0, location));
-	}
-
-	public UUID getHash(String urlStr) {
-		return UUID.nameUUIDFromBytes(urlStr.getBytes());
-	}
-
-	@Override
-	public File getLocation() {
-		return location;
-	}
-
-	@Override
-	public IFileInfo getRemoteInfo(URL remoteFile, IConnectContext cctx) throws CoreException, FileNotFoundException {
-		File localFile = asLocal(remoteFile);
-		if (localFile != null)
-			return new FileInfoBuilder(localFile);
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-		}
-		FileReader reader = new FileReader(cctx);
-		return reader.readInfo(remoteFile);
-	}
-
-	public File getSubFolder(String protocol, String domain) {
-		File protoFolder = new File(location, protocol);
-		if (domain == null)
-			domain = "localhost"; //$NON-NLS-1$
-		return new File(protoFolder, domain);
-	}
-
-	public File getSubFolder(URL url) {
-		return getSubFolder(url.getProtocol(), url.getHost());
-	}
-
-	@Override
-	public boolean isUpToDate(IFetchPolicy policy, URL remoteFile, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
-		String urlStr = remoteFile.toString().intern();
-		synchronized (urlStr) {
-			File localFile = asLocal(remoteFile);
-			if (localFile != null)
-				return localFile.canRead();
-
-			localFile = new File(getSubFolder(remoteFile), getHash(urlStr).toString());
-			return !policy.update(remoteFile, localFile, true, null, monitor);
-		}
-	}
-
-	@Override
-	public boolean isUpToDate(URL remoteFile, IConnectContext cctx, String remoteName, IProgressMonitor monitor) throws CoreException,
-			FileNotFoundException {
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-		}
-		return isUpToDate(new ArchivePolicy(this, cctx, remoteName), remoteFile, monitor);
-	}
-
-	@Override
-	public boolean isUpToDate(URL remoteFile, URL remoteDigest, IConnectContext cctx, String algorithm, IProgressMonitor monitor)
-			throws CoreException, FileNotFoundException {
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-
-			// Assume that the digest has the same credentials
-			uh[0] = remoteDigest;
-			DownloadManager.createConnectContext(uh);
-			remoteDigest = uh[0];
-		}
-		return isUpToDate(new DigestPolicy(this, remoteDigest, cctx, algorithm, DigestPolicy.DEFAULT_MAX_DIGEST_AGE), remoteFile, monitor);
-	}
-
-	@Override
-	public InputStream open(IFetchPolicy policy, URL remoteFile, IFileInfo[] fiHandle, IProgressMonitor monitor) throws CoreException,
-			FileNotFoundException {
-		File file = asLocal(remoteFile);
-		if (file != null) {
-			if (fiHandle != null)
-				fiHandle[0] = new FileInfoBuilder(file);
-			return new FileInputStream(file);
-		}
-
-		URL[] uh = new URL[] { remoteFile };
-		DownloadManager.createConnectContext(uh);
-		remoteFile = uh[0];
-
-		String urlStr = remoteFile.toString().intern();
-		synchronized (urlStr) {
-			File localFile = new File(getSubFolder(remoteFile), getHash(urlStr).toString());
-			policy.update(remoteFile, localFile, false, fiHandle, monitor);
-			return new FileInputStream(localFile);
-		}
-	}
-
-	@Override
-	public InputStream open(URL remoteFile, IConnectContext cctx, String remoteName, IFileInfo[] fiHandle, IProgressMonitor monitor)
-			throws CoreException, FileNotFoundException {
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-		}
-		return open(new ArchivePolicy(this, cctx, remoteName), remoteFile, fiHandle, monitor);
-	}
-
-	@Override
-	public InputStream open(URL remoteFile, URL remoteDigest, IConnectContext cctx, String algorithm, IFileInfo[] fiHandle, IProgressMonitor monitor)
-			throws CoreException, FileNotFoundException {
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-		}
-		return open(new DigestPolicy(this, remoteDigest, cctx, algorithm, DigestPolicy.DEFAULT_MAX_DIGEST_AGE), remoteFile, fiHandle, monitor);
-	}
-
-	@Override
-	public InputStream openRemote(URL remoteFile, IConnectContext cctx) throws CoreException, FileNotFoundException {
-		File file = asLocal(remoteFile);
-		if (file != null)
-			return new FileInputStream(file);
-
-		if (cctx == null) {
-			URL[] uh = new URL[] { remoteFile };
-			cctx = DownloadManager.createConnectContext(uh);
-			remoteFile = uh[0];
-		}
-		FileReader reader = new FileReader(cctx);
-		return reader.read(remoteFile);
-	}
-}
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.download.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.UUID;
+
+import org.eclipse.buckminster.download.DownloadManager;
+import org.eclipse.buckminster.download.ICache;
+import org.eclipse.buckminster.download.ICacheStatistics;
+import org.eclipse.buckminster.download.IFetchPolicy;
+import org.eclipse.buckminster.download.Messages;
+import org.eclipse.buckminster.download.internal.CacheIndex.EntryLock;
+import org.eclipse.buckminster.download.policy.ArchivePolicy;
+import org.eclipse.buckminster.download.policy.DigestPolicy;
+import org.eclipse.buckminster.runtime.Buckminster;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.buckminster.runtime.FileInfoBuilder;
+import org.eclipse.buckminster.runtime.IFileInfo;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.ecf.core.security.IConnectContext;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * A cache that stores downloaded files under protocol/host folders. Each entry
+ * is guarded by a lock that is honored by all processes that share the cache
+ * folder. When the {@link #CACHE_MAX_SIZE} preference is set, the least
+ * recently used entries are evicted as the cache grows beyond that size.
+ *
+ * @author Thomas Hallgren
+ */
+public class CacheImpl implements ICache {
+	public static final String LAST_MODIFIED_HEADER = "Last-Modified"; //$NON-NLS-1$
+
+	/**
+	 * The maximum size of the cache in megabytes. Zero means that the cache is
+	 * unbounded.
+	 */
+	public static final String CACHE_MAX_SIZE = "downloadCacheMaxSize"; //$NON-NLS-1$
+
+	public static final int CACHE_MAX_SIZE_DEFAULT = 0;
+
+	public static int getCacheMaxSize() {
+		return BuckminsterPreferences.getNode().getInt(CACHE_MAX_SIZE, CACHE_MAX_SIZE_DEFAULT);
+	}
+
+	public static void setCacheMaxSize(int maxSize) {
+		if (maxSize < 0)
+			throw new IllegalArgumentException(NLS.bind(Messages.value_0_illegal_for_1, Integer.valueOf(maxSize), CACHE_MAX_SIZE));
+		if (maxSize == CACHE_MAX_SIZE_DEFAULT)
+			BuckminsterPreferences.getNode().remove(CACHE_MAX_SIZE);
+		else
+			BuckminsterPreferences.getNode().putInt(CACHE_MAX_SIZE, maxSize);
+	}
+
+	private static File asLocal(URL url) {
+		try {
+			url = FileLocator.resolve(url);
+			return "file".equalsIgnoreCase(url.getProtocol()) ? new File(url.toURI()) : null; //$NON-NLS-1$
+		} catch (IOException e) {
+			return null;
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	private final File location;
+
+	private final CacheIndex index;
+
+	private final CacheStatistics statistics = new CacheStatistics();
+
+	public CacheImpl(File location) throws CoreException {
+		this.location = location;
+		if (!(location.isDirectory() || location.mkdirs()))
+			throw BuckminsterException.fromMessage(NLS.bind(Messages.unable_to_access_cache_0, location));
+		index = new CacheIndex(location);
+	}
+
+	/**
+	 * Evict entries until the cache is below its configured size limit.
+	 *
+	 * @return The number of evicted entries
+	 * @throws CoreException
+	 */
+	public int evict() throws CoreException {
+		long maxSize = getCacheMaxSize() * 0x100000L;
+		if (maxSize <= 0)
+			return 0;
+		int evicted = index.evict(maxSize);
+		statistics.addEvictions(evicted);
+		return evicted;
+	}
+
+	/**
+	 * Write pending bookkeeping to the index of the cache.
+	 *
+	 * @throws CoreException
+	 */
+	public void flush() throws CoreException {
+		index.flush();
+	}
+
+	public UUID getHash(String urlStr) {
+		return UUID.nameUUIDFromBytes(urlStr.getBytes());
+	}
+
+	@Override
+	public File getLocation() {
+		return location;
+	}
+
+	@Override
+	public IFileInfo getRemoteInfo(URL remoteFile, IConnectContext cctx) throws CoreException, FileNotFoundException {
+		File localFile = asLocal(remoteFile);
+		if (localFile != null)
+			return new FileInfoBuilder(localFile);
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+		}
+		FileReader reader = new FileReader(cctx);
+		return reader.readInfo(remoteFile);
+	}
+
+	public File getSubFolder(String protocol, String domain) {
+		File protoFolder = new File(location, protocol);
+		if (domain == null)
+			domain = "localhost"; //$NON-NLS-1$
+		return new File(protoFolder, domain);
+	}
+
+	public File getSubFolder(URL url) {
+		return getSubFolder(url.getProtocol(), url.getHost());
+	}
+
+	@Override
+	public ICacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public boolean isUpToDate(IFetchPolicy policy, URL remoteFile, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
+		File localFile = asLocal(remoteFile);
+		if (localFile != null)
+			return localFile.canRead();
+
+		localFile = new File(getSubFolder(remoteFile), getHash(remoteFile.toString()).toString());
+		EntryLock lock = index.getLock(localFile);
+		lock.acquire();
+		try {
+			return !policy.update(remoteFile, localFile, true, null, monitor);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public boolean isUpToDate(URL remoteFile, IConnectContext cctx, String remoteName, IProgressMonitor monitor) throws CoreException,
+			FileNotFoundException {
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+		}
+		return isUpToDate(new ArchivePolicy(this, cctx, remoteName), remoteFile, monitor);
+	}
+
+	@Override
+	public boolean isUpToDate(URL remoteFile, URL remoteDigest, IConnectContext cctx, String algorithm, IProgressMonitor monitor)
+			throws CoreException, FileNotFoundException {
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+
+			// Assume that the digest has the same credentials
+			uh[0] = remoteDigest;
+			DownloadManager.createConnectContext(uh);
+			remoteDigest = uh[0];
+		}
+		return isUpToDate(new DigestPolicy(this, remoteDigest, cctx, algorithm, DigestPolicy.DEFAULT_MAX_DIGEST_AGE), remoteFile, monitor);
+	}
+
+	@Override
+	public InputStream open(IFetchPolicy policy, URL remoteFile, IFileInfo[] fiHandle, IProgressMonitor monitor) throws CoreException,
+			FileNotFoundException {
+		File file = asLocal(remoteFile);
+		if (file != null) {
+			if (fiHandle != null)
+				fiHandle[0] = new FileInfoBuilder(file);
+			return new FileInputStream(file);
+		}
+
+		URL[] uh = new URL[] { remoteFile };
+		DownloadManager.createConnectContext(uh);
+		remoteFile = uh[0];
+
+		File localFile = new File(getSubFolder(remoteFile), getHash(remoteFile.toString()).toString());
+		EntryLock lock = index.getLock(localFile);
+		InputStream result;
+		boolean updated;
+		lock.acquire();
+		try {
+			updated = policy.update(remoteFile, localFile, false, fiHandle, monitor);
+
+			// The entry is registered as being read while the lock is held
+			// so that it cannot be evicted until the stream is closed
+			result = index.openEntry(localFile);
+		} finally {
+			lock.release();
+		}
+
+		// Bookkeeping is done when the lock is released since an eviction
+		// might need locks for other entries.
+		//
+		long size = localFile.length();
+		if (updated) {
+			statistics.addMiss(size);
+			if (index.recordStore(localFile, getCacheMaxSize() * 0x100000L))
+				updateIndex(true);
+		} else {
+			statistics.addHit(size);
+			if (index.recordAccess(localFile))
+				updateIndex(false);
+		}
+		return result;
+	}
+
+	@Override
+	public InputStream open(URL remoteFile, IConnectContext cctx, String remoteName, IFileInfo[] fiHandle, IProgressMonitor monitor)
+			throws CoreException, FileNotFoundException {
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+		}
+		return open(new ArchivePolicy(this, cctx, remoteName), remoteFile, fiHandle, monitor);
+	}
+
+	@Override
+	public InputStream open(URL remoteFile, URL remoteDigest, IConnectContext cctx, String algorithm, IFileInfo[] fiHandle, IProgressMonitor monitor)
+			throws CoreException, FileNotFoundException {
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+		}
+		return open(new DigestPolicy(this, remoteDigest, cctx, algorithm, DigestPolicy.DEFAULT_MAX_DIGEST_AGE), remoteFile, fiHandle, monitor);
+	}
+
+	@Override
+	public InputStream openRemote(URL remoteFile, IConnectContext cctx) throws CoreException, FileNotFoundException {
+		File file = asLocal(remoteFile);
+		if (file != null)
+			return new FileInputStream(file);
+
+		if (cctx == null) {
+			URL[] uh = new URL[] { remoteFile };
+			cctx = DownloadManager.createConnectContext(uh);
+			remoteFile = uh[0];
+		}
+		FileReader reader = new FileReader(cctx);
+		return reader.read(remoteFile);
+	}
+
+	private void updateIndex(boolean evict) {
+		// A failure to maintain the index must not fail the download
+		try {
+			if (evict)
+				evict();
+			else
+				flush();
+		} catch (CoreException e) {
+			Buckminster.getLogger().warning(e, e.getMessage());
+		}
+	}
+}
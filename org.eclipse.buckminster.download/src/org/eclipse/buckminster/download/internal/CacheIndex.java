@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.download.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.buckminster.download.Messages;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * The bookkeeping of a {@link CacheImpl}. The index keeps track of when each
+ * entry of the cache was last accessed so that the least recently used
+ * entries can be evicted when the cache grows beyond its size limit. It also
+ * hands out the locks that guard the entries. Since several processes may
+ * share one cache folder, both the locks and the index file are protected
+ * using file locks.
+ * <p>
+ * An entry that has been opened using {@link #openEntry(File)} is not evicted
+ * by this process until the stream is closed. Another process may delete the
+ * files of the entry while they are read. That is harmless on systems where
+ * an open file keeps its content until it is closed. Elsewhere the delete
+ * fails and the entry is not evicted.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class CacheIndex {
+	/**
+	 * A lock that is reentrant within a thread, exclusive between threads, and
+	 * backed by a file lock that makes it exclusive between processes.
+	 */
+	public static class EntryLock {
+		private final ReentrantLock threadLock = new ReentrantLock();
+
+		private final File lockFile;
+
+		private RandomAccessFile lockAccess;
+
+		private FileLock fileLock;
+
+		EntryLock(File lockFile) {
+			this.lockFile = lockFile;
+		}
+
+		public void acquire() throws CoreException {
+			threadLock.lock();
+			if (threadLock.getHoldCount() > 1)
+				return;
+
+			try {
+				openLockFile();
+				fileLock = lockAccess.getChannel().lock();
+			} catch (IOException e) {
+				closeLockFile();
+				threadLock.unlock();
+				throw BuckminsterException.wrap(e);
+			}
+		}
+
+		public void release() {
+			try {
+				if (threadLock.getHoldCount() == 1)
+					closeLockFile();
+			} finally {
+				threadLock.unlock();
+			}
+		}
+
+		/**
+		 * Attempt to acquire the lock without waiting. A lock that is already
+		 * held by the calling thread is considered busy.
+		 *
+		 * @return <code>true</code> if the lock was acquired
+		 */
+		boolean tryAcquire() {
+			if (threadLock.isHeldByCurrentThread() || !threadLock.tryLock())
+				return false;
+
+			try {
+				openLockFile();
+				fileLock = lockAccess.getChannel().tryLock();
+				if (fileLock != null)
+					return true;
+			} catch (IOException e) {
+			}
+			closeLockFile();
+			threadLock.unlock();
+			return false;
+		}
+
+		private void closeLockFile() {
+			if (fileLock != null) {
+				try {
+					fileLock.release();
+				} catch (IOException e) {
+				}
+				fileLock = null;
+			}
+			IOUtils.close(lockAccess);
+			lockAccess = null;
+		}
+
+		private void openLockFile() throws IOException {
+			File folder = lockFile.getParentFile();
+			if (!(folder.isDirectory() || folder.mkdirs()))
+				throw new IOException(NLS.bind(Messages.unable_to_create_directory_0, folder));
+			lockAccess = new RandomAccessFile(lockFile, "rw"); //$NON-NLS-1$
+		}
+	}
+
+	private static class Entry {
+		final String key;
+
+		final List<File> files = new ArrayList<File>();
+
+		long size;
+
+		long lastAccess;
+
+		Entry(String key) {
+			this.key = key;
+		}
+
+		boolean delete() {
+			boolean deleted = true;
+			for (File file : files)
+				if (!file.delete() && file.exists())
+					deleted = false;
+			return deleted;
+		}
+	}
+
+	public static final String INDEX_FILE = ".index"; //$NON-NLS-1$
+
+	public static final String LOCKS_FOLDER = ".locks"; //$NON-NLS-1$
+
+	/**
+	 * The number of lock files. Entries are mapped onto the lock files using
+	 * their hash code. This keeps the number of lock files bounded and
+	 * ensures that a lock file is never deleted while some process is using
+	 * it.
+	 */
+	private static final int LOCK_STRIPES = 64;
+
+	/**
+	 * The number of recorded accesses that will trigger a write of the index
+	 */
+	private static final int FLUSH_INTERVAL = 64;
+
+	private static long parseTimestamp(String value) {
+		if (value != null) {
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+			}
+		}
+		return 0L;
+	}
+
+	private final File location;
+
+	private final EntryLock[] entryLocks = new EntryLock[LOCK_STRIPES];
+
+	private final EntryLock indexLock;
+
+	private final Map<String, Long> accessed = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * The number of open streams for each entry. Guarded by its own monitor.
+	 */
+	private final Map<String, Integer> readers = new HashMap<String, Integer>();
+
+	private final AtomicInteger unflushedCount = new AtomicInteger();
+
+	/**
+	 * The estimated number of bytes in the cache. This is set when the cache
+	 * is scanned during eviction and then increased for each entry that is
+	 * stored. A negative value means that the cache has not been scanned yet.
+	 */
+	private final AtomicLong estimatedSize = new AtomicLong(-1L);
+
+	public CacheIndex(File location) {
+		this.location = location;
+		File locksFolder = new File(location, LOCKS_FOLDER);
+		for (int idx = 0; idx < LOCK_STRIPES; ++idx)
+			entryLocks[idx] = new EntryLock(new File(locksFolder, Integer.toString(idx)));
+		indexLock = new EntryLock(new File(locksFolder, INDEX_FILE));
+	}
+
+	/**
+	 * Evict the least recently used entries until the total size of the cache
+	 * is below 90% of <code>maxSize</code>. Entries that are locked by some
+	 * thread or process are left untouched. Nothing is evicted unless the cache
+	 * is larger than <code>maxSize</code>.
+	 *
+	 * @param maxSize
+	 *            The maximum size of the cache in bytes
+	 * @return The number of evicted entries
+	 * @throws CoreException
+	 */
+	public synchronized int evict(long maxSize) throws CoreException {
+		indexLock.acquire();
+		try {
+			Properties index = loadIndex();
+			mergeAccessed(index);
+
+			List<Entry> entries = scanEntries(index);
+			long total = 0;
+			for (Entry entry : entries)
+				total += entry.size;
+
+			int evicted = 0;
+			if (total > maxSize) {
+				Collections.sort(entries, new Comparator<Entry>() {
+					@Override
+					public int compare(Entry a, Entry b) {
+						return a.lastAccess < b.lastAccess ? -1 : (a.lastAccess == b.lastAccess ? 0 : 1);
+					}
+				});
+
+				long target = maxSize - maxSize / 10;
+				for (Entry entry : entries) {
+					if (total <= target)
+						break;
+
+					EntryLock lock = getLock(entry.key);
+					if (!lock.tryAcquire())
+						continue;
+					try {
+						if (!isRead(entry.key) && entry.delete()) {
+							total -= entry.size;
+							index.remove(entry.key);
+							++evicted;
+						}
+					} finally {
+						lock.release();
+					}
+				}
+			}
+
+			// Drop keys of entries that no longer exist
+			Set<String> existing = new HashSet<String>();
+			for (Entry entry : entries)
+				existing.add(entry.key);
+			index.keySet().retainAll(existing);
+
+			storeIndex(index);
+			estimatedSize.set(total);
+			return evicted;
+		} finally {
+			indexLock.release();
+		}
+	}
+
+	/**
+	 * Write all accesses that has been recorded since the last flush to the
+	 * index file.
+	 *
+	 * @throws CoreException
+	 */
+	public synchronized void flush() throws CoreException {
+		if (accessed.isEmpty())
+			return;
+
+		indexLock.acquire();
+		try {
+			Properties index = loadIndex();
+			mergeAccessed(index);
+			storeIndex(index);
+		} finally {
+			indexLock.release();
+		}
+	}
+
+	/**
+	 * Returns the lock that guards the entry that contains
+	 * <code>entryFile</code>.
+	 */
+	public EntryLock getLock(File entryFile) {
+		return getLock(getKey(entryFile));
+	}
+
+	/**
+	 * Opens <code>entryFile</code> for reading. The entry that contains the
+	 * file is not evicted until the returned stream is closed. The caller must
+	 * hold the lock of the entry.
+	 *
+	 * @return A stream that reads <code>entryFile</code>
+	 * @throws FileNotFoundException
+	 */
+	public InputStream openEntry(File entryFile) throws FileNotFoundException {
+		final String key = getKey(entryFile);
+		addReader(key);
+		boolean success = false;
+		try {
+			InputStream input = new FileInputStream(entryFile) {
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						synchronized (this) {
+							if (!closed) {
+								closed = true;
+								removeReader(key);
+							}
+						}
+					}
+				}
+			};
+			success = true;
+			return input;
+		} finally {
+			if (!success)
+				removeReader(key);
+		}
+	}
+
+	/**
+	 * Record that the entry that contains <code>entryFile</code> was used.
+	 *
+	 * @return <code>true</code> if the index should be flushed
+	 */
+	public boolean recordAccess(File entryFile) {
+		accessed.put(getKey(entryFile), Long.valueOf(System.currentTimeMillis()));
+		return unflushedCount.incrementAndGet() >= FLUSH_INTERVAL;
+	}
+
+	/**
+	 * Record that <code>entryFile</code> was stored in the cache.
+	 *
+	 * @return <code>true</code> if the cache might have grown beyond
+	 *         <code>maxSize</code> and should be subject to eviction
+	 */
+	public boolean recordStore(File entryFile, long maxSize) {
+		recordAccess(entryFile);
+		if (maxSize <= 0)
+			return false;
+		return estimatedSize.get() < 0 || estimatedSize.addAndGet(entryFile.length()) > maxSize;
+	}
+
+	private void addReader(String key) {
+		synchronized (readers) {
+			Integer count = readers.get(key);
+			readers.put(key, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+		}
+	}
+
+	private EntryLock getLock(String key) {
+		return entryLocks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+	}
+
+	private String getKey(File entryFile) {
+		File hostFolder = entryFile.getParentFile();
+		String name = entryFile.getName();
+		int dotIdx = name.indexOf('.');
+		if (dotIdx > 0)
+			name = name.substring(0, dotIdx);
+		return hostFolder.getParentFile().getName() + '/' + hostFolder.getName() + '/' + name;
+	}
+
+	private boolean isRead(String key) {
+		synchronized (readers) {
+			return readers.containsKey(key);
+		}
+	}
+
+	private Properties loadIndex() throws CoreException {
+		Properties index = new Properties();
+		InputStream input = null;
+		try {
+			input = new BufferedInputStream(new FileInputStream(new File(location, INDEX_FILE)));
+			index.load(input);
+		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			IOUtils.close(input);
+		}
+		return index;
+	}
+
+	private void mergeAccessed(Properties index) {
+		for (String key : new ArrayList<String>(accessed.keySet())) {
+			Long timestamp = accessed.get(key);
+			if (timestamp == null)
+				continue;
+			accessed.remove(key);
+			if (timestamp.longValue() > parseTimestamp(index.getProperty(key)))
+				index.setProperty(key, timestamp.toString());
+		}
+		unflushedCount.set(0);
+	}
+
+	private void removeReader(String key) {
+		synchronized (readers) {
+			Integer count = readers.get(key);
+			if (count == null || count.intValue() <= 1)
+				readers.remove(key);
+			else
+				readers.put(key, Integer.valueOf(count.intValue() - 1));
+		}
+	}
+
+	private List<Entry> scanEntries(Properties index) {
+		List<Entry> entries = new ArrayList<Entry>();
+		File[] protocolFolders = location.listFiles();
+		if (protocolFolders == null)
+			return entries;
+
+		for (File protocolFolder : protocolFolders) {
+			if (protocolFolder.getName().startsWith(".")) //$NON-NLS-1$
+				continue;
+			File[] hostFolders = protocolFolder.listFiles();
+			if (hostFolders == null)
+				continue;
+			for (File hostFolder : hostFolders) {
+				File[] files = hostFolder.listFiles();
+				if (files == null)
+					continue;
+
+				Map<String, Entry> hostEntries = new HashMap<String, Entry>();
+				for (File file : files) {
+					if (!file.isFile())
+						continue;
+					String key = getKey(file);
+					Entry entry = hostEntries.get(key);
+					if (entry == null) {
+						entry = new Entry(key);
+						hostEntries.put(key, entry);
+					}
+					entry.files.add(file);
+					entry.size += file.length();
+					entry.lastAccess = Math.max(entry.lastAccess, file.lastModified());
+				}
+
+				for (Entry entry : hostEntries.values()) {
+					long lastAccess = parseTimestamp(index.getProperty(entry.key));
+					if (lastAccess > 0)
+						entry.lastAccess = lastAccess;
+					entries.add(entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	private void storeIndex(Properties index) throws CoreException {
+		File indexFile = new File(location, INDEX_FILE);
+		File tempFile = new File(location, INDEX_FILE + ".tmp"); //$NON-NLS-1$
+		OutputStream output = null;
+		try {
+			output = new BufferedOutputStream(new FileOutputStream(tempFile));
+			index.store(output, null);
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		} finally {
+			IOUtils.close(output);
+		}
+
+		// All writers hold the index lock so the delete is safe
+		indexFile.delete();
+		if (!tempFile.renameTo(indexFile))
+			throw BuckminsterException.fromMessage(NLS.bind(Messages.unable_to_rename_temp_0, indexFile));
+	}
+}
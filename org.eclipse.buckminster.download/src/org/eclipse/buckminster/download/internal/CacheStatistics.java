@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.download.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.buckminster.download.ICacheStatistics;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class CacheStatistics implements ICacheStatistics {
+	private final AtomicLong bytesDownloaded = new AtomicLong();
+
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	@Override
+	public long getBytesDownloaded() {
+		return bytesDownloaded.get();
+	}
+
+	@Override
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("hits: %d, misses: %d, bytes saved: %d, bytes downloaded: %d, evictions: %d", //$NON-NLS-1$
+				Long.valueOf(getHitCount()), Long.valueOf(getMissCount()), Long.valueOf(getBytesSaved()), Long.valueOf(getBytesDownloaded()),
+				Long.valueOf(getEvictionCount()));
+	}
+
+	void addEvictions(int count) {
+		evictionCount.addAndGet(count);
+	}
+
+	void addHit(long size) {
+		hitCount.incrementAndGet();
+		bytesSaved.addAndGet(size);
+	}
+
+	void addMiss(long size) {
+		missCount.incrementAndGet();
+		bytesDownloaded.addAndGet(size);
+	}
+}
@@ -8,6 +8,7 @@
 package org.eclipse.buckminster.download.internal;
 
 import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,6 +30,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.ecf.core.security.IConnectContext;
 import org.eclipse.ecf.filetransfer.FileTransferJob;
+import org.eclipse.ecf.filetransfer.IFileRangeSpecification;
 import org.eclipse.ecf.filetransfer.IFileTransferListener;
 import org.eclipse.ecf.filetransfer.IIncomingFileTransfer;
 import org.eclipse.ecf.filetransfer.IRetrieveFileTransferContainerAdapter;
@@ -47,6 +49,52 @@ import org.eclipse.osgi.util.NLS;
  * @author Thomas Hallgren
  */
 public class FileReader extends FileTransferJob implements IFileTransferListener {
+	/**
+	 * Keeps track of the number of bytes that has been written so that an
+	 * interrupted transfer can be resumed at that position.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			++count;
+		}
+	}
+
+	private static class ResumeRange implements IFileRangeSpecification {
+		private final long startPosition;
+
+		ResumeRange(long startPosition) {
+			this.startPosition = startPosition;
+		}
+
+		@Override
+		public long getEndPosition() {
+			return -1L;
+		}
+
+		@Override
+		public long getStartPosition() {
+			return startPosition;
+		}
+	}
+
 	private boolean closeStreamWhenFinished = false;
 
 	private Exception exception;
@@ -65,6 +113,8 @@ public class FileReader extends FileTransferJob implements IFileTransferListener
 
 	private ProgressStatistics statistics;
 
+	private long resumePosition;
+
 	private final int connectionRetryCount;
 
 	private final long connectionRetryDelay;
@@ -100,6 +150,29 @@ public class FileReader extends FileTransferJob implements IFileTransferListener
 	public synchronized void handleTransferEvent(IFileTransferEvent event) {
 		if (event instanceof IIncomingFileTransferReceiveStartEvent) {
 			IIncomingFileTransfer source = ((IIncomingFileTransferEvent) event).getSource();
+			if (resumePosition > 0) {
+				if (source.getFileRangeSpecification() == null) {
+					// The server ignored the range so what we got is the
+					// whole file. It can't be appended to what we have.
+					//
+					exception = new IOException(NLS.bind(Messages.unable_to_resume_0_at_1, source.getRemoteFileName(),
+							Long.valueOf(resumePosition)));
+					source.cancel();
+					return;
+				}
+				try {
+					((IIncomingFileTransferReceiveStartEvent) event).receive(outputStream, this);
+				} catch (IOException e) {
+					exception = e;
+					return;
+				}
+
+				// Progress continues where the interrupted transfer stopped
+				lastStatsCount = 0;
+				lastProgressCount = 0;
+				return;
+			}
+
 			try {
 				FileInfoBuilder fi = new FileInfoBuilder();
 				Date lastModified = source.getRemoteLastModified();
@@ -246,10 +319,31 @@ public class FileReader extends FileTransferJob implements IFileTransferListener
 		return getLastFileInfo();
 	}
 
+	/**
+	 * Read the content of <code>url</code> into <code>out</code>. A transfer
+	 * that fails with an IO exception after some bytes has been received is
+	 * resumed from where it stopped using a range request. This is repeated at
+	 * most {@link BuckminsterPreferences#getConnectionRetryCount()} times.
+	 */
 	public void readInto(URL url, OutputStream out, IProgressMonitor mon) throws CoreException, FileNotFoundException {
+		CountingOutputStream counter = new CountingOutputStream(out);
 		try {
-			sendRetrieveRequest(url, out, false, false, mon);
+			sendRetrieveRequest(url, counter, false, false, mon);
 			join();
+			for (int retryCount = 0; exception != null && retryCount < connectionRetryCount; ++retryCount) {
+				long received = counter.getCount();
+				if (received == 0 || !(BuckminsterException.unwind(exception) instanceof IOException) || mon != null && mon.isCanceled())
+					break;
+
+				Buckminster.getLogger().warning(
+						NLS.bind(Messages.connection_to_0_failed_on_1_retry_attempt_2,
+								new String[] { url.toString(), exception.getMessage(), String.valueOf(retryCount + 1) }));
+				Thread.sleep(connectionRetryDelay);
+				resumeRetrieveRequest(url, counter, received);
+				join();
+			}
+			if (exception != null && !(mon != null && mon.isCanceled()))
+				throw BuckminsterException.wrap(exception);
 		} catch (InterruptedException e) {
 			mon.setCanceled(true);
 			throw new OperationCanceledException();
@@ -267,12 +361,27 @@ public class FileReader extends FileTransferJob implements IFileTransferListener
 		}
 	}
 
+	protected void resumeRetrieveRequest(URL url, OutputStream out, long startPosition) throws CoreException {
+		IRetrieveFileTransferContainerAdapter adapter = Activator.getDefault().createRetrieveFileTransfer();
+		adapter.setConnectContextForAuthentication(connectContext);
+		exception = null;
+		resumePosition = startPosition;
+		outputStream = out;
+		try {
+			IFileID fileID = FileIDFactory.getDefault().createFileID(adapter.getRetrieveNamespace(), url);
+			adapter.sendRetrieveRequest(fileID, new ResumeRange(startPosition), this, null);
+		} catch (IncomingFileTransferException e) {
+			exception = e;
+		}
+	}
+
 	protected void sendRetrieveRequest(URL url, OutputStream out, boolean closeWhenFinished, boolean onlyInfo, IProgressMonitor mon)
 			throws CoreException, FileNotFoundException {
 		IRetrieveFileTransferContainerAdapter adapter = Activator.getDefault().createRetrieveFileTransfer();
 		adapter.setConnectContextForAuthentication(connectContext);
 
 		exception = null;
+		resumePosition = 0L;
 		closeStreamWhenFinished = closeWhenFinished;
 		onlyGetInfo = onlyInfo;
 		fileInfo = null;
@@ -0,0 +1,36 @@
+package org.eclipse.buckminster.download.prefs;
+
+import org.eclipse.buckminster.cmdline.BasicPreferenceHandler;
+import org.eclipse.buckminster.download.Messages;
+import org.eclipse.buckminster.download.internal.CacheImpl;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.service.prefs.BackingStoreException;
+
+public class DownloadCacheMaxSize extends BasicPreferenceHandler {
+	@Override
+	public String get(String defaultValue) throws CoreException {
+		return Integer.toString(CacheImpl.getCacheMaxSize());
+	}
+
+	@Override
+	public void set(String prefValue) throws BackingStoreException {
+		try {
+			int maxSize = Integer.parseInt(prefValue);
+			if (maxSize >= 0) {
+				CacheImpl.setCacheMaxSize(maxSize);
+				BuckminsterPreferences.getNode().flush();
+				return;
+			}
+		} catch (NumberFormatException e) {
+		}
+		throw new IllegalArgumentException(NLS.bind(Messages.value_0_illegal_for_1, prefValue, Messages.download_cache_max_size));
+	}
+
+	@Override
+	public void unset() throws BackingStoreException {
+		CacheImpl.setCacheMaxSize(CacheImpl.CACHE_MAX_SIZE_DEFAULT);
+		BuckminsterPreferences.getNode().flush();
+	}
+}
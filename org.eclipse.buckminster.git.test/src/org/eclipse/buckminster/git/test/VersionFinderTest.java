@@ -9,12 +9,13 @@ import org.eclipse.buckminster.core.query.model.ComponentQuery;
 import org.eclipse.buckminster.core.resolver.MainResolver;
 import org.eclipse.buckminster.core.resolver.ResolutionContext;
 import org.eclipse.buckminster.sax.Utils;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 public class VersionFinderTest extends GitTestCase
 {
-	public void testResolve() throws Exception {
-		File cqueryFile = getTestData("test.cquery");
+	private static BillOfMaterials resolve(String cqueryName) throws Exception {
+		File cqueryFile = getTestData(cqueryName);
 		File repositories = getTestData("repositories");
 
 		ComponentQuery cquery = ComponentQuery.fromURL(cqueryFile.toURI().toURL(), null, true);
@@ -24,6 +25,11 @@ public class VersionFinderTest extends GitTestCase
 		MainResolver resolver = new MainResolver(context);
 		BillOfMaterials bom = resolver.resolve(new NullProgressMonitor());
 		assertTrue(bom.isFullyResolved(context));
+		return bom;
+	}
+
+	public void testResolve() throws Exception {
+		BillOfMaterials bom = resolve("test.cquery");
 		
 		File testOutputDirs = getTestOutputFolder("bomFiles");
 		testOutputDirs.mkdirs();
@@ -32,4 +38,19 @@ public class VersionFinderTest extends GitTestCase
 		Utils.serialize(bom, output);
 		output.close();
 	}
+
+	public void testResolveAgain() throws Exception {
+		// The repository index is shared between resolutions and must remain
+		// usable after the version finders of the first resolution are closed
+		resolve("test.cquery");
+		resolve("test.cquery");
+	}
+
+	public void testResolveTag() throws Exception {
+		resolve("tag.cquery");
+
+		// A tag is resolved using a branch that is created from the tag
+		File wsRoot = ResourcesPlugin.getWorkspace().getRoot().getLocation().toFile();
+		assertTrue(new File(wsRoot, "gittest/.git/refs/heads/tag-branch_v1.0.0").isFile());
+	}
 }
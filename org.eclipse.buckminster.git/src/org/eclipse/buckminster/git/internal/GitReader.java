@@ -16,6 +16,7 @@ import org.eclipse.buckminster.runtime.BuckminsterException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.treewalk.TreeWalk;
@@ -38,6 +39,18 @@ public class GitReader extends AbstractCatalogReader {
 
 	@Override
 	protected boolean innerExists(String fileName, IProgressMonitor monitor) throws CoreException {
+		RepositoryIndex index = repoAccess.getIndex();
+		ObjectId commitId = repoAccess.getIndexedCommitId(index, getProviderMatch().getVersionMatch());
+		if (commitId != null) {
+			String component = repoAccess.getComponent();
+			String path = component == null ? fileName : (fileName == null ? component : component + '/' + fileName);
+			try {
+				return index.containsPath(commitId, path);
+			} catch (IOException e) {
+				throw BuckminsterException.wrap(e);
+			}
+		}
+
 		synchronized (repoAccess.getRepositoryPath()) {
 			TreeWalk walk = repoAccess.getTreeWalk(getProviderMatch().getVersionMatch(), fileName, monitor);
 			try {
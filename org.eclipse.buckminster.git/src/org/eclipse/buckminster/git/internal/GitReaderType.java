@@ -219,6 +219,19 @@ public class GitReaderType extends CatalogReaderType implements ITeamReaderType
 		return new GitReader(this, providerMatch);
 	}
 
+	/**
+	 * The fingerprint of a git resolution is the id of the commit or tag that
+	 * its branch or tag refers to in the remote repository.
+	 */
+	@Override
+	public String getRemoteFingerprint(Resolution resolution, RMContext context, IProgressMonitor monitor) throws CoreException {
+		MonitorUtils.complete(monitor);
+		Provider provider = resolution.getProvider();
+		@SuppressWarnings("unchecked")
+		Map<String, String> props = (Map<String, String>) provider.getProperties(resolution.getProperties());
+		return new RepositoryAccess(resolution.getRepository(), props).getRemoteRefId(resolution.getVersionMatch());
+	}
+
 	@Override
 	public String getSourceReference(IResource resource, IProgressMonitor monitor) throws CoreException {
 		IProject project = resource.getProject();
@@ -265,11 +278,11 @@ public class GitReaderType extends CatalogReaderType implements ITeamReaderType
 	}
 
 	/**
-	 * Closes any cached RepositoryAccess instances.
+	 * Discards the shared repository indexes.
 	 */
 	@Override
 	public void postMaterialization(MaterializationContext context, IProgressMonitor monitor) throws CoreException {
-
+		RepositoryIndex.clear();
 	}
 
 	@Override
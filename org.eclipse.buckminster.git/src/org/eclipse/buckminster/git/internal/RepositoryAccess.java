@@ -3,6 +3,7 @@ package org.eclipse.buckminster.git.internal;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -184,7 +185,9 @@ class RepositoryAccess {
 						co.setCreateBranch(true);
 						co.setName(tagBranch);
 						co.setStartPoint(revstr);
-						return parseCommit(co.call());
+						objId = parseCommit(co.call());
+						RepositoryIndex.invalidate(getRepositoryPath());
+						return objId;
 					}
 					RevCommit currentId = parseCommit(repo.getRef(Constants.HEAD));
 					if (!currentId.equals(objId)) {
@@ -192,6 +195,7 @@ class RepositoryAccess {
 						co.setCreateBranch(false);
 						co.setName(tagBranch);
 						RevCommit branchCommit = parseCommit(co.call());
+						RepositoryIndex.invalidate(getRepositoryPath());
 						if (!objId.equals(branchCommit)) {
 							// So what do we do now? If we reset this branch to
 							// the
@@ -233,6 +237,7 @@ class RepositoryAccess {
 				co.setName(localBranch);
 				co.setStartPoint(remoteBranch);
 				objId = parseCommit(co.call());
+				RepositoryIndex.invalidate(getRepositoryPath());
 
 				// Set up pull configuration
 				StoredConfig config = repo.getConfig();
@@ -251,6 +256,46 @@ class RepositoryAccess {
 		return component;
 	}
 
+	/**
+	 * Returns the id of the commit that the branch of the given
+	 * <code>versionMatch</code> refers to according to the <code>index</code>.
+	 * In contrast to {@link #getBranchOrTagId(Repository, VersionMatch, IProgressMonitor)}
+	 * this method will never create or check out any branches.
+	 *
+	 * @return The commit id or <code>null</code> if the index doesn't know
+	 *         about the branch or if the <code>versionMatch</code> denotes a
+	 *         tag
+	 */
+	ObjectId getIndexedCommitId(RepositoryIndex index, VersionMatch versionMatch) {
+		// A tag is read from the branch that is created from it when the
+		// tag is checked out, so tags are never resolved using the index
+		if (getGitTag(versionMatch) != null)
+			return null;
+
+		String revstr = getGitBranch(versionMatch);
+		if (revstr == null)
+			return index.getCommitId(Constants.HEAD);
+
+		ObjectId id = index.getCommitId(revstr);
+		if (id == null)
+			id = index.getCommitId(Constants.R_REMOTES + remoteName + '/' + getBranchName(versionMatch));
+		return id;
+	}
+
+	/**
+	 * Returns the index of the refs in the repository. The index is shared
+	 * with all other instances that access the same repository.
+	 */
+	RepositoryIndex getIndex() throws CoreException {
+		// Ensure that the repository has been cloned
+		getRepository();
+		try {
+			return RepositoryIndex.getIndex(getRepositoryPath());
+		} catch (IOException e) {
+			throw BuckminsterException.wrap(e);
+		}
+	}
+
 	private String getGitBranch(VersionMatch versionMatch) {
 		String branchName = getBranchName(versionMatch);
 		return branchName == null ? null : Constants.R_HEADS + branchName;
@@ -271,6 +316,35 @@ class RepositoryAccess {
 		return location;
 	}
 
+	/**
+	 * Returns the id of the object that the branch or tag of the given
+	 * <code>versionMatch</code> refers to in the remote repository.
+	 * 
+	 * @return The object id or <code>null</code> if there is no remote
+	 *         repository or if the ref cannot be found there
+	 */
+	String getRemoteRefId(VersionMatch versionMatch) throws CoreException {
+		if (repoURI == null)
+			return null;
+
+		String refName = getGitTag(versionMatch);
+		if (refName == null) {
+			refName = getGitBranch(versionMatch);
+			if (refName == null)
+				refName = Constants.HEAD;
+		}
+
+		try {
+			Collection<Ref> refs = Git.lsRemoteRepository().setRemote(repoURI.toString()).call();
+			for (Ref ref : refs)
+				if (ref.getName().equals(refName))
+					return ref.getObjectId().name();
+			return null;
+		} catch (Exception e) {
+			throw BuckminsterException.wrap(e);
+		}
+	}
+
 	Repository getRepository() throws CoreException {
 		File canonicalLocalRepo;
 		try {
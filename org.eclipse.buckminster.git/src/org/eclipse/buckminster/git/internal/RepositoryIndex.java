@@ -0,0 +1,327 @@
+package org.eclipse.buckminster.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * An index of the refs in a repository, the commits that they point to, and
+ * the paths that exist in those commits. The index is shared by all
+ * {@link RepositoryAccess} instances for the same local repository so that
+ * the refs and commits are parsed once, and not once for each component that
+ * lives in the repository. The index is rebuilt when the refs of the
+ * repository change, i.e. after a fetch, a commit, or a checkout that creates
+ * a branch. The refs are read at most once per {@link #CHECK_INTERVAL} unless
+ * the index is invalidated.
+ * <p>
+ * The index uses a {@link Repository} of its own since it outlives the
+ * {@link RepositoryAccess} instances that use it. That repository is closed
+ * when the indexes are cleared.
+ * </p>
+ */
+class RepositoryIndex {
+	/**
+	 * A branch or tag and the commit that it refers to.
+	 */
+	static class RefEntry {
+		private final String name;
+
+		private final ObjectId commitId;
+
+		private final Date timestamp;
+
+		private final boolean checkComponent;
+
+		RefEntry(String name, ObjectId commitId, Date timestamp, boolean checkComponent) {
+			this.name = name;
+			this.commitId = commitId;
+			this.timestamp = timestamp;
+			this.checkComponent = checkComponent;
+		}
+
+		ObjectId getCommitId() {
+			return commitId;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		Date getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return <code>true</code> if the existence of the component should
+		 *         be checked in the commit of this entry.
+		 */
+		boolean isCheckComponent() {
+			return checkComponent;
+		}
+	}
+
+	/**
+	 * The number of milliseconds during which an index is used without
+	 * checking if the refs of the repository have changed.
+	 */
+	static final long CHECK_INTERVAL = 1000;
+
+	private static final Map<String, RepositoryIndex> indexes = new ConcurrentHashMap<String, RepositoryIndex>();
+
+	/**
+	 * Discard all indexes and close their repositories. The indexes will be
+	 * rebuilt on demand.
+	 */
+	static void clear() {
+		Set<String> paths = new HashSet<String>(indexes.keySet());
+		for (String path : paths) {
+			synchronized (path.intern()) {
+				RepositoryIndex index = indexes.remove(path);
+				if (index != null)
+					index.repo.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the index for the repository at <code>repositoryPath</code>. The
+	 * index is created or rebuilt if needed.
+	 *
+	 * @param repositoryPath
+	 *            The canonical path of an existing repository
+	 * @return The index
+	 * @throws IOException
+	 */
+	static RepositoryIndex getIndex(String repositoryPath) throws IOException {
+		RepositoryIndex index = indexes.get(repositoryPath);
+		if (index != null && !index.isCheckDue())
+			return index;
+
+		synchronized (repositoryPath.intern()) {
+			index = indexes.get(repositoryPath);
+			if (index != null && !index.isCheckDue())
+				return index;
+
+			// A rebuilt index continues to use the repository of the index
+			// that it replaces
+			Repository repo = index == null ? FileRepositoryBuilder.create(new File(repositoryPath)) : index.repo;
+			Map<String, Ref> refs = repo.getAllRefs();
+			if (index == null || !index.isCurrent(refs)) {
+				index = new RepositoryIndex(repo, refs);
+				indexes.put(repositoryPath, index);
+			}
+			index.lastChecked = System.currentTimeMillis();
+			return index;
+		}
+	}
+
+	/**
+	 * Ensures that the refs of the repository at <code>repositoryPath</code>
+	 * are checked the next time its index is obtained. This method must be
+	 * called when a ref has been changed by this process.
+	 *
+	 * @param repositoryPath
+	 *            The canonical path of the repository
+	 */
+	static void invalidate(String repositoryPath) {
+		RepositoryIndex index = indexes.get(repositoryPath);
+		if (index != null)
+			index.lastChecked = 0;
+	}
+
+	private static String getBranchName(String name) {
+		final boolean remote = name.startsWith(Constants.R_REMOTES);
+
+		if (remote) {
+			// cut off remote name
+			final int slash = name.indexOf('/', Constants.R_REMOTES.length());
+			if (slash > -1) {
+				return name.substring(slash + 1);
+			}
+		}
+
+		return Repository.shortenRefName(name);
+	}
+
+	private static Map<String, ObjectId> getRefIds(Map<String, Ref> refs) {
+		Map<String, ObjectId> refIds = new HashMap<String, ObjectId>(refs.size());
+		for (Entry<String, Ref> entry : refs.entrySet())
+			refIds.put(entry.getKey(), entry.getValue().getObjectId());
+		return refIds;
+	}
+
+	private final Repository repo;
+
+	private final Map<String, ObjectId> refIds;
+
+	private final Map<String, ObjectId> commitIds = new HashMap<String, ObjectId>();
+
+	private final List<RefEntry> branches = new ArrayList<RefEntry>();
+
+	private final List<RefEntry> tags = new ArrayList<RefEntry>();
+
+	private final Map<ObjectId, ObjectId> treeIds = new HashMap<ObjectId, ObjectId>();
+
+	private final Map<ObjectId, Set<String>> topLevelPaths = new HashMap<ObjectId, Set<String>>();
+
+	private final Map<ObjectId, Map<String, Boolean>> nestedPaths = new HashMap<ObjectId, Map<String, Boolean>>();
+
+	private volatile long lastChecked;
+
+	private RepositoryIndex(Repository repo, Map<String, Ref> refs) throws IOException {
+		this.repo = repo;
+		this.refIds = getRefIds(refs);
+
+		RevWalk revWalk = new RevWalk(repo);
+		try {
+			for (Ref ref : refs.values()) {
+				ObjectId id = ref.getObjectId();
+				if (id == null)
+					continue;
+
+				String name = ref.getName();
+				RevObject obj = revWalk.parseAny(id);
+				if (obj instanceof RevCommit) {
+					RevCommit c = (RevCommit) obj;
+					ObjectId commitId = addCommit(name, c);
+					if (name.startsWith(Constants.R_TAGS))
+						tags.add(new RefEntry(name.substring(Constants.R_TAGS.length()), commitId, c.getAuthorIdent().getWhen(), false));
+
+					int lastSlash = name.lastIndexOf('/');
+					if (lastSlash < 0)
+						continue;
+
+					// Last part of name is the branch
+					String branch = getBranchName(name);
+					if (!Constants.MASTER.equals(branch))
+						branches.add(new RefEntry(branch, commitId, c.getAuthorIdent().getWhen(), true));
+					continue;
+				}
+
+				if (obj instanceof RevTag && name.startsWith(Constants.R_TAGS)) {
+					RevTag tag = (RevTag) obj;
+					do {
+						obj = ((RevTag) obj).getObject();
+						revWalk.parseHeaders(obj);
+					} while (obj instanceof RevTag);
+
+					if (obj instanceof RevCommit) {
+						ObjectId commitId = addCommit(name, (RevCommit) obj);
+						tags.add(new RefEntry(tag.getTagName(), commitId, tag.getTaggerIdent().getWhen(), true));
+					}
+				}
+			}
+		} finally {
+			revWalk.close();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if <code>path</code> exists in the tree of
+	 * the given commit. A <code>null</code> path denotes the root of the
+	 * repository which always exists.
+	 */
+	synchronized boolean containsPath(ObjectId commitId, String path) throws IOException {
+		if (path == null)
+			return true;
+
+		ObjectId treeId = treeIds.get(commitId);
+		if (treeId == null)
+			return false;
+
+		if (path.indexOf('/') < 0) {
+			Set<String> topLevel = topLevelPaths.get(commitId);
+			if (topLevel == null) {
+				topLevel = new HashSet<String>();
+				TreeWalk walk = new TreeWalk(repo);
+				try {
+					walk.addTree(treeId);
+					walk.setRecursive(false);
+					while (walk.next())
+						topLevel.add(walk.getNameString());
+				} finally {
+					walk.close();
+				}
+				topLevelPaths.put(commitId, topLevel);
+			}
+			return topLevel.contains(path);
+		}
+
+		Map<String, Boolean> nested = nestedPaths.get(commitId);
+		if (nested == null) {
+			nested = new HashMap<String, Boolean>();
+			nestedPaths.put(commitId, nested);
+		}
+		Boolean exists = nested.get(path);
+		if (exists == null) {
+			TreeWalk walk = TreeWalk.forPath(repo, path, treeId);
+			exists = Boolean.valueOf(walk != null);
+			if (walk != null)
+				walk.close();
+			nested.put(path, exists);
+		}
+		return exists.booleanValue();
+	}
+
+	List<RefEntry> getBranches() {
+		return Collections.unmodifiableList(branches);
+	}
+
+	/**
+	 * Returns the id of the commit that the ref with the given name refers to.
+	 * Tags are peeled.
+	 *
+	 * @param refName
+	 *            The complete name of the ref, i.e. <code>refs/tags/v1</code>
+	 * @return The commit id or <code>null</code> if no such ref is known
+	 */
+	ObjectId getCommitId(String refName) {
+		return commitIds.get(refName);
+	}
+
+	List<RefEntry> getTags() {
+		return Collections.unmodifiableList(tags);
+	}
+
+	private ObjectId addCommit(String refName, RevCommit c) {
+		ObjectId commitId = c.copy();
+		commitIds.put(refName, commitId);
+		treeIds.put(commitId, c.getTree().copy());
+		return commitId;
+	}
+
+	private boolean isCheckDue() {
+		return System.currentTimeMillis() - lastChecked >= CHECK_INTERVAL;
+	}
+
+	private boolean isCurrent(Map<String, Ref> refs) {
+		if (refs.size() != refIds.size())
+			return false;
+		for (Entry<String, Ref> entry : refs.entrySet()) {
+			ObjectId id = refIds.get(entry.getKey());
+			if (id == null || !id.equals(entry.getValue().getObjectId()))
+				return false;
+		}
+		return true;
+	}
+}
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.eclipse.buckminster.core.ctype.IComponentType;
 import org.eclipse.buckminster.core.resolver.NodeQuery;
@@ -15,29 +14,13 @@ import org.eclipse.buckminster.runtime.BuckminsterException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jgit.lib.Constants;
-import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 
 public class VersionFinder extends AbstractSCCSVersionFinder {
-	private static String getBranchName(String name) {
-		final boolean remote = name.startsWith(Constants.R_REMOTES);
-
-		if (remote) {
-			// cut off remote name
-			final int slash = name.indexOf('/', Constants.R_REMOTES.length());
-			if (slash > -1) {
-				return name.substring(slash + 1);
-			}
-		}
-
-		return Repository.shortenRefName(name);
-	}
-
 	private RepositoryAccess repoAccess;
 
 	public VersionFinder(Provider provider, IComponentType ctype, NodeQuery query) throws CoreException {
@@ -49,6 +32,18 @@ public class VersionFinder extends AbstractSCCSVersionFinder {
 
 	@Override
 	protected boolean checkComponentExistence(VersionMatch versionMatch, IProgressMonitor monitor) throws CoreException {
+		RepositoryIndex index = repoAccess.getIndex();
+		ObjectId commitId = repoAccess.getIndexedCommitId(index, versionMatch);
+		if (commitId != null) {
+			try {
+				return index.containsPath(commitId, repoAccess.getComponent());
+			} catch (IOException e) {
+				throw BuckminsterException.wrap(e);
+			}
+		}
+
+		// Not known by the index. The tree walk will create or check out
+		// the branch if needed.
 		synchronized (repoAccess.getRepositoryPath()) {
 			TreeWalk walk = repoAccess.getTreeWalk(versionMatch, null, monitor);
 			try {
@@ -72,72 +67,18 @@ public class VersionFinder extends AbstractSCCSVersionFinder {
 	@Override
 	protected List<RevisionEntry> getBranchesOrTags(boolean branches, IProgressMonitor monitor) throws CoreException {
 		try {
-			Repository repo = repoAccess.getRepository();
-			synchronized (repoAccess.getRepositoryPath()) {
-				RevWalk revWalk = new RevWalk(repo);
-				try {
-					ArrayList<RevisionEntry> branchesOrTags = new ArrayList<RevisionEntry>();
-					String component = repoAccess.getComponent();
-					if (branches) {
-						for (Ref ref : repo.getAllRefs().values()) {
-
-							String name = ref.getName();
-							int lastSlash = name.lastIndexOf('/');
-							if (lastSlash < 0)
-								continue;
-
-							RevObject obj = revWalk.parseAny(ref.getObjectId());
-							if (!(obj instanceof RevCommit))
-								continue;
-
-							// Last part of name is the branch
-							String branch = getBranchName(name);
-							if (Constants.MASTER.equals(branch))
-								continue;
-
-							RevCommit c = (RevCommit) obj;
-							if (!(component == null || TreeWalk.forPath(repo, component, c.getTree()) != null))
-								continue;
-
-							// repoAccess.inspectRef(ref);
-
-							// TODO: RevisionEntry should hold abbreviated
-							// object id
-							// instead of long revision
-							branchesOrTags.add(new RevisionEntry(branch, c.getAuthorIdent().getWhen(), 0L));
-						}
-					} else {
-						final Map<String, Ref> tags = repo.getTags();
-
-						for (Entry<String, Ref> entry : tags.entrySet()) {
-							RevObject obj = revWalk.parseAny(entry.getValue().getObjectId());
-							if (obj instanceof RevTag) {
-								RevTag tag = (RevTag) obj;
-								if (component != null) {
-									// Check that the component exists in the
-									// associated
-									// Commit
-									do {
-										obj = ((RevTag) obj).getObject();
-									} while (obj instanceof RevTag);
-
-									if (!(obj instanceof RevCommit && ((RevCommit) obj).getTree() != null && TreeWalk.forPath(repo, component,
-											((RevCommit) obj).getTree()) != null))
-										continue;
-								}
-								branchesOrTags.add(new RevisionEntry(tag.getTagName(), tag.getTaggerIdent().getWhen(), 0L));
-							} else if (obj instanceof RevCommit) {
-								RevCommit c = (RevCommit) obj;
-								String tag = entry.getKey();
-								branchesOrTags.add(new RevisionEntry(tag, c.getAuthorIdent().getWhen(), 0L));
-							}
-						}
-					}
-					return branchesOrTags;
-				} finally {
-					revWalk.close();
-				}
+			RepositoryIndex index = repoAccess.getIndex();
+			String component = repoAccess.getComponent();
+			ArrayList<RevisionEntry> branchesOrTags = new ArrayList<RevisionEntry>();
+			for (RepositoryIndex.RefEntry entry : branches ? index.getBranches() : index.getTags()) {
+				if (component != null && entry.isCheckComponent() && !index.containsPath(entry.getCommitId(), component))
+					continue;
+
+				// TODO: RevisionEntry should hold abbreviated object id
+				// instead of long revision
+				branchesOrTags.add(new RevisionEntry(entry.getName(), entry.getTimestamp(), 0L));
 			}
+			return branchesOrTags;
 		} catch (IOException e) {
 			throw BuckminsterException.wrap(e);
 		}
@@ -1,7 +1,6 @@
 package org.eclipse.buckminster.jarprocessor;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Map;
 
 import org.eclipse.buckminster.core.KeyConstants;
@@ -15,7 +14,6 @@ import org.eclipse.buckminster.core.cspec.model.Action;
 import org.eclipse.buckminster.core.cspec.model.Attribute;
 import org.eclipse.buckminster.core.cspec.model.CSpec;
 import org.eclipse.buckminster.core.cspec.model.Prerequisite;
-import org.eclipse.buckminster.core.helpers.FileUtils;
 import org.eclipse.buckminster.runtime.BuckminsterException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -37,6 +35,12 @@ public class JarProcessorActor extends AbstractActor {
 
 	public static final String COMMAND_UNPACK = "unpack"; //$NON-NLS-1$
 
+	/**
+	 * The maximum number of jars that are processed in parallel. Defaults to
+	 * the number of available processors.
+	 */
+	public static final String PROP_MAX_THREADS = "maxThreads"; //$NON-NLS-1$
+
 	private IActionContext context;
 
 	@Override
@@ -75,21 +79,27 @@ public class JarProcessorActor extends AbstractActor {
 			if (!outputPath.hasTrailingSeparator())
 				throw BuckminsterException.fromMessage(NLS.bind(Messages.output_of_action_0_must_be_folder, action.getQualifiedName()));
 
-			File outputDir = outputPath.toFile().getAbsoluteFile();
-			outputDir.mkdirs();
-			try {
-				if (COMMAND_REPACK.equals(command))
-					repackJars(jarFolder.toFile(), outputDir);
-				else if (COMMAND_PACK.equals(command))
-					packJars(jarFolder.toFile(), outputDir, props);
-				else if (COMMAND_UNPACK.equals(command))
-					unpackJars(jarFolder.toFile(), outputDir, props);
-				else
+			if (!(COMMAND_REPACK.equals(command) || COMMAND_PACK.equals(command) || COMMAND_UNPACK.equals(command)))
+				throw BuckminsterException.fromMessage(NLS.bind(org.eclipse.buckminster.jarprocessor.Messages.action_0_does_not_recognize_command_1,
+						action.getQualifiedName(), command));
+
+			int maxThreads = Runtime.getRuntime().availableProcessors();
+			String maxThreadsStr = (String) props.get(PROP_MAX_THREADS);
+			if (maxThreadsStr != null) {
+				try {
+					maxThreads = Integer.parseInt(maxThreadsStr.trim());
+				} catch (NumberFormatException e) {
+					maxThreads = 0;
+				}
+				if (maxThreads < 1)
 					throw BuckminsterException.fromMessage(NLS.bind(
-							org.eclipse.buckminster.jarprocessor.Messages.action_0_does_not_recognize_command_1, action.getQualifiedName(), command));
-			} catch (IOException e) {
-				throw BuckminsterException.wrap(e);
+							org.eclipse.buckminster.jarprocessor.Messages.Property_0_of_action_1_must_be_a_positive_integer, PROP_MAX_THREADS,
+							action.getQualifiedName()));
 			}
+
+			File outputDir = outputPath.toFile().getAbsoluteFile();
+			outputDir.mkdirs();
+			new ParallelJarProcessor(command, getTempDir(), maxThreads).run(jarFolder.toFile(), outputDir, monitor);
 			return Status.OK_STATUS;
 		} finally {
 			context = null;
@@ -99,63 +109,4 @@ public class JarProcessorActor extends AbstractActor {
 	private File getTempDir() {
 		return new File((String) context.getProperties().get(KeyConstants.ACTION_TEMP));
 	}
-
-	private void packJars(File inputDir, File outputDir, Map<String, ? extends Object> props) throws CoreException, IOException {
-		File[] files = inputDir.listFiles();
-		for (File file : files) {
-			String name = file.getName();
-			if (file.isDirectory()) {
-				File childOutputDir = new File(outputDir, name);
-				childOutputDir.mkdir();
-				packJars(file, childOutputDir, props);
-				continue;
-			}
-
-			if (!name.endsWith(IConstants.JAR_SUFFIX)) {
-				FileUtils.copyFile(file, outputDir, name, null);
-				continue;
-			}
-
-			RecursivePacker rpacker = new RecursivePacker(getTempDir(), null, true);
-			rpacker.pack(file, outputDir, true);
-		}
-	}
-
-	private void repackJars(File inputDir, File outputDir) throws CoreException, IOException {
-		File[] files = inputDir.listFiles();
-		for (File file : files) {
-			String name = file.getName();
-			if (file.isDirectory()) {
-				File childOutputDir = new File(outputDir, name);
-				childOutputDir.mkdir();
-				repackJars(file, childOutputDir);
-				continue;
-			}
-
-			if (name.endsWith(IConstants.JAR_SUFFIX)) {
-				RecursiveConditioner rcond = new RecursiveConditioner(getTempDir(), null);
-				rcond.condition(file, new File(outputDir, name));
-			} else
-				FileUtils.copyFile(file, outputDir, name, null);
-		}
-	}
-
-	private void unpackJars(File inputDir, File outputDir, Map<String, ? extends Object> props) throws CoreException {
-		File[] files = inputDir.listFiles();
-		for (File file : files) {
-			String name = file.getName();
-			if (file.isDirectory()) {
-				File childOutputDir = new File(outputDir, name);
-				childOutputDir.mkdir();
-				unpackJars(file, childOutputDir, props);
-				continue;
-			}
-
-			if (name.endsWith(IConstants.PACK_GZ_SUFFIX)) {
-				RecursiveUnpacker unpacker = new RecursiveUnpacker(getTempDir(), null);
-				unpacker.unpack(file, outputDir, true);
-			} else
-				FileUtils.copyFile(file, outputDir, name, null);
-		}
-	}
 }
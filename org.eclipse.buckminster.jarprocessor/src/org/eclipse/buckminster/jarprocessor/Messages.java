@@ -6,6 +6,11 @@ public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.eclipse.buckminster.jarprocessor.messages"; //$NON-NLS-1$
 
 	public static String action_0_does_not_recognize_command_1;
+
+	public static String Processed_0_jars_using_1_threads_in_2_ms_3_bytes_became_4_bytes;
+
+	public static String Property_0_of_action_1_must_be_a_positive_integer;
+
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,190 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.jarprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.buckminster.core.helpers.FileUtils;
+import org.eclipse.buckminster.runtime.Buckminster;
+import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.DaemonThreadFactory;
+import org.eclipse.buckminster.runtime.Logger;
+import org.eclipse.buckminster.runtime.MonitorUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Processes all files found in a folder tree on a bounded pool of worker
+ * threads. Jars (or packed jars when unpacking) are conditioned, packed, or
+ * unpacked. Other files are copied. Nested jars are processed by the worker
+ * that processes the jar that contains them. The time and the size of each
+ * processed jar is logged.
+ *
+ * @author Thomas Hallgren
+ */
+class ParallelJarProcessor {
+	private class FileTask implements Callable<FileResult> {
+		private final File file;
+
+		private final File outputDir;
+
+		FileTask(File file, File outputDir) {
+			this.file = file;
+			this.outputDir = outputDir;
+		}
+
+		@Override
+		public FileResult call() throws Exception {
+			String name = file.getName();
+			FileResult result = new FileResult(file);
+			long start = System.currentTimeMillis();
+			File output = null;
+			if (JarProcessorActor.COMMAND_REPACK.equals(command)) {
+				if (name.endsWith(IConstants.JAR_SUFFIX)) {
+					output = new File(outputDir, name);
+					new RecursiveConditioner(tempDir, null).condition(file, output);
+				}
+			} else if (JarProcessorActor.COMMAND_PACK.equals(command)) {
+				if (name.endsWith(IConstants.JAR_SUFFIX)) {
+					// The unpacked jar is retained so a jar that is not packed
+					// ends up as a copy
+					output = new File(outputDir, name);
+					if (new RecursivePacker(tempDir, null, true).pack(file, outputDir, true))
+						output = new File(outputDir, name + IConstants.PACK_GZ_SUFFIX);
+				}
+			} else {
+				if (name.endsWith(IConstants.PACK_GZ_SUFFIX)) {
+					output = new File(outputDir, name.substring(0, name.length() - IConstants.PACK_GZ_SUFFIX.length()));
+					new RecursiveUnpacker(tempDir, null).unpack(file, outputDir, true);
+				}
+			}
+
+			if (output == null) {
+				FileUtils.copyFile(file, outputDir, name, null);
+				return result;
+			}
+
+			result.processed = true;
+			result.millis = System.currentTimeMillis() - start;
+			result.inputSize = file.length();
+			result.outputSize = output.length();
+			return result;
+		}
+	}
+
+	private static class FileResult {
+		final File file;
+
+		boolean processed;
+
+		long millis;
+
+		long inputSize;
+
+		long outputSize;
+
+		FileResult(File file) {
+			this.file = file;
+		}
+	}
+
+	private final String command;
+
+	private final File tempDir;
+
+	private final int maxThreads;
+
+	private final List<FileTask> tasks = new ArrayList<FileTask>();
+
+	ParallelJarProcessor(String command, File tempDir, int maxThreads) {
+		this.command = command;
+		this.tempDir = tempDir;
+		this.maxThreads = maxThreads;
+	}
+
+	void run(File inputDir, File outputDir, IProgressMonitor monitor) throws CoreException {
+		collectTasks(inputDir, outputDir);
+
+		int top = tasks.size();
+		int threads = Math.max(1, Math.min(maxThreads, top));
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("Buckminster jarprocessor")); //$NON-NLS-1$
+
+		Logger log = Buckminster.getLogger();
+		MonitorUtils.begin(monitor, top);
+		long start = System.currentTimeMillis();
+		int jarCount = 0;
+		long inputSize = 0;
+		long outputSize = 0;
+		try {
+			CompletionService<FileResult> completionService = new ExecutorCompletionService<FileResult>(pool);
+			for (FileTask task : tasks)
+				completionService.submit(task);
+
+			for (int idx = 0; idx < top; ++idx) {
+				Future<FileResult> future;
+				while ((future = completionService.poll(200, TimeUnit.MILLISECONDS)) == null)
+					if (monitor != null && monitor.isCanceled())
+						throw new OperationCanceledException();
+
+				FileResult result = future.get();
+				MonitorUtils.worked(monitor, 1);
+				if (!result.processed)
+					continue;
+
+				++jarCount;
+				inputSize += result.inputSize;
+				outputSize += result.outputSize;
+				if (log.isDebugEnabled())
+					log.debug("Jarprocessor: %s %s in %d ms, %d bytes became %d bytes", command, result.file, Long.valueOf(result.millis), //$NON-NLS-1$
+							Long.valueOf(result.inputSize), Long.valueOf(result.outputSize));
+			}
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof OperationCanceledException)
+				throw (OperationCanceledException) cause;
+			throw BuckminsterException.wrap(cause);
+		} finally {
+			pool.shutdownNow();
+			MonitorUtils.done(monitor);
+		}
+
+		log.info(NLS.bind(Messages.Processed_0_jars_using_1_threads_in_2_ms_3_bytes_became_4_bytes, new Object[] { Integer.valueOf(jarCount),
+				Integer.valueOf(threads), Long.valueOf(System.currentTimeMillis() - start), Long.valueOf(inputSize), Long.valueOf(outputSize) }));
+	}
+
+	private void collectTasks(File inputDir, File outputDir) {
+		File[] files = inputDir.listFiles();
+		if (files == null)
+			return;
+
+		for (File file : files) {
+			if (file.isDirectory()) {
+				File childOutputDir = new File(outputDir, file.getName());
+				childOutputDir.mkdir();
+				collectTasks(file, childOutputDir);
+			} else
+				tasks.add(new FileTask(file, outputDir));
+		}
+	}
+}
@@ -21,6 +21,11 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 
+/**
+ * @deprecated The jar processors buffer their intermediate results in
+ *             temporary files and no longer use producer threads.
+ */
+@Deprecated
 public abstract class ProducerThread extends Thread {
 	private PipedInputStream reader;
 
@@ -1,5 +1,6 @@
 package org.eclipse.buckminster.jarprocessor;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -72,81 +73,86 @@ public class RecursiveConditioner extends RecursivePack200 {
 		}
 	}
 
-	private void nestedConditioning(final InputStream input, final JarInfo jarInfo, OutputStream conditioned) throws CoreException {
-
-		final ProducerThread jarPumper = new ProducerThread("Pack200 jarPumper") //$NON-NLS-1$
-		{
-			@Override
-			protected void internalRun(OutputStream writer) throws Exception {
-				ZipOutputStream jarOut = new ZipOutputStream(writer);
-				ZipInputStream jarIn = new ZipInputStream(input);
-
-				boolean metaAddingDone = false;
-				boolean hasEclipseInf = false;
-
-				ZipEntry entry;
-				while ((entry = jarIn.getNextEntry()) != null) {
-					String name = entry.getName();
-					entry = createEntry(entry);
-					if (name.equals(META_INF + ECLIPSE_INF)) {
-						if (hasEclipseInf)
-							continue;
-						emitEclipseInf(jarOut, jarInfo, entry);
-						hasEclipseInf = true;
-						continue;
-					}
-
-					if (entry.isDirectory()) {
-						jarOut.putNextEntry(entry);
-						continue;
-					}
+	private void conditionEntries(InputStream input, JarInfo jarInfo, OutputStream output) throws IOException, CoreException {
+		ZipOutputStream jarOut = new ZipOutputStream(output);
+		ZipInputStream jarIn = new ZipInputStream(input);
+
+		boolean metaAddingDone = false;
+		boolean hasEclipseInf = false;
+
+		ZipEntry entry;
+		while ((entry = jarIn.getNextEntry()) != null) {
+			String name = entry.getName();
+			entry = createEntry(entry);
+			if (name.equals(META_INF + ECLIPSE_INF)) {
+				if (hasEclipseInf)
+					continue;
+				emitEclipseInf(jarOut, jarInfo, entry);
+				hasEclipseInf = true;
+				continue;
+			}
 
-					if (name.endsWith(JAR_SUFFIX) && !jarInfo.isExcludeChildrenSign()) {
-						JarInfo nested = jarInfo.getNestedInfo(name);
-						if (nested != null && !(nested.isConditioned() || nested.isSigned() || nested.isExcludeSign())) {
-							Buckminster.getLogger().debug("Conditioner: Recursive conditioning of %s", name); //$NON-NLS-1$
-							jarOut.putNextEntry(entry);
-							nestedConditioning(jarIn, nested, jarOut);
-							continue;
-						}
-					}
+			if (entry.isDirectory()) {
+				jarOut.putNextEntry(entry);
+				continue;
+			}
 
+			if (name.endsWith(JAR_SUFFIX) && !jarInfo.isExcludeChildrenSign()) {
+				JarInfo nested = jarInfo.getNestedInfo(name);
+				if (nested != null && !(nested.isConditioned() || nested.isSigned() || nested.isExcludeSign())) {
+					Buckminster.getLogger().debug("Conditioner: Recursive conditioning of %s", name); //$NON-NLS-1$
 					jarOut.putNextEntry(entry);
-					IOUtils.copy(jarIn, jarOut, null);
-					if (!metaAddingDone && name.equals(JarFile.MANIFEST_NAME)) {
-						metaAddingDone = true;
-						if (!jarInfo.hasEclipseInf()) {
-							// Create the eclipse.inf here so that it ends up
-							Buckminster.getLogger().debug("Conditioner: Adding " + META_INF + ECLIPSE_INF); //$NON-NLS-1$
-							emitEclipseInf(jarOut, jarInfo, new ZipEntry(META_INF + ECLIPSE_INF));
-							hasEclipseInf = true;
-						}
-					}
+					nestedConditioning(jarIn, nested, jarOut);
+					continue;
 				}
-				jarOut.finish();
 			}
-		};
 
-		jarPumper.start();
-		ProducerThread packPumper = new ProducerThread("Pack200 packPumper") //$NON-NLS-1$
-		{
-			@Override
-			protected void internalRun(OutputStream writer) throws Exception {
-				try {
-					pack(jarInfo, jarPumper.getReaderStream(), writer);
-				} catch (IOException e) {
-					jarPumper.drain(jarInfo, e);
+			jarOut.putNextEntry(entry);
+			IOUtils.copy(jarIn, jarOut, null);
+			if (!metaAddingDone && name.equals(JarFile.MANIFEST_NAME)) {
+				metaAddingDone = true;
+				if (!jarInfo.hasEclipseInf()) {
+					// Create the eclipse.inf here so that it ends up
+					Buckminster.getLogger().debug("Conditioner: Adding " + META_INF + ECLIPSE_INF); //$NON-NLS-1$
+					emitEclipseInf(jarOut, jarInfo, new ZipEntry(META_INF + ECLIPSE_INF));
+					hasEclipseInf = true;
 				}
-				jarPumper.drain(jarInfo, null);
 			}
-		};
+		}
+		jarOut.finish();
+	}
 
-		packPumper.start();
+	private void nestedConditioning(InputStream input, JarInfo jarInfo, OutputStream conditioned) throws CoreException {
+		// Each stage is buffered in a temporary file. The packer and the
+		// unpacker need files for random access anyway.
+		File conditionedFile = null;
+		File packedFile = null;
 		try {
-			unpack(new NonClosingInputStream(packPumper.getReaderStream()), conditioned);
+			conditionedFile = createTempFile("conditioned_", ".jar"); //$NON-NLS-1$//$NON-NLS-2$
+			OutputStream tempOut = null;
+			try {
+				tempOut = new BufferedOutputStream(new FileOutputStream(conditionedFile));
+				conditionEntries(input, jarInfo, tempOut);
+			} finally {
+				IOUtils.close(tempOut);
+			}
+
+			packedFile = createTempFile("packed_", ".jar.pack"); //$NON-NLS-1$//$NON-NLS-2$
+			OutputStream packedOut = null;
+			try {
+				packedOut = new BufferedOutputStream(new FileOutputStream(packedFile));
+				pack(jarInfo, conditionedFile, packedOut);
+			} finally {
+				IOUtils.close(packedOut);
+			}
+			unpack(packedFile, conditioned);
 		} catch (IOException e) {
-			packPumper.drain(jarInfo, e);
+			throw BuckminsterException.fromMessage(e, jarInfo.toString());
+		} finally {
+			if (conditionedFile != null)
+				conditionedFile.delete();
+			if (packedFile != null)
+				packedFile.delete();
 		}
-		packPumper.drain(jarInfo, null);
 	}
 }
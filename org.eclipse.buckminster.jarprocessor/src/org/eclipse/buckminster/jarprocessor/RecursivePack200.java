@@ -173,42 +173,57 @@ abstract class RecursivePack200 implements IConstants {
 		return packer;
 	}
 
+	/**
+	 * Creates a temporary file in the temp folder. The caller is responsible
+	 * for deleting the file. Each call yields a unique file so processors that
+	 * run in parallel can share the temp folder.
+	 */
+	File createTempFile(String prefix, String suffix) throws IOException {
+		tempDir.mkdirs();
+		return File.createTempFile(prefix, suffix, tempDir);
+	}
+
+	void pack(JarInfo jarInfo, File jarFile, OutputStream out) throws IOException {
+		// The packer closes the jar file
+		Packer packer = getPacker(jarInfo);
+		packer.pack(new JarFile(jarFile), out);
+	}
+
 	void pack(JarInfo jarInfo, InputStream in, OutputStream out) throws IOException {
 		File packInputFile = null;
 		try {
-			tempDir.mkdirs();
-			OutputStream tempOut = null;
-			try {
-				packInputFile = File.createTempFile("conditioned_", ".jar", tempDir); //$NON-NLS-1$//$NON-NLS-2$
-				tempOut = new BufferedOutputStream(new FileOutputStream(packInputFile));
-				IOUtils.copy(in, tempOut, new NullProgressMonitor());
-			} finally {
-				IOUtils.close(tempOut);
-			}
-			Packer packer = getPacker(jarInfo);
-			packer.pack(new JarFile(packInputFile), out);
+			packInputFile = createTempFile("conditioned_", ".jar"); //$NON-NLS-1$//$NON-NLS-2$
+			spool(in, packInputFile);
+			pack(jarInfo, packInputFile, out);
 		} finally {
 			if (packInputFile != null)
 				packInputFile.delete();
 		}
 	}
 
+	void spool(InputStream in, File file) throws IOException {
+		OutputStream tempOut = null;
+		try {
+			tempOut = new BufferedOutputStream(new FileOutputStream(file));
+			IOUtils.copy(in, tempOut, new NullProgressMonitor());
+		} finally {
+			IOUtils.close(tempOut);
+		}
+	}
+
+	void unpack(File packedFile, OutputStream out) throws IOException {
+		Unpacker unpacker = Pack200.newUnpacker();
+		JarOutputStream jarOut = new JarOutputStream(out);
+		unpacker.unpack(packedFile, jarOut);
+		jarOut.finish();
+	}
+
 	void unpack(InputStream in, OutputStream out) throws IOException {
 		File unpackInputFile = null;
 		try {
-			tempDir.mkdirs();
-			OutputStream tempOut = null;
-			try {
-				unpackInputFile = File.createTempFile("packed_", ".jar.pack.gz", tempDir); //$NON-NLS-1$//$NON-NLS-2$
-				tempOut = new BufferedOutputStream(new FileOutputStream(unpackInputFile));
-				IOUtils.copy(in, tempOut, new NullProgressMonitor());
-			} finally {
-				IOUtils.close(tempOut);
-			}
-			Unpacker unpacker = Pack200.newUnpacker();
-			JarOutputStream jarOut = new JarOutputStream(out);
-			unpacker.unpack(unpackInputFile, jarOut);
-			jarOut.finish();
+			unpackInputFile = createTempFile("packed_", ".jar.pack.gz"); //$NON-NLS-1$//$NON-NLS-2$
+			spool(in, unpackInputFile);
+			unpack(unpackInputFile, out);
 		} finally {
 			if (unpackInputFile != null)
 				unpackInputFile.delete();
@@ -1,6 +1,7 @@
 package org.eclipse.buckminster.jarprocessor;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -43,50 +44,60 @@ public class RecursiveUnpacker extends RecursivePack200 {
 			throw new IOException("Unable to read packed file magic"); //$NON-NLS-1$
 		bufferedInput.reset();
 
-		ZipInputStream jarIn;
-		if (isJarMagic(magic))
-			jarIn = new ZipInputStream(bufferedInput);
-		else {
-			final ProducerThread jarPumper = new ProducerThread("Unpack200 jarPumper") //$NON-NLS-1$
-			{
-				@Override
-				protected void internalRun(OutputStream writer) throws Exception {
-					unpack(new NonClosingInputStream(bufferedInput), writer);
+		// A packed file is unpacked into a temporary file that is then read
+		// as a jar
+		File unpackedFile = null;
+		ZipInputStream jarIn = null;
+		try {
+			if (isJarMagic(magic))
+				jarIn = new ZipInputStream(bufferedInput);
+			else {
+				unpackedFile = createTempFile("unpacked_", ".jar"); //$NON-NLS-1$//$NON-NLS-2$
+				OutputStream tempOut = null;
+				try {
+					tempOut = new BufferedOutputStream(new FileOutputStream(unpackedFile));
+					unpack(new NonClosingInputStream(bufferedInput), tempOut);
+				} finally {
+					IOUtils.close(tempOut);
 				}
-			};
-			jarPumper.start();
-			jarIn = new ZipInputStream(jarPumper.getReaderStream());
-		}
-
-		ZipOutputStream jarOut = new ZipOutputStream(unpacked);
-		ZipEntry entry;
-		while ((entry = jarIn.getNextEntry()) != null) {
-			String name = entry.getName();
-			if (entry.isDirectory()) {
-				jarOut.putNextEntry(createEntry(entry));
-				continue;
+				jarIn = new ZipInputStream(new BufferedInputStream(new FileInputStream(unpackedFile)));
 			}
 
-			String jarName = null;
-			InputStream packedInput = null;
-			if (name.endsWith(PACK_GZ_SUFFIX)) {
-				jarName = name.substring(0, name.length() - PACK_GZ_SUFFIX.length());
-				packedInput = new GZIPInputStream(new NonClosingInputStream(jarIn));
-			} else if (name.endsWith(PACK_SUFFIX)) {
-				jarName = name.substring(0, name.length() - PACK_SUFFIX.length());
-				packedInput = jarIn;
+			ZipOutputStream jarOut = new ZipOutputStream(unpacked);
+			ZipEntry entry;
+			while ((entry = jarIn.getNextEntry()) != null) {
+				String name = entry.getName();
+				if (entry.isDirectory()) {
+					jarOut.putNextEntry(createEntry(entry));
+					continue;
+				}
+
+				String jarName = null;
+				InputStream packedInput = null;
+				if (name.endsWith(PACK_GZ_SUFFIX)) {
+					jarName = name.substring(0, name.length() - PACK_GZ_SUFFIX.length());
+					packedInput = new GZIPInputStream(new NonClosingInputStream(jarIn));
+				} else if (name.endsWith(PACK_SUFFIX)) {
+					jarName = name.substring(0, name.length() - PACK_SUFFIX.length());
+					packedInput = jarIn;
+				}
+				if (packedInput != null) {
+					Buckminster.getLogger().debug("Unpacker: Recursive unpack of %s", name); //$NON-NLS-1$
+					jarOut.putNextEntry(createEntry(entry, jarName));
+					nestedUnpack(packedInput, jarOut);
+					continue;
+				}
+
+				jarOut.putNextEntry(createEntry(entry));
+				IOUtils.copy(jarIn, jarOut, null);
 			}
-			if (packedInput != null) {
-				Buckminster.getLogger().debug("Unpacker: Recursive unpack of %s", name); //$NON-NLS-1$
-				jarOut.putNextEntry(createEntry(entry, jarName));
-				nestedUnpack(packedInput, jarOut);
-				continue;
+			jarOut.finish();
+		} finally {
+			if (unpackedFile != null) {
+				IOUtils.close(jarIn);
+				unpackedFile.delete();
 			}
-
-			jarOut.putNextEntry(createEntry(entry));
-			IOUtils.copy(jarIn, jarOut, null);
 		}
-		jarOut.finish();
 	}
 
 	public void unpack(File packedFile, File destFolder, boolean retainPacked) throws CoreException {
@@ -20,11 +20,14 @@ import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.buckminster.download.DownloadManager;
 import org.eclipse.buckminster.maven.MavenPlugin;
 import org.eclipse.buckminster.maven.Messages;
 import org.eclipse.buckminster.runtime.BuckminsterException;
+import org.eclipse.buckminster.runtime.BuckminsterPreferences;
 import org.eclipse.buckminster.runtime.IOUtils;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -33,12 +36,32 @@ import org.eclipse.ecf.core.security.IConnectContext;
 import org.eclipse.osgi.util.NLS;
 
 /**
+ * A local copy of a remote maven repository. Files are verified against the
+ * remote MD5 or SHA1 digest before they are used. Distinct files are obtained
+ * concurrently but a lock is held for each file while it is verified and
+ * downloaded.
+ * <p>
+ * When the {@link #TRUST_LOCAL_DIGEST_HOURS} preference is set, a release
+ * file that has a local digest younger than the given number of hours is
+ * trusted without consulting the remote repository.
+ * </p>
+ * 
  * @author Thomas Hallgren
  * 
  */
 public class LocalCache {
 	public static final int MAX_FAILURES = 2;
 
+	public static final String TRUST_LOCAL_DIGEST_HOURS = "mavenTrustLocalDigestHours"; //$NON-NLS-1$
+
+	public static final int TRUST_LOCAL_DIGEST_HOURS_DEFAULT = 0;
+
+	private static final int LOCK_STRIPES = 64;
+
+	private static final String SNAPSHOT_MARKER = "SNAPSHOT"; //$NON-NLS-1$
+
+	private static final String METADATA_PREFIX = "maven-metadata"; //$NON-NLS-1$
+
 	private static final String SHA1_SUFFIX = ".sha1"; //$NON-NLS-1$
 
 	private static final int SHA1_LEN = 20;
@@ -47,6 +70,17 @@ public class LocalCache {
 
 	private static final int MD5_LEN = 16;
 
+	/**
+	 * The digest suffix that each repository is known to provide. Using it
+	 * first avoids a failing request for the other digest for every file in
+	 * repositories that only provide one of them.
+	 */
+	private static final Map<String, String> digestSuffixes = new ConcurrentHashMap<String, String>();
+
+	public static int getTrustLocalDigestHours() {
+		return BuckminsterPreferences.getNode().getInt(TRUST_LOCAL_DIGEST_HOURS, TRUST_LOCAL_DIGEST_HOURS_DEFAULT);
+	}
+
 	private static int hexDigit(byte c) {
 		int v = 0;
 		if (c >= '0' && c <= '9')
@@ -98,6 +132,11 @@ public class LocalCache {
 		}
 	}
 
+	private static boolean isRelease(IPath path) {
+		String name = path.lastSegment();
+		return !(name.startsWith(METADATA_PREFIX) || path.toPortableString().contains(SNAPSHOT_MARKER));
+	}
+
 	private static void writeHex(byte[] bytes, OutputStream stream) throws IOException {
 		for (int idx = 0; idx < bytes.length; ++idx) {
 			byte b = bytes[idx];
@@ -110,8 +149,12 @@ public class LocalCache {
 
 	private final IPath localCacheRoot;
 
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
 	public LocalCache(IPath localCacheRoot) {
 		this.localCacheRoot = localCacheRoot;
+		for (int idx = 0; idx < LOCK_STRIPES; ++idx)
+			locks[idx] = new Object();
 	}
 
 	public IPath getRootPath() {
@@ -141,33 +184,67 @@ public class LocalCache {
 		}
 	}
 
-	private synchronized File obtainLocalFile(URL repository, IConnectContext cctx, IPath path, int failureCounter, IProgressMonitor monitor)
+	private Object getLock(IPath fullPath) {
+		return locks[(fullPath.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+	}
+
+	private File obtainLocalFile(URL repository, IConnectContext cctx, IPath path, int failureCounter, IProgressMonitor monitor)
 			throws IOException, CoreException {
 		IPath fullPath = localCacheRoot.append(path);
+		synchronized (getLock(fullPath)) {
+			return obtainLocalFile(repository, cctx, path, fullPath, failureCounter, monitor);
+		}
+	}
+
+	private File obtainLocalFile(URL repository, IConnectContext cctx, IPath path, IPath fullPath, int failureCounter, IProgressMonitor monitor)
+			throws IOException, CoreException {
 		File file = fullPath.toFile();
+		IPath containingFolder = fullPath.removeLastSegments(1);
 
-		StringBuilder urlBld = new StringBuilder(repository.toExternalForm());
+		IPath md5Path = containingFolder.append(path.lastSegment() + MD5_SUFFIX);
+		File md5File = md5Path.toFile();
+
+		if (failureCounter == 0 && isRelease(path) && file.length() > 0) {
+			int trustHours = getTrustLocalDigestHours();
+			if (trustHours > 0) {
+				long trustLimit = System.currentTimeMillis() - trustHours * 3600000L;
+				File sha1File = containingFolder.append(path.lastSegment() + SHA1_SUFFIX).toFile();
+				if (md5File.lastModified() > trustLimit || sha1File.lastModified() > trustLimit)
+					return file;
+			}
+		}
+
+		String repoKey = repository.toExternalForm();
+		StringBuilder urlBld = new StringBuilder(repoKey);
 		if (urlBld.charAt(urlBld.length() - 1) != '/')
 			urlBld.append('/');
 
 		urlBld.append(path.toPortableString());
 		URL remoteURL = new URL(urlBld.toString());
 
-		IPath containingFolder = fullPath.removeLastSegments(1);
-
-		IPath md5Path = containingFolder.append(path.lastSegment() + MD5_SUFFIX);
-		File md5File = md5Path.toFile();
+		// Alternate between the known (or default) digest and the other one
+		// when a previous download attempt failed
+		//
+		boolean sha1First = SHA1_SUFFIX.equals(digestSuffixes.get(repoKey));
+		if ((failureCounter & 1) != 0)
+			sha1First = !sha1First;
 
 		byte[] remoteSha1 = null;
 		byte[] remoteMd5 = null;
-		if ((failureCounter & 1) == 0) {
-			remoteMd5 = readRemoteDigest(urlBld, cctx, MD5_SUFFIX, MD5_LEN);
-			if (remoteMd5 == null)
-				remoteSha1 = readRemoteDigest(urlBld, cctx, SHA1_SUFFIX, SHA1_LEN);
-		} else {
+		if (sha1First) {
 			remoteSha1 = readRemoteDigest(urlBld, cctx, SHA1_SUFFIX, SHA1_LEN);
 			if (remoteSha1 == null)
 				remoteMd5 = readRemoteDigest(urlBld, cctx, MD5_SUFFIX, MD5_LEN);
+		} else {
+			remoteMd5 = readRemoteDigest(urlBld, cctx, MD5_SUFFIX, MD5_LEN);
+			if (remoteMd5 == null)
+				remoteSha1 = readRemoteDigest(urlBld, cctx, SHA1_SUFFIX, SHA1_LEN);
+		}
+		if (failureCounter == 0) {
+			if (remoteSha1 != null)
+				digestSuffixes.put(repoKey, SHA1_SUFFIX);
+			else if (remoteMd5 != null)
+				digestSuffixes.put(repoKey, MD5_SUFFIX);
 		}
 
 		byte[] remoteDigest;
@@ -193,8 +270,13 @@ public class LocalCache {
 					// We should have a local file if we have a local digest but
 					// we better make sure
 					//
-					if (file.exists() && file.length() > 0)
+					if (file.exists() && file.length() > 0) {
+						// Restart the period during which the local digest is
+						// trusted
+						//
+						localDigestFile.setLastModified(System.currentTimeMillis());
 						return file;
+					}
 				}
 			} catch (FileNotFoundException e) {
 				// We don't have a local digest. That's OK.
@@ -27,6 +27,7 @@ import junit.framework.TestSuite;
 
 import org.eclipse.buckminster.osgi.filter.Filter;
 import org.eclipse.buckminster.osgi.filter.FilterFactory;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -176,6 +177,58 @@ public class FilterTests extends TestCase
 		assertEquals("not equal", f1, f2); //$NON-NLS-1$
 	}
 
+	public void testCompiledFilter() throws Exception
+	{
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put("os", "linux"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("ws", "gtk"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("Arch", "x86_64"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		String[] queries = new String[] {
+			"(os=linux)", //$NON-NLS-1$
+			"(arch=x86_64)", //$NON-NLS-1$
+			"(Arch=x86*)", //$NON-NLS-1$
+			"(&(os=linux)(ws=gtk))", //$NON-NLS-1$
+			"(|(os=win32)(!(ws=win32)))", //$NON-NLS-1$
+			"(nl=*)", //$NON-NLS-1$
+			"(!(nl=*))", //$NON-NLS-1$
+			"(&(os=linux)(|(Arch=x86)(Arch=x86_64)))" //$NON-NLS-1$
+		};
+
+		PropertySnapshot caseSnapshot = new PropertySnapshot(props, true);
+		PropertySnapshot noCaseSnapshot = new PropertySnapshot(props, false);
+		for(String query : queries)
+		{
+			Filter f = FilterFactory.newInstance(query);
+			assertSame("not interned", f, FilterFactory.newInstance(query)); //$NON-NLS-1$
+
+			// Match twice to exercise both compilation and reuse
+			for(int idx = 0; idx < 2; ++idx)
+			{
+				assertEquals(query, f.matchCase(props), caseSnapshot.match(f));
+				assertEquals(query, f.matches(props), noCaseSnapshot.match(f));
+			}
+		}
+		assertFalse(caseSnapshot.match(FilterFactory.newInstance("(arch=x86_64)"))); //$NON-NLS-1$
+		assertTrue(noCaseSnapshot.match(FilterFactory.newInstance("(arch=x86_64)"))); //$NON-NLS-1$
+	}
+
+	public void testFilterCacheKeepsRecentFilters() throws Exception
+	{
+		// The cache evicts single entries so a filter that is used all the time
+		// stays interned while many other filters pass through the cache
+		Filter recent = FilterFactory.newInstance("(recent=true)"); //$NON-NLS-1$
+		for(int idx = 0; idx < 10000; ++idx)
+		{
+			FilterFactory.newInstance("(other=" + idx + ')'); //$NON-NLS-1$
+			assertSame("evicted", recent, FilterFactory.newInstance("(recent=true)")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		// A filter that has not been used since is parsed again
+		Filter first = FilterFactory.newInstance("(other=0)"); //$NON-NLS-1$
+		assertEquals(first, FilterFactory.newInstance("(other=0)")); //$NON-NLS-1$
+	}
+
 	public void testFilter()
 	{
 		Dictionary<String,Object> props = new Hashtable<String, Object>();
@@ -344,6 +397,9 @@ public class FilterTests extends TestCase
 		val = f1.match(ref);
 		assertEquals("wrong result", expect == ISTRUE, val); //$NON-NLS-1$
 
+		val = new PropertySnapshot((Map<String, Object>)props, false).match(f1);
+		assertEquals("wrong result", expect == ISTRUE, val); //$NON-NLS-1$
+
 		Filter f2;
 		try
 		{
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.osgi.filter;
+
+/**
+ * A {@link Filter} that has been compiled against a {@link PropertySnapshot}.
+ * All attribute names are resolved to slots in the snapshot when the filter is
+ * compiled so the match does not perform any name lookups or allocations.
+ * 
+ * @author Thomas Hallgren
+ */
+public interface CompiledFilter {
+	/**
+	 * Match the filter against the snapshot that it was compiled for.
+	 * 
+	 * @return <code>true</code> if the properties of the snapshot match the
+	 *         filter; <code>false</code> otherwise.
+	 */
+	boolean match();
+}
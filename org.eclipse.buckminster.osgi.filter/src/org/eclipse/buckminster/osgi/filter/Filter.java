@@ -47,6 +47,17 @@ public interface Filter extends org.osgi.framework.Filter {
 	 */
 	Filter addFilterWithOr(Filter subFilter);
 
+	/**
+	 * Compile this filter against <code>snapshot</code>. The attribute names
+	 * used by this filter are resolved to the slots of the snapshot.
+	 * 
+	 * @param snapshot
+	 *            The snapshot to compile against.
+	 * @return A filter that matches the properties of the snapshot.
+	 * @see PropertySnapshot#match(Filter)
+	 */
+	CompiledFilter compile(PropertySnapshot snapshot);
+
 	/**
 	 * Filter using the <code>properties</code> keys and values.
 	 * 
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+package org.eclipse.buckminster.osgi.filter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot of a property map that assigns a slot to each property key.
+ * Filters that are matched against the same properties many times can be
+ * compiled against the snapshot once and then matched without any further
+ * name lookups or allocations.
+ * <p>
+ * A value is obtained from the map the first time its slot is consulted and
+ * is then retained by the snapshot. Changes made to the map after that are
+ * not reflected by the snapshot.
+ * </p>
+ * 
+ * @author Thomas Hallgren
+ */
+public final class PropertySnapshot {
+	private static final Object UNRESOLVED = new Object();
+
+	private final Map<String, ? extends Object> properties;
+
+	private final boolean caseSensitive;
+
+	private final Map<String, Integer> slots;
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private final Map<Filter, CompiledFilter> compiledFilters = new ConcurrentHashMap<Filter, CompiledFilter>();
+
+	/**
+	 * Creates a snapshot of <code>properties</code>.
+	 * 
+	 * @param properties
+	 *            The properties. Can be <code>null</code>.
+	 * @param caseSensitive
+	 *            <code>true</code> if attribute names must match the keys
+	 *            exactly as in {@link Filter#matchCase(Map)} and
+	 *            <code>false</code> if the case should be ignored as in
+	 *            {@link Filter#matches(Map)}
+	 * @throws IllegalArgumentException
+	 *             if the case is ignored and <code>properties</code> contains
+	 *             keys that only differ in case
+	 */
+	public PropertySnapshot(Map<String, ? extends Object> properties, boolean caseSensitive) {
+		if (properties == null)
+			properties = Collections.emptyMap();
+
+		int top = properties.size();
+		this.properties = properties;
+		this.caseSensitive = caseSensitive;
+		this.slots = new HashMap<String, Integer>(top);
+		this.keys = new String[top];
+		this.values = new Object[top];
+
+		int slot = 0;
+		for (String key : properties.keySet()) {
+			if (slot == top)
+				// The map was modified during the iteration
+				break;
+
+			if (slots.put(getSlotKey(key), Integer.valueOf(slot)) != null)
+				throw new IllegalArgumentException("case variants of key: " + getSlotKey(key)); //$NON-NLS-1$
+			keys[slot] = key;
+			values[slot] = UNRESOLVED;
+			++slot;
+		}
+	}
+
+	/**
+	 * Returns the slot assigned to an attribute.
+	 * 
+	 * @param attr
+	 *            The name of the attribute.
+	 * @return The slot or <code>-1</code> if the snapshot has no such
+	 *         attribute.
+	 */
+	public int getSlot(String attr) {
+		Integer slot = slots.get(getSlotKey(attr));
+		return slot == null ? -1 : slot.intValue();
+	}
+
+	/**
+	 * Returns the value held by a slot.
+	 * 
+	 * @param slot
+	 *            A slot obtained from {@link #getSlot(String)}
+	 * @return The value or <code>null</code> if <code>slot</code> is
+	 *         <code>-1</code> or the value is <code>null</code>.
+	 */
+	public Object getValue(int slot) {
+		if (slot < 0)
+			return null;
+
+		Object value = values[slot];
+		if (value == UNRESOLVED) {
+			// Resolving the same slot twice is harmless
+			value = properties.get(keys[slot]);
+			values[slot] = value;
+		}
+		return value;
+	}
+
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
+	/**
+	 * Match <code>filter</code> against this snapshot. The filter is compiled
+	 * the first time it is matched and the compiled filter is then reused.
+	 * 
+	 * @param filter
+	 *            The filter to match.
+	 * @return <code>true</code> if this snapshot matches the filter;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean match(Filter filter) {
+		CompiledFilter compiled = compiledFilters.get(filter);
+		if (compiled == null) {
+			compiled = filter.compile(this);
+			compiledFilters.put(filter, compiled);
+		}
+		return compiled.match();
+	}
+
+	private String getSlotKey(String key) {
+		return caseSensitive ? key : key.toLowerCase(Locale.ENGLISH);
+	}
+}
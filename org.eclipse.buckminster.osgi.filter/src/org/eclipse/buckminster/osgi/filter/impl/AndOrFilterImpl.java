@@ -10,7 +10,9 @@ package org.eclipse.buckminster.osgi.filter.impl;
 import java.util.ArrayList;
 import java.util.Map;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
 import org.eclipse.buckminster.osgi.filter.Filter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
 
 class AndOrFilterImpl extends FilterImpl {
 	private final FilterImpl[] filters;
@@ -26,6 +28,35 @@ class AndOrFilterImpl extends FilterImpl {
 			filters[i].addConsultedAttributes(propertyChoices);
 	}
 
+	@Override
+	public CompiledFilter compile(PropertySnapshot snapshot) {
+		int top = filters.length;
+		final CompiledFilter[] compiled = new CompiledFilter[top];
+		for (int idx = 0; idx < top; ++idx)
+			compiled[idx] = filters[idx].compile(snapshot);
+
+		if (getOp() == AND)
+			return new CompiledFilter() {
+				@Override
+				public boolean match() {
+					for (int i = 0, size = compiled.length; i < size; i++)
+						if (!compiled[i].match())
+							return false;
+					return true;
+				}
+			};
+
+		return new CompiledFilter() {
+			@Override
+			public boolean match() {
+				for (int i = 0, size = compiled.length; i < size; i++)
+					if (compiled[i].match())
+						return true;
+				return false;
+			}
+		};
+	}
+
 	@Override
 	public int compareTo(FilterImpl o) {
 		int cmp = internalCompareTo(o);
@@ -19,7 +19,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
 import org.eclipse.buckminster.osgi.filter.Filter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
 import org.osgi.framework.ServiceReference;
 
 abstract class FilterImpl implements Filter, Comparable<FilterImpl> {
@@ -129,6 +131,17 @@ abstract class FilterImpl implements Filter, Comparable<FilterImpl> {
 		}
 	}
 
+	/**
+	 * A compiled filter that always yields the same result. Used for filters
+	 * that consult attributes that are not present in the snapshot.
+	 */
+	static final CompiledFilter FALSE = new CompiledFilter() {
+		@Override
+		public boolean match() {
+			return false;
+		}
+	};
+
 	static final int LESS = 4;
 
 	static final int PRESENT = 5;
@@ -215,6 +228,9 @@ abstract class FilterImpl implements Filter, Comparable<FilterImpl> {
 	/** filter attribute or null if operation AND, OR or NOT */
 	private final String attr;
 
+	/** lazily computed hash code. Zero until computed */
+	private int hashCode;
+
 	FilterImpl(int operation, String attr) {
 		this.op = operation;
 		this.attr = attr;
@@ -273,7 +289,13 @@ abstract class FilterImpl implements Filter, Comparable<FilterImpl> {
 
 	@Override
 	public int hashCode() {
-		return 11 * toString().hashCode();
+		// The filter is immutable so the hash code is computed only once
+		int h = hashCode;
+		if (h == 0) {
+			h = 11 * toString().hashCode();
+			hashCode = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -376,6 +398,9 @@ abstract class FilterImpl implements Filter, Comparable<FilterImpl> {
 		return cmp;
 	}
 
+	@Override
+	public abstract CompiledFilter compile(PropertySnapshot snapshot);
+
 	abstract boolean match0(Map<String, ? extends Object> properties);
 
 	abstract void toString(StringBuilder bld);
@@ -9,7 +9,9 @@ package org.eclipse.buckminster.osgi.filter.impl;
 
 import java.util.Map;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
 import org.eclipse.buckminster.osgi.filter.Filter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
 
 class NotFilterImpl extends FilterImpl {
 	private final FilterImpl filter;
@@ -24,6 +26,17 @@ class NotFilterImpl extends FilterImpl {
 		filter.addConsultedAttributes(propertyChoices);
 	}
 
+	@Override
+	public CompiledFilter compile(PropertySnapshot snapshot) {
+		final CompiledFilter compiled = filter.compile(snapshot);
+		return new CompiledFilter() {
+			@Override
+			public boolean match() {
+				return !compiled.match();
+			}
+		};
+	}
+
 	@Override
 	public int compareTo(FilterImpl that) {
 		int cmp = internalCompareTo(that);
@@ -9,7 +9,9 @@ package org.eclipse.buckminster.osgi.filter.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.buckminster.osgi.filter.Filter;
 import org.eclipse.osgi.util.NLS;
@@ -119,8 +121,46 @@ public class Parser {
 		}
 	}
 
+	private static final int MAX_PARSED_FILTERS = 4096;
+
+	/**
+	 * The parsed filters in access order. The least recently used filter is
+	 * evicted when the map grows beyond {@link #MAX_PARSED_FILTERS}.
+	 */
+	private static final Map<String, Filter> parsedFilters = new LinkedHashMap<String, Filter>(256, 0.75f, true) {
+		private static final long serialVersionUID = -2851389064327561723L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+			return size() > MAX_PARSED_FILTERS;
+		}
+	};
+
+	/**
+	 * Parses <code>filterString</code> into a filter. Filters are immutable so
+	 * the parsed filters are interned. The same filter string will yield the
+	 * same filter instance for as long as it is among the most recently used
+	 * filters.
+	 */
 	public static Filter parse(String filterString) throws InvalidSyntaxException {
-		return new Parser(filterString).internalParse();
+		Filter filter;
+		synchronized (parsedFilters) {
+			filter = parsedFilters.get(filterString);
+		}
+		if (filter == null) {
+			// Parsing is done outside of the lock. Two threads that parse the
+			// same string at once will both get the instance that was cached
+			// first.
+			filter = new Parser(filterString).internalParse();
+			synchronized (parsedFilters) {
+				Filter cached = parsedFilters.get(filterString);
+				if (cached != null)
+					filter = cached;
+				else
+					parsedFilters.put(filterString, filter);
+			}
+		}
+		return filter;
 	}
 
 	static FilterImpl normalize(List<FilterImpl> operands, int op) {
@@ -9,11 +9,28 @@ package org.eclipse.buckminster.osgi.filter.impl;
 
 import java.util.Map;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
+
 class PresentFilterImpl extends FilterImpl {
 	PresentFilterImpl(String attr) {
 		super(FilterImpl.PRESENT, attr);
 	}
 
+	@Override
+	public CompiledFilter compile(final PropertySnapshot snapshot) {
+		final int slot = snapshot.getSlot(getAttr());
+		if (slot < 0)
+			return FALSE;
+
+		return new CompiledFilter() {
+			@Override
+			public boolean match() {
+				return snapshot.getValue(slot) != null;
+			}
+		};
+	}
+
 	@Override
 	public int compareTo(FilterImpl o) {
 		return internalCompareTo(o);
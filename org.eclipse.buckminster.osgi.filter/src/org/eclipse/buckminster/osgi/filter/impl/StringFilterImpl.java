@@ -14,6 +14,9 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Map;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
+
 class StringFilterImpl extends FilterImpl {
 
 	private static class SetAccessibleAction implements PrivilegedAction<Object> {
@@ -39,6 +42,20 @@ class StringFilterImpl extends FilterImpl {
 		this.stringValue = value;
 	}
 
+	@Override
+	public CompiledFilter compile(final PropertySnapshot snapshot) {
+		final int slot = snapshot.getSlot(getAttr());
+		if (slot < 0)
+			return FALSE;
+
+		return new CompiledFilter() {
+			@Override
+			public boolean match() {
+				return compare(snapshot.getValue(slot));
+			}
+		};
+	}
+
 	@Override
 	public int compareTo(FilterImpl filter) {
 		int cmp = internalCompareTo(filter);
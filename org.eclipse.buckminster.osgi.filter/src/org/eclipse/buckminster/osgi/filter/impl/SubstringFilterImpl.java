@@ -9,6 +9,9 @@ package org.eclipse.buckminster.osgi.filter.impl;
 
 import java.util.Map;
 
+import org.eclipse.buckminster.osgi.filter.CompiledFilter;
+import org.eclipse.buckminster.osgi.filter.PropertySnapshot;
+
 class SubstringFilterImpl extends FilterImpl {
 	private final String[] strings;
 
@@ -17,6 +20,21 @@ class SubstringFilterImpl extends FilterImpl {
 		this.strings = value;
 	}
 
+	@Override
+	public CompiledFilter compile(final PropertySnapshot snapshot) {
+		final int slot = snapshot.getSlot(getAttr());
+		if (slot < 0)
+			return FALSE;
+
+		return new CompiledFilter() {
+			@Override
+			public boolean match() {
+				Object prop = snapshot.getValue(slot);
+				return prop instanceof String ? compare(prop) : false;
+			}
+		};
+	}
+
 	@Override
 	public int compareTo(FilterImpl filter) {
 		int cmp = internalCompareTo(filter);
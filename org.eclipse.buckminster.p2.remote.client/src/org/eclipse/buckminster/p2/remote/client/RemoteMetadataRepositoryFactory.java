@@ -103,10 +103,15 @@ public class RemoteMetadataRepositoryFactory extends RemoteRepositoryFactory imp
 			//
 			Object cns = result.getProperties().get(PROP_CHANGE_NUMBER);
 			long cn = cns == null ? 0L : Long.parseLong(cns.toString());
-			SynchronizationBlock sb = facade.getChanges(cn);
-			for(RepositoryChange c : sb.getChanges())
-				c.apply(result);
-			result.setProperty(PROP_CHANGE_NUMBER, Long.toString(sb.getLastChangeNumber()));
+			SynchronizationBlock sb;
+			do
+			{
+				sb = facade.getChanges(cn);
+				for(RepositoryChange c : sb.getChanges())
+					c.apply(result);
+				cn = sb.getLastChangeNumber();
+			} while(sb.isPartial());
+			result.setProperty(PROP_CHANGE_NUMBER, Long.toString(cn));
 		}
 		return result;
 	}
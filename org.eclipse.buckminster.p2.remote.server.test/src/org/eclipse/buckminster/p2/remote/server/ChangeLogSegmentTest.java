@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.p2.remote.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.p2.remote.change.AddReference;
+import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
+import org.eclipse.buckminster.p2.remote.change.SetName;
+import org.eclipse.buckminster.p2.remote.change.SetProperty;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class ChangeLogSegmentTest extends TestCase
+{
+	static void append(ChangeLogSegment segment, long sequence, RepositoryChange change) throws IOException
+	{
+		int type = ChangeRecords.getType(change);
+		segment.append(sequence, type, ChangeRecords.getKey(change), ChangeRecords.toBytes(type, change));
+	}
+
+	static void deleteTree(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				deleteTree(child);
+		file.delete();
+	}
+
+	static SetName setName(String name)
+	{
+		SetName change = new SetName();
+		change.setName(name);
+		return change;
+	}
+
+	static SetProperty setProperty(String key, String value)
+	{
+		SetProperty change = new SetProperty();
+		change.setKey(key);
+		change.setValue(value);
+		return change;
+	}
+
+	private File m_logDir;
+
+	public void testAppendAndOpen() throws Exception
+	{
+		ChangeLogSegment segment = ChangeLogSegment.create(m_logDir, 11);
+		append(segment, 11, setName("a"));
+		append(segment, 12, setName("b"));
+		append(segment, 13, setName("c"));
+		assertEquals(3, segment.getCount());
+		assertEquals(13, segment.getLastSequence());
+
+		segment = ChangeLogSegment.open(m_logDir, 11);
+		assertEquals(3, segment.getCount());
+		assertEquals(13, segment.getLastSequence());
+		assertEquals(11, segment.getBaseSequence());
+
+		List<RepositoryChange> changes = new ArrayList<RepositoryChange>();
+		assertEquals(13, segment.readChangesAfter(11, 10, changes));
+		assertEquals(2, changes.size());
+		assertEquals("b", ((SetName)changes.get(0)).getName());
+		assertEquals("c", ((SetName)changes.get(1)).getName());
+
+		changes.clear();
+		assertEquals(11, segment.readChangesAfter(0, 1, changes));
+		assertEquals(1, changes.size());
+		assertEquals(-1, segment.readChangesAfter(13, 10, changes));
+	}
+
+	public void testCompact() throws Exception
+	{
+		ChangeLogSegment segment = ChangeLogSegment.create(m_logDir, 1);
+		append(segment, 1, setName("a"));
+		append(segment, 2, setProperty("p", "1"));
+		append(segment, 3, setName("b"));
+		append(segment, 4, new AddReference());
+		append(segment, 5, setProperty("q", "1"));
+
+		// The last change of the segment that replaces q is in a later segment
+		Set<String> replacedKeys = new HashSet<String>();
+		replacedKeys.add("property/q");
+		assertEquals(2, segment.compact(replacedKeys));
+		assertTrue(replacedKeys.contains("name"));
+		assertTrue(replacedKeys.contains("property/p"));
+		assertEquals(3, segment.getCount());
+		assertFalse(new File(m_logDir, ChangeLogSegment.getFileName(1) + ChangeLogSegment.SEGMENT_SUFFIX + ".tmp").exists());
+		assertFalse(new File(m_logDir, ChangeLogSegment.getFileName(1) + ChangeLogSegment.INDEX_SUFFIX + ".tmp").exists());
+
+		assertCompacted(segment);
+		assertCompacted(ChangeLogSegment.open(m_logDir, 1));
+
+		// Nothing more to drop
+		assertEquals(0, segment.compact(new HashSet<String>()));
+
+		// Appending after a compaction uses the new offsets
+		append(segment, 6, setName("c"));
+		segment = ChangeLogSegment.open(m_logDir, 1);
+		assertEquals(4, segment.getCount());
+		assertEquals(6, segment.getLastSequence());
+	}
+
+	public void testIncompleteRecord() throws Exception
+	{
+		ChangeLogSegment segment = ChangeLogSegment.create(m_logDir, 1);
+		append(segment, 1, setName("a"));
+		append(segment, 2, setName("b"));
+		append(segment, 3, setName("c"));
+
+		// Simulate a crash that leaves a partial record and an index that lacks the last entries
+		String name = ChangeLogSegment.getFileName(1);
+		truncate(new File(m_logDir, name + ChangeLogSegment.SEGMENT_SUFFIX), 3);
+		truncate(new File(m_logDir, name + ChangeLogSegment.INDEX_SUFFIX), 32);
+
+		segment = ChangeLogSegment.open(m_logDir, 1);
+		assertEquals(2, segment.getCount());
+		assertEquals(2, segment.getLastSequence());
+
+		append(segment, 3, setName("d"));
+		segment = ChangeLogSegment.open(m_logDir, 1);
+		List<RepositoryChange> changes = new ArrayList<RepositoryChange>();
+		assertEquals(3, segment.readChangesAfter(0, 10, changes));
+		assertEquals("d", ((SetName)changes.get(2)).getName());
+	}
+
+	public void testMissingIndex() throws Exception
+	{
+		ChangeLogSegment segment = ChangeLogSegment.create(m_logDir, 1);
+		append(segment, 1, setName("a"));
+		append(segment, 2, setName("b"));
+
+		File indexFile = new File(m_logDir, ChangeLogSegment.getFileName(1) + ChangeLogSegment.INDEX_SUFFIX);
+		assertTrue(indexFile.delete());
+		segment = ChangeLogSegment.open(m_logDir, 1);
+		assertEquals(2, segment.getCount());
+		assertEquals(32, indexFile.length());
+	}
+
+	public void testRestoreBackups() throws Exception
+	{
+		ChangeLogSegment segment = ChangeLogSegment.create(m_logDir, 1);
+		append(segment, 1, setName("a"));
+
+		// A compaction that renamed the records aside but never renamed the new records into place
+		String name = ChangeLogSegment.getFileName(1);
+		File segmentFile = new File(m_logDir, name + ChangeLogSegment.SEGMENT_SUFFIX);
+		File backup = new File(segmentFile.getPath() + ".bak");
+		assertTrue(segmentFile.renameTo(backup));
+		assertTrue(new File(m_logDir, name + ChangeLogSegment.INDEX_SUFFIX).delete());
+
+		ChangeLogSegment.restoreBackups(m_logDir);
+		assertTrue(segmentFile.exists());
+		assertFalse(backup.exists());
+		assertEquals(1, ChangeLogSegment.open(m_logDir, 1).getCount());
+
+		// A backup of a file that was replaced is obsolete
+		assertTrue(backup.createNewFile());
+		ChangeLogSegment.restoreBackups(m_logDir);
+		assertFalse(backup.exists());
+		assertEquals(1, ChangeLogSegment.open(m_logDir, 1).getCount());
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		m_logDir = File.createTempFile("changes", ".dir");
+		m_logDir.delete();
+		assertTrue(m_logDir.mkdir());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		deleteTree(m_logDir);
+	}
+
+	private void assertCompacted(ChangeLogSegment segment) throws IOException
+	{
+		List<RepositoryChange> changes = new ArrayList<RepositoryChange>();
+		assertEquals(4, segment.readChangesAfter(0, 10, changes));
+		assertEquals(3, changes.size());
+		assertEquals("1", ((SetProperty)changes.get(0)).getValue());
+		assertEquals("b", ((SetName)changes.get(1)).getName());
+		assertTrue(changes.get(2) instanceof AddReference);
+
+		// The sequence numbers of the remaining changes are not altered
+		changes.clear();
+		assertEquals(4, segment.readChangesAfter(2, 10, changes));
+		assertEquals(2, changes.size());
+		changes.clear();
+		assertEquals(4, segment.readChangesAfter(3, 10, changes));
+		assertEquals(1, changes.size());
+	}
+
+	private void truncate(File file, int count) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(raf.length() - count);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+}
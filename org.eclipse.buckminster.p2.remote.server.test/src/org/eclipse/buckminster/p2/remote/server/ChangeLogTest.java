@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.p2.remote.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
+import org.eclipse.buckminster.p2.remote.change.SetProperty;
+import org.eclipse.buckminster.p2.remote.change.SynchronizationBlock;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class ChangeLogTest extends TestCase
+{
+	private static final long SEQUENCE_START = 5;
+
+	/**
+	 * Applies the properties set by <code>changes</code> to <code>properties</code>.
+	 */
+	private static void apply(List<RepositoryChange> changes, Map<String, String> properties)
+	{
+		for(RepositoryChange change : changes)
+		{
+			SetProperty setProperty = (SetProperty)change;
+			properties.put(setProperty.getKey(), setProperty.getValue());
+		}
+	}
+
+	private File m_logDir;
+
+	public void testAddAndRead() throws Exception
+	{
+		ChangeLog log = new ChangeLog(m_logDir, SEQUENCE_START, null);
+		assertEquals(SEQUENCE_START, log.getLastChangeNumber());
+		for(int idx = 0; idx < 10; ++idx)
+			log.addChange(ChangeLogSegmentTest.setProperty("k" + idx, "v" + idx));
+		assertEquals(SEQUENCE_START + 10, log.getLastChangeNumber());
+
+		SynchronizationBlock block = log.getChangesSince(SEQUENCE_START + 4);
+		assertFalse(block.isPartial());
+		assertEquals(SEQUENCE_START + 10, block.getLastChangeNumber());
+		List<RepositoryChange> changes = block.getChanges();
+		assertEquals(6, changes.size());
+		for(int idx = 0; idx < 6; ++idx)
+		{
+			RepositoryChange change = changes.get(idx);
+			assertEquals("k" + (idx + 4), ((SetProperty)change).getKey());
+			assertTrue(change.getTimestamp() > 0);
+		}
+
+		block = log.getChangesSince(SEQUENCE_START + 10);
+		assertFalse(block.isPartial());
+		assertTrue(block.getChanges().isEmpty());
+		assertEquals(SEQUENCE_START + 10, block.getLastChangeNumber());
+
+		// The log continues where it left off when it is opened again
+		log = new ChangeLog(m_logDir, SEQUENCE_START, null);
+		assertEquals(SEQUENCE_START + 10, log.getLastChangeNumber());
+		assertEquals(6, log.getChangesSince(SEQUENCE_START + 4).getChanges().size());
+	}
+
+	public void testCompaction() throws Exception
+	{
+		ChangeLog log = new ChangeLog(m_logDir, SEQUENCE_START, null);
+		Map<String, String> expected = new HashMap<String, String>();
+		int total = ChangeLog.SEGMENT_SIZE + 1;
+		for(int idx = 0; idx < total; ++idx)
+		{
+			SetProperty change = ChangeLogSegmentTest.setProperty("k" + (idx % 10), "v" + idx);
+			expected.put(change.getKey(), change.getValue());
+			log.addChange(change);
+		}
+		log.compact();
+		assertEquals(SEQUENCE_START + total, log.getLastChangeNumber());
+
+		// The full segment only keeps the last change of each key that is not replaced by the
+		// change in the last segment
+		SynchronizationBlock block = log.getChangesSince(SEQUENCE_START);
+		assertFalse(block.isPartial());
+		assertEquals(10, block.getChanges().size());
+		Map<String, String> properties = new HashMap<String, String>();
+		apply(block.getChanges(), properties);
+		assertEquals(expected, properties);
+
+		// A client that has seen most of the changes gets the same result
+		properties.clear();
+		for(int idx = 0; idx < total - 3; ++idx)
+			properties.put("k" + (idx % 10), "v" + idx);
+		block = log.getChangesSince(SEQUENCE_START + total - 3);
+		assertEquals(3, block.getChanges().size());
+		apply(block.getChanges(), properties);
+		assertEquals(expected, properties);
+
+		log = new ChangeLog(m_logDir, SEQUENCE_START, null);
+		assertEquals(SEQUENCE_START + total, log.getLastChangeNumber());
+		assertEquals(10, log.getChangesSince(SEQUENCE_START).getChanges().size());
+	}
+
+	public void testLegacyImport() throws Exception
+	{
+		// The format written by earlier versions: a magic number, the sequence start, the number
+		// of entries, and the serialized changes
+		File legacyFile = new File(m_logDir.getParentFile(), m_logDir.getName() + ".changelog");
+		ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(legacyFile));
+		try
+		{
+			output.writeLong(0x4368616E654C6F67L);
+			output.writeLong(SEQUENCE_START);
+			output.writeInt(3);
+			for(int idx = 0; idx < 3; ++idx)
+				output.writeObject(ChangeLogSegmentTest.setProperty("k", "v" + idx));
+		}
+		finally
+		{
+			output.close();
+		}
+
+		ChangeLog log = new ChangeLog(m_logDir, 0, null);
+		log.importLegacyLog(legacyFile);
+		assertFalse(legacyFile.exists());
+		assertEquals(SEQUENCE_START + 3, log.getLastChangeNumber());
+
+		// The imported changes keep the numbers that they had in the old log
+		List<RepositoryChange> changes = log.getChangesSince(0).getChanges();
+		assertEquals(3, changes.size());
+		assertEquals("v0", ((SetProperty)changes.get(0)).getValue());
+		changes = log.getChangesSince(SEQUENCE_START + 2).getChanges();
+		assertEquals(1, changes.size());
+		assertEquals("v2", ((SetProperty)changes.get(0)).getValue());
+		assertTrue(log.getChangesSince(SEQUENCE_START + 3).getChanges().isEmpty());
+
+		// A log that is not empty is never replaced by an import
+		log.importLegacyLog(legacyFile);
+		assertEquals(SEQUENCE_START + 3, log.getLastChangeNumber());
+	}
+
+	public void testPaging() throws Exception
+	{
+		ChangeLog log = new ChangeLog(m_logDir, SEQUENCE_START, null);
+		int total = ChangeLog.MAX_BLOCK_SIZE + 10;
+		for(int idx = 0; idx < total; ++idx)
+			log.addChange(ChangeLogSegmentTest.setProperty("k" + idx, "v"));
+
+		SynchronizationBlock block = log.getChangesSince(SEQUENCE_START);
+		assertTrue(block.isPartial());
+		assertEquals(ChangeLog.MAX_BLOCK_SIZE, block.getChanges().size());
+		assertEquals(SEQUENCE_START + ChangeLog.MAX_BLOCK_SIZE, block.getLastChangeNumber());
+
+		block = log.getChangesSince(block.getLastChangeNumber());
+		assertFalse(block.isPartial());
+		assertEquals(10, block.getChanges().size());
+		assertEquals("k" + ChangeLog.MAX_BLOCK_SIZE, ((SetProperty)block.getChanges().get(0)).getKey());
+		assertEquals(SEQUENCE_START + total, block.getLastChangeNumber());
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		m_logDir = File.createTempFile("changes", ".dir");
+		m_logDir.delete();
+		assertTrue(m_logDir.mkdir());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		ChangeLogSegmentTest.deleteTree(m_logDir);
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.p2.remote.server;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.p2.remote.change.AddReference;
+import org.eclipse.buckminster.p2.remote.change.RemoveAll;
+import org.eclipse.buckminster.p2.remote.change.RemoveInstallableUnits;
+import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
+import org.eclipse.buckminster.p2.remote.change.SetDescription;
+import org.eclipse.buckminster.p2.remote.change.SetName;
+import org.eclipse.buckminster.p2.remote.change.SetProperty;
+import org.eclipse.buckminster.p2.remote.change.SetProvider;
+import org.eclipse.equinox.internal.provisional.p2.core.repository.IRepository;
+
+/**
+ * @author Thomas Hallgren
+ */
+public class ChangeRecordsTest extends TestCase
+{
+	/**
+	 * A change that has no record type of its own
+	 */
+	static class CustomChange extends RepositoryChange
+	{
+		private static final long serialVersionUID = 5426367186545327581L;
+
+		private String m_value;
+
+		@Override
+		public void apply(IRepository repository)
+		{
+		}
+
+		public String getValue()
+		{
+			return m_value;
+		}
+
+		public void setValue(String value)
+		{
+			m_value = value;
+		}
+	}
+
+	private static RepositoryChange roundTrip(RepositoryChange change) throws Exception
+	{
+		change.setTimestamp(1234567890123L);
+		int type = ChangeRecords.getType(change);
+		RepositoryChange copy = ChangeRecords.fromBytes(type, ChangeRecords.toBytes(type, change));
+		assertSame(change.getClass(), copy.getClass());
+		assertEquals(change.getTimestamp(), copy.getTimestamp());
+		return copy;
+	}
+
+	public void testAddReference() throws Exception
+	{
+		AddReference change = new AddReference();
+		change.setLocation(new URL("http://download.eclipse.org/tools/buckminster/updates"));
+		change.setType(1);
+		change.setOptions(3);
+		AddReference copy = (AddReference)roundTrip(change);
+		assertEquals(change.getLocation(), copy.getLocation());
+		assertEquals(1, copy.getType());
+		assertEquals(3, copy.getOptions());
+
+		change.setLocation(null);
+		assertNull(((AddReference)roundTrip(change)).getLocation());
+	}
+
+	public void testKeys()
+	{
+		SetProperty setProperty = new SetProperty();
+		setProperty.setKey("a");
+		assertEquals("property/a", ChangeRecords.getKey(setProperty));
+		assertEquals("name", ChangeRecords.getKey(new SetName()));
+		assertEquals("ius", ChangeRecords.getKey(new RemoveAll()));
+		assertEquals("ius", ChangeRecords.getKey(new RemoveInstallableUnits()));
+		assertEquals("", ChangeRecords.getKey(new AddReference()));
+		assertEquals("", ChangeRecords.getKey(new CustomChange()));
+	}
+
+	public void testRemoveAll() throws Exception
+	{
+		roundTrip(new RemoveAll());
+	}
+
+	public void testRemoveInstallableUnits() throws Exception
+	{
+		RemoveInstallableUnits change = new RemoveInstallableUnits();
+		assertNull(((RemoveInstallableUnits)roundTrip(change)).getRemovals());
+
+		Set<String> removals = new HashSet<String>();
+		removals.add("org.example.a/1.0.0");
+		removals.add("org.example.b/2.0.0");
+		change.setRemovals(removals);
+		assertEquals(removals, ((RemoveInstallableUnits)roundTrip(change)).getRemovals());
+
+		change.setRemovals(Collections.<String> emptySet());
+		assertEquals(Collections.emptySet(), ((RemoveInstallableUnits)roundTrip(change)).getRemovals());
+	}
+
+	public void testReplaces()
+	{
+		assertTrue(ChangeRecords.replaces(ChangeRecords.TYPE_SET_NAME));
+		assertTrue(ChangeRecords.replaces(ChangeRecords.TYPE_SET_PROPERTY));
+		assertTrue(ChangeRecords.replaces(ChangeRecords.TYPE_REMOVE_ALL));
+		assertFalse(ChangeRecords.replaces(ChangeRecords.TYPE_ADD_INSTALLABLE_UNITS));
+		assertFalse(ChangeRecords.replaces(ChangeRecords.TYPE_REMOVE_INSTALLABLE_UNITS));
+		assertFalse(ChangeRecords.replaces(ChangeRecords.TYPE_ADD_REFERENCE));
+		assertFalse(ChangeRecords.replaces(ChangeRecords.TYPE_SERIALIZED));
+	}
+
+	public void testSerialized() throws Exception
+	{
+		CustomChange change = new CustomChange();
+		change.setValue("value");
+		assertEquals(ChangeRecords.TYPE_SERIALIZED, ChangeRecords.getType(change));
+		assertEquals("value", ((CustomChange)roundTrip(change)).getValue());
+	}
+
+	public void testSetters() throws Exception
+	{
+		SetName setName = new SetName();
+		setName.setName("name \u00e5\u00e4\u00f6");
+		assertEquals(setName.getName(), ((SetName)roundTrip(setName)).getName());
+
+		SetDescription setDescription = new SetDescription();
+		assertNull(((SetDescription)roundTrip(setDescription)).getDescription());
+		setDescription.setDescription("description");
+		assertEquals("description", ((SetDescription)roundTrip(setDescription)).getDescription());
+
+		SetProvider setProvider = new SetProvider();
+		setProvider.setProvider("provider");
+		assertEquals("provider", ((SetProvider)roundTrip(setProvider)).getProvider());
+
+		SetProperty setProperty = new SetProperty();
+		setProperty.setKey("key");
+		SetProperty copy = (SetProperty)roundTrip(setProperty);
+		assertEquals("key", copy.getKey());
+		assertNull(copy.getValue());
+	}
+
+	public void testUnknownType() throws Exception
+	{
+		byte[] data = ChangeRecords.toBytes(ChangeRecords.TYPE_REMOVE_ALL, new RemoveAll());
+		try
+		{
+			ChangeRecords.fromBytes(99, data);
+			fail("Unknown type was accepted");
+		}
+		catch(IOException e)
+		{
+		}
+	}
+}
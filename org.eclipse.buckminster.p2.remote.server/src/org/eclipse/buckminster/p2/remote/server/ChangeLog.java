@@ -1,17 +1,19 @@
 package org.eclipse.buckminster.p2.remote.server;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
 import org.eclipse.buckminster.p2.remote.change.SynchronizationBlock;
@@ -20,88 +22,110 @@ import org.eclipse.buckminster.runtime.BuckminsterException;
 import org.eclipse.buckminster.runtime.IOUtils;
 import org.eclipse.equinox.internal.provisional.p2.core.ProvisionException;
 
+/**
+ * A log of the changes made to a repository. The log is a folder of segments. Each segment holds
+ * a limited number of changes and an index from sequence number to file offset so that the
+ * changes after a given sequence number can be read without reading the changes in front of
+ * them.
+ * <p>
+ * Changes are numbered from <code>sequenceStart + 1</code>. The last change number is the number
+ * of the last change or <code>sequenceStart</code> when the log is empty. A client that has
+ * applied all changes up to a given number asks for the changes since that number.
+ * </p>
+ * <p>
+ * When a segment is full, a new segment is started and the full segments are compacted. Changes
+ * that are made obsolete by a later change, such as a property that is set again, are dropped.
+ * The later change is always kept so every client still ends up in the same state. The sequence
+ * numbers of the remaining changes are not altered.
+ * </p>
+ * @author Thomas Hallgren
+ */
 public class ChangeLog
 {
+	/**
+	 * The maximum number of changes in one segment
+	 */
+	static final int SEGMENT_SIZE = 4096;
+
+	/**
+	 * The maximum number of changes in one synchronization block
+	 */
+	static final int MAX_BLOCK_SIZE = 1000;
+
 	private static final long CHANGELOG_MAGIC = 0x4368616E654C6F67L;
 
-	private final File m_logFile;
+	private final File m_logDir;
+
+	private final List<ChangeLogSegment> m_segments = new ArrayList<ChangeLogSegment>();
+
+	private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
 
-	public ChangeLog(File logFile, long sequenceStart, RepositoryServer server) throws ProvisionException
+	private long m_lastChangeNumber;
+
+	public ChangeLog(File logDir, long sequenceStart, RepositoryServer server) throws ProvisionException
 	{
-		ObjectInputStream input = null;
-		try
-		{
-			input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile), 0x8000));
-			assertMagic(input);
-		}
-		catch(FileNotFoundException e)
+		m_logDir = logDir;
+		m_lastChangeNumber = sequenceStart;
+
+		if(!(logDir.mkdirs() || logDir.isDirectory()))
+			throw new ProvisionException(BuckminsterException.createStatus("Unable to create directory %s",
+				logDir));
+
+		ChangeLogSegment.restoreBackups(logDir);
+		List<Long> baseSequences = new ArrayList<Long>();
+		for(String name : logDir.list())
 		{
-			ObjectOutputStream output = null;
+			if(!name.endsWith(ChangeLogSegment.SEGMENT_SUFFIX))
+				continue;
 			try
 			{
-				output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile), 26));
-				output.writeLong(CHANGELOG_MAGIC);
-				output.writeLong(sequenceStart);
-				output.writeInt(0);
+				baseSequences.add(Long.valueOf(Long.parseLong(name.substring(0, name.length()
+					- ChangeLogSegment.SEGMENT_SUFFIX.length()), 16)));
 			}
-			catch(IOException e2)
+			catch(NumberFormatException e)
 			{
-				throw new ProvisionException(BuckminsterException.createStatus(e2));
+				// Not one of ours
 			}
-			finally
+		}
+		Collections.sort(baseSequences);
+
+		try
+		{
+			for(Long baseSequence : baseSequences)
 			{
-				IOUtils.close(output);
+				ChangeLogSegment segment = ChangeLogSegment.open(logDir, baseSequence.longValue());
+				m_segments.add(segment);
+				if(segment.getCount() > 0)
+					m_lastChangeNumber = segment.getLastSequence();
 			}
 		}
 		catch(IOException e)
 		{
 			throw new ProvisionException(BuckminsterException.createStatus(e));
 		}
-		finally
-		{
-			IOUtils.close(input);
-		}
-		m_logFile = logFile;
 	}
 
 	public void addChange(RepositoryChange change)
 	{
+		m_lock.writeLock().lock();
 		try
 		{
-			ObjectOutputStream output = null;
-			try
-			{
-				change.setTimestamp(System.currentTimeMillis());
-				output = new ObjectOutputStream(new BufferedOutputStream(
-					new FileOutputStream(m_logFile, true), 0x8000))
-				{
-					@Override
-					protected void writeStreamHeader() throws IOException
-					{
-						super.reset();
-					}
-				};
-				output.writeObject(change);
-			}
-			finally
-			{
-				IOUtils.close(output);
-			}
+			change.setTimestamp(System.currentTimeMillis());
+			long sequence = m_lastChangeNumber + 1;
+			int type = ChangeRecords.getType(change);
+			byte[] data = ChangeRecords.toBytes(type, change);
 
-			// Bump sequence number
-			RandomAccessFile updater = null;
-			try
-			{
-				updater = new RandomAccessFile(m_logFile, "rw");
-				updater.seek(22);
-				int entryCount = updater.readInt();
-				updater.seek(22);
-				updater.writeInt(entryCount + 1);
-			}
-			finally
+			ChangeLogSegment segment = m_segments.isEmpty()
+				? null
+				: m_segments.get(m_segments.size() - 1);
+			if(segment == null || segment.getCount() >= SEGMENT_SIZE)
 			{
-				IOUtils.close(updater);
+				segment = ChangeLogSegment.create(m_logDir, sequence);
+				m_segments.add(segment);
+				compactSegments();
 			}
+			segment.append(sequence, type, ChangeRecords.getKey(change), data);
+			m_lastChangeNumber = sequence;
 		}
 		catch(RuntimeException e)
 		{
@@ -111,44 +135,69 @@ public class ChangeLog
 		{
 			Buckminster.getLogger().error(e, e.getMessage());
 		}
+		finally
+		{
+			m_lock.writeLock().unlock();
+		}
 	}
 
+	/**
+	 * Drops the changes that are made obsolete by later changes from all segments but the last
+	 * one. Segments that end up empty are removed.
+	 * @throws ProvisionException
+	 */
+	public void compact() throws ProvisionException
+	{
+		m_lock.writeLock().lock();
+		try
+		{
+			compactSegments();
+		}
+		catch(IOException e)
+		{
+			throw new ProvisionException(BuckminsterException.createStatus(e));
+		}
+		finally
+		{
+			m_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the changes that follow <code>sequenceNumber</code>. At most {@link #MAX_BLOCK_SIZE}
+	 * changes are returned. The block is marked as partial when more changes follow.
+	 * @param sequenceNumber The number of the last change that the caller has applied
+	 * @return The block of changes
+	 * @throws ProvisionException
+	 */
 	public SynchronizationBlock getChangesSince(long sequenceNumber) throws ProvisionException
 	{
-		ObjectInputStream input = null;
+		m_lock.readLock().lock();
 		try
 		{
-			input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(m_logFile), 0x8000));
-			assertMagic(input);
-			long sequenceStart = input.readLong();
-			int entryCount = input.readInt();
 			SynchronizationBlock syncBlock = new SynchronizationBlock();
-			if(sequenceStart + entryCount < sequenceNumber)
-			{
-				syncBlock.setLastChangeNumber(sequenceStart + entryCount);
+			syncBlock.setLastChangeNumber(m_lastChangeNumber);
+			if(sequenceNumber >= m_lastChangeNumber)
 				return syncBlock;
-			}
 
 			List<RepositoryChange> changes = syncBlock.getChanges();
-			long currentNumber;
-			for(currentNumber = sequenceStart;; ++currentNumber)
+			int top = m_segments.size();
+			for(int idx = findSegment(sequenceNumber); idx < top; ++idx)
 			{
-				try
-				{
-					RepositoryChange change = (RepositoryChange)input.readObject();
-					if(currentNumber > sequenceNumber)
-						changes.add(change);
-				}
-				catch(EOFException e)
-				{
+				ChangeLogSegment segment = m_segments.get(idx);
+				int room = MAX_BLOCK_SIZE - changes.size();
+				if(room <= 0)
 					break;
-				}
-				catch(ClassNotFoundException e)
-				{
-					throw new ProvisionException(BuckminsterException.createStatus(e));
-				}
+				long last = segment.readChangesAfter(sequenceNumber, room, changes);
+				if(last >= 0)
+					sequenceNumber = last;
+			}
+
+			if(sequenceNumber < m_lastChangeNumber)
+			{
+				syncBlock.setLastChangeNumber(sequenceNumber);
+				syncBlock.setPartial(true);
 			}
-			syncBlock.setLastChangeNumber(currentNumber);
 			return syncBlock;
 		}
 		catch(IOException e)
@@ -157,35 +206,136 @@ public class ChangeLog
 		}
 		finally
 		{
-			IOUtils.close(input);
+			m_lock.readLock().unlock();
 		}
 	}
 
-	public long getLastChangeNumber() throws IOException, ProvisionException
+	public long getLastChangeNumber()
+	{
+		m_lock.readLock().lock();
+		try
+		{
+			return m_lastChangeNumber;
+		}
+		finally
+		{
+			m_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Imports the changes of a change log that was written by an earlier version of the server.
+	 * The import is only performed when this log is empty. The imported file is deleted. The last
+	 * change number is the same after the import as it was in the imported log.
+	 * @param legacyFile The old change log file
+	 * @throws ProvisionException
+	 */
+	public void importLegacyLog(File legacyFile) throws ProvisionException
 	{
 		ObjectInputStream input = null;
+		m_lock.writeLock().lock();
 		try
 		{
-			input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(m_logFile), 0x8000));
-			assertMagic(input);
-			final long sequenceStart = input.readLong();
-			final int entryCount = input.readInt();
-			return sequenceStart + entryCount;
+			if(!m_segments.isEmpty())
+				return;
+
+			input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile), 0x8000));
+			if(input.readLong() != CHANGELOG_MAGIC)
+				throw new ProvisionException(BuckminsterException.createStatus("Not a changelog file: %s",
+					legacyFile));
+
+			// The old log reported sequenceStart + entryCount as its last change number. The
+			// imported changes are numbered so that the last change gets that number.
+			long sequence = input.readLong();
+			input.readInt();
+			ChangeLogSegment segment = null;
+			for(;;)
+			{
+				RepositoryChange change;
+				try
+				{
+					change = (RepositoryChange)input.readObject();
+				}
+				catch(EOFException e)
+				{
+					break;
+				}
+				++sequence;
+				if(segment == null || segment.getCount() >= SEGMENT_SIZE)
+				{
+					segment = ChangeLogSegment.create(m_logDir, sequence);
+					m_segments.add(segment);
+				}
+				int type = ChangeRecords.getType(change);
+				segment.append(sequence, type, ChangeRecords.getKey(change), ChangeRecords.toBytes(type, change));
+			}
+			if(segment != null)
+				m_lastChangeNumber = sequence;
+			compactSegments();
 		}
 		catch(FileNotFoundException e)
 		{
-			return 0L;
+			return;
+		}
+		catch(ClassNotFoundException e)
+		{
+			throw new ProvisionException(BuckminsterException.createStatus(e));
+		}
+		catch(IOException e)
+		{
+			throw new ProvisionException(BuckminsterException.createStatus(e));
 		}
 		finally
 		{
+			m_lock.writeLock().unlock();
 			IOUtils.close(input);
 		}
+		legacyFile.delete();
 	}
 
-	private void assertMagic(ObjectInputStream input) throws ProvisionException, IOException
+	private void compactSegments() throws IOException
 	{
-		if(input.readLong() != CHANGELOG_MAGIC)
-			throw new ProvisionException(BuckminsterException.createStatus("Not a changelog file: %s",
-				m_logFile));
+		int top = m_segments.size();
+		if(top < 2)
+			return;
+
+		// The last segment is still written to so it is never compacted but the keys that it
+		// replaces are collected
+		Set<String> replacedKeys = new HashSet<String>();
+		m_segments.get(top - 1).collectReplacedKeys(replacedKeys);
+		int idx = top - 1;
+		while(--idx >= 0)
+		{
+			ChangeLogSegment segment = m_segments.get(idx);
+			segment.compact(replacedKeys);
+			if(segment.getCount() == 0)
+			{
+				segment.delete();
+				m_segments.remove(idx);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first segment that might contain changes after
+	 * <code>sequenceNumber</code>.
+	 */
+	private int findSegment(long sequenceNumber)
+	{
+		int low = 0;
+		int high = m_segments.size() - 1;
+		int found = 0;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(m_segments.get(mid).getBaseSequence() <= sequenceNumber)
+			{
+				found = mid;
+				low = mid + 1;
+			}
+			else
+				high = mid - 1;
+		}
+		return found;
 	}
 }
@@ -0,0 +1,510 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.p2.remote.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
+import org.eclipse.buckminster.runtime.IOUtils;
+
+/**
+ * One segment of the {@link ChangeLog}. A segment consists of a record file and an index file. The
+ * name of both files is the sequence number of the first change of the segment.
+ * <p>
+ * Each record holds the sequence number, the type and the key of a change followed by the length
+ * and the bytes of the change as written by {@link ChangeRecords}. The index holds the sequence
+ * number and the offset of each record. The index is also kept in memory so that the records
+ * that follow a given sequence number can be read without reading the records in front of them.
+ * </p>
+ * <p>
+ * Records are only appended to a segment. A crash may leave a partial record at the end of the
+ * record file or records that are missing from the index. Both are repaired when the segment is
+ * opened.
+ * </p>
+ * @author Thomas Hallgren
+ */
+class ChangeLogSegment
+{
+	static final String SEGMENT_SUFFIX = ".seg";
+
+	static final String INDEX_SUFFIX = ".idx";
+
+	private static final String BACKUP_SUFFIX = ".bak";
+
+	private static final long SEGMENT_MAGIC = 0x4368616E53656701L;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int INDEX_ENTRY_SIZE = 16;
+
+	static ChangeLogSegment create(File logDir, long baseSequence) throws IOException
+	{
+		ChangeLogSegment segment = new ChangeLogSegment(logDir, baseSequence);
+		writeHeader(segment.m_segmentFile);
+		IOUtils.close(new FileOutputStream(segment.m_indexFile));
+		return segment;
+	}
+
+	static String getFileName(long baseSequence)
+	{
+		return String.format("%016x", Long.valueOf(baseSequence));
+	}
+
+	static ChangeLogSegment open(File logDir, long baseSequence) throws IOException
+	{
+		ChangeLogSegment segment = new ChangeLogSegment(logDir, baseSequence);
+		segment.load();
+		return segment;
+	}
+
+	/**
+	 * Restores the files that were renamed aside by a compaction that did not complete and removes
+	 * the backups of files that were replaced.
+	 */
+	static void restoreBackups(File logDir)
+	{
+		for(String name : logDir.list())
+		{
+			if(!name.endsWith(BACKUP_SUFFIX))
+				continue;
+
+			File backup = new File(logDir, name);
+			File target = new File(logDir, name.substring(0, name.length() - BACKUP_SUFFIX.length()));
+			if(target.exists())
+				backup.delete();
+			else
+				backup.renameTo(target);
+		}
+	}
+
+	/**
+	 * Replaces <code>target</code> with <code>source</code>. The rename is atomic where the
+	 * platform allows a rename over an existing file. Elsewhere the target is renamed aside first
+	 * so that it is never lost. A backup that is left by a crash is restored by
+	 * {@link #restoreBackups(File)}.
+	 */
+	private static void replace(File source, File target) throws IOException
+	{
+		if(source.renameTo(target))
+			return;
+
+		File backup = new File(target.getPath() + BACKUP_SUFFIX);
+		backup.delete();
+		if(!target.renameTo(backup))
+			throw new IOException("Unable to replace " + target);
+
+		if(!source.renameTo(target))
+		{
+			backup.renameTo(target);
+			throw new IOException("Unable to replace " + target);
+		}
+		backup.delete();
+	}
+
+	private static void writeHeader(File segmentFile) throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new FileOutputStream(segmentFile));
+		try
+		{
+			output.writeLong(SEGMENT_MAGIC);
+		}
+		finally
+		{
+			IOUtils.close(output);
+		}
+	}
+
+	private final long m_baseSequence;
+
+	private final File m_segmentFile;
+
+	private final File m_indexFile;
+
+	private long[] m_sequences = new long[16];
+
+	private long[] m_offsets = new long[16];
+
+	private int m_count;
+
+	private long m_size;
+
+	private ChangeLogSegment(File logDir, long baseSequence)
+	{
+		String name = getFileName(baseSequence);
+		m_baseSequence = baseSequence;
+		m_segmentFile = new File(logDir, name + SEGMENT_SUFFIX);
+		m_indexFile = new File(logDir, name + INDEX_SUFFIX);
+		m_size = HEADER_SIZE;
+	}
+
+	/**
+	 * Appends a record to this segment.
+	 */
+	void append(long sequence, int type, String key, byte[] data) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + key.length() + 32);
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeLong(sequence);
+		record.writeByte(type);
+		record.writeUTF(key);
+		record.writeInt(data.length);
+		record.write(data);
+		record.flush();
+
+		DataOutputStream output = new DataOutputStream(new FileOutputStream(m_segmentFile, true));
+		try
+		{
+			bytes.writeTo(output);
+		}
+		finally
+		{
+			IOUtils.close(output);
+		}
+
+		output = new DataOutputStream(new FileOutputStream(m_indexFile, true));
+		try
+		{
+			output.writeLong(sequence);
+			output.writeLong(m_size);
+		}
+		finally
+		{
+			IOUtils.close(output);
+		}
+		addEntry(sequence, m_size);
+		m_size += bytes.size();
+	}
+
+	/**
+	 * Copies the records of this segment that are not made obsolete by a later change to a new
+	 * segment that replaces this one. The keys replaced by the records of this segment are added
+	 * to <code>replacedKeys</code>.
+	 * @param replacedKeys The keys that are replaced by changes in later segments
+	 * @return The number of records that were dropped
+	 */
+	int compact(Set<String> replacedKeys) throws IOException
+	{
+		boolean[] keep = new boolean[m_count];
+		int dropped = m_count - markKept(replacedKeys, keep);
+		if(dropped == 0)
+			return 0;
+
+		File tmpSegment = new File(m_segmentFile.getPath() + ".tmp");
+		File tmpIndex = new File(m_indexFile.getPath() + ".tmp");
+		long[] sequences = new long[m_count - dropped];
+		long[] offsets = new long[sequences.length];
+		long size = HEADER_SIZE;
+		DataInputStream records = null;
+		DataOutputStream segmentOutput = null;
+		DataOutputStream indexOutput = null;
+		try
+		{
+			records = new DataInputStream(new BufferedInputStream(new FileInputStream(m_segmentFile), 0x8000));
+			records.skipBytes(HEADER_SIZE);
+			segmentOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpSegment), 0x8000));
+			segmentOutput.writeLong(SEGMENT_MAGIC);
+			indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndex), 0x8000));
+			int kept = 0;
+			for(int idx = 0; idx < m_count; ++idx)
+			{
+				int recordSize = (int)(getRecordEnd(idx) - m_offsets[idx]);
+				byte[] record = new byte[recordSize];
+				records.readFully(record);
+				if(!keep[idx])
+					continue;
+
+				segmentOutput.write(record);
+				indexOutput.writeLong(m_sequences[idx]);
+				indexOutput.writeLong(size);
+				sequences[kept] = m_sequences[idx];
+				offsets[kept] = size;
+				++kept;
+				size += recordSize;
+			}
+		}
+		finally
+		{
+			IOUtils.close(records);
+			IOUtils.close(segmentOutput);
+			IOUtils.close(indexOutput);
+		}
+
+		// The index is removed before the records are replaced so that the new records are never
+		// read using the old index. A segment without an index is indexed when it is opened.
+		m_indexFile.delete();
+		try
+		{
+			replace(tmpSegment, m_segmentFile);
+		}
+		catch(IOException e)
+		{
+			// The old records are still in place
+			tmpIndex.delete();
+			writeIndex();
+			throw e;
+		}
+		m_sequences = sequences;
+		m_offsets = offsets;
+		m_count = sequences.length;
+		m_size = size;
+		if(!tmpIndex.renameTo(m_indexFile))
+			writeIndex();
+		return dropped;
+	}
+
+	/**
+	 * Adds the keys that are replaced by the records of this segment to
+	 * <code>replacedKeys</code> without changing the segment.
+	 */
+	void collectReplacedKeys(Set<String> replacedKeys) throws IOException
+	{
+		markKept(replacedKeys, null);
+	}
+
+	void delete()
+	{
+		m_segmentFile.delete();
+		m_indexFile.delete();
+	}
+
+	long getBaseSequence()
+	{
+		return m_baseSequence;
+	}
+
+	int getCount()
+	{
+		return m_count;
+	}
+
+	/**
+	 * @return The sequence number of the last record or <code>-1</code> if the segment is empty
+	 */
+	long getLastSequence()
+	{
+		return m_count == 0
+			? -1L
+			: m_sequences[m_count - 1];
+	}
+
+	/**
+	 * Reads the changes that follow <code>sequence</code> into <code>changes</code>.
+	 * @param sequence The sequence number to read after
+	 * @param maxChanges The maximum number of changes to read
+	 * @param changes The list that receives the changes
+	 * @return The sequence number of the last change that was read or <code>-1</code> if no
+	 *         changes were read
+	 */
+	long readChangesAfter(long sequence, int maxChanges, List<RepositoryChange> changes) throws IOException
+	{
+		// Find the first record with a sequence number greater than sequence
+		int idx = 0;
+		int top = m_count;
+		while(idx < top)
+		{
+			int mid = (idx + top) >>> 1;
+			if(m_sequences[mid] <= sequence)
+				idx = mid + 1;
+			else
+				top = mid;
+		}
+		if(idx >= m_count || maxChanges <= 0)
+			return -1L;
+
+		top = Math.min(m_count, idx + maxChanges);
+		FileInputStream fileInput = new FileInputStream(m_segmentFile);
+		try
+		{
+			fileInput.getChannel().position(m_offsets[idx]);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput, 0x8000));
+			for(int cnt = idx; cnt < top; ++cnt)
+			{
+				input.readLong();
+				int type = input.readUnsignedByte();
+				input.readUTF();
+				byte[] data = new byte[input.readInt()];
+				input.readFully(data);
+				changes.add(ChangeRecords.fromBytes(type, data));
+			}
+		}
+		finally
+		{
+			IOUtils.close(fileInput);
+		}
+		return m_sequences[top - 1];
+	}
+
+	private void addEntry(long sequence, long offset)
+	{
+		if(m_count == m_sequences.length)
+		{
+			long[] sequences = new long[Math.max(16, m_count * 2)];
+			long[] offsets = new long[sequences.length];
+			System.arraycopy(m_sequences, 0, sequences, 0, m_count);
+			System.arraycopy(m_offsets, 0, offsets, 0, m_count);
+			m_sequences = sequences;
+			m_offsets = offsets;
+		}
+		m_sequences[m_count] = sequence;
+		m_offsets[m_count] = offset;
+		++m_count;
+	}
+
+	private long getRecordEnd(int idx)
+	{
+		return idx + 1 < m_count
+			? m_offsets[idx + 1]
+			: m_size;
+	}
+
+	private void load() throws IOException
+	{
+		long segmentLength = m_segmentFile.length();
+		RandomAccessFile segment = new RandomAccessFile(m_segmentFile, "rw");
+		try
+		{
+			if(segment.readLong() != SEGMENT_MAGIC)
+				throw new IOException("Not a changelog segment: " + m_segmentFile);
+
+			// Entries that point beyond the record file are ignored. The record that the last
+			// entry points to is verified below.
+			DataInputStream index = null;
+			try
+			{
+				index = new DataInputStream(new BufferedInputStream(new FileInputStream(m_indexFile), 0x8000));
+				long entryCount = m_indexFile.length() / INDEX_ENTRY_SIZE;
+				while(--entryCount >= 0)
+				{
+					long sequence = index.readLong();
+					long offset = index.readLong();
+					if(offset >= segmentLength)
+						break;
+					addEntry(sequence, offset);
+				}
+			}
+			catch(FileNotFoundException e)
+			{
+			}
+			finally
+			{
+				IOUtils.close(index);
+			}
+
+			// Scan the records that follow the last indexed record. A record that is incomplete
+			// is truncated.
+			int indexed = m_count;
+			long offset = HEADER_SIZE;
+			if(m_count > 0)
+			{
+				--m_count;
+				offset = m_offsets[m_count];
+			}
+			for(;;)
+			{
+				long sequence;
+				try
+				{
+					segment.seek(offset);
+					sequence = segment.readLong();
+					segment.readUnsignedByte();
+					segment.readUTF();
+					int length = segment.readInt();
+					if(segment.getFilePointer() + length > segmentLength)
+						throw new EOFException();
+					segment.seek(segment.getFilePointer() + length);
+				}
+				catch(EOFException e)
+				{
+					if(offset < segmentLength)
+						segment.setLength(offset);
+					break;
+				}
+				addEntry(sequence, offset);
+				offset = segment.getFilePointer();
+			}
+			m_size = offset;
+			if(m_count != indexed || m_indexFile.length() != (long)m_count * INDEX_ENTRY_SIZE)
+				writeIndex();
+		}
+		finally
+		{
+			IOUtils.close(segment);
+		}
+	}
+
+	/**
+	 * Visits the records from last to first. A record is obsolete when a later record replaces
+	 * its key.
+	 * @param replacedKeys The keys replaced by later records. Keys replaced by the records of
+	 *            this segment are added.
+	 * @param keep Receives <code>true</code> for each record that is kept. Can be
+	 *            <code>null</code>.
+	 * @return The number of records that are kept
+	 */
+	private int markKept(Set<String> replacedKeys, boolean[] keep) throws IOException
+	{
+		if(m_count == 0)
+			return 0;
+
+		int kept = 0;
+		RandomAccessFile input = new RandomAccessFile(m_segmentFile, "r");
+		try
+		{
+			for(int idx = m_count - 1; idx >= 0; --idx)
+			{
+				input.seek(m_offsets[idx] + 8);
+				int type = input.readUnsignedByte();
+				String key = input.readUTF();
+				if(key.length() > 0 && replacedKeys.contains(key))
+					continue;
+
+				++kept;
+				if(keep != null)
+					keep[idx] = true;
+				if(ChangeRecords.replaces(type))
+					replacedKeys.add(key);
+			}
+		}
+		finally
+		{
+			IOUtils.close(input);
+		}
+		return kept;
+	}
+
+	private void writeIndex() throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_indexFile), 0x8000));
+		try
+		{
+			for(int idx = 0; idx < m_count; ++idx)
+			{
+				output.writeLong(m_sequences[idx]);
+				output.writeLong(m_offsets[idx]);
+			}
+		}
+		finally
+		{
+			IOUtils.close(output);
+		}
+	}
+}
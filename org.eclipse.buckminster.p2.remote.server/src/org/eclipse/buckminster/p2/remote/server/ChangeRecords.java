@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.p2.remote.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.buckminster.p2.remote.change.AddInstallableUnits;
+import org.eclipse.buckminster.p2.remote.change.AddReference;
+import org.eclipse.buckminster.p2.remote.change.RemoveAll;
+import org.eclipse.buckminster.p2.remote.change.RemoveInstallableUnits;
+import org.eclipse.buckminster.p2.remote.change.RepositoryChange;
+import org.eclipse.buckminster.p2.remote.change.SetDescription;
+import org.eclipse.buckminster.p2.remote.change.SetName;
+import org.eclipse.buckminster.p2.remote.change.SetProperty;
+import org.eclipse.buckminster.p2.remote.change.SetProvider;
+import org.eclipse.equinox.internal.provisional.p2.metadata.IInstallableUnit;
+import org.jabsorb.JSONRPCBridge;
+import org.jabsorb.serializer.MarshallException;
+import org.jabsorb.serializer.UnmarshallException;
+
+/**
+ * Converts repository changes to and from the records of the {@link ChangeLog}. Each known kind of
+ * change has its own type and a compact encoding of its fields. Other changes are written using
+ * Java serialization.
+ * <p>
+ * The type and the key of a record are kept in the record header so that the log can be compacted
+ * without decoding the changes. A change of a type that {@link #replaces(int) replaces} its key
+ * makes all earlier changes with the same key obsolete.
+ * </p>
+ * @author Thomas Hallgren
+ */
+class ChangeRecords
+{
+	static final int TYPE_SERIALIZED = 0;
+
+	static final int TYPE_SET_NAME = 1;
+
+	static final int TYPE_SET_DESCRIPTION = 2;
+
+	static final int TYPE_SET_PROVIDER = 3;
+
+	static final int TYPE_SET_PROPERTY = 4;
+
+	static final int TYPE_ADD_REFERENCE = 5;
+
+	static final int TYPE_ADD_INSTALLABLE_UNITS = 6;
+
+	static final int TYPE_REMOVE_INSTALLABLE_UNITS = 7;
+
+	static final int TYPE_REMOVE_ALL = 8;
+
+	private static final String KEY_NONE = "";
+
+	private static final String KEY_NAME = "name";
+
+	private static final String KEY_DESCRIPTION = "description";
+
+	private static final String KEY_PROVIDER = "provider";
+
+	private static final String KEY_PROPERTY_PREFIX = "property/";
+
+	private static final String KEY_INSTALLABLE_UNITS = "ius";
+
+	static RepositoryChange fromBytes(int type, byte[] data) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+		long timestamp = input.readLong();
+		RepositoryChange change;
+		switch(type)
+		{
+		case TYPE_SET_NAME:
+			SetName setName = new SetName();
+			setName.setName(readString(input));
+			change = setName;
+			break;
+		case TYPE_SET_DESCRIPTION:
+			SetDescription setDescription = new SetDescription();
+			setDescription.setDescription(readString(input));
+			change = setDescription;
+			break;
+		case TYPE_SET_PROVIDER:
+			SetProvider setProvider = new SetProvider();
+			setProvider.setProvider(readString(input));
+			change = setProvider;
+			break;
+		case TYPE_SET_PROPERTY:
+			SetProperty setProperty = new SetProperty();
+			setProperty.setKey(readString(input));
+			setProperty.setValue(readString(input));
+			change = setProperty;
+			break;
+		case TYPE_ADD_REFERENCE:
+			AddReference addReference = new AddReference();
+			String location = readString(input);
+			addReference.setLocation(location == null
+				? null
+				: new URL(location));
+			addReference.setType(input.readInt());
+			addReference.setOptions(input.readInt());
+			change = addReference;
+			break;
+		case TYPE_ADD_INSTALLABLE_UNITS:
+			AddInstallableUnits addUnits = new AddInstallableUnits();
+			IInstallableUnit[] additions = new IInstallableUnit[input.readInt()];
+			for(int idx = 0; idx < additions.length; ++idx)
+			{
+				try
+				{
+					additions[idx] = (IInstallableUnit)JSONRPCBridge.getSerializer().fromJSON(readString(input));
+				}
+				catch(UnmarshallException e)
+				{
+					IOException ioe = new IOException(e.getMessage());
+					ioe.initCause(e);
+					throw ioe;
+				}
+			}
+			addUnits.setAdditions(additions);
+			change = addUnits;
+			break;
+		case TYPE_REMOVE_INSTALLABLE_UNITS:
+			RemoveInstallableUnits removeUnits = new RemoveInstallableUnits();
+			int count = input.readInt();
+			if(count >= 0)
+			{
+				Set<String> removals = new HashSet<String>();
+				while(--count >= 0)
+					removals.add(readString(input));
+				removeUnits.setRemovals(removals);
+			}
+			change = removeUnits;
+			break;
+		case TYPE_REMOVE_ALL:
+			change = new RemoveAll();
+			break;
+		case TYPE_SERIALIZED:
+			ObjectInputStream objectInput = new ObjectInputStream(input);
+			try
+			{
+				change = (RepositoryChange)objectInput.readObject();
+			}
+			catch(ClassNotFoundException e)
+			{
+				IOException ioe = new IOException(e.getMessage());
+				ioe.initCause(e);
+				throw ioe;
+			}
+			break;
+		default:
+			throw new IOException("Unknown change record type " + type);
+		}
+		change.setTimestamp(timestamp);
+		return change;
+	}
+
+	/**
+	 * Returns the key of a change. Changes that cannot be replaced by later changes have an
+	 * empty key.
+	 */
+	static String getKey(RepositoryChange change)
+	{
+		switch(getType(change))
+		{
+		case TYPE_SET_NAME:
+			return KEY_NAME;
+		case TYPE_SET_DESCRIPTION:
+			return KEY_DESCRIPTION;
+		case TYPE_SET_PROVIDER:
+			return KEY_PROVIDER;
+		case TYPE_SET_PROPERTY:
+			return KEY_PROPERTY_PREFIX + ((SetProperty)change).getKey();
+		case TYPE_ADD_INSTALLABLE_UNITS:
+		case TYPE_REMOVE_INSTALLABLE_UNITS:
+		case TYPE_REMOVE_ALL:
+			return KEY_INSTALLABLE_UNITS;
+		default:
+			return KEY_NONE;
+		}
+	}
+
+	static int getType(RepositoryChange change)
+	{
+		Class<?> c = change.getClass();
+		if(c == SetName.class)
+			return TYPE_SET_NAME;
+		if(c == SetDescription.class)
+			return TYPE_SET_DESCRIPTION;
+		if(c == SetProvider.class)
+			return TYPE_SET_PROVIDER;
+		if(c == SetProperty.class)
+			return TYPE_SET_PROPERTY;
+		if(c == AddReference.class)
+			return TYPE_ADD_REFERENCE;
+		if(c == AddInstallableUnits.class)
+			return TYPE_ADD_INSTALLABLE_UNITS;
+		if(c == RemoveInstallableUnits.class)
+			return TYPE_REMOVE_INSTALLABLE_UNITS;
+		if(c == RemoveAll.class)
+			return TYPE_REMOVE_ALL;
+		return TYPE_SERIALIZED;
+	}
+
+	/**
+	 * Returns <code>true</code> if a change of the given type makes all earlier changes with the
+	 * same key obsolete.
+	 */
+	static boolean replaces(int type)
+	{
+		switch(type)
+		{
+		case TYPE_SET_NAME:
+		case TYPE_SET_DESCRIPTION:
+		case TYPE_SET_PROVIDER:
+		case TYPE_SET_PROPERTY:
+		case TYPE_REMOVE_ALL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static byte[] toBytes(int type, RepositoryChange change) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeLong(change.getTimestamp());
+		switch(type)
+		{
+		case TYPE_SET_NAME:
+			writeString(output, ((SetName)change).getName());
+			break;
+		case TYPE_SET_DESCRIPTION:
+			writeString(output, ((SetDescription)change).getDescription());
+			break;
+		case TYPE_SET_PROVIDER:
+			writeString(output, ((SetProvider)change).getProvider());
+			break;
+		case TYPE_SET_PROPERTY:
+			SetProperty setProperty = (SetProperty)change;
+			writeString(output, setProperty.getKey());
+			writeString(output, setProperty.getValue());
+			break;
+		case TYPE_ADD_REFERENCE:
+			AddReference addReference = (AddReference)change;
+			URL location = addReference.getLocation();
+			writeString(output, location == null
+				? null
+				: location.toExternalForm());
+			output.writeInt(addReference.getType());
+			output.writeInt(addReference.getOptions());
+			break;
+		case TYPE_ADD_INSTALLABLE_UNITS:
+			IInstallableUnit[] additions = ((AddInstallableUnits)change).getAdditions();
+			output.writeInt(additions.length);
+			for(IInstallableUnit iu : additions)
+			{
+				try
+				{
+					writeString(output, JSONRPCBridge.getSerializer().toJSON(iu));
+				}
+				catch(MarshallException e)
+				{
+					IOException ioe = new IOException(e.getMessage());
+					ioe.initCause(e);
+					throw ioe;
+				}
+			}
+			break;
+		case TYPE_REMOVE_INSTALLABLE_UNITS:
+			Set<String> removals = ((RemoveInstallableUnits)change).getRemovals();
+			if(removals == null)
+				output.writeInt(-1);
+			else
+			{
+				output.writeInt(removals.size());
+				for(String removal : removals)
+					writeString(output, removal);
+			}
+			break;
+		case TYPE_REMOVE_ALL:
+			break;
+		default:
+			ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+			objectOutput.writeObject(change);
+			objectOutput.flush();
+		}
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private static String readString(DataInputStream input) throws IOException
+	{
+		int length = input.readInt();
+		if(length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException
+	{
+		// Not using writeUTF since it is limited to 64k
+		if(value == null)
+		{
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -34,7 +34,8 @@ public class LoggingRepository extends PlatformObject implements IRepository
 	throws ProvisionException
 	{
 		wrappedRepository = repository;
-		m_changeLog = new ChangeLog(new File(facadeArea, "changelog"), 1L, server);
+		m_changeLog = new ChangeLog(new File(facadeArea, "changes"), 1L, server);
+		m_changeLog.importLegacyLog(new File(facadeArea, "changelog"));
 		m_mirrors = new Mirrors(new File(facadeArea, "mirrors"), server);
 		m_server = server;
 	}
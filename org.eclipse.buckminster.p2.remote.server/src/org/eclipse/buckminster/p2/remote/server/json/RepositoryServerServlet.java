@@ -9,10 +9,12 @@
 package org.eclipse.buckminster.p2.remote.server.json;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.UUID;
@@ -212,12 +214,13 @@ public class RepositoryServerServlet extends HttpServlet
 			jsonResponse = new JSONRPCResult(JSONRPCResult.CODE_ERR_PARSE, null, JSONRPCResult.MSG_ERR_PARSE);
 		}
 
-		String sendString = jsonResponse.toString();
-		byte[] bout = sendString.getBytes("UTF-8");
-		response.setIntHeader("Content-Length", bout.length);
-
-		OutputStream out = response.getOutputStream();
-		out.write(bout);
+		// The JSON text of the result is built in memory since JSONRPCResult cannot write itself to
+		// a stream. The text is encoded straight onto the response stream rather than into a byte
+		// array first. The content length is therefore unknown and the response is chunked. The
+		// size of a synchronization response is bounded since the change log never returns more
+		// than ChangeLog.MAX_BLOCK_SIZE changes in one block.
+		Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"), BUFFER_SIZE);
+		out.write(jsonResponse.toString());
 		out.flush();
 		out.close();
 	}
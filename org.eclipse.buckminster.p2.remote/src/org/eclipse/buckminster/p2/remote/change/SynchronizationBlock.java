@@ -7,6 +7,8 @@ public class SynchronizationBlock
 {
 	private long m_lastChangeNumber;
 
+	private boolean m_partial;
+
 	private List<RepositoryChange> m_changes = new ArrayList<RepositoryChange>();
 
 	public List<RepositoryChange> getChanges()
@@ -19,6 +21,16 @@ public class SynchronizationBlock
 		return m_lastChangeNumber;
 	}
 
+	/**
+	 * Returns <code>true</code> when this block does not contain all changes that are known to
+	 * the server. The remaining changes are obtained by asking for the changes that follow the
+	 * last change number of this block.
+	 */
+	public boolean isPartial()
+	{
+		return m_partial;
+	}
+
 	public void setChanges(List<RepositoryChange> changes)
 	{
 		m_changes = changes;
@@ -28,4 +40,9 @@ public class SynchronizationBlock
 	{
 		m_lastChangeNumber = lastChangeNumber;
 	}
+
+	public void setPartial(boolean partial)
+	{
+		m_partial = partial;
+	}
 }
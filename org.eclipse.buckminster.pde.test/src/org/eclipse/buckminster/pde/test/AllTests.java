@@ -19,6 +19,7 @@ public class AllTests {
 		suite.addTestSuite(SourceFeatureTest.class);
 		suite.addTestSuite(CategoryActionTest.class);
 		suite.addTestSuite(ExcludeFilesTest.class);
+		suite.addTestSuite(BuildScriptCacheTest.class);
 		// $JUnit-END$
 		return suite;
 	}
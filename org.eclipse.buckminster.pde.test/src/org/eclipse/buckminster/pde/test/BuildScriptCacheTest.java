@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.pde.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.buckminster.ant.actor.AntActor;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Tests the cache of build scripts resolved by the ant actor. Uses the build
+ * script that the PDE bundle contributes.
+ *
+ * @author Thomas Hallgren
+ */
+public class BuildScriptCacheTest extends TestCase {
+	private static final String BUILD_FILE_ID = "buckminster.pdetasks"; //$NON-NLS-1$
+
+	public void testSecondLookupIsHit() throws Exception {
+		// The first lookup is a miss unless an earlier test used the script
+		IPath location = AntActor.getBuildFileExtension(BUILD_FILE_ID);
+		assertTrue(location.toFile().isFile());
+
+		long hits = AntActor.getBuildScriptCacheHitCount();
+		long misses = AntActor.getBuildScriptCacheMissCount();
+		assertEquals(location, AntActor.getBuildFileExtension(BUILD_FILE_ID));
+		assertEquals(hits + 1, AntActor.getBuildScriptCacheHitCount());
+		assertEquals(misses, AntActor.getBuildScriptCacheMissCount());
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ ******************************************************************************/
+
+package org.eclipse.buckminster.runtime;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A factory for the daemon threads of a thread pool. Each factory gets a pool
+ * name that is unique within the running process. The threads are named after
+ * the pool so that they can be told apart in a thread dump, i.e.
+ * <code>Buckminster resolver 3 worker 1</code>.
+ *
+ * @author Thomas Hallgren
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+	private static final AtomicInteger poolCounter = new AtomicInteger();
+
+	private final String poolName;
+
+	private final AtomicInteger threadCounter = new AtomicInteger();
+
+	/**
+	 * @param name
+	 *            The name of the pool, i.e. <code>Buckminster resolver</code>.
+	 *            A number is appended to make the name unique.
+	 */
+	public DaemonThreadFactory(String name) {
+		poolName = name + ' ' + poolCounter.incrementAndGet();
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, poolName + " worker " + threadCounter.incrementAndGet()); //$NON-NLS-1$
+		t.setDaemon(true);
+		return t;
+	}
+}
@@ -0,0 +1,213 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.sax;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * A <code>ContentHandler</code> that writes the events that it receives in a
+ * compact binary format that can be read by a {@link BinaryXMLReader}. All
+ * strings are written once and then referenced by their index in a string
+ * table. Counts and indexes are written as variable length integers.
+ * <p>
+ * Prefix mappings are written as <code>xmlns</code> attributes of the
+ * element that follows them. Comments are not retained.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class BinarySerializer implements ContentHandler {
+	static final byte[] MAGIC = { 0, 'B', 'X', 'S' };
+
+	static final int VERSION = 1;
+
+	static final int END_DOCUMENT = 0;
+
+	static final int START_ELEMENT = 1;
+
+	static final int END_ELEMENT = 2;
+
+	static final int CHARACTERS = 3;
+
+	static final int IGNORABLE_WHITESPACE = 4;
+
+	static final int PROCESSING_INSTRUCTION = 5;
+
+	static final int NEW_STRING = 0;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private final OutputStream output;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	private final List<String> pendingMappings = new ArrayList<String>();
+
+	/**
+	 * Create a serializer that writes to <code>output</code>. The stream is
+	 * flushed but not closed when the document ends.
+	 *
+	 * @param output
+	 *            The stream to write to. Should be buffered.
+	 */
+	public BinarySerializer(OutputStream output) {
+		this.output = output;
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		write(CHARACTERS);
+		writeString(new String(ch, start, length));
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		write(END_DOCUMENT);
+		try {
+			output.flush();
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		write(END_ELEMENT);
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+		write(IGNORABLE_WHITESPACE);
+		writeString(new String(ch, start, length));
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException {
+		write(PROCESSING_INSTRUCTION);
+		writeString(target);
+		writeString(data);
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+	}
+
+	@Override
+	public void skippedEntity(String name) throws SAXException {
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		try {
+			output.write(MAGIC);
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+		write(VERSION);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		int top = atts.getLength();
+		List<String> mappings = null;
+		int mappingCount = pendingMappings.size();
+		if (mappingCount > 0) {
+			// Mappings that are also declared as attributes are skipped
+			mappings = new ArrayList<String>(mappingCount);
+			for (int idx = 0; idx < mappingCount; idx += 2) {
+				String prefix = pendingMappings.get(idx);
+				String nsQName = prefix.length() == 0 ? "xmlns" : "xmlns:" + prefix; //$NON-NLS-1$ //$NON-NLS-2$
+				if (atts.getIndex(nsQName) < 0) {
+					mappings.add(nsQName);
+					mappings.add(pendingMappings.get(idx + 1));
+				}
+			}
+			pendingMappings.clear();
+			mappingCount = mappings.size();
+		}
+
+		write(START_ELEMENT);
+		writeString(uri);
+		writeString(localName);
+		writeString(qName);
+		writeInt(top + mappingCount / 2);
+		for (int idx = 0; idx < mappingCount; idx += 2) {
+			String nsQName = mappings.get(idx);
+			writeString(""); //$NON-NLS-1$
+			writeString(nsQName);
+			writeString(nsQName);
+			writeString("CDATA"); //$NON-NLS-1$
+			writeString(mappings.get(idx + 1));
+		}
+		for (int idx = 0; idx < top; ++idx) {
+			writeString(atts.getURI(idx));
+			writeString(atts.getLocalName(idx));
+			writeString(atts.getQName(idx));
+			writeString(atts.getType(idx));
+			writeString(atts.getValue(idx));
+		}
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		pendingMappings.add(prefix == null ? "" : prefix); //$NON-NLS-1$
+		pendingMappings.add(uri);
+	}
+
+	private void write(int b) throws SAXException {
+		try {
+			output.write(b);
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	private void writeInt(int value) throws SAXException {
+		while ((value & ~0x7f) != 0) {
+			write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		write(value);
+	}
+
+	private void writeString(String value) throws SAXException {
+		if (value == null)
+			value = ""; //$NON-NLS-1$
+
+		Integer index = strings.get(value);
+		if (index != null) {
+			writeInt(index.intValue() + 1);
+			return;
+		}
+
+		strings.put(value, Integer.valueOf(strings.size()));
+		byte[] bytes = value.getBytes(UTF_8);
+		writeInt(NEW_STRING);
+		writeInt(bytes.length);
+		try {
+			output.write(bytes);
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+}
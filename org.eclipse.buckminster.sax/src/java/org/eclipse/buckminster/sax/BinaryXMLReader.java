@@ -0,0 +1,332 @@
+/*****************************************************************************
+ * Copyright (c) 2006-2013, Cloudsmith Inc.
+ * The code, documentation and other materials contained herein have been
+ * licensed under the Eclipse Public License - v 1.0 by the copyright holder
+ * listed above, as the Initial Contributor under such license. The text of
+ * such license is available at www.eclipse.org.
+ *****************************************************************************/
+package org.eclipse.buckminster.sax;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * An <code>XMLReader</code> that reads documents that were written by a
+ * {@link BinarySerializer} and reports them to its <code>ContentHandler</code>
+ * as if they had been parsed by a namespace aware XML parser. No validation is
+ * performed. The documents are assumed to be produced by Buckminster.
+ * <p>
+ * Features and properties are accepted but have no effect.
+ * </p>
+ *
+ * @author Thomas Hallgren
+ */
+public class BinaryXMLReader implements XMLReader {
+	private static final String XMLNS = "xmlns"; //$NON-NLS-1$
+
+	private static final String XMLNS_PREFIX = "xmlns:"; //$NON-NLS-1$
+
+	/**
+	 * Checks if the given stream starts with the header of a binary document.
+	 * The stream must support mark and reset. It is reset before this method
+	 * returns.
+	 *
+	 * @param input
+	 *            The stream to check
+	 * @return <code>true</code> if the stream contains a binary document
+	 * @throws IOException
+	 */
+	public static boolean isBinary(InputStream input) throws IOException {
+		byte[] magic = BinarySerializer.MAGIC;
+		input.mark(magic.length);
+		try {
+			for (byte b : magic)
+				if (input.read() != (b & 0xff))
+					return false;
+			return true;
+		} finally {
+			input.reset();
+		}
+	}
+
+	private final Map<String, Boolean> features = new HashMap<String, Boolean>();
+
+	private final Map<String, Object> properties = new HashMap<String, Object>();
+
+	private ContentHandler contentHandler;
+
+	private DTDHandler dtdHandler;
+
+	private EntityResolver entityResolver;
+
+	private ErrorHandler errorHandler;
+
+	private InputStream input;
+
+	private LocatorImpl locator;
+
+	private List<String> strings;
+
+	@Override
+	public ContentHandler getContentHandler() {
+		return contentHandler;
+	}
+
+	@Override
+	public DTDHandler getDTDHandler() {
+		return dtdHandler;
+	}
+
+	@Override
+	public EntityResolver getEntityResolver() {
+		return entityResolver;
+	}
+
+	@Override
+	public ErrorHandler getErrorHandler() {
+		return errorHandler;
+	}
+
+	@Override
+	public boolean getFeature(String name) {
+		Boolean value = features.get(name);
+		return value != null && value.booleanValue();
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return properties.get(name);
+	}
+
+	@Override
+	public void parse(InputSource source) throws IOException, SAXException {
+		InputStream in = source.getByteStream();
+		boolean close = false;
+		if (in == null) {
+			in = new URL(source.getSystemId()).openStream();
+			close = true;
+		}
+		if (!in.markSupported())
+			in = new BufferedInputStream(in);
+
+		locator = new LocatorImpl();
+		locator.setSystemId(source.getSystemId());
+		locator.setPublicId(source.getPublicId());
+		input = in;
+		strings = new ArrayList<String>();
+		try {
+			parseDocument();
+		} finally {
+			input = null;
+			strings = null;
+			if (close)
+				in.close();
+		}
+	}
+
+	@Override
+	public void parse(String systemId) throws IOException, SAXException {
+		parse(new InputSource(systemId));
+	}
+
+	@Override
+	public void setContentHandler(ContentHandler handler) {
+		contentHandler = handler;
+	}
+
+	@Override
+	public void setDTDHandler(DTDHandler handler) {
+		dtdHandler = handler;
+	}
+
+	@Override
+	public void setEntityResolver(EntityResolver resolver) {
+		entityResolver = resolver;
+	}
+
+	@Override
+	public void setErrorHandler(ErrorHandler handler) {
+		errorHandler = handler;
+	}
+
+	@Override
+	public void setFeature(String name, boolean value) {
+		features.put(name, Boolean.valueOf(value));
+	}
+
+	@Override
+	public void setProperty(String name, Object value) {
+		properties.put(name, value);
+	}
+
+	private SAXParseException error(String message) {
+		SAXParseException e = new SAXParseException(message, locator);
+		if (errorHandler != null) {
+			try {
+				errorHandler.fatalError(e);
+			} catch (SAXException ee) {
+				// The exception is thrown by our caller
+			}
+		}
+		return e;
+	}
+
+	private void parseDocument() throws IOException, SAXException {
+		if (!isBinary(input))
+			throw error("Not a binary document"); //$NON-NLS-1$
+		for (int idx = 0; idx < BinarySerializer.MAGIC.length; ++idx)
+			readByte();
+		int version = readInt();
+		if (version != BinarySerializer.VERSION)
+			throw error("Unsupported binary document version " + version); //$NON-NLS-1$
+
+		contentHandler.setDocumentLocator(locator);
+		contentHandler.startDocument();
+
+		// Each element on the stack holds the names of the element and the
+		// prefixes that it declared
+		List<String[]> elementStack = new ArrayList<String[]>();
+		AttributesImpl attrs = new AttributesImpl();
+		for (;;) {
+			int event = readByte();
+			switch (event) {
+				case BinarySerializer.START_ELEMENT: {
+					String uri = readString();
+					String localName = readString();
+					String qName = readString();
+					int attrCount = readInt();
+					attrs.clear();
+					List<String> prefixes = null;
+					for (int idx = 0; idx < attrCount; ++idx) {
+						String attrURI = readString();
+						String attrLocalName = readString();
+						String attrQName = readString();
+						String type = readString();
+						String value = readString();
+						String prefix = null;
+						if (XMLNS.equals(attrQName))
+							prefix = ""; //$NON-NLS-1$
+						else if (attrQName.startsWith(XMLNS_PREFIX))
+							prefix = attrQName.substring(XMLNS_PREFIX.length());
+
+						if (prefix == null) {
+							attrs.addAttribute(attrURI, attrLocalName, attrQName, type, value);
+							continue;
+						}
+
+						// A namespace aware parser reports namespace
+						// declarations as prefix mappings
+						if (prefixes == null)
+							prefixes = new ArrayList<String>();
+						prefixes.add(prefix);
+						contentHandler.startPrefixMapping(prefix, value);
+					}
+
+					String[] element;
+					if (prefixes == null)
+						element = new String[] { uri, localName, qName };
+					else {
+						element = new String[3 + prefixes.size()];
+						element[0] = uri;
+						element[1] = localName;
+						element[2] = qName;
+						for (int idx = 0; idx < prefixes.size(); ++idx)
+							element[3 + idx] = prefixes.get(idx);
+					}
+					elementStack.add(element);
+					contentHandler.startElement(uri, localName, qName, attrs);
+					break;
+				}
+				case BinarySerializer.END_ELEMENT: {
+					if (elementStack.isEmpty())
+						throw error("Unbalanced end of element"); //$NON-NLS-1$
+					String[] element = elementStack.remove(elementStack.size() - 1);
+					contentHandler.endElement(element[0], element[1], element[2]);
+					for (int idx = 3; idx < element.length; ++idx)
+						contentHandler.endPrefixMapping(element[idx]);
+					break;
+				}
+				case BinarySerializer.CHARACTERS: {
+					char[] chars = readString().toCharArray();
+					contentHandler.characters(chars, 0, chars.length);
+					break;
+				}
+				case BinarySerializer.IGNORABLE_WHITESPACE: {
+					char[] chars = readString().toCharArray();
+					contentHandler.ignorableWhitespace(chars, 0, chars.length);
+					break;
+				}
+				case BinarySerializer.PROCESSING_INSTRUCTION:
+					contentHandler.processingInstruction(readString(), readString());
+					break;
+				case BinarySerializer.END_DOCUMENT:
+					if (!elementStack.isEmpty())
+						throw error("Unexpected end of document"); //$NON-NLS-1$
+					contentHandler.endDocument();
+					return;
+				default:
+					throw error("Unknown binary event " + event); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private int readByte() throws IOException, SAXException {
+		int b = input.read();
+		if (b < 0)
+			throw error("Unexpected end of document"); //$NON-NLS-1$
+		return b;
+	}
+
+	private int readInt() throws IOException, SAXException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw error("Malformed integer"); //$NON-NLS-1$
+	}
+
+	private String readString() throws IOException, SAXException {
+		int index = readInt();
+		if (index != BinarySerializer.NEW_STRING) {
+			if (index > strings.size())
+				throw error("Invalid string reference " + index); //$NON-NLS-1$
+			return strings.get(index - 1);
+		}
+
+		int length = readInt();
+		if (length < 0)
+			throw error("Invalid string length " + length); //$NON-NLS-1$
+		byte[] bytes = new byte[length];
+		int pos = 0;
+		while (pos < length) {
+			int count = input.read(bytes, pos, length - pos);
+			if (count < 0)
+				throw new EOFException();
+			pos += count;
+		}
+		String value = new String(bytes, BinarySerializer.UTF_8);
+		strings.add(value);
+		return value;
+	}
+}
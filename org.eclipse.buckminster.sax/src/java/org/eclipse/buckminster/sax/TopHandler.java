@@ -102,6 +102,14 @@ public abstract class TopHandler extends AbstractHandler {
 
 	private final Stack<ContentHandler> handlerStack = new Stack<ContentHandler>();
 
+	/**
+	 * Create a <code>TopHandler</code> that has no <code>XMLReader</code>. A
+	 * reader must be assigned using {@link #setXMLReader(XMLReader)} before
+	 * anything is parsed.
+	 */
+	protected TopHandler() {
+	}
+
 	/**
 	 * Create a <code>TopHandler</code> and assing a <code>XMLReader</code>
 	 * parent. The created <code>TopHandler</code> will become the content
@@ -268,6 +276,21 @@ public abstract class TopHandler extends AbstractHandler {
 		return reader;
 	}
 
+	/**
+	 * Assign a new <code>XMLReader</code> parent to this instance. This
+	 * instance will become the content handler of the parent. Filters that
+	 * were pushed on the previous reader are discarded. This method must not
+	 * be called during a parse.
+	 * 
+	 * @param parent
+	 *            The XMLReader (the actual parser most likely).
+	 */
+	protected final void setXMLReader(XMLReader parent) {
+		handlerStack.clear();
+		reader = parent;
+		parent.setContentHandler(this);
+	}
+
 	/**
 	 * Pop the last pushed handler form the stack and make it the
 	 * <code>ContentHandler</code> of the current <code>XMLReader</code>.
@@ -7,6 +7,7 @@
  *****************************************************************************/
 package org.eclipse.buckminster.sax;
 
+import java.lang.ref.SoftReference;
 import java.util.UUID;
 
 /**
@@ -19,28 +20,42 @@ import java.util.UUID;
 public abstract class UUIDKeyed extends AbstractSaxableElement implements ISaxable {
 	private transient UUID id;
 
-	private transient byte[] image;
+	private transient SoftReference<byte[]> image;
 
 	@Override
 	public final boolean equals(Object o) {
 		return o == this || ((o instanceof UUIDKeyed && ((UUIDKeyed) o).getId().equals(this.getId())));
 	}
 
+	/**
+	 * Returns the id of this instance. Unless it has been set explicitly, the
+	 * id is computed from the XML image of the instance.
+	 * 
+	 * @return The id
+	 */
 	public synchronized final UUID getId() {
-		if (id == null) {
-			image = Utils.getImage(this);
-			id = UUID.nameUUIDFromBytes(image);
-		}
+		if (id == null)
+			getImage();
 		return id;
 	}
 
+	/**
+	 * Returns the XML image of this instance. The image is softly referenced
+	 * so that an element that is stored right after its id was computed is
+	 * serialized only once while the garbage collector is still free to
+	 * reclaim the image.
+	 * 
+	 * @return The image
+	 */
 	public synchronized final byte[] getImage() {
-		if (image == null) {
-			image = Utils.getImage(this);
-			if (id == null)
-				id = UUID.nameUUIDFromBytes(image);
+		byte[] bytes = image == null ? null : image.get();
+		if (bytes == null) {
+			bytes = Utils.getImage(this);
+			image = new SoftReference<byte[]>(bytes);
 		}
-		return image;
+		if (id == null)
+			id = UUID.nameUUIDFromBytes(bytes);
+		return bytes;
 	}
 
 	@Override
@@ -7,13 +7,17 @@
  *****************************************************************************/
 package org.eclipse.buckminster.sax;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -50,6 +55,28 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * An output stream that feeds everything written to it into a message
+	 * digest and then discards it.
+	 */
+	private static class DigestSink extends OutputStream {
+		private final MessageDigest digest;
+
+		DigestSink(MessageDigest digest) {
+			this.digest = digest;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			digest.update(b, off, len);
+		}
+
+		@Override
+		public void write(int b) {
+			digest.update((byte) b);
+		}
+	}
+
 	private static SAXTransformerFactory saxTransformerFactory;
 
 	private static final Class<?>[] emptyArgTypes = new Class[] {};
@@ -216,6 +243,51 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * Computes the name based UUID of the <code>UTF-8</code> encoded XML image
+	 * of the <code>saxable</code> argument. The result is identical to
+	 * <code>UUID.nameUUIDFromBytes(getImage(saxable))</code> but the image is
+	 * streamed into the digest and never kept in memory.
+	 * 
+	 * @param saxable
+	 *            The element to compute the UUID for. Must not be
+	 *            <code>null</code>.
+	 * @return the UUID
+	 */
+	public static UUID getImageUUID(ISaxable saxable) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			throw new InternalError("MD5 not supported"); //$NON-NLS-1$
+		}
+
+		try {
+			OutputStream sink = new BufferedOutputStream(new DigestSink(md), 8192);
+			serializeUgly(saxable, sink);
+			sink.flush();
+		} catch (SAXException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		// Same bit twiddling as UUID.nameUUIDFromBytes (version 3, IETF
+		// variant)
+		byte[] md5 = md.digest();
+		md5[6] &= 0x0f;
+		md5[6] |= 0x30;
+		md5[8] &= 0x3f;
+		md5[8] |= 0x80;
+		long msb = 0;
+		long lsb = 0;
+		for (int idx = 0; idx < 8; ++idx)
+			msb = (msb << 8) | (md5[idx] & 0xff);
+		for (int idx = 8; idx < 16; ++idx)
+			lsb = (lsb << 8) | (md5[idx] & 0xff);
+		return new UUID(msb, lsb);
+	}
+
 	/**
 	 * Obtain the input stream to the <code>UTF-8</code> encoded XML image of
 	 * the <code>saxable</code> argument.
@@ -308,6 +380,15 @@ public class Utils {
 		saxable.toSax(serializer);
 	}
 
+	/**
+	 * Serialize <code>saxable</code> using the compact binary format of the
+	 * {@link BinarySerializer}. The result can be parsed by any parser that
+	 * uses a {@link BinaryXMLReader} when the input is binary.
+	 */
+	public static void serializeBinary(ISaxable saxable, OutputStream outputStream) throws SAXException {
+		saxable.toSax(new BinarySerializer(outputStream));
+	}
+
 	public static void serializeUgly(ISaxable saxable, OutputStream outputStream) throws SAXException {
 		ContentHandler serializer = newSerializer(null, outputStream, "UTF-8", -1, false); //$NON-NLS-1$
 		saxable.toSax(serializer);